@@ -0,0 +1,98 @@
+package samba.domain.dht;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordBuilder;
+import org.ethereum.beacon.discovery.util.Functions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the routing table under the mix of operations of a running node: mostly node lookups,
+ * then closest nodes queries from FIND_NODES and content lookups, then nodes added or refreshed by
+ * incoming messages. The table is filled beforehand from a pool of random nodes, keeping those its
+ * buckets have room for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class NodeTableBenchmark {
+
+  private static final int NODE_POOL_SIZE = 2_048;
+  private static final int CLOSEST_NODES = 16;
+  private static final int LOOKUP_PERCENT = 60;
+  private static final int CLOSEST_NODES_PERCENT = 25;
+
+  private NodeTable nodeTable;
+  private List<NodeRecord> nodes;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(42);
+    nodes =
+        IntStream.range(0, NODE_POOL_SIZE)
+            .mapToObj(
+                __ ->
+                    new NodeRecordBuilder()
+                        .secretKey(Functions.randomKeyPair(random).secretKey())
+                        .build())
+            .toList();
+    nodeTable =
+        new NodeTable(
+            new NodeRecordBuilder().secretKey(Functions.randomKeyPair(random).secretKey()).build(),
+            node -> CompletableFuture.completedFuture(null));
+    nodes.forEach(nodeTable::addNode);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void mixedOperations(final Blackhole blackhole) {
+    runOperation(blackhole);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void mixedOperations8Threads(final Blackhole blackhole) {
+    runOperation(blackhole);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void mixedOperations32Threads(final Blackhole blackhole) {
+    runOperation(blackhole);
+  }
+
+  private void runOperation(final Blackhole blackhole) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final NodeRecord node = nodes.get(random.nextInt(nodes.size()));
+    final int operation = random.nextInt(100);
+    if (operation < LOOKUP_PERCENT) {
+      blackhole.consume(nodeTable.getNode(node.getNodeId()));
+    } else if (operation < LOOKUP_PERCENT + CLOSEST_NODES_PERCENT) {
+      blackhole.consume(
+          nodeTable.streamClosestNodes(node.getNodeId()).limit(CLOSEST_NODES).toList());
+    } else {
+      nodeTable.addNode(node);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package samba.network.history.routingtable;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures finding the nodes closest to a content id, as done for each FIND_CONTENT miss, gossip
+ * and content lookup. The radius trie is compared with sorting every known node by distance, the
+ * way the routing table used to. A quarter of the nodes store everything, the others a random
+ * radius.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RadiusTrieBenchmark {
+
+  private static final int CLOSEST_NODES = 16;
+
+  @Param({"10000", "100000"})
+  public int peers;
+
+  private final RadiusTrie radiusTrie = new RadiusTrie();
+  private final Map<Bytes, UInt256> radiusMap = new HashMap<>();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final Random random = new Random(42);
+    for (int i = 0; i < peers; i++) {
+      final Bytes nodeId = Bytes32.random(random);
+      final UInt256 radius =
+          random.nextInt(4) == 0 ? UInt256.MAX_VALUE : UInt256.fromBytes(Bytes32.random(random));
+      radiusTrie.put(nodeId, radius);
+      radiusMap.put(nodeId, radius);
+    }
+  }
+
+  @Benchmark
+  public List<Bytes> closestNodes() {
+    return radiusTrie.findClosest(randomContentId(), CLOSEST_NODES, false, Optional::of);
+  }
+
+  @Benchmark
+  public List<Bytes> closestNodesInRadius() {
+    return radiusTrie.findClosest(randomContentId(), CLOSEST_NODES, true, Optional::of);
+  }
+
+  @Benchmark
+  public List<Bytes> closestNodesBySorting() {
+    final Bytes contentId = randomContentId();
+    return radiusMap.entrySet().stream()
+        .sorted(Comparator.comparing(entry -> UInt256.fromBytes(entry.getKey().xor(contentId))))
+        .map(Map.Entry::getKey)
+        .limit(CLOSEST_NODES)
+        .toList();
+  }
+
+  private static Bytes randomContentId() {
+    return Bytes32.random(ThreadLocalRandom.current());
+  }
+}
@@ -27,6 +27,12 @@ public final class Samba {
     Thread.setDefaultUncaughtExceptionHandler(new SambaDefaultExceptionHandler());
     try {
       Optional<PortalNode> maybeNode = Samba.startFromCLIArgs(args);
+      if (maybeNode.isEmpty()) {
+        // a subcommand or the help ran instead of the node
+        LogConfigurator.shutdown();
+        System.exit(0);
+        return null; // unreachable, but required to compile
+      }
       maybeNode.ifPresent(
           node ->
               Runtime.getRuntime()
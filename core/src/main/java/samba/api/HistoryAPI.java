@@ -4,6 +4,7 @@ import samba.api.jsonrpc.results.FindContentResult;
 import samba.api.jsonrpc.results.GetContentResult;
 import samba.api.jsonrpc.results.PutContentResult;
 import samba.api.jsonrpc.results.RecursiveFindNodesResult;
+import samba.api.jsonrpc.results.StorageStatsResult;
 import samba.api.jsonrpc.results.TraceGetContentResult;
 
 import java.util.List;
@@ -50,6 +51,8 @@ public sealed interface HistoryAPI extends SambaAPI permits HistoryAPIClient {
 
   Optional<List<List<String>>> getRoutingTable();
 
+  Optional<StorageStatsResult> getStorageStats();
+
   Optional<BlockHeader> getBlockHeaderByBlockHash(Hash blockHash);
 
   Optional<BlockBody> getBlockBodyByBlockHash(Hash blockHash);
@@ -4,6 +4,7 @@ import samba.api.jsonrpc.results.FindContentResult;
 import samba.api.jsonrpc.results.GetContentResult;
 import samba.api.jsonrpc.results.PutContentResult;
 import samba.api.jsonrpc.results.RecursiveFindNodesResult;
+import samba.api.jsonrpc.results.StorageStatsResult;
 import samba.api.jsonrpc.results.TraceGetContentResult;
 import samba.network.history.api.HistoryNetworkInternalAPI;
 import samba.network.history.api.methods.*;
@@ -98,6 +99,11 @@ public final class HistoryAPIClient implements HistoryAPI {
     return GetRoutingTable.execute(this.historyNetworkInternalAPI);
   }
 
+  @Override
+  public Optional<StorageStatsResult> getStorageStats() {
+    return GetStorageStats.execute(this.historyNetworkInternalAPI);
+  }
+
   @Override
   public Optional<BlockHeader> getBlockHeaderByBlockHash(Hash blockHash) {
     return GetBlockHeaderByBlockHash.execute(this.historyNetworkInternalAPI, blockHash);
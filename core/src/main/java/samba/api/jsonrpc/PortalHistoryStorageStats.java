@@ -0,0 +1,31 @@
+package samba.api.jsonrpc;
+
+import samba.api.HistoryAPI;
+import samba.jsonrpc.config.RpcMethod;
+import samba.jsonrpc.reponse.JsonRpcMethod;
+import samba.jsonrpc.reponse.JsonRpcRequestContext;
+import samba.jsonrpc.reponse.JsonRpcResponse;
+import samba.jsonrpc.reponse.RpcErrorType;
+
+public class PortalHistoryStorageStats implements JsonRpcMethod {
+
+  private final HistoryAPI historyAPI;
+
+  public PortalHistoryStorageStats(final HistoryAPI historyAPI) {
+    this.historyAPI = historyAPI;
+  }
+
+  @Override
+  public String getName() {
+    return RpcMethod.PORTAL_HISTORY_STORAGE_STATS.getMethodName();
+  }
+
+  @Override
+  public JsonRpcResponse response(JsonRpcRequestContext requestContext) {
+    return this.historyAPI
+        .getStorageStats()
+        .map(stats -> createSuccessResponse(requestContext, stats))
+        .orElseGet(
+            () -> createJsonRpcInvalidRequestResponse(requestContext, RpcErrorType.INTERNAL_ERROR));
+  }
+}
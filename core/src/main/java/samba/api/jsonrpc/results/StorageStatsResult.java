@@ -0,0 +1,74 @@
+package samba.api.jsonrpc.results;
+
+import samba.storage.ContentTypeStats;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"count", "bytes", "diskBytes", "contentTypes"})
+public class StorageStatsResult {
+
+  private final long count;
+  private final long bytes;
+  private final long diskBytes;
+  private final Map<String, ContentTypeStatsResult> contentTypes = new LinkedHashMap<>();
+
+  public StorageStatsResult(final List<ContentTypeStats> stats) {
+    this.count = stats.stream().mapToLong(ContentTypeStats::count).sum();
+    this.bytes = stats.stream().mapToLong(ContentTypeStats::bytes).sum();
+    this.diskBytes = stats.stream().mapToLong(ContentTypeStats::diskBytes).sum();
+    stats.forEach(
+        typeStats -> contentTypes.put(typeStats.type(), new ContentTypeStatsResult(typeStats)));
+  }
+
+  @JsonGetter(value = "count")
+  public long getCount() {
+    return count;
+  }
+
+  @JsonGetter(value = "bytes")
+  public long getBytes() {
+    return bytes;
+  }
+
+  @JsonGetter(value = "diskBytes")
+  public long getDiskBytes() {
+    return diskBytes;
+  }
+
+  @JsonGetter(value = "contentTypes")
+  public Map<String, ContentTypeStatsResult> getContentTypes() {
+    return contentTypes;
+  }
+
+  @JsonPropertyOrder({"count", "bytes", "diskBytes"})
+  public static class ContentTypeStatsResult {
+
+    private final ContentTypeStats stats;
+
+    ContentTypeStatsResult(final ContentTypeStats stats) {
+      this.stats = stats;
+    }
+
+    @JsonGetter(value = "count")
+    public long getCount() {
+      return stats.count();
+    }
+
+    @JsonGetter(value = "bytes")
+    public long getBytes() {
+      return stats.bytes();
+    }
+
+    @JsonGetter(value = "diskBytes")
+    public long getDiskBytes() {
+      return stats.diskBytes();
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package samba.cli;
+
+import samba.config.SambaConfiguration;
+import samba.metrics.MetricsEndpoint;
+import samba.services.discovery.Discv5Service;
+import samba.storage.HistoryRocksDB;
+import samba.storage.era1.Era1Importer;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+@Command(
+    name = "import-era1",
+    mixinStandardHelpOptions = true,
+    description =
+        "Import the headers, bodies and receipts of era1 archives into the history database, then exit")
+public class ImportEra1SubCommand implements Callable<Integer> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ImportEra1SubCommand.class);
+  private static final String PROGRESS_FILE_NAME = "era1-import-progress";
+
+  @ParentCommand private SambaCommand parentCommand;
+
+  @Parameters(
+      paramLabel = "<PATH>",
+      arity = "1..*",
+      description = "Era1 files, or directories holding them")
+  private List<Path> paths;
+
+  @Option(
+      names = {"--import-threads"},
+      paramLabel = "<INTEGER>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description = "Number of threads decoding and validating blocks",
+      arity = "1")
+  private int importThreads = Runtime.getRuntime().availableProcessors();
+
+  @Override
+  public Integer call() {
+    try {
+      final SambaConfiguration sambaConfiguration = parentCommand.sambaConfiguration();
+      final List<Path> files = Era1Importer.findEra1Files(paths);
+      LOG.info("Importing {} era1 files", files.size());
+      final MetricsEndpoint metricsEndpoint =
+          new MetricsEndpoint(sambaConfiguration.getMetricsConfig());
+      metricsEndpoint.start().join();
+      // the distance index is keyed by the node id, it is rebuilt if the node starts with another
+      final Bytes nodeId =
+          Discv5Service.createNodeRecord(
+                  sambaConfiguration.getDiscoveryConfig(), sambaConfiguration.getSecreteKey())
+              .getNodeId();
+      final HistoryRocksDB historyDB =
+          new HistoryRocksDB(
+              sambaConfiguration.getDataPath(),
+              sambaConfiguration.getStorageConfig(),
+              metricsEndpoint.getMetricsSystem(),
+              nodeId);
+      try (Era1Importer importer =
+          new Era1Importer(
+              historyDB,
+              metricsEndpoint.getMetricsSystem(),
+              sambaConfiguration.getDataPath().resolve(PROGRESS_FILE_NAME),
+              importThreads)) {
+        final boolean imported = importer.importFiles(files);
+        LOG.info(imported ? "Era1 import completed" : "Era1 import completed with errors");
+        return imported ? 0 : 1;
+      } finally {
+        historyDB.close();
+        metricsEndpoint.stop().join();
+      }
+    } catch (final Throwable t) {
+      return parentCommand.handleExceptionAndReturnExitCode(t);
+    }
+  }
+}
@@ -6,8 +6,11 @@ import samba.Samba;
 import samba.config.DefaultCommandValues;
 import samba.config.InvalidConfigurationException;
 import samba.config.SambaConfiguration;
+import samba.config.StorageConfig;
+import samba.config.StorageEngine;
 import samba.logging.LogConfigurator;
 import samba.network.NetworkType;
+import samba.rocksdb.configuration.DataStorageFormat;
 import samba.samba.exceptions.ExceptionUtil;
 import samba.services.discovery.Bootnodes;
 import samba.storage.DatabaseStorageException;
@@ -40,7 +43,8 @@ import picocli.CommandLine.Option;
     name = "portal-client",
     mixinStandardHelpOptions = true,
     version = "Portal Client 1.0",
-    description = "Java Portal Network Client")
+    description = "Java Portal Network Client",
+    subcommands = {ImportEra1SubCommand.class, StorageSubCommand.class})
 public class SambaCommand implements Callable<Integer> {
 
   private static final Logger LOG = LoggerFactory.getLogger(SambaCommand.class);
@@ -99,6 +103,108 @@ public class SambaCommand implements Callable<Integer> {
       arity = "1")
   final Path dataPath = DefaultCommandValues.getDefaultSambaDataPath(this);
 
+  @Option(
+      names = {"--storage-capacity-mb"},
+      paramLabel = "<LONG>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Maximum disk space in MB used to store history content. Past it the farthest content is pruned and the radius shrinks. 0, the default, stores content without limit and never prunes it, except with --storage=memory where it is a quarter of the max heap, and at most half of it",
+      arity = "1")
+  private long storageCapacityMB = StorageConfig.DEFAULT_STORAGE_CAPACITY_MB;
+
+  @Option(
+      names = {"--storage"},
+      paramLabel = "<ENGINE>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Where history content is stored: rocksdb (on disk) or memory (lost on restart, for cache-only nodes and simulations)",
+      arity = "1")
+  private StorageEngine storageEngine = StorageEngine.ROCKSDB;
+
+  @Option(
+      names = {"--storage-format"},
+      paramLabel = "<FORMAT>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Storage engine of a new database: BASIC (transactional) or IMMUTABLE (blind write batches, faster ingestion). Must match the format of an existing database",
+      arity = "1")
+  private DataStorageFormat storageFormat = DataStorageFormat.BASIC;
+
+  @Option(
+      names = {"--storage-cache-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Off-heap memory in MB used to cache the most requested history content, split between headers, bodies and receipts. At most half of -XX:MaxDirectMemorySize, 256 by default or less to fit. 0 disables the cache",
+      arity = "1")
+  private Long storageCacheMB;
+
+  @Option(
+      names = {"--storage-bootstrap-snapshot"},
+      paramLabel = "<PATH>",
+      description =
+          "Snapshot taken with the storage snapshot command to restore the database from when the data directory has none yet",
+      arity = "1")
+  private Path storageBootstrapSnapshot;
+
+  @Option(
+      names = {"--storage-rocksdb-cache-mb"},
+      paramLabel = "<LONG>",
+      description =
+          "Memory in MB of the RocksDB block cache shared by all column families, memtables included. Sized from the host memory by default",
+      arity = "1")
+  private Long storageRocksDBCacheMB;
+
+  @Option(
+      names = {"--storage-rocksdb-background-jobs"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of concurrent RocksDB flushes and compactions. Sized from the host CPU count by default",
+      arity = "1")
+  private Integer storageRocksDBBackgroundJobs;
+
+  @Option(
+      names = {"--storage-rocksdb-max-open-files"},
+      paramLabel = "<INTEGER>",
+      description =
+          "Maximum number of files RocksDB keeps open, -1 for no limit. Sized from the process open file limit by default",
+      arity = "1")
+  private Integer storageRocksDBMaxOpenFiles;
+
+  @Option(
+      names = {"--storage-scrub-workers"},
+      paramLabel = "<INTEGER>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Maximum number of workers validating the stored content again in the background and deleting what is no longer valid, fewer while reads slow down. 0 disables scrubbing",
+      arity = "1")
+  private int storageScrubWorkers = StorageConfig.DEFAULT_SCRUB_WORKER_COUNT;
+
+  @Option(
+      names = {"--storage-write-queue-size"},
+      paramLabel = "<INTEGER>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description =
+          "Maximum number of content items waiting to be saved by the storage writer, offers being declined once it is nearly full. 0 saves content on the thread receiving it",
+      arity = "1")
+  private int storageWriteQueueSize = StorageConfig.DEFAULT_WRITE_QUEUE_SIZE;
+
+  @Option(
+      names = {"--storage-secondary-path"},
+      paramLabel = "<PATH>",
+      description =
+          "Open the database of another node, its primary, as a read-only secondary keeping its state in this directory, and serve only the local storage JSON-RPC methods without joining the network",
+      arity = "1")
+  private Path storageSecondaryPath;
+
+  @Option(
+      names = {"--storage-secondary-catch-up-interval-ms"},
+      paramLabel = "<LONG>",
+      showDefaultValue = CommandLine.Help.Visibility.ALWAYS,
+      description = "Delay in milliseconds between two catch ups of a secondary with its primary",
+      arity = "1")
+  private long storageSecondaryCatchUpIntervalMs =
+      StorageConfig.DEFAULT_SECONDARY_CATCH_UP_INTERVAL_MS;
+
   @Option(
       names = "--disable-json-rpc-server",
       description = "Disables JSON-RPC Server (set to true if flag is present)",
@@ -185,6 +291,30 @@ public class SambaCommand implements Callable<Integer> {
             if (dataPath != null) {
               storageConfig.databasePath(dataPath);
             }
+            storageConfig.storageCapacityInMB(storageCapacityMB);
+            storageConfig.storageEngine(storageEngine);
+            storageConfig.dataStorageFormat(storageFormat);
+            if (storageCacheMB != null) {
+              storageConfig.contentCacheSizeInMB(storageCacheMB);
+            }
+            if (storageBootstrapSnapshot != null) {
+              storageConfig.bootstrapSnapshotPath(storageBootstrapSnapshot);
+            }
+            if (storageRocksDBCacheMB != null) {
+              storageConfig.rocksDBCacheSizeInMB(storageRocksDBCacheMB);
+            }
+            if (storageRocksDBBackgroundJobs != null) {
+              storageConfig.rocksDBBackgroundJobCount(storageRocksDBBackgroundJobs);
+            }
+            if (storageRocksDBMaxOpenFiles != null) {
+              storageConfig.rocksDBMaxOpenFiles(storageRocksDBMaxOpenFiles);
+            }
+            storageConfig.scrubWorkerCount(storageScrubWorkers);
+            storageConfig.writeQueueSize(storageWriteQueueSize);
+            if (storageSecondaryPath != null) {
+              storageConfig.secondaryPath(storageSecondaryPath);
+            }
+            storageConfig.secondaryCatchUpIntervalInMillis(storageSecondaryCatchUpIntervalMs);
           });
 
       builder.jsonRpc(
@@ -237,7 +367,7 @@ public class SambaCommand implements Callable<Integer> {
 
   public int parse(final String[] args) {
     // TODO are more logic regarding parms
-    CommandLine commandLine = new CommandLine(this);
+    CommandLine commandLine = new CommandLine(this).setCaseInsensitiveEnumValuesAllowed(true);
     commandLine.parseArgs(args);
     commandLine.setOut(outputWriter);
     commandLine.setErr(errorWriter);
@@ -0,0 +1,142 @@
+package samba.cli;
+
+import samba.config.InvalidConfigurationException;
+import samba.config.SambaConfiguration;
+import samba.config.StorageConfig;
+import samba.rocksdb.KeyValueSegment;
+import samba.rocksdb.RocksDBKeyValueStorageFactory;
+import samba.rocksdb.RocksDBSnapshots;
+import samba.rocksdb.RocksDBStorage;
+import samba.rocksdb.Segment;
+import samba.storage.HistoryRocksDB;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.ParentCommand;
+
+@Command(
+    name = "storage",
+    mixinStandardHelpOptions = true,
+    description = "Snapshot and restore the history database, with the node stopped",
+    subcommands = {
+      StorageSubCommand.SnapshotSubCommand.class,
+      StorageSubCommand.RestoreSubCommand.class
+    })
+public class StorageSubCommand implements Runnable {
+
+  @ParentCommand private SambaCommand parentCommand;
+
+  @CommandLine.Spec private CommandLine.Model.CommandSpec spec;
+
+  @Override
+  public void run() {
+    spec.commandLine().usage(System.out);
+  }
+
+  private static RocksDBStorage openStorage(final SambaConfiguration sambaConfiguration) {
+    final StorageConfig storageConfig = sambaConfiguration.getStorageConfig();
+    return RocksDBKeyValueStorageFactory.create(
+        sambaConfiguration.getDataPath(),
+        storageConfig.getDatabasePath(),
+        storageConfig.getDatabaseFormat(),
+        storageConfig.getRocksDBSizing(),
+        new NoOpMetricsSystem());
+  }
+
+  @Command(
+      name = "snapshot",
+      mixinStandardHelpOptions = true,
+      description =
+          "Take a snapshot of the database. SST files are hard-linked when the snapshot is on the same file system as the database")
+  static class SnapshotSubCommand implements Callable<Integer> {
+
+    @ParentCommand private StorageSubCommand storageCommand;
+
+    @Parameters(paramLabel = "<PATH>", description = "Snapshot directory, which must not exist")
+    private Path snapshotPath;
+
+    @Option(
+        names = {"--segments"},
+        paramLabel = "<SEGMENT>",
+        split = ",",
+        description =
+            "Export only these content segments (BLOCK_HEADER, BLOCK_BODY, RECEIPT, BLOCK_HASH_BY_BLOCK_NUMBER), as SST files the restore command ingests into an existing database",
+        arity = "1..*")
+    private List<KeyValueSegment> segments;
+
+    @Override
+    public Integer call() {
+      final SambaCommand parentCommand = storageCommand.parentCommand;
+      try {
+        final SambaConfiguration sambaConfiguration = parentCommand.sambaConfiguration();
+        final StorageConfig storageConfig = sambaConfiguration.getStorageConfig();
+        if (segments != null && !HistoryRocksDB.CONTENT_SEGMENTS.containsAll(segments)) {
+          throw new InvalidConfigurationException(
+              "Only content segments can be exported: " + HistoryRocksDB.CONTENT_SEGMENTS);
+        }
+        try (RocksDBStorage storage = openStorage(sambaConfiguration)) {
+          if (segments == null) {
+            RocksDBSnapshots.createSnapshot(
+                storage,
+                sambaConfiguration.getDataPath(),
+                storageConfig.getDatabasePath(),
+                snapshotPath);
+          } else {
+            RocksDBSnapshots.exportSegments(
+                storage, sambaConfiguration.getDataPath(), segments, snapshotPath);
+          }
+        }
+        return 0;
+      } catch (final Throwable t) {
+        return parentCommand.handleExceptionAndReturnExitCode(t);
+      }
+    }
+  }
+
+  @Command(
+      name = "restore",
+      mixinStandardHelpOptions = true,
+      description =
+          "Restore a snapshot into a data directory without database, or ingest a segment export into the existing database")
+  static class RestoreSubCommand implements Callable<Integer> {
+
+    @ParentCommand private StorageSubCommand storageCommand;
+
+    @Parameters(paramLabel = "<PATH>", description = "Snapshot or segment export directory")
+    private Path snapshotPath;
+
+    @Override
+    public Integer call() {
+      final SambaCommand parentCommand = storageCommand.parentCommand;
+      try {
+        final SambaConfiguration sambaConfiguration = parentCommand.sambaConfiguration();
+        final Path dataPath = sambaConfiguration.getDataPath();
+        final Path databasePath = sambaConfiguration.getStorageConfig().getDatabasePath();
+        if (RocksDBSnapshots.isSnapshot(snapshotPath, dataPath, databasePath)) {
+          RocksDBSnapshots.restoreSnapshot(snapshotPath, dataPath, databasePath);
+          return 0;
+        }
+        try (RocksDBStorage storage = openStorage(sambaConfiguration)) {
+          final List<Segment> ingested =
+              RocksDBSnapshots.ingestSegments(
+                  storage, dataPath, HistoryRocksDB.CONTENT_SEGMENTS, snapshotPath);
+          if (!ingested.isEmpty()) {
+            // the ingested content has no distance index entries yet and is not counted
+            HistoryRocksDB.invalidateDistanceIndex(storage);
+            HistoryRocksDB.invalidateContentStats(storage);
+          }
+        }
+        return 0;
+      } catch (final Throwable t) {
+        return parentCommand.handleExceptionAndReturnExitCode(t);
+      }
+    }
+  }
+}
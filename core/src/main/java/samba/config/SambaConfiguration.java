@@ -127,6 +127,10 @@ public class SambaConfiguration {
 
     public SambaConfiguration build() {
       initMissingDefaults();
+      final StartupHardwareConfig startupHardwareConfig = new StartupHardwareConfig();
+      storageConfigBuilder.hostRocksDBSizing(startupHardwareConfig.getRocksDBSizing());
+      storageConfigBuilder.hostMaxDirectMemoryInBytes(startupHardwareConfig.getMaxDirectMemory());
+      storageConfigBuilder.hostMaxHeapInBytes(startupHardwareConfig.getMaxHeap());
 
       return new SambaConfiguration(
           metricsConfigBuilder.build(),
@@ -134,7 +138,7 @@ public class SambaConfiguration {
           discoveryConfigBuilder.build(),
           jsonRpcConfiguration.build(),
           storageConfigBuilder.build(),
-          new StartupHardwareConfig(),
+          startupHardwareConfig,
           secretKey.get(),
           this.useDefaultBootnodes,
           this.dataPath,
@@ -1,8 +1,12 @@
 package samba.config;
 
+import samba.rocksdb.RocksDBSizing;
+
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
 import oshi.SystemInfo;
 import oshi.hardware.HardwareAbstractionLayer;
 
@@ -10,13 +14,46 @@ public class StartupHardwareConfig {
   private final String maxHeapSize;
   private final String memory;
   private final int cpuCores;
+  private final long maxDirectMemory;
   private final HardwareAbstractionLayer hardwareInfo;
+  private final RocksDBSizing rocksDBSizing;
 
   public StartupHardwareConfig() {
-    this.hardwareInfo = new SystemInfo().getHardware();
+    final SystemInfo systemInfo = new SystemInfo();
+    this.hardwareInfo = systemInfo.getHardware();
     this.maxHeapSize = normalizeSize(Runtime.getRuntime().maxMemory());
     this.memory = normalizeSize(hardwareInfo.getMemory().getTotal());
     this.cpuCores = hardwareInfo.getProcessor().getLogicalProcessorCount();
+    this.maxDirectMemory = readMaxDirectMemory();
+    this.rocksDBSizing =
+        RocksDBSizing.forHost(
+            hardwareInfo.getMemory().getTotal(),
+            Runtime.getRuntime().maxMemory(),
+            cpuCores,
+            systemInfo.getOperatingSystem().getCurrentProcess().getSoftOpenFileLimit());
+  }
+
+  public RocksDBSizing getRocksDBSizing() {
+    return rocksDBSizing;
+  }
+
+  public long getMaxHeap() {
+    return Runtime.getRuntime().maxMemory();
+  }
+
+  /** Bytes the JVM lets direct buffers allocate, -XX:MaxDirectMemorySize or the max heap. */
+  public long getMaxDirectMemory() {
+    return maxDirectMemory;
+  }
+
+  // unset, the limit defaults to the max heap size
+  private static long readMaxDirectMemory() {
+    final String maxDirectMemorySize =
+        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+            .getVMOption("MaxDirectMemorySize")
+            .getValue();
+    final long maxDirectMemory = Long.parseLong(maxDirectMemorySize);
+    return maxDirectMemory > 0 ? maxDirectMemory : Runtime.getRuntime().maxMemory();
   }
 
   private String normalizeSize(final long size) {
@@ -28,7 +65,11 @@ public class StartupHardwareConfig {
     summary.add(
         "Host Hardware Summary: "
             + String.format(
-                "Max Heap: %s, Total Memory: %s, CPU cores: %d", maxHeapSize, memory, cpuCores));
+                "Max Heap: %s, Max Direct Memory: %s, Total Memory: %s, CPU cores: %d",
+                maxHeapSize,
+                normalizeSize(maxDirectMemory),
+                memory,
+                cpuCores));
     return summary;
   }
 }
@@ -1,26 +1,74 @@
 package samba.config;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import samba.rocksdb.RocksDBSizing;
 import samba.rocksdb.configuration.DataStorageFormat;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public class StorageConfig {
   public static final String DATABASE_PATH_NAME = "database";
+  // no limit, pruning stored content is opted into
+  public static final long DEFAULT_STORAGE_CAPACITY_MB = 0;
+  public static final long DEFAULT_CONTENT_CACHE_SIZE_MB = 256;
+  public static final long DEFAULT_SECONDARY_CATCH_UP_INTERVAL_MS = 1_000;
+  public static final int DEFAULT_SCRUB_WORKER_COUNT = 2;
+  public static final int DEFAULT_WRITE_QUEUE_SIZE = 4_096;
+  private static final long BYTES_PER_MB = 1_000_000L;
+  // share of the max heap content stored in memory is pruned to, when no capacity is given
+  private static final int DEFAULT_MEMORY_STORAGE_HEAP_DIVISOR = 4;
+
   private final Path databasePath;
-  private final DataStorageFormat dataStorageFormat = DataStorageFormat.BASIC;
+  private final StorageEngine storageEngine;
+  private final DataStorageFormat dataStorageFormat;
+  private final long storageCapacityInBytes;
+  private final long contentCacheSizeInBytes;
+  private final Optional<Path> bootstrapSnapshotPath;
+  private final RocksDBSizing rocksDBSizing;
+  private final Optional<Path> secondaryPath;
+  private final Duration secondaryCatchUpInterval;
+  private final int scrubWorkerCount;
+  private final int writeQueueSize;
 
-  private StorageConfig(final Path databasePath) {
+  private StorageConfig(
+      final Path databasePath,
+      final StorageEngine storageEngine,
+      final DataStorageFormat dataStorageFormat,
+      final long storageCapacityInBytes,
+      final long contentCacheSizeInBytes,
+      final Optional<Path> bootstrapSnapshotPath,
+      final RocksDBSizing rocksDBSizing,
+      final Optional<Path> secondaryPath,
+      final Duration secondaryCatchUpInterval,
+      final int scrubWorkerCount,
+      final int writeQueueSize) {
     this.databasePath = databasePath;
+    this.storageEngine = storageEngine;
+    this.dataStorageFormat = dataStorageFormat;
+    this.storageCapacityInBytes = storageCapacityInBytes;
+    this.contentCacheSizeInBytes = contentCacheSizeInBytes;
+    this.bootstrapSnapshotPath = bootstrapSnapshotPath;
+    this.rocksDBSizing = rocksDBSizing;
+    this.secondaryPath = secondaryPath;
+    this.secondaryCatchUpInterval = secondaryCatchUpInterval;
+    this.scrubWorkerCount = scrubWorkerCount;
+    this.writeQueueSize = writeQueueSize;
   }
 
   public static Builder builder() {
     return new Builder();
   }
 
+  public StorageEngine getStorageEngine() {
+    return this.storageEngine;
+  }
+
   public DataStorageFormat getDatabaseFormat() {
     return this.dataStorageFormat;
   }
@@ -29,14 +77,214 @@ public class StorageConfig {
     return this.databasePath;
   }
 
+  /** Disk space the stored content is pruned to stay under, 0 for no limit. */
+  public long getStorageCapacityInBytes() {
+    return this.storageCapacityInBytes;
+  }
+
+  public boolean isStorageCapacityLimited() {
+    return this.storageCapacityInBytes > 0;
+  }
+
+  public long getContentCacheSizeInBytes() {
+    return this.contentCacheSizeInBytes;
+  }
+
+  public Optional<Path> getBootstrapSnapshotPath() {
+    return this.bootstrapSnapshotPath;
+  }
+
+  public RocksDBSizing getRocksDBSizing() {
+    return this.rocksDBSizing;
+  }
+
+  /**
+   * Directory of the state of this node as a read-only secondary of the database, when another node
+   * is the primary writing to it.
+   */
+  public Optional<Path> getSecondaryPath() {
+    return this.secondaryPath;
+  }
+
+  public Duration getSecondaryCatchUpInterval() {
+    return this.secondaryCatchUpInterval;
+  }
+
+  public boolean isSecondary() {
+    return this.secondaryPath.isPresent();
+  }
+
+  public int getScrubWorkerCount() {
+    return this.scrubWorkerCount;
+  }
+
+  public int getWriteQueueSize() {
+    return this.writeQueueSize;
+  }
+
   public static class Builder {
 
     private Path databasePath;
+    private StorageEngine storageEngine = StorageEngine.ROCKSDB;
+    private DataStorageFormat dataStorageFormat = DataStorageFormat.BASIC;
+    private long storageCapacityInBytes = DEFAULT_STORAGE_CAPACITY_MB * BYTES_PER_MB;
+    private Optional<Long> contentCacheSizeInBytes = Optional.empty();
+    private Optional<Path> bootstrapSnapshotPath = Optional.empty();
+    private RocksDBSizing hostRocksDBSizing = RocksDBSizing.DEFAULT;
+    private long hostMaxDirectMemoryInBytes = Long.MAX_VALUE;
+    private long hostMaxHeapInBytes = Runtime.getRuntime().maxMemory();
+    private Optional<Long> rocksDBCacheSizeInBytes = Optional.empty();
+    private Optional<Integer> rocksDBBackgroundJobCount = Optional.empty();
+    private Optional<Integer> rocksDBMaxOpenFiles = Optional.empty();
+    private Optional<Path> secondaryPath = Optional.empty();
+    private Duration secondaryCatchUpInterval =
+        Duration.ofMillis(DEFAULT_SECONDARY_CATCH_UP_INTERVAL_MS);
+    private int scrubWorkerCount = DEFAULT_SCRUB_WORKER_COUNT;
+    private int writeQueueSize = DEFAULT_WRITE_QUEUE_SIZE;
 
     private Builder() {}
 
     public StorageConfig build() {
-      return new StorageConfig(databasePath);
+      checkArgument(
+          storageEngine == StorageEngine.ROCKSDB || secondaryPath.isEmpty(),
+          "A secondary reads the database of its primary, it cannot be stored in memory");
+      // content stored in memory is always pruned, or the heap grows until it runs out
+      final long maxMemoryStorageCapacityInBytes = hostMaxHeapInBytes / 2;
+      checkArgument(
+          storageEngine != StorageEngine.MEMORY
+              || storageCapacityInBytes <= maxMemoryStorageCapacityInBytes,
+          "Storage capacity in memory must not exceed half of the max heap, %s MB",
+          maxMemoryStorageCapacityInBytes / BYTES_PER_MB);
+      final long storageCapacity =
+          storageEngine == StorageEngine.MEMORY && storageCapacityInBytes == 0
+              ? hostMaxHeapInBytes / DEFAULT_MEMORY_STORAGE_HEAP_DIVISOR
+              : storageCapacityInBytes;
+      // the content cache is held in direct buffers, the other half is left to network and read
+      // buffers
+      final long maxContentCacheSizeInBytes = hostMaxDirectMemoryInBytes / 2;
+      checkArgument(
+          contentCacheSizeInBytes.orElse(0L) <= maxContentCacheSizeInBytes,
+          "Content cache size must not exceed half of the direct memory, %s MB. Raise"
+              + " -XX:MaxDirectMemorySize or lower the content cache size",
+          maxContentCacheSizeInBytes / BYTES_PER_MB);
+      RocksDBSizing rocksDBSizing = hostRocksDBSizing;
+      if (rocksDBCacheSizeInBytes.isPresent()) {
+        rocksDBSizing = rocksDBSizing.withBlockCacheCapacity(rocksDBCacheSizeInBytes.get());
+      }
+      if (rocksDBBackgroundJobCount.isPresent()) {
+        rocksDBSizing = rocksDBSizing.withBackgroundJobCount(rocksDBBackgroundJobCount.get());
+      }
+      if (rocksDBMaxOpenFiles.isPresent()) {
+        rocksDBSizing = rocksDBSizing.withMaxOpenFiles(rocksDBMaxOpenFiles.get());
+      }
+      return new StorageConfig(
+          databasePath,
+          storageEngine,
+          dataStorageFormat,
+          storageCapacity,
+          contentCacheSizeInBytes.orElse(
+              Math.min(DEFAULT_CONTENT_CACHE_SIZE_MB * BYTES_PER_MB, maxContentCacheSizeInBytes)),
+          bootstrapSnapshotPath,
+          rocksDBSizing,
+          secondaryPath,
+          secondaryCatchUpInterval,
+          scrubWorkerCount,
+          writeQueueSize);
+    }
+
+    public Builder storageEngine(final StorageEngine storageEngine) {
+      checkNotNull(storageEngine);
+      this.storageEngine = storageEngine;
+      return this;
+    }
+
+    public Builder dataStorageFormat(final DataStorageFormat dataStorageFormat) {
+      checkNotNull(dataStorageFormat);
+      this.dataStorageFormat = dataStorageFormat;
+      return this;
+    }
+
+    public Builder storageCapacityInMB(final long storageCapacityInMB) {
+      checkArgument(storageCapacityInMB >= 0, "Storage capacity must not be negative");
+      this.storageCapacityInBytes = storageCapacityInMB * BYTES_PER_MB;
+      return this;
+    }
+
+    public Builder contentCacheSizeInMB(final long contentCacheSizeInMB) {
+      checkArgument(contentCacheSizeInMB >= 0, "Content cache size must not be negative");
+      this.contentCacheSizeInBytes = Optional.of(contentCacheSizeInMB * BYTES_PER_MB);
+      return this;
+    }
+
+    public Builder bootstrapSnapshotPath(final Path bootstrapSnapshotPath) {
+      checkNotNull(bootstrapSnapshotPath);
+      this.bootstrapSnapshotPath = Optional.of(bootstrapSnapshotPath);
+      return this;
+    }
+
+    public Builder hostRocksDBSizing(final RocksDBSizing hostRocksDBSizing) {
+      checkNotNull(hostRocksDBSizing);
+      this.hostRocksDBSizing = hostRocksDBSizing;
+      return this;
+    }
+
+    public Builder hostMaxDirectMemoryInBytes(final long hostMaxDirectMemoryInBytes) {
+      checkArgument(hostMaxDirectMemoryInBytes > 0, "Max direct memory must be greater than 0");
+      this.hostMaxDirectMemoryInBytes = hostMaxDirectMemoryInBytes;
+      return this;
+    }
+
+    public Builder hostMaxHeapInBytes(final long hostMaxHeapInBytes) {
+      checkArgument(hostMaxHeapInBytes > 0, "Max heap must be greater than 0");
+      this.hostMaxHeapInBytes = hostMaxHeapInBytes;
+      return this;
+    }
+
+    public Builder rocksDBCacheSizeInMB(final long rocksDBCacheSizeInMB) {
+      checkArgument(rocksDBCacheSizeInMB > 0, "RocksDB cache size must be greater than 0");
+      this.rocksDBCacheSizeInBytes = Optional.of(rocksDBCacheSizeInMB * BYTES_PER_MB);
+      return this;
+    }
+
+    public Builder rocksDBBackgroundJobCount(final int rocksDBBackgroundJobCount) {
+      checkArgument(
+          rocksDBBackgroundJobCount > 0, "RocksDB background job count must be greater than 0");
+      this.rocksDBBackgroundJobCount = Optional.of(rocksDBBackgroundJobCount);
+      return this;
+    }
+
+    public Builder rocksDBMaxOpenFiles(final int rocksDBMaxOpenFiles) {
+      checkArgument(
+          rocksDBMaxOpenFiles == -1 || rocksDBMaxOpenFiles > 0,
+          "RocksDB max open files must be greater than 0, or -1 for no limit");
+      this.rocksDBMaxOpenFiles = Optional.of(rocksDBMaxOpenFiles);
+      return this;
+    }
+
+    public Builder secondaryPath(final Path secondaryPath) {
+      checkNotNull(secondaryPath);
+      this.secondaryPath = Optional.of(secondaryPath);
+      return this;
+    }
+
+    public Builder secondaryCatchUpIntervalInMillis(final long secondaryCatchUpIntervalInMillis) {
+      checkArgument(
+          secondaryCatchUpIntervalInMillis > 0,
+          "Secondary catch up interval must be greater than 0");
+      this.secondaryCatchUpInterval = Duration.ofMillis(secondaryCatchUpIntervalInMillis);
+      return this;
+    }
+
+    public Builder scrubWorkerCount(final int scrubWorkerCount) {
+      checkArgument(scrubWorkerCount >= 0, "Scrub worker count must not be negative");
+      this.scrubWorkerCount = scrubWorkerCount;
+      return this;
+    }
+
+    public Builder writeQueueSize(final int writeQueueSize) {
+      checkArgument(writeQueueSize >= 0, "Write queue size must not be negative");
+      this.writeQueueSize = writeQueueSize;
+      return this;
     }
 
     public Builder databasePath(final Path databasePath) {
@@ -50,6 +298,34 @@ public class StorageConfig {
     List<String> summary = new ArrayList<>();
     summary.add("Storage Summary:");
     summary.add("DATABSE PATH: " + this.databasePath);
+    summary.add("STORAGE ENGINE: " + this.storageEngine);
+    summary.add("STORAGE FORMAT: " + this.dataStorageFormat);
+    summary.add(
+        "STORAGE CAPACITY: "
+            + (isStorageCapacityLimited()
+                ? this.storageCapacityInBytes / BYTES_PER_MB + " MB"
+                : "UNLIMITED"));
+    summary.add("CONTENT CACHE SIZE: " + this.contentCacheSizeInBytes / BYTES_PER_MB + " MB");
+    this.bootstrapSnapshotPath.ifPresent(
+        snapshotPath -> summary.add("BOOTSTRAP SNAPSHOT: " + snapshotPath));
+    summary.add(
+        "ROCKSDB BLOCK CACHE: "
+            + this.rocksDBSizing.blockCacheCapacity() / BYTES_PER_MB
+            + " MB (WRITE BUFFERS: "
+            + this.rocksDBSizing.writeBufferManagerCapacity() / BYTES_PER_MB
+            + " MB)");
+    summary.add("ROCKSDB BACKGROUND JOBS: " + this.rocksDBSizing.backgroundJobCount());
+    summary.add("ROCKSDB MAX OPEN FILES: " + this.rocksDBSizing.maxOpenFiles());
+    summary.add("SCRUB WORKERS: " + this.scrubWorkerCount);
+    summary.add("WRITE QUEUE SIZE: " + this.writeQueueSize);
+    this.secondaryPath.ifPresent(
+        path ->
+            summary.add(
+                "READ-ONLY SECONDARY: "
+                    + path
+                    + " (CATCH UP EVERY "
+                    + this.secondaryCatchUpInterval.toMillis()
+                    + " MS)"));
     return summary;
   }
 }
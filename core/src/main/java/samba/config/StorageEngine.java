@@ -0,0 +1,9 @@
+package samba.config;
+
+/** Where the history content is stored. */
+public enum StorageEngine {
+  /** On disk, in RocksDB. */
+  ROCKSDB,
+  /** In memory only, pruned within the heap, nothing is kept across restarts. */
+  MEMORY
+}
@@ -1,5 +1,7 @@
 package samba.domain.content;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import samba.schema.content.ssz.ContentKeyBlockHashContainer;
 import samba.schema.content.ssz.ContentKeyBlockNumberContainer;
 
@@ -9,32 +11,41 @@ import tech.pegasys.teku.infrastructure.unsigned.UInt64;
 
 public class ContentKey {
 
+  // selector, block hash and ancestor count
+  private static final int EPHEMERAL_KEY_SIZE = 1 + Bytes32.SIZE + 1;
+
   private final ContentType contentType;
   private final ContentKeyBlockHashContainer hashContainer;
   private final ContentKeyBlockNumberContainer numberContainer;
+  // ephemeral headers are looked up by block hash with the number of ancestors to return
+  private final int ancestorCount;
 
   public ContentKey(ContentType contentType, ContentKeyBlockHashContainer hashContainer) {
     this.contentType = contentType;
     this.hashContainer = hashContainer;
     this.numberContainer = null;
+    this.ancestorCount = 0;
   }
 
   public ContentKey(ContentType contentType, ContentKeyBlockNumberContainer numberContainer) {
     this.contentType = contentType;
     this.hashContainer = null;
     this.numberContainer = numberContainer;
+    this.ancestorCount = 0;
   }
 
   public ContentKey(ContentType contentType, Bytes32 blockHash) {
     this.contentType = contentType;
     this.hashContainer = new ContentKeyBlockHashContainer(blockHash);
     this.numberContainer = null;
+    this.ancestorCount = 0;
   }
 
   public ContentKey(ContentType contentType, UInt64 blockNumber) {
     this.contentType = contentType;
     this.hashContainer = null;
     this.numberContainer = new ContentKeyBlockNumberContainer(blockNumber);
+    this.ancestorCount = 0;
   }
 
   public ContentKey(Bytes sszBytes) {
@@ -42,9 +53,21 @@ public class ContentKey {
     if (contentType == ContentType.BLOCK_HEADER_BY_NUMBER) {
       this.hashContainer = null;
       this.numberContainer = ContentKeyBlockNumberContainer.decodeBytes(sszBytes.slice(1));
+      this.ancestorCount = 0;
+    } else if (contentType == ContentType.EPHEMERAL_BLOCK_HEADER) {
+      checkArgument(
+          sszBytes.size() == EPHEMERAL_KEY_SIZE,
+          "Ephemeral header content key should be %s bytes, got %s",
+          EPHEMERAL_KEY_SIZE,
+          sszBytes.size());
+      this.hashContainer =
+          ContentKeyBlockHashContainer.decodeBytes(sszBytes.slice(1, Bytes32.SIZE));
+      this.numberContainer = null;
+      this.ancestorCount = sszBytes.get(EPHEMERAL_KEY_SIZE - 1) & 0xFF;
     } else {
       this.hashContainer = ContentKeyBlockHashContainer.decodeBytes(sszBytes.slice(1));
       this.numberContainer = null;
+      this.ancestorCount = 0;
     }
   }
 
@@ -66,6 +89,13 @@ public class ContentKey {
     throw new UnsupportedOperationException("Content type is not BLOCK_HASH compatible");
   }
 
+  public int getAncestorCount() {
+    if (ContentType.EPHEMERAL_BLOCK_HEADER == contentType) {
+      return ancestorCount;
+    }
+    throw new UnsupportedOperationException("Content type is not EPHEMERAL_BLOCK_HEADER");
+  }
+
   public Bytes getBlockNumberSsz() {
     if (ContentType.BLOCK_HEADER_BY_NUMBER == contentType) {
       return Bytes.concatenate(
@@ -87,6 +117,12 @@ public class ContentKey {
       return Bytes.concatenate(
           Bytes.of(contentType.getByteValue()), numberContainer.sszSerialize());
     }
+    if (ContentType.EPHEMERAL_BLOCK_HEADER == contentType) {
+      return Bytes.concatenate(
+          Bytes.of(contentType.getByteValue()),
+          hashContainer.sszSerialize(),
+          Bytes.of(ancestorCount));
+    }
     return Bytes.concatenate(Bytes.of(contentType.getByteValue()), hashContainer.sszSerialize());
   }
 
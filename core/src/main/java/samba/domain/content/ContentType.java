@@ -10,7 +10,7 @@ public enum ContentType {
   BLOCK_BODY(0x01),
   RECEIPT(0x02),
   BLOCK_HEADER_BY_NUMBER(0x03),
-  EPHEMERAL_BLOCK_HEADER(0x04); // TODO unsupported
+  EPHEMERAL_BLOCK_HEADER(0x04);
 
   private final byte value;
   private static final int BYTE_MASK = 0xFF;
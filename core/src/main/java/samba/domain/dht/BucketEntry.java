@@ -40,6 +40,10 @@ public class BucketEntry {
     return node;
   }
 
+  public long getLastLivenessConfirmationTime() {
+    return lastLivenessConfirmationTime;
+  }
+
   public void checkLiveness(final long currentTime) {
     if (currentTime - lastPingTime
             >= MIN_MILLIS_BETWEEN_PINGS // enough time has passed since the last "ping" to this node
@@ -13,15 +13,20 @@ import java.util.stream.Stream;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 
+/**
+ * Updates run under the lock of the bucket and publish a copy of its entries once done. Reads go to
+ * the latest copy without taking the lock.
+ */
 class KBucket {
 
   private static final int K = 16;
-  private long lastMaintenanceTime = 0;
+  private volatile long lastMaintenanceTime = 0;
 
   private final LivenessManager livenessManager;
   private final Clock clock;
 
   private final List<BucketEntry> nodes = new ArrayList<>();
+  private volatile List<BucketEntry> snapshot = List.of();
   private Optional<BucketEntry> pendingNode = Optional.empty();
 
   public KBucket(final LivenessManager livenessManager, final Clock clock) {
@@ -30,27 +35,32 @@ class KBucket {
   }
 
   public void updateStats(final int distance, final BucketStats stats) {
-    stats.setBucketStat(distance, (int) streamLiveEntries().count(), nodes.size());
+    final List<BucketEntry> entries = snapshot;
+    stats.setBucketStat(distance, (int) streamLiveEntries(entries).count(), entries.size());
+  }
+
+  public List<BucketEntry> getAllEntries() {
+    return snapshot;
   }
 
   public List<NodeRecord> getAllNodes() {
-    return nodes.stream().map(BucketEntry::getNode).collect(Collectors.toList());
+    return snapshot.stream().map(BucketEntry::getNode).collect(Collectors.toList());
   }
 
   public List<NodeRecord> getLiveNodes() {
-    return streamLiveEntries().map(BucketEntry::getNode).collect(Collectors.toList());
+    return streamLiveEntries(snapshot).map(BucketEntry::getNode).collect(Collectors.toList());
   }
 
-  private Stream<BucketEntry> streamLiveEntries() {
-    return nodes.stream().takeWhile(BucketEntry::isLive);
+  private static Stream<BucketEntry> streamLiveEntries(final List<BucketEntry> entries) {
+    return entries.stream().takeWhile(BucketEntry::isLive);
   }
 
-  public Optional<NodeRecord> getPendingNode() {
+  public synchronized Optional<NodeRecord> getPendingNode() {
     return pendingNode.map(BucketEntry::getNode);
   }
 
   // TODO validate when trigger  newNode.checkLiveness(currentTime);
-  public void addOrUpdate(final NodeRecord node) {
+  public synchronized void addOrUpdate(final NodeRecord node) {
     performMaintenance();
     getEntry(node)
         .ifPresentOrElse(
@@ -61,10 +71,29 @@ class KBucket {
               if (livenessManager.isABadPeer(node)) return;
               addNewNode(node);
             });
+    publish();
+  }
+
+  /**
+   * Adds a node restored from a checkpoint, behind the nodes confirmed live more recently. A node
+   * the bucket already holds or has no room for is left out.
+   *
+   * @param node the node to restore
+   * @param lastLivenessConfirmationTime the last time the node was confirmed live
+   */
+  public synchronized void restore(final NodeRecord node, final long lastLivenessConfirmationTime) {
+    if (isFull() || getEntry(node).isPresent() || livenessManager.isABadPeer(node)) return;
+    int index = 0;
+    while (index < nodes.size()
+        && nodes.get(index).getLastLivenessConfirmationTime() >= lastLivenessConfirmationTime) {
+      index++;
+    }
+    nodes.add(index, new BucketEntry(livenessManager, node, lastLivenessConfirmationTime));
+    publish();
   }
 
   // TODO validate if it should be removed from the liveness checker.
-  public void remove(final NodeRecord node) {
+  public synchronized void remove(final NodeRecord node) {
     getEntry(node)
         .ifPresentOrElse(
             existingEntry -> {
@@ -76,6 +105,7 @@ class KBucket {
                 pendingNode = Optional.empty();
               }
             });
+    publish();
   }
 
   /**
@@ -95,7 +125,7 @@ class KBucket {
    * <p>b. if there is a pending node, insert it into the bucket (at appropriate position based on
    * when it was last confirmed as live)
    */
-  public void performMaintenance() {
+  public synchronized void performMaintenance() {
     final long currentTime = clock.millis();
     lastMaintenanceTime = currentTime;
     performPendingNodeMaintenance();
@@ -106,11 +136,16 @@ class KBucket {
     if (lastNode.hasFailedLivenessCheck(currentTime)) {
       nodes.remove(lastNode);
       this.promotePendingNode();
+      publish();
     } else {
       lastNode.checkLiveness(currentTime);
     }
   }
 
+  private void publish() {
+    snapshot = List.copyOf(nodes);
+  }
+
   private void promotePendingNode() {
     pendingNode.ifPresent(
         pendingEntry -> {
@@ -124,11 +159,18 @@ class KBucket {
   }
 
   public Optional<NodeRecord> getNode(final Bytes targetNodeId) {
-    return getEntry(targetNodeId).map(BucketEntry::getNode);
+    return snapshot.stream()
+        .filter(node -> node.getNodeId().equals(targetNodeId))
+        .findAny()
+        .map(BucketEntry::getNode);
+  }
+
+  public Optional<BucketEntry> findEntry(final Bytes nodeId) {
+    return snapshot.stream().filter(entry -> entry.getNodeId().equals(nodeId)).findAny();
   }
 
   public boolean isEmpty() {
-    return nodes.isEmpty();
+    return snapshot.isEmpty();
   }
 
   private boolean isPendingNode(NodeRecord node) {
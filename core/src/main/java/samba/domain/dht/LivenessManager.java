@@ -6,8 +6,10 @@ package samba.domain.dht;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.database.ExpirationSet;
@@ -15,22 +17,44 @@ import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Pings the nodes queued for a liveness check, a bounded number at a time. The number of pings in
+ * flight follows Little's law: the rate of checks expected times the mean time a ping takes, which
+ * grows with the round trip times and with the nodes not answering before the timeout. A backlog in
+ * the queue raises it until the queue drains.
+ *
+ * <p>Pings are sent without holding the lock of the manager, as a failed ping removes the node from
+ * the routing table, and by a single thread at a time, so that pings failing at once do not nest.
+ */
 public class LivenessManager {
   private static final Logger LOG = LoggerFactory.getLogger(LivenessManager.class);
 
-  static final int MAX_CONCURRENT_PINGS = 3;
+  static final int MIN_CONCURRENT_PINGS = 3;
+  static final int MAX_CONCURRENT_PINGS = 32;
   static final int MAX_QUEUE_SIZE = 1000;
   static final int MAX_IGNORE_SET_SIZE = 1000;
   static final Duration IGNORE_DURATION = Duration.ofSeconds(30);
+  // assumed until the first ping completes
+  static final long INITIAL_PING_MILLIS = 1000;
+  // a backlog is planned to be drained within that time
+  private static final double BACKLOG_DRAIN_SECONDS = 10;
+  private static final double HEADROOM = 1.5;
 
   private final Set<NodeRecord> activePings = new HashSet<>();
-  private final Set<NodeRecord> queuedPings = new LinkedHashSet<>();
+  // queued nodes with the time they were queued
+  private final Map<NodeRecord, Long> queuedPings = new LinkedHashMap<>();
   private final ExpirationSet<Bytes> ignoredNodes; // TODO make thread-safe
   private final LivenessChecker livenessChecker;
+  private final Clock clock;
+  private double meanPingMillis = INITIAL_PING_MILLIS;
+  private double expectedChecksPerSecond;
+  private int concurrencyLimit = MIN_CONCURRENT_PINGS;
+  private boolean sendingPings;
 
   public LivenessManager(final Clock clock, final LivenessChecker livenessChecker) {
     this.ignoredNodes = new ExpirationSet<>(IGNORE_DURATION, clock, MAX_IGNORE_SET_SIZE);
     this.livenessChecker = livenessChecker;
+    this.clock = clock;
   }
 
   /**
@@ -38,39 +62,104 @@ public class LivenessManager {
    *
    * @param node the node to check liveness
    */
-  public synchronized void checkLiveness(NodeRecord node) {
-    if (activePings.contains(node) || isABadPeer(node)) {
-      // Already checking node or node should be ignored
-      // Note: We don't need to check queuedPings because it's a set so the add just does nothing
-      // and if we have capacity to ping immediately the queue must be empty.
-      return;
+  public void checkLiveness(NodeRecord node) {
+    synchronized (this) {
+      if (activePings.contains(node) || isABadPeer(node)) {
+        // Already checking node or node should be ignored
+        return;
+      }
+      if (queuedPings.size() < MAX_QUEUE_SIZE) {
+        queuedPings.putIfAbsent(node, clock.millis());
+      }
+    }
+    sendQueuedPings();
+  }
+
+  /**
+   * Sets the rate of liveness checks expected, to size the number of pings in flight.
+   *
+   * @param checksPerSecond the number of nodes expected to be checked each second
+   */
+  public void setExpectedCheckRate(final double checksPerSecond) {
+    synchronized (this) {
+      this.expectedChecksPerSecond = checksPerSecond;
+      updateConcurrencyLimit();
+    }
+    sendQueuedPings();
+  }
+
+  public synchronized int getConcurrencyLimit() {
+    return concurrencyLimit;
+  }
+
+  /** How long the node queued first has been waiting for its ping, 0 when none waits. */
+  public synchronized long getRevalidationLagMillis() {
+    if (queuedPings.isEmpty()) {
+      return 0;
+    }
+    return Math.max(clock.millis() - queuedPings.values().iterator().next(), 0);
+  }
+
+  // a ping completing while pings are sent frees its slot for the thread already sending them
+  private void sendQueuedPings() {
+    synchronized (this) {
+      if (sendingPings) {
+        return;
+      }
+      sendingPings = true;
     }
-    if (activePings.size() < MAX_CONCURRENT_PINGS) {
+    while (true) {
+      final NodeRecord node;
+      synchronized (this) {
+        if (activePings.size() >= concurrencyLimit || queuedPings.isEmpty()) {
+          sendingPings = false;
+          return;
+        }
+        node = queuedPings.keySet().iterator().next();
+        queuedPings.remove(node);
+        activePings.add(node);
+      }
       sendPing(node);
-    } else if (queuedPings.size() < MAX_QUEUE_SIZE) {
-      queuedPings.add(node);
     }
   }
 
   private void sendPing(final NodeRecord node) {
-    queuedPings.remove(node);
-    activePings.add(node);
-    livenessChecker
-        .checkLiveness(node)
-        .whenComplete(
-            (__, error) -> {
-              if (error != null) {
-                LOG.trace("Liveness check failed for node {}", node, error);
-              }
-              synchronized (this) {
-                if (error != null) {
-                  ignoredNodes.add(node.getNodeId());
-                }
-                activePings.remove(node);
-                // Ping the next node in the queue if any.
-                queuedPings.stream().findFirst().ifPresent(this::sendPing);
-              }
-            });
+    final long startTime = clock.millis();
+    CompletableFuture<Void> ping;
+    try {
+      ping = livenessChecker.checkLiveness(node);
+    } catch (RuntimeException e) {
+      ping = CompletableFuture.failedFuture(e);
+    }
+    ping.whenComplete(
+        (__, error) -> {
+          if (error != null) {
+            LOG.trace("Liveness check failed for node {}", node, error);
+          }
+          synchronized (this) {
+            if (error != null) {
+              ignoredNodes.add(node.getNodeId());
+            }
+            activePings.remove(node);
+            recordPingDuration(clock.millis() - startTime);
+          }
+          // Ping the next nodes in the queue if any.
+          sendQueuedPings();
+        });
+  }
+
+  // alpha = 1/8, the weight of a ping in the mean
+  private void recordPingDuration(final long millis) {
+    meanPingMillis += (Math.max(millis, 0) - meanPingMillis) / 8;
+    updateConcurrencyLimit();
+  }
+
+  private void updateConcurrencyLimit() {
+    final double checksPerSecond =
+        expectedChecksPerSecond + queuedPings.size() / BACKLOG_DRAIN_SECONDS;
+    final double pingsInFlight = Math.ceil(checksPerSecond * meanPingMillis / 1000 * HEADROOM);
+    concurrencyLimit =
+        (int) Math.max(MIN_CONCURRENT_PINGS, Math.min(MAX_CONCURRENT_PINGS, pingsInFlight));
   }
 
   public synchronized boolean isABadPeer(final NodeRecord nodeRecord) {
@@ -1,74 +1,165 @@
 package samba.domain.dht;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+import com.google.common.hash.Hashing;
 import org.apache.tuweni.bytes.Bytes;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.util.Functions;
 
+/**
+ * The k-buckets of a node, one for each log distance to the home node. The table takes no lock of
+ * its own: each bucket is updated under its own lock and read from its latest snapshot, so lookups
+ * and FIND_NODES responses are not held up by updates to the table.
+ *
+ * <p>Each node added to the table is checked again every {@link #REVALIDATION_INTERVAL}, from a
+ * timing wheel with a slot per {@link #REVALIDATION_TICK}. A node starts in the slot its id hashes
+ * to, so that the checks are spread evenly over the interval instead of coming in bursts.
+ */
 public class NodeTable {
 
   public static final int MINIMUM_BUCKET = 1;
   public static final int MAXIMUM_BUCKET = 256;
+  public static final Duration REVALIDATION_TICK = Duration.ofSeconds(1);
+  static final Duration REVALIDATION_INTERVAL = Duration.ofMinutes(5);
+  private static final int REVALIDATION_SLOTS =
+      (int) REVALIDATION_INTERVAL.dividedBy(REVALIDATION_TICK);
 
   private final NodeRecord homeNode;
   private final LivenessManager livenessManager;
-  private final Map<Integer, KBucket> buckets = new HashMap<>();
-  private final Clock clock = Clock.systemUTC();
+  // indexed by distance, the home node at distance 0 has no bucket
+  private final KBucket[] buckets = new KBucket[MAXIMUM_BUCKET + 1];
+  private final Clock clock;
+  private final TimingWheel<Bytes> revalidationWheel = new TimingWheel<>(REVALIDATION_SLOTS);
+  // the ids in the wheel, dropped once found out of the table when due
+  private final Set<Bytes> scheduledRevalidations = ConcurrentHashMap.newKeySet();
 
   public NodeTable(final NodeRecord homeNode, final LivenessChecker livenessChecker) {
+    this(homeNode, livenessChecker, Clock.systemUTC());
+  }
+
+  NodeTable(final NodeRecord homeNode, final LivenessChecker livenessChecker, final Clock clock) {
     this.homeNode = homeNode;
+    this.clock = clock;
     this.livenessManager = new LivenessManager(this.clock, livenessChecker);
+    for (int distance = MINIMUM_BUCKET; distance <= MAXIMUM_BUCKET; distance++) {
+      buckets[distance] = new KBucket(livenessManager, clock);
+    }
   }
 
-  public synchronized Stream<NodeRecord> getLiveNodeRecords(final int distance) {
+  public Stream<NodeRecord> getLiveNodeRecords(final int distance) {
     if (distance == 0) return Stream.of(homeNode);
     return streamFromBucket(distance, bucket -> bucket.getLiveNodes().stream());
   }
 
-  public synchronized void addNode(NodeRecord node) {
+  public void addNode(NodeRecord node) {
+    final int distance = Functions.logDistance(this.homeNode.getNodeId(), node.getNodeId());
+    getBucket(distance).ifPresent(bucket -> bucket.addOrUpdate(node));
+    scheduleRevalidation(node.getNodeId());
+  }
+
+  /**
+   * Adds a node restored from a checkpoint with the time it was last confirmed live. The node is
+   * left out if its bucket is already full.
+   *
+   * @param node the node to restore
+   * @param lastLivenessConfirmationTime the last time the node was confirmed live
+   */
+  public void restoreNode(final NodeRecord node, final long lastLivenessConfirmationTime) {
     final int distance = Functions.logDistance(this.homeNode.getNodeId(), node.getNodeId());
-    if (distance > MAXIMUM_BUCKET) return;
-    getOrCreateBucket(distance).ifPresent(bucket -> bucket.addOrUpdate(node));
+    getBucket(distance).ifPresent(bucket -> bucket.restore(node, lastLivenessConfirmationTime));
+    scheduleRevalidation(node.getNodeId());
+  }
+
+  public Stream<BucketEntry> streamEntries() {
+    return streamBuckets().flatMap(bucket -> bucket.getAllEntries().stream());
   }
 
-  public synchronized Stream<NodeRecord> streamClosestNodes(final Bytes nodeId) {
+  public Stream<NodeRecord> streamClosestNodes(final Bytes nodeId) {
     return StreamSupport.stream(
         Spliterators.spliteratorUnknownSize(
             new KBucketsIterator(this, this.homeNode.getNodeId(), nodeId), Spliterator.ORDERED),
         false);
   }
 
-  public synchronized Optional<NodeRecord> getNode(final Bytes nodeId) {
+  public Optional<NodeRecord> getNode(final Bytes nodeId) {
     final int distance = Functions.logDistance(this.homeNode.getNodeId(), nodeId);
     return getBucket(distance).flatMap(bucket -> bucket.getNode(nodeId));
   }
 
-  public synchronized void removeNode(final NodeRecord nodeRecord) {
+  public void removeNode(final NodeRecord nodeRecord) {
     final int distance = Functions.logDistance(this.homeNode.getNodeId(), nodeRecord.getNodeId());
     getBucket(distance).ifPresent(bucket -> bucket.remove(nodeRecord));
   }
 
-  public synchronized void performMaintenanceOnOldestBucket() {
-    buckets.values().stream()
+  public void performMaintenanceOnOldestBucket() {
+    streamBuckets()
         .filter(bucket -> !bucket.isEmpty())
         .min(Comparator.comparing(KBucket::getLastMaintenanceTime))
         .ifPresent(KBucket::performMaintenance);
   }
 
-  public synchronized BucketStats getStats() {
+  /**
+   * Moves the revalidation wheel one tick forward and queues a liveness check for the nodes due,
+   * except those confirmed live during the last half interval. The nodes due are scheduled again
+   * one interval later, the nodes no longer in the table are dropped from the wheel.
+   */
+  public void revalidateDueNodes() {
+    final long currentTime = clock.millis();
+    for (Bytes nodeId : revalidationWheel.advance()) {
+      final Optional<BucketEntry> entry = getEntry(nodeId);
+      if (entry.isEmpty()) {
+        scheduledRevalidations.remove(nodeId);
+        continue;
+      }
+      revalidationWheel.schedule(nodeId, REVALIDATION_SLOTS);
+      if (currentTime - entry.get().getLastLivenessConfirmationTime()
+          >= REVALIDATION_INTERVAL.toMillis() / 2) {
+        livenessManager.checkLiveness(entry.get().getNode());
+      }
+    }
+    livenessManager.setExpectedCheckRate(
+        (double) revalidationWheel.size() / REVALIDATION_INTERVAL.toSeconds());
+  }
+
+  public int getLivenessConcurrencyLimit() {
+    return livenessManager.getConcurrencyLimit();
+  }
+
+  public long getRevalidationLagMillis() {
+    return livenessManager.getRevalidationLagMillis();
+  }
+
+  private void scheduleRevalidation(final Bytes nodeId) {
+    if (scheduledRevalidations.add(nodeId)) {
+      final int hash = Hashing.murmur3_32_fixed().hashBytes(nodeId.toArrayUnsafe()).asInt();
+      revalidationWheel.schedule(nodeId, Math.floorMod(hash, REVALIDATION_SLOTS) + 1);
+    }
+  }
+
+  private Optional<BucketEntry> getEntry(final Bytes nodeId) {
+    final int distance = Functions.logDistance(this.homeNode.getNodeId(), nodeId);
+    return getBucket(distance).flatMap(bucket -> bucket.findEntry(nodeId));
+  }
+
+  public BucketStats getStats() {
     final BucketStats stats = new BucketStats();
-    buckets.forEach((distance, bucket) -> bucket.updateStats(distance, stats));
+    for (int distance = MINIMUM_BUCKET; distance <= MAXIMUM_BUCKET; distance++) {
+      buckets[distance].updateStats(distance, stats);
+    }
     return stats;
   }
 
@@ -79,25 +170,30 @@ public class NodeTable {
     return Stream.empty();
   }
 
-  private Optional<KBucket> getOrCreateBucket(final int distance) {
-    if (isOutOfDistance(distance)) return Optional.empty();
-    return Optional.of(
-        buckets.computeIfAbsent(distance, __ -> new KBucket(livenessManager, clock)));
-  }
-
   private static boolean isOutOfDistance(final int distance) {
     return distance > MAXIMUM_BUCKET || distance < MINIMUM_BUCKET;
   }
 
   private Optional<KBucket> getBucket(final int distance) {
-    return Optional.ofNullable(buckets.get(distance));
+    if (isOutOfDistance(distance)) return Optional.empty();
+    return Optional.of(buckets[distance]);
+  }
+
+  private Stream<KBucket> streamBuckets() {
+    return Arrays.stream(buckets, MINIMUM_BUCKET, MAXIMUM_BUCKET + 1);
   }
 
   public boolean isNodeIgnored(NodeRecord nodeRecord) {
     return this.livenessManager.isABadPeer(nodeRecord);
   }
 
+  /**
+   * The nodes of each bucket, indexed by distance. The list at distance 0 is always empty, the home
+   * node is not kept in a bucket.
+   */
   public List<List<NodeRecord>> getNodeRecordBuckets() {
-    return this.buckets.values().stream().map(KBucket::getAllNodes).toList();
+    return IntStream.rangeClosed(0, MAXIMUM_BUCKET)
+        .mapToObj(distance -> getBucket(distance).map(KBucket::getAllNodes).orElseGet(List::of))
+        .toList();
   }
 }
@@ -0,0 +1,76 @@
+package samba.domain.dht;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A hashed timing wheel: a ring of slots, one per tick, each holding the items due when the wheel
+ * reaches it. Scheduling an item and advancing the wheel cost the same however many items are
+ * scheduled. An item due further than one turn away waits in its slot for the turns in between.
+ *
+ * @param <T> the type of the scheduled items
+ */
+final class TimingWheel<T> {
+
+  private final List<ArrayDeque<Timeout<T>>> slots;
+  private long tick;
+  private int size;
+
+  TimingWheel(final int slotCount) {
+    checkArgument(slotCount > 0, "A timing wheel needs at least one slot");
+    this.slots = new ArrayList<>(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      slots.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * Schedule an item.
+   *
+   * @param item the item to schedule
+   * @param delayInTicks the number of ticks until the item is due, at least one
+   */
+  synchronized void schedule(final T item, final long delayInTicks) {
+    final long deadline = tick + Math.max(delayInTicks, 1);
+    slots.get(slotOf(deadline)).add(new Timeout<>(item, deadline));
+    size++;
+  }
+
+  /**
+   * Move the wheel one tick forward.
+   *
+   * @return the items due at the new tick, in the order they were scheduled
+   */
+  synchronized List<T> advance() {
+    tick++;
+    final List<T> due = new ArrayList<>();
+    final Iterator<Timeout<T>> timeouts = slots.get(slotOf(tick)).iterator();
+    while (timeouts.hasNext()) {
+      final Timeout<T> timeout = timeouts.next();
+      if (timeout.deadline() <= tick) {
+        timeouts.remove();
+        due.add(timeout.item());
+      }
+    }
+    size -= due.size();
+    return due;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  int getSlotCount() {
+    return slots.size();
+  }
+
+  private int slotOf(final long deadline) {
+    return (int) (deadline % slots.size());
+  }
+
+  private record Timeout<T>(T item, long deadline) {}
+}
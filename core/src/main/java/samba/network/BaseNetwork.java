@@ -9,12 +9,16 @@ import samba.network.exception.StoreNotAvailableException;
 import samba.services.discovery.Discv5Client;
 import samba.util.ProtocolVersionUtil;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.google.common.base.Throwables;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.units.bigints.UInt256;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tech.pegasys.teku.infrastructure.async.SafeFuture;
@@ -25,15 +29,40 @@ public abstract class BaseNetwork implements Network {
   protected NetworkType networkType;
   protected Discv5Client discv5Client;
   protected UInt256 nodeRadius;
+  protected final PeerLatencyTracker latencyTracker;
+  protected final PeerScoreTracker peerScores;
 
-  public BaseNetwork(NetworkType networkType, Discv5Client discv5Client, UInt256 nodeRadius) {
+  public BaseNetwork(
+      NetworkType networkType,
+      Discv5Client discv5Client,
+      UInt256 nodeRadius,
+      MetricsSystem metricsSystem) {
     this.networkType = networkType;
     this.discv5Client = discv5Client;
     this.nodeRadius = nodeRadius;
+    this.latencyTracker = new PeerLatencyTracker(metricsSystem);
+    this.peerScores = new PeerScoreTracker(latencyTracker);
   }
 
+  public PeerLatencyTracker getLatencyTracker() {
+    return latencyTracker;
+  }
+
+  public PeerScoreTracker getPeerScores() {
+    return peerScores;
+  }
+
+  /**
+   * Send a request and wait for the response, for the timeout estimated from the past round trips
+   * to the destination node.
+   *
+   * @param destinationNode the node to send the request to
+   * @param messageRequest the request
+   * @param maxTimeout the timeout for a node without round trip estimate, and the longest one
+   * @return the response, failed with a {@link TimeoutException} when it did not come in time
+   */
   protected SafeFuture<Optional<PortalWireMessage>> sendMessage(
-      NodeRecord destinationNode, PortalWireMessage messageRequest) {
+      NodeRecord destinationNode, PortalWireMessage messageRequest, Duration maxTimeout) {
     LOG.debug(
         "Send Portal {} message to {}",
         messageRequest.getMessageType(),
@@ -51,6 +80,9 @@ public abstract class BaseNetwork implements Network {
       return SafeFuture.failedFuture(new NoSupportedProtocolVersionException());
     }
 
+    final Bytes nodeId = destinationNode.getNodeId();
+    final Duration timeout = latencyTracker.getTimeout(nodeId, maxTimeout);
+    final long sentAt = System.nanoTime();
     // TODO FIX chain order
     return SafeFuture.of(
             discv5Client
@@ -64,8 +96,14 @@ public abstract class BaseNetwork implements Network {
                             messageRequest,
                             protocolVersion.get())) // Change
                 .thenApply(Optional::of))
+        .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+        .thenPeek(
+            __ -> {
+              latencyTracker.recordRoundTrip(nodeId, Duration.ofNanos(System.nanoTime() - sentAt));
+              peerScores.recordResponse(nodeId);
+            })
         .thenPeek(this::logResponse)
-        .exceptionallyCompose(error -> handleSendMessageError(messageRequest, error));
+        .exceptionallyCompose(error -> handleSendMessageError(messageRequest, nodeId, error));
   }
 
   private boolean isOurself(NodeRecord node) {
@@ -81,9 +119,13 @@ public abstract class BaseNetwork implements Network {
   }
 
   private SafeFuture<Optional<PortalWireMessage>> handleSendMessageError(
-      PortalWireMessage message, Throwable error) {
+      PortalWireMessage message, Bytes nodeId, Throwable error) {
     LOG.debug("Something when wrong when sending a Portal {} message", message.getMessageType());
     final Throwable rootCause = Throwables.getRootCause(error);
+    peerScores.recordRequestFailure(nodeId);
+    if (rootCause instanceof TimeoutException) {
+      latencyTracker.recordTimeout(nodeId);
+    }
     if (rootCause instanceof IllegalArgumentException) {
       return SafeFuture.failedFuture(new BadRequestException(rootCause.getMessage()));
     }
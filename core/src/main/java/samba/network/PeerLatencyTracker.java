@@ -0,0 +1,134 @@
+package samba.network;
+
+import samba.metrics.SambaMetricCategory;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+
+/**
+ * Estimates the round trip time to each peer from its answers to our requests, the way TCP does
+ * (RFC 6298): a smoothed round trip time and its mean variation, giving a timeout of the smoothed
+ * round trip time plus four times the variation. Each request timing out doubles the timeout of the
+ * peer until it answers again.
+ *
+ * <p>Timeouts never exceed the timeout given for the request, which a peer not answered yet gets.
+ * Estimates are kept for the peers used most recently only.
+ */
+public class PeerLatencyTracker {
+
+  static final Duration MIN_TIMEOUT = Duration.ofMillis(500);
+  private static final long CLOCK_GRANULARITY_NANOS = Duration.ofMillis(10).toNanos();
+  private static final int MAX_BACKOFF = 6;
+  private static final int MAX_TRACKED_PEERS = 10_000;
+
+  private final Cache<Bytes, Estimate> estimates =
+      Caffeine.newBuilder().maximumSize(MAX_TRACKED_PEERS).executor(Runnable::run).build();
+
+  public PeerLatencyTracker(final MetricsSystem metricsSystem) {
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.NETWORK,
+        "peers_with_round_trip_estimate",
+        "Number of peers with an estimated round trip time",
+        () -> (int) estimates.estimatedSize());
+    metricsSystem.createGauge(
+        SambaMetricCategory.NETWORK,
+        "peer_round_trip_time_median_seconds",
+        "Median of the smoothed round trip times of the peers",
+        () -> quantileInSeconds(0.5));
+    metricsSystem.createGauge(
+        SambaMetricCategory.NETWORK,
+        "peer_round_trip_time_p90_seconds",
+        "90th percentile of the smoothed round trip times of the peers",
+        () -> quantileInSeconds(0.9));
+  }
+
+  public void recordRoundTrip(final Bytes nodeId, final Duration roundTripTime) {
+    estimates.get(nodeId, __ -> new Estimate()).addSample(roundTripTime.toNanos());
+  }
+
+  // a peer without estimate already gets the longest timeout
+  public void recordTimeout(final Bytes nodeId) {
+    final Estimate estimate = estimates.getIfPresent(nodeId);
+    if (estimate != null) {
+      estimate.backOff();
+    }
+  }
+
+  /**
+   * Timeout of a request to a peer.
+   *
+   * @param nodeId the id of the peer
+   * @param maxTimeout the timeout of the request for a peer without estimate
+   * @return the timeout from the estimate of the peer, between 500ms and maxTimeout
+   */
+  public Duration getTimeout(final Bytes nodeId, final Duration maxTimeout) {
+    final Estimate estimate = estimates.getIfPresent(nodeId);
+    if (estimate == null) {
+      return maxTimeout;
+    }
+    final long timeoutNanos =
+        Math.max(MIN_TIMEOUT.toNanos(), Math.min(estimate.timeoutNanos(), maxTimeout.toNanos()));
+    return Duration.ofNanos(timeoutNanos);
+  }
+
+  public Optional<Duration> getSmoothedRoundTripTime(final Bytes nodeId) {
+    return Optional.ofNullable(estimates.getIfPresent(nodeId))
+        .map(estimate -> Duration.ofNanos(estimate.smoothedNanos()));
+  }
+
+  /** Orders peers by smoothed round trip time, the peers without estimate last. */
+  public Comparator<NodeRecord> byRoundTripTime() {
+    return Comparator.comparingLong(
+        nodeRecord -> {
+          final Estimate estimate = estimates.getIfPresent(nodeRecord.getNodeId());
+          return estimate != null ? estimate.smoothedNanos() : Long.MAX_VALUE;
+        });
+  }
+
+  private double quantileInSeconds(final double quantile) {
+    final long[] smoothed =
+        estimates.asMap().values().stream().mapToLong(Estimate::smoothedNanos).sorted().toArray();
+    if (smoothed.length == 0) {
+      return 0;
+    }
+    final int index = (int) Math.ceil(quantile * smoothed.length) - 1;
+    return smoothed[Math.max(index, 0)] / 1e9;
+  }
+
+  private static final class Estimate {
+    private long smoothedNanos;
+    private long variationNanos;
+    private int backoff;
+
+    private synchronized void addSample(final long roundTripNanos) {
+      if (smoothedNanos == 0) {
+        smoothedNanos = roundTripNanos;
+        variationNanos = roundTripNanos / 2;
+      } else {
+        // alpha = 1/8, beta = 1/4
+        variationNanos = (3 * variationNanos + Math.abs(smoothedNanos - roundTripNanos)) / 4;
+        smoothedNanos = (7 * smoothedNanos + roundTripNanos) / 8;
+      }
+      backoff = 0;
+    }
+
+    private synchronized void backOff() {
+      backoff = Math.min(backoff + 1, MAX_BACKOFF);
+    }
+
+    private synchronized long timeoutNanos() {
+      return (smoothedNanos + Math.max(CLOCK_GRANULARITY_NANOS, 4 * variationNanos)) << backoff;
+    }
+
+    private synchronized long smoothedNanos() {
+      return smoothedNanos;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package samba.network;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+
+/**
+ * Scores each peer from what it did for us lately, to ask the peers most likely to help first. The
+ * score is the product of:
+ *
+ * <ul>
+ *   <li>the ratio of our requests it answered,
+ *   <li>the ratio of uTP transfers with it that completed,
+ *   <li>the ratio of offered content it accepted, weighing half as a peer declines content it
+ *       already has,
+ *   <li>a latency factor, 1/2 for a smoothed round trip time of 200ms, 0.8 for 50ms,
+ *   <li>a penalty halving the score for each invalid content it sent.
+ * </ul>
+ *
+ * <p>Ratios start from one success and one failure, so a peer not seen yet gets half of each and
+ * ranks above a peer failing most of the time. Every count halves every ten minutes, so that a peer
+ * recovers from its past failures.
+ */
+public class PeerScoreTracker {
+
+  static final Duration HALF_LIFE = Duration.ofMinutes(10);
+  private static final double REFERENCE_ROUND_TRIP_NANOS = Duration.ofMillis(200).toNanos();
+  private static final int MAX_TRACKED_PEERS = 10_000;
+
+  private final PeerLatencyTracker latencyTracker;
+  private final LongSupplier nanoTime;
+  private final Cache<Bytes, Score> scores =
+      Caffeine.newBuilder().maximumSize(MAX_TRACKED_PEERS).executor(Runnable::run).build();
+
+  public PeerScoreTracker(final PeerLatencyTracker latencyTracker) {
+    this(latencyTracker, System::nanoTime);
+  }
+
+  PeerScoreTracker(final PeerLatencyTracker latencyTracker, final LongSupplier nanoTime) {
+    this.latencyTracker = latencyTracker;
+    this.nanoTime = nanoTime;
+  }
+
+  public void recordResponse(final Bytes nodeId) {
+    update(nodeId, Event.ANSWERED, 1);
+  }
+
+  public void recordRequestFailure(final Bytes nodeId) {
+    update(nodeId, Event.UNANSWERED, 1);
+  }
+
+  public void recordTransfer(final Bytes nodeId, final boolean completed) {
+    update(nodeId, completed ? Event.TRANSFERRED : Event.TRANSFER_FAILED, 1);
+  }
+
+  public void recordOffer(final Bytes nodeId, final int offered, final int accepted) {
+    update(nodeId, Event.ACCEPTED, accepted);
+    update(nodeId, Event.DECLINED, offered - accepted);
+  }
+
+  public void recordInvalidContent(final Bytes nodeId) {
+    update(nodeId, Event.INVALID_CONTENT, 1);
+  }
+
+  /**
+   * Score of a peer.
+   *
+   * @param nodeId the id of the peer
+   * @return between 0 and 1, higher for a peer more likely to help
+   */
+  public double getScore(final Bytes nodeId) {
+    final Score score = scores.getIfPresent(nodeId);
+    final double[] counts = score != null ? score.decayedCounts(nanoTime.getAsLong()) : null;
+    final double latencyFactor =
+        latencyTracker
+            .getSmoothedRoundTripTime(nodeId)
+            .map(
+                roundTripTime ->
+                    REFERENCE_ROUND_TRIP_NANOS
+                        / (REFERENCE_ROUND_TRIP_NANOS + roundTripTime.toNanos()))
+            .orElse(0.5);
+    return ratio(counts, Event.ANSWERED, Event.UNANSWERED)
+        * ratio(counts, Event.TRANSFERRED, Event.TRANSFER_FAILED)
+        * (0.5 + 0.5 * ratio(counts, Event.ACCEPTED, Event.DECLINED))
+        * latencyFactor
+        * Math.pow(0.5, count(counts, Event.INVALID_CONTENT));
+  }
+
+  /**
+   * Orders peers by score, the highest first, then by smoothed round trip time. Scores decay as
+   * time passes, so each peer is scored once, the first time the comparator meets it: use a new
+   * comparator for each sort.
+   */
+  public Comparator<NodeRecord> byScore() {
+    final Map<Bytes, Double> snapshot = new HashMap<>();
+    return Comparator.<NodeRecord>comparingDouble(
+            nodeRecord -> -snapshot.computeIfAbsent(nodeRecord.getNodeId(), this::getScore))
+        .thenComparing(latencyTracker.byRoundTripTime());
+  }
+
+  private void update(final Bytes nodeId, final Event event, final int count) {
+    if (count > 0) {
+      final long now = nanoTime.getAsLong();
+      scores.get(nodeId, __ -> new Score(now)).add(event, count, now);
+    }
+  }
+
+  private static double ratio(final double[] counts, final Event success, final Event failure) {
+    final double successes = count(counts, success);
+    return (successes + 1) / (successes + count(counts, failure) + 2);
+  }
+
+  private static double count(final double[] counts, final Event event) {
+    return counts != null ? counts[event.ordinal()] : 0;
+  }
+
+  private enum Event {
+    ANSWERED,
+    UNANSWERED,
+    TRANSFERRED,
+    TRANSFER_FAILED,
+    ACCEPTED,
+    DECLINED,
+    INVALID_CONTENT
+  }
+
+  private static final class Score {
+    private final double[] counts = new double[Event.values().length];
+    private long updatedAt;
+
+    private Score(final long now) {
+      this.updatedAt = now;
+    }
+
+    private synchronized void add(final Event event, final int count, final long now) {
+      decay(now);
+      counts[event.ordinal()] += count;
+    }
+
+    private synchronized double[] decayedCounts(final long now) {
+      decay(now);
+      return counts.clone();
+    }
+
+    private void decay(final long now) {
+      if (now <= updatedAt) {
+        return;
+      }
+      final double factor = Math.pow(0.5, (double) (now - updatedAt) / HALF_LIFE.toNanos());
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] *= factor;
+      }
+      updatedAt = now;
+    }
+  }
+}
@@ -31,19 +31,25 @@ import samba.network.history.api.HistoryNetworkInternalAPI;
 import samba.network.history.api.HistoryNetworkProtocolMessageHandler;
 import samba.network.history.routingtable.HistoryRoutingTable;
 import samba.network.history.routingtable.RoutingTable;
+import samba.network.history.routingtable.RoutingTableEntry;
 import samba.services.discovery.Discv5Client;
 import samba.services.search.RecursiveLookupTaskFindContent;
 import samba.services.search.RecursiveLookupTaskFindNodes;
 import samba.services.search.RecursiveLookupTaskTraceFindContent;
 import samba.services.utp.UTPManager;
+import samba.storage.ContentBuffer;
+import samba.storage.ContentTypeStats;
 import samba.storage.HistoryDB;
+import samba.util.DistanceUtil;
 import samba.util.ProtocolVersionUtil;
 import samba.util.Util;
 import samba.validation.util.ValidationUtil;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -52,7 +58,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -62,7 +67,6 @@ import org.apache.tuweni.units.bigints.UInt256;
 import org.ethereum.beacon.discovery.schema.IdentitySchemaV4Interpreter;
 import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
-import org.ethereum.beacon.discovery.util.Functions;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -74,7 +78,7 @@ public class HistoryNetwork extends BaseNetwork
 
   private static final Logger LOG = LoggerFactory.getLogger(HistoryNetwork.class);
 
-  private UInt256 nodeRadius;
+  private volatile UInt256 nodeRadius;
   private final HistoryDB historyDB;
   final NodeRecordFactory nodeRecordFactory;
   protected RoutingTable routingTable;
@@ -84,6 +88,10 @@ public class HistoryNetwork extends BaseNetwork
   private static final ExecutorService EXECUTOR_GOSSIP =
       Executors.newVirtualThreadPerTaskExecutor();
   private static final int DEFAULT_TIMEOUT = 60;
+  // longest wait for a response, the wait for a peer answering faster is shorter
+  private static final Duration PING_TIMEOUT = Duration.ofSeconds(5);
+  private static final Duration FIND_TIMEOUT = Duration.ofSeconds(3);
+  private static final Duration OFFER_TIMEOUT = Duration.ofSeconds(5);
 
   // TODO standard client version text, standard capabilities list, standard client info extension,
   // default ping with standard arguments
@@ -93,7 +101,7 @@ public class HistoryNetwork extends BaseNetwork
       final HistoryDB historyDB,
       final UTPManager utpManager,
       final MetricsSystem metricsSystem) {
-    super(NetworkType.EXECUTION_HISTORY_NETWORK, client, UInt256.ONE);
+    super(NetworkType.EXECUTION_HISTORY_NETWORK, client, UInt256.ONE, metricsSystem);
     this.nodeRadius = UInt256.MAX_VALUE.subtract(1L); // TODO must come from argument
     this.routingTable = new HistoryRoutingTable(client.getHomeNodeRecord(), this, metricsSystem);
     this.historyDB = historyDB;
@@ -105,8 +113,7 @@ public class HistoryNetwork extends BaseNetwork
 
   @Override
   public SafeFuture<Optional<Pong>> ping(NodeRecord nodeRecord, Ping message) {
-    return sendMessage(nodeRecord, message)
-        .orTimeout(5, TimeUnit.SECONDS)
+    return sendMessage(nodeRecord, message, PING_TIMEOUT)
         .thenApply(Optional::get)
         .thenCompose(
             pongMessage -> {
@@ -173,8 +180,7 @@ public class HistoryNetwork extends BaseNetwork
 
   @Override
   public SafeFuture<Optional<Nodes>> findNodes(NodeRecord nodeRecord, FindNodes message) {
-    return sendMessage(nodeRecord, message)
-        .orTimeout(3, TimeUnit.SECONDS)
+    return sendMessage(nodeRecord, message, FIND_TIMEOUT)
         .thenApply(Optional::get)
         .thenCompose(
             nodesMessage -> {
@@ -205,8 +211,7 @@ public class HistoryNetwork extends BaseNetwork
   @Override
   public SafeFuture<Optional<FindContentResult>> findContent(
       NodeRecord nodeRecord, FindContent message) {
-    return sendMessage(nodeRecord, message)
-        .orTimeout(3, TimeUnit.SECONDS)
+    return sendMessage(nodeRecord, message, FIND_TIMEOUT)
         .thenApply(Optional::get)
         .thenCompose(
             contentMessage -> {
@@ -221,18 +226,21 @@ public class HistoryNetwork extends BaseNetwork
                 case Content.UTP_CONNECTION_ID ->
                     this.utpManager
                         .findContentRead(nodeRecord, content.getConnectionId())
+                        .whenComplete(
+                            (data, error) ->
+                                peerScores.recordTransfer(nodeRecord.getNodeId(), error == null))
                         .thenCompose(
                             data -> {
                               if (protocolVersion != 0) {
                                 data = Util.parseAcceptedContent(data);
                               }
-                              boolean saved = this.store(message.getContentKey(), data);
+                              boolean saved = this.store(nodeRecord, message.getContentKey(), data);
                               // Gossip new content to network
                               if (saved) {
-                                Set<NodeRecord> foundNodes =
-                                    getFoundNodes(contentKey, MAX_GOSSIP_COUNT + 1, true);
-                                foundNodes.remove(nodeRecord);
-                                this.gossip(foundNodes, message.getContentKey(), data);
+                                this.gossip(
+                                    selectGossipNodes(contentKey, nodeRecord),
+                                    message.getContentKey(),
+                                    data);
                               }
                               return SafeFuture.completedFuture(
                                   Optional.of(new FindContentResult(data.toHexString(), true)));
@@ -242,13 +250,14 @@ public class HistoryNetwork extends BaseNetwork
                 case Content.CONTENT_TYPE -> {
                   // TODO validate content and key before persisting it or responding
 
-                  boolean saved = this.store(message.getContentKey(), content.getContent());
+                  boolean saved =
+                      this.store(nodeRecord, message.getContentKey(), content.getContent());
                   // Gossip new content to network
                   if (saved) {
-                    Set<NodeRecord> foundNodes =
-                        getFoundNodes(contentKey, MAX_GOSSIP_COUNT + 1, true);
-                    foundNodes.remove(nodeRecord);
-                    this.gossip(foundNodes, message.getContentKey(), content.getContent());
+                    this.gossip(
+                        selectGossipNodes(contentKey, nodeRecord),
+                        message.getContentKey(),
+                        content.getContent());
                   }
                   yield SafeFuture.completedFuture(
                       Optional.of(
@@ -295,7 +304,7 @@ public class HistoryNetwork extends BaseNetwork
     //        "No ENR found for {}",
     //        nodeRecord.asEnr());
 
-    return sendMessage(nodeRecord, message)
+    return sendMessage(nodeRecord, message, OFFER_TIMEOUT)
         .thenApply(Optional::get)
         .thenCompose(
             acceptMessage -> {
@@ -332,11 +341,15 @@ public class HistoryNetwork extends BaseNetwork
                       .filter(Objects::nonNull)
                       .map(Util::addUnsignedLeb128SizeToData)
                       .toList();
+              peerScores.recordOffer(nodeRecord.getNodeId(), content.size(), contentToOffer.size());
 
               if (contentToOffer != null && !contentToOffer.isEmpty()) {
                 return utpManager
                     .offerWrite(
                         nodeRecord, accept.getConnectionId(), Bytes.concatenate(contentToOffer))
+                    .whenComplete(
+                        (__, error) ->
+                            peerScores.recordTransfer(nodeRecord.getNodeId(), error == null))
                     .thenApply(__ -> Optional.of(accept.getContentKeys()));
               }
 
@@ -417,12 +430,96 @@ public class HistoryNetwork extends BaseNetwork
 
   @Override
   public boolean store(Bytes contentKey, Bytes contentValue) {
+    if (validateForStorage(contentKey, contentValue) != Validity.VALID) {
+      return false;
+    }
+    return this.historyDB.saveContent(contentKey, contentValue);
+  }
+
+  // content failing validation counts against the score of the node it came from
+  private boolean store(NodeRecord source, Bytes contentKey, Bytes contentValue) {
+    if (!isValidForStorage(source, contentKey, contentValue)) {
+      return false;
+    }
+    return this.historyDB.saveContent(contentKey, contentValue);
+  }
+
+  /**
+   * Store the content accepted in a single offer. Block headers are validated and written first,
+   * so that the bodies and receipts of the same offer can be validated against them, then the rest
+   * in a second write.
+   */
+  private void storeAll(NodeRecord source, List<Bytes> contentKeys, List<Bytes> contentValues) {
+    final List<Bytes> headerKeys = new ArrayList<>();
+    final List<Bytes> headerValues = new ArrayList<>();
+    final List<Bytes> otherKeys = new ArrayList<>();
+    final List<Bytes> otherValues = new ArrayList<>();
+    for (int i = 0; i < contentKeys.size(); i++) {
+      final ContentType contentType = ContentType.fromContentKey(contentKeys.get(i));
+      if (contentType == ContentType.BLOCK_HEADER
+          || contentType == ContentType.BLOCK_HEADER_BY_NUMBER) {
+        if (isValidForStorage(source, contentKeys.get(i), contentValues.get(i))) {
+          headerKeys.add(contentKeys.get(i));
+          headerValues.add(contentValues.get(i));
+        }
+      } else {
+        otherKeys.add(contentKeys.get(i));
+        otherValues.add(contentValues.get(i));
+      }
+    }
+    if (!headerKeys.isEmpty()) {
+      this.historyDB.saveContents(headerKeys, headerValues);
+    }
+    final List<Bytes> validKeys = new ArrayList<>();
+    final List<Bytes> validValues = new ArrayList<>();
+    for (int i = 0; i < otherKeys.size(); i++) {
+      if (isValidForStorage(source, otherKeys.get(i), otherValues.get(i))) {
+        validKeys.add(otherKeys.get(i));
+        validValues.add(otherValues.get(i));
+      }
+    }
+    if (!validKeys.isEmpty()) {
+      this.historyDB.saveContents(validKeys, validValues);
+    }
+  }
+
+  /**
+   * Whether content received from a node can be stored. Content failing validation counts against
+   * the score of the node, content that could not be checked, a body sent before its header was
+   * found, does not.
+   */
+  private boolean isValidForStorage(NodeRecord source, Bytes contentKey, Bytes contentValue) {
+    final Validity validity = validateForStorage(contentKey, contentValue);
+    if (validity == Validity.INVALID) {
+      peerScores.recordInvalidContent(source.getNodeId());
+    }
+    return validity == Validity.VALID;
+  }
+
+  private Validity validateForStorage(Bytes contentKey, Bytes contentValue) {
     ContentType contentType = ContentType.fromContentKey(contentKey);
 
+    if (contentType == ContentType.EPHEMERAL_BLOCK_HEADER) {
+      if (!isEphemeralHeadersValid(contentKey, contentValue)) {
+        LOG.debug("Ephemeral headers for contentKey: {} are invalid", contentKey);
+        return Validity.INVALID;
+      }
+      return Validity.VALID;
+    }
+
+    if (contentType == ContentType.BLOCK_HEADER
+        || contentType == ContentType.BLOCK_HEADER_BY_NUMBER) {
+      if (!isBlockHeaderValid(contentValue)) {
+        LOG.debug("BlockHeader for contentKey: {} is invalid", contentKey);
+        return Validity.INVALID;
+      }
+    }
+
     if (contentType == ContentType.BLOCK_BODY || contentType == ContentType.RECEIPT) {
       Optional<ContentBlockHeader> associatedHeader = getAssociatedBlockHeader(contentKey);
       if (associatedHeader.isEmpty()) {
-        return false;
+        LOG.debug("No block header to validate {} {} against", contentType, contentKey);
+        return Validity.UNVERIFIABLE;
       }
 
       boolean isValid =
@@ -436,11 +533,30 @@ public class HistoryNetwork extends BaseNetwork
 
       if (!isValid) {
         LOG.debug("{} is not valid for block header {}", contentType, contentKey);
-        return false;
+        return Validity.INVALID;
       }
     }
+    return Validity.VALID;
+  }
 
-    return this.historyDB.saveContent(contentKey, contentValue);
+  private static boolean isBlockHeaderValid(Bytes contentValue) {
+    try {
+      return ContentUtil.createBlockHeaderfromSszBytes(contentValue)
+          .map(ValidationUtil::isBlockHeaderValid)
+          .orElse(false);
+    } catch (RuntimeException e) {
+      // not even a block header with its proof
+      return false;
+    }
+  }
+
+  private static boolean isEphemeralHeadersValid(Bytes contentKey, Bytes contentValue) {
+    try {
+      return ValidationUtil.isEphemeralHeadersValid(ContentKey.decode(contentKey), contentValue);
+    } catch (RuntimeException e) {
+      // a key without its ancestor count
+      return false;
+    }
   }
 
   private Optional<ContentBlockHeader> getAssociatedBlockHeader(
@@ -504,6 +620,11 @@ public class HistoryNetwork extends BaseNetwork
     return this.historyDB.get(contentKey).map(Bytes::toHexString);
   }
 
+  @Override
+  public List<ContentTypeStats> getContentTypeStats() {
+    return this.historyDB.getContentTypeStats();
+  }
+
   @Override
   public SafeFuture<Optional<Pong>> ping(NodeRecord nodeRecord) {
     Ping ping =
@@ -626,33 +747,32 @@ public class HistoryNetwork extends BaseNetwork
             .get();
     ContentKey contentKey =
         ContentUtil.createContentKeyFromSszBytes(findContent.getContentKey()).get();
-    Optional<Bytes> content = historyDB.get(contentKey);
+    Optional<ContentBuffer> content = historyDB.getContentBuffer(contentKey);
     if (content.isEmpty()) {
       return new Content(generateEnrs(contentKey, nodeRecord));
     }
-    if (content.get().size() > PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES) {
-      int connectionId;
-      if (protocolVersion == 0) {
-        connectionId = this.utpManager.foundContentWrite(nodeRecord, content.get());
-      } else {
-        connectionId =
-            this.utpManager.foundContentWrite(
-                nodeRecord, Util.addUnsignedLeb128SizeToData(content.get()));
-      }
-      return new Content(connectionId);
+    ContentBuffer contentBuffer = content.get();
+    if (contentBuffer.size() > PortalWireMessage.MAX_CUSTOM_PAYLOAD_BYTES) {
+      // the buffer is sent as is and released once the transfer is over
+      Bytes payload =
+          protocolVersion == 0 ? contentBuffer.content() : contentBuffer.contentWithSizePrefix();
+      return new Content(
+          this.utpManager.foundContentWrite(nodeRecord, payload, contentBuffer::close));
+    }
+    try (contentBuffer) {
+      return new Content(contentBuffer.content().copy());
     }
-    return new Content(content.get());
   }
 
+  // the best scored among the closest nodes to the content, twice as many as returned
   private List<String> generateEnrs(ContentKey contentKey, NodeRecord nodeRecord) {
-    Set<NodeRecord> foundNodes = getFoundNodes(contentKey, PortalWireMessage.MAX_ENRS + 2, true);
-    foundNodes.remove(nodeRecord);
-    foundNodes.remove(this.discv5Client.getHomeNodeRecord());
-    if (foundNodes.size() > PortalWireMessage.MAX_ENRS) {
-      int excessSize = foundNodes.size() - PortalWireMessage.MAX_ENRS;
-      foundNodes = foundNodes.stream().skip(excessSize).collect(Collectors.toSet());
-    }
-    return foundNodes.stream().map(NodeRecord::asEnr).toList();
+    final NodeRecord homeNodeRecord = this.discv5Client.getHomeNodeRecord();
+    return getFoundNodes(contentKey, 2 * PortalWireMessage.MAX_ENRS + 2, true).stream()
+        .filter(node -> !node.equals(nodeRecord) && !node.equals(homeNodeRecord))
+        .sorted(peerScores.byScore())
+        .limit(PortalWireMessage.MAX_ENRS)
+        .map(NodeRecord::asEnr)
+        .toList();
   }
 
   @Override
@@ -668,36 +788,48 @@ public class HistoryNetwork extends BaseNetwork
       if (offer.getContentKeys().isEmpty()) return new Accept(0, Bytes.EMPTY, protocolVersion);
       byte[] contentKeysByteArray = new byte[offer.getContentKeys().size()];
       List<Bytes> contentKeyAccepted = new ArrayList<>();
-      if (protocolVersion == 0) {
-        for (int x = 0; x < offer.getContentKeys().size(); x++) {
-          Bytes contentKey = offer.getContentKeys().get(x);
-
-          final int distance =
-              Functions.logDistance(contentKey, this.discv5Client.getNodeId().get());
-          if (UInt256.valueOf(distance).compareTo(this.nodeRadius) >= 0) {
-            LOG.info("ContentKey: {} is outside radius: {}", distance, this.nodeRadius);
-          } else if (this.historyDB.get(ContentKey.decode(contentKey)).isEmpty()) {
-            LOG.info("ContentKey: {} not found in local storage", contentKey.toHexString());
-            contentKeysByteArray[x] = 1;
-            contentKeyAccepted.add(contentKey);
-          }
-        }
-      } else {
+      if (protocolVersion != 0) {
         Arrays.fill(contentKeysByteArray, AcceptCodes.GENERIC_DECLINE.getValue());
-        for (int x = 0; x < offer.getContentKeys().size(); x++) {
-          Bytes contentKey = offer.getContentKeys().get(x);
-
-          final int distance =
-              Functions.logDistance(contentKey, this.discv5Client.getNodeId().get());
-          if (UInt256.valueOf(distance).compareTo(this.nodeRadius) >= 0) {
-            LOG.info("ContentKey: {} is outside radius: {}", distance, this.nodeRadius);
+      }
+      final Bytes nodeId = this.discv5Client.getNodeId().get();
+      List<Integer> inRadiusIndexes = new ArrayList<>();
+      List<ContentKey> inRadiusContentKeys = new ArrayList<>();
+      for (int x = 0; x < offer.getContentKeys().size(); x++) {
+        Bytes contentKey = offer.getContentKeys().get(x);
+
+        final UInt256 distance = DistanceUtil.contentDistance(nodeId, contentKey);
+        if (distance.greaterThan(this.nodeRadius)) {
+          LOG.info("ContentKey: {} is outside radius: {}", distance, this.nodeRadius);
+          if (protocolVersion != 0) {
             contentKeysByteArray[x] = AcceptCodes.CONTENT_NOT_IN_RADIUS.getValue();
-          } else if (this.historyDB.get(ContentKey.decode(contentKey)).isEmpty()) {
-            LOG.info("ContentKey: {} not found in local storage", contentKey.toHexString());
-            contentKeysByteArray[x] = AcceptCodes.ACCEPT.getValue();
-            contentKeyAccepted.add(contentKey);
-          } else {
-            LOG.info("ContentKey: {} found in local storage", contentKey.toHexString());
+          }
+        } else {
+          inRadiusIndexes.add(x);
+          inRadiusContentKeys.add(ContentKey.decode(contentKey));
+        }
+      }
+      // a single storage lookup for the whole offer, values are not read
+      List<Boolean> stored =
+          inRadiusContentKeys.isEmpty()
+              ? List.of()
+              : this.historyDB.containsAll(inRadiusContentKeys);
+      // content piling up unsaved is declined until the storage catches up
+      final boolean writeBacklogged =
+          !inRadiusContentKeys.isEmpty() && historyDB.isWriteBacklogged();
+      for (int i = 0; i < inRadiusIndexes.size(); i++) {
+        int x = inRadiusIndexes.get(i);
+        Bytes contentKey = offer.getContentKeys().get(x);
+        if (!stored.get(i) && writeBacklogged) {
+          LOG.info("ContentKey: {} declined, storage write backlog", contentKey.toHexString());
+          contentKeysByteArray[x] =
+              protocolVersion == 0 ? 0 : AcceptCodes.RATE_LIMIT_REACHED.getValue();
+        } else if (!stored.get(i)) {
+          LOG.info("ContentKey: {} not found in local storage", contentKey.toHexString());
+          contentKeysByteArray[x] = protocolVersion == 0 ? 1 : AcceptCodes.ACCEPT.getValue();
+          contentKeyAccepted.add(contentKey);
+        } else {
+          LOG.info("ContentKey: {} found in local storage", contentKey.toHexString());
+          if (protocolVersion != 0) {
             contentKeysByteArray[x] = AcceptCodes.CONTENT_ALREADY_STORED.getValue();
           }
         }
@@ -709,10 +841,10 @@ public class HistoryNetwork extends BaseNetwork
               srcNode,
               (newContent) -> {
                 List<Bytes> parsedContent = Util.parseAcceptedContents(newContent);
-                if (parsedContent.size() == contentKeyAccepted.size()) {
-                  for (int i = 0; i < parsedContent.size(); i++) {
-                    this.store(contentKeyAccepted.get(i), parsedContent.get(i));
-                  }
+                final boolean complete = parsedContent.size() == contentKeyAccepted.size();
+                peerScores.recordTransfer(srcNode.getNodeId(), complete);
+                if (complete) {
+                  this.storeAll(srcNode, contentKeyAccepted, parsedContent);
                 }
               });
       return new Accept(connectionId, Bytes.of(contentKeysByteArray), protocolVersion);
@@ -722,6 +854,23 @@ public class HistoryNetwork extends BaseNetwork
     }
   }
 
+  public UInt256 getNodeRadius() {
+    return this.nodeRadius;
+  }
+
+  /**
+   * Shrink the radius advertised in pings and used to accept offered content. Called when stored
+   * content is pruned; a larger radius than the current one is ignored.
+   *
+   * @param radius the new radius
+   */
+  public void shrinkNodeRadius(UInt256 radius) {
+    if (radius.lessThan(this.nodeRadius)) {
+      LOG.info("Node radius shrunk from {} to {}", this.nodeRadius, radius);
+      this.nodeRadius = radius;
+    }
+  }
+
   private org.apache.tuweni.units.bigints.UInt64 getLocalEnrSeq() {
     return discv5Client.getEnrSeq();
   }
@@ -733,14 +882,20 @@ public class HistoryNetwork extends BaseNetwork
 
   @Override
   public CompletableFuture<Void> checkLiveness(NodeRecord nodeRecord) {
-    LOG.info("checkLiveness");
+    LOG.trace("checkLiveness");
     Ping pingMessage =
         new Ping(
             nodeRecord.getSeq(),
             ExtensionType.CLIENT_INFO_AND_CAPABILITIES.getExtensionCode(),
             new ClientInfoAndCapabilities(this.nodeRadius).getSszBytes());
-    return CompletableFuture.supplyAsync(() -> this.ping(nodeRecord, pingMessage))
-        .thenCompose((__) -> new CompletableFuture<>());
+    // completes once the node answered, or failed to and was removed from the routing table
+    return this.ping(nodeRecord, pingMessage)
+        .thenCompose(
+            pong ->
+                pong.isPresent()
+                    ? SafeFuture.COMPLETE
+                    : SafeFuture.<Void>failedFuture(
+                        new IllegalStateException("No PONG from " + nodeRecord.getNodeId())));
   }
 
   private String getHomeNodeAsBase64() {
@@ -821,6 +976,29 @@ public class HistoryNetwork extends BaseNetwork
     return this.routingTable.getNodeRecordBuckets();
   }
 
+  /**
+   * The nodes of the routing table with their radius and last liveness confirmation, to save them.
+   *
+   * @return the entries of the routing table
+   */
+  public List<RoutingTableEntry> getRoutingTableEntries() {
+    return this.routingTable.getEntries();
+  }
+
+  /**
+   * Add the nodes of a saved routing table back to the routing table, before they are pinged again.
+   *
+   * @param entries the saved entries
+   */
+  public void restoreRoutingTable(List<RoutingTableEntry> entries) {
+    this.routingTable.restoreEntries(entries);
+  }
+
+  /** Ping the nodes of the routing table due for a liveness check. */
+  public void revalidateRoutingTable() {
+    this.routingTable.revalidateDueNodes();
+  }
+
   @Override
   public Optional<RecursiveFindNodesResult> recursiveFindNodes(
       final String nodeId, Set<NodeRecord> excludedNodes, final int timeout) {
@@ -867,17 +1045,35 @@ public class HistoryNetwork extends BaseNetwork
     final List<Bytes> contentList = List.of(content);
     final Offer offer = new Offer(keyList);
 
-    nodes.forEach(
-        node ->
-            SafeFuture.runAsync(
-                () -> {
-                  try {
-                    this.offer(node, contentList, offer);
-                  } catch (Exception e) {
-                    LOG.error("Failed to gossip to node {}: {}", node, e.getMessage(), e);
-                  }
-                },
-                EXECUTOR_GOSSIP));
+    nodes.stream()
+        .sorted(peerScores.byScore())
+        .forEach(
+            node ->
+                SafeFuture.runAsync(
+                    () -> {
+                      try {
+                        this.offer(node, contentList, offer);
+                      } catch (Exception e) {
+                        LOG.error("Failed to gossip to node {}: {}", node, e.getMessage(), e);
+                      }
+                    },
+                    EXECUTOR_GOSSIP));
+  }
+
+  /**
+   * Select the nodes to gossip new content to: the best scored among the closest nodes interested
+   * in it, twice as many as gossiped to.
+   *
+   * @param contentKey the key of the content
+   * @param source the node the content came from, not gossiped back to
+   * @return at most {@link #MAX_GOSSIP_COUNT} nodes, the best scored first
+   */
+  private Set<NodeRecord> selectGossipNodes(ContentKey contentKey, NodeRecord source) {
+    return getFoundNodes(contentKey, 2 * MAX_GOSSIP_COUNT + 1, true).stream()
+        .filter(node -> !node.equals(source))
+        .sorted(peerScores.byScore())
+        .limit(MAX_GOSSIP_COUNT)
+        .collect(Collectors.toCollection(LinkedHashSet::new));
   }
 
   @Override
@@ -889,4 +1085,12 @@ public class HistoryNetwork extends BaseNetwork
   protected boolean isStoreAvailable() {
     return this.historyDB.isAvailable();
   }
+
+  private enum Validity {
+    VALID,
+    // failed validation, the node sending it is penalized
+    INVALID,
+    // could not be validated, its block header not found
+    UNVERIFIABLE
+  }
 }
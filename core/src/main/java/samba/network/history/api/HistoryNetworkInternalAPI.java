@@ -10,6 +10,7 @@ import samba.domain.messages.requests.Offer;
 import samba.domain.messages.requests.Ping;
 import samba.domain.messages.response.Nodes;
 import samba.domain.messages.response.Pong;
+import samba.storage.ContentTypeStats;
 
 import java.util.List;
 import java.util.Optional;
@@ -63,4 +64,6 @@ public interface HistoryNetworkInternalAPI {
       ContentKey contentKey, int timeout, long startTime);
 
   List<List<NodeRecord>> getRoutingTable();
+
+  List<ContentTypeStats> getContentTypeStats();
 }
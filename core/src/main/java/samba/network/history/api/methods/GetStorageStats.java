@@ -0,0 +1,30 @@
+package samba.network.history.api.methods;
+
+import samba.api.jsonrpc.results.StorageStatsResult;
+import samba.network.history.api.HistoryNetworkInternalAPI;
+
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GetStorageStats {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GetStorageStats.class);
+
+  private final HistoryNetworkInternalAPI historyNetworkInternalAPI;
+
+  public GetStorageStats(final HistoryNetworkInternalAPI historyNetworkInternalAPI) {
+    this.historyNetworkInternalAPI = historyNetworkInternalAPI;
+  }
+
+  private Optional<StorageStatsResult> execute() {
+    return Optional.of(new StorageStatsResult(historyNetworkInternalAPI.getContentTypeStats()));
+  }
+
+  public static Optional<StorageStatsResult> execute(
+      final HistoryNetworkInternalAPI historyNetworkInternalAPI) {
+    LOG.debug("Executing GetStorageStats");
+    return new GetStorageStats(historyNetworkInternalAPI).execute();
+  }
+}
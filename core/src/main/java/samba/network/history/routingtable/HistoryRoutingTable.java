@@ -7,12 +7,8 @@ import samba.metrics.SambaMetricCategory;
 import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.tuweni.bytes.Bytes;
@@ -28,45 +24,58 @@ import org.hyperledger.besu.plugin.services.MetricsSystem;
  * greater the space, so each bucket has limit to prevent exponential growth -> each bucket contains
  * less information about the space it needs to occupy. You know more of the know you are close to.
  *
- * <p>Radius: represents the data that a homeNode is "interested" in.
+ * <p>Radius: represents the data that a homeNode is "interested" in. Radii are indexed by node id
+ * in a {@link RadiusTrie}, to find the nodes closest to a content without sorting all of them.
  */
 public class HistoryRoutingTable implements RoutingTable {
 
-  private final Map<Bytes, UInt256> radiusMap;
+  private final RadiusTrie radiusTrie;
   private final NodeTable nodeTable;
 
   public HistoryRoutingTable(
       final NodeRecord homeNode,
       final LivenessChecker livenessChecker,
       final MetricsSystem metricsSystem) {
-    this.radiusMap = new ConcurrentHashMap<>();
+    this.radiusTrie = new RadiusTrie();
     this.nodeTable = new NodeTable(homeNode, livenessChecker);
 
     metricsSystem.createIntegerGauge(
         SambaMetricCategory.HISTORY,
         "routing_table_radius_nodes_count",
         "Number of nodes in the radiusMap",
-        this.radiusMap::size);
+        this.radiusTrie::size);
 
     metricsSystem.createIntegerGauge(
         SambaMetricCategory.HISTORY,
         "live_nodes_current",
         "Current number of live nodes tracked by the discovery system",
         this::getActiveNodes);
+
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.HISTORY,
+        "liveness_pings_limit",
+        "Maximum number of liveness pings in flight, sized by round trip times and losses",
+        this.nodeTable::getLivenessConcurrencyLimit);
+
+    metricsSystem.createGauge(
+        SambaMetricCategory.HISTORY,
+        "liveness_revalidation_lag_seconds",
+        "Time the node queued first for a liveness check has been waiting for its ping",
+        () -> this.nodeTable.getRevalidationLagMillis() / 1000.0);
   }
 
   @Override
   public void removeRadius(Bytes nodeId) {
-    this.radiusMap.remove(nodeId);
+    this.radiusTrie.remove(nodeId);
   }
 
   public void updateRadius(Bytes nodeId, UInt256 radius) {
-    this.radiusMap.put(nodeId, radius);
+    this.radiusTrie.put(nodeId, radius);
   }
 
   @Override
   public UInt256 getRadius(Bytes nodeId) {
-    return this.radiusMap.get(nodeId);
+    return this.radiusTrie.get(nodeId);
   }
 
   @Override
@@ -109,38 +118,51 @@ public class HistoryRoutingTable implements RoutingTable {
     return this.nodeTable.getNodeRecordBuckets();
   }
 
+  @Override
+  public List<RoutingTableEntry> getEntries() {
+    return this.nodeTable
+        .streamEntries()
+        .map(
+            entry ->
+                new RoutingTableEntry(
+                    entry.getNode(),
+                    entry.getLastLivenessConfirmationTime(),
+                    Optional.ofNullable(this.radiusTrie.get(entry.getNodeId()))))
+        .toList();
+  }
+
+  @Override
+  public void restoreEntries(List<RoutingTableEntry> entries) {
+    // buckets keep the nodes seen last when they cannot hold them all
+    entries.stream()
+        .sorted(
+            Comparator.comparingLong(RoutingTableEntry::lastLivenessConfirmationTime).reversed())
+        .forEach(
+            entry -> {
+              final NodeRecord nodeRecord = entry.nodeRecord();
+              this.nodeTable.restoreNode(nodeRecord, entry.lastLivenessConfirmationTime());
+              if (this.nodeTable.getNode(nodeRecord.getNodeId()).isPresent()) {
+                entry.radius().ifPresent(radius -> updateRadius(nodeRecord.getNodeId(), radius));
+              }
+            });
+  }
+
+  @Override
+  public void revalidateDueNodes() {
+    this.nodeTable.revalidateDueNodes();
+  }
+
   @Override
   public Optional<NodeRecord> findClosestNodeToKey(Bytes key) {
-    return radiusMap.entrySet().stream()
-        .min(Comparator.comparing(entry -> computeDistance(entry.getKey(), key)))
-        .flatMap(entry -> nodeTable.getNode(entry.getKey()));
+    return radiusTrie.findClosest(key, 1, false, Optional::of).stream()
+        .findFirst()
+        .flatMap(nodeTable::getNode);
   }
 
   @Override
   public Set<NodeRecord> findClosestNodesToKey(Bytes key, int count, boolean inRadius) {
     Bytes contentId = Hash.sha256(key);
-    if (!inRadius)
-      return radiusMap.entrySet().stream()
-          .sorted(Comparator.comparing(entry -> computeDistance(entry.getKey(), contentId)))
-          .map(entry -> nodeTable.getNode(entry.getKey()).orElse(null))
-          .filter(Objects::nonNull)
-          .limit(count)
-          .collect(Collectors.toCollection(LinkedHashSet::new));
-    else
-      return radiusMap.entrySet().stream()
-          .sorted(Comparator.comparing(entry -> computeDistance(entry.getKey(), contentId)))
-          .filter(
-              entry -> {
-                UInt256 distance = computeDistance(entry.getKey(), contentId);
-                return entry.getValue().greaterOrEqualThan(distance);
-              })
-          .map(entry -> nodeTable.getNode(entry.getKey()).orElse(null))
-          .filter(Objects::nonNull)
-          .limit(count)
-          .collect(Collectors.toCollection(LinkedHashSet::new));
-  }
-
-  private UInt256 computeDistance(Bytes nodeId, Bytes contentId) {
-    return UInt256.fromBytes(nodeId.xor(contentId));
+    return new LinkedHashSet<>(
+        radiusTrie.findClosest(contentId, count, inRadius, nodeTable::getNode));
   }
 }
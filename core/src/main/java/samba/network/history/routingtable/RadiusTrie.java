@@ -0,0 +1,241 @@
+package samba.network.history.routingtable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+
+/**
+ * The radius of each node, indexed by node id in a crit-bit trie: a binary trie branching only on
+ * the bits where the ids below it first differ. Walking down the trie along the bits of a target,
+ * then back up through the siblings, visits the nodes in order of XOR distance to that target, so
+ * the k closest nodes are found in O(k log n) without sorting all of them.
+ *
+ * <p>Ids and radii are kept as four longs, distances are compared word by word without allocating.
+ * Queries share a read lock, updates take the write lock.
+ */
+final class RadiusTrie {
+
+  static final int ID_SIZE = 32;
+  private static final int WORDS = ID_SIZE / Long.BYTES;
+
+  private final Map<Bytes, Leaf> leaves = new ConcurrentHashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private Node root;
+
+  UInt256 get(final Bytes nodeId) {
+    final Leaf leaf = leaves.get(nodeId);
+    return leaf != null ? leaf.radius : null;
+  }
+
+  int size() {
+    return leaves.size();
+  }
+
+  void put(final Bytes nodeId, final UInt256 radius) {
+    checkId(nodeId);
+    lock.writeLock().lock();
+    try {
+      final Leaf existing = leaves.get(nodeId);
+      if (existing != null) {
+        existing.setRadius(radius);
+        return;
+      }
+      final Leaf leaf = new Leaf(nodeId, radius);
+      insert(leaf);
+      leaves.put(nodeId, leaf);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void remove(final Bytes nodeId) {
+    lock.writeLock().lock();
+    try {
+      final Leaf leaf = leaves.remove(nodeId);
+      if (leaf != null) {
+        delete(leaf);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the nodes closest to a target, closest first.
+   *
+   * @param target the id to measure distances from
+   * @param limit the maximum number of nodes to return
+   * @param inRadius whether to skip the nodes whose radius does not cover the target
+   * @param resolver maps a node id to the value returned for it, nodes it maps to empty are skipped
+   * @return at most limit values, by increasing distance of their node to the target
+   */
+  <T> List<T> findClosest(
+      final Bytes target,
+      final int limit,
+      final boolean inRadius,
+      final Function<Bytes, Optional<T>> resolver) {
+    checkId(target);
+    final List<T> closest = new ArrayList<>(Math.max(limit, 0));
+    if (limit <= 0) return closest;
+    final Query<T> query = new Query<>(toWords(target), limit, inRadius, resolver, closest);
+    lock.readLock().lock();
+    try {
+      if (root != null) {
+        query.visit(root);
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return closest;
+  }
+
+  private void insert(final Leaf leaf) {
+    if (root == null) {
+      root = leaf;
+      return;
+    }
+    // the leaf reached following the new id shares the longest prefix with it
+    Node node = root;
+    while (node instanceof Branch branch) {
+      node = branch.children[bit(leaf.id, branch.bit)];
+    }
+    final int critBit = firstDifferentBit(((Leaf) node).id, leaf.id);
+
+    Branch parent = null;
+    Node current = root;
+    while (current instanceof Branch branch && branch.bit < critBit) {
+      parent = branch;
+      current = branch.children[bit(leaf.id, branch.bit)];
+    }
+    final Branch split = new Branch(critBit);
+    final int side = bit(leaf.id, critBit);
+    split.children[side] = leaf;
+    split.children[1 - side] = current;
+    if (parent == null) {
+      root = split;
+    } else {
+      parent.children[bit(leaf.id, parent.bit)] = split;
+    }
+  }
+
+  private void delete(final Leaf leaf) {
+    Branch grandparent = null;
+    Branch parent = null;
+    Node node = root;
+    while (node instanceof Branch branch) {
+      grandparent = parent;
+      parent = branch;
+      node = branch.children[bit(leaf.id, branch.bit)];
+    }
+    if (parent == null) {
+      root = null;
+      return;
+    }
+    final Node sibling = parent.children[1 - bit(leaf.id, parent.bit)];
+    if (grandparent == null) {
+      root = sibling;
+    } else {
+      grandparent.children[bit(leaf.id, grandparent.bit)] = sibling;
+    }
+  }
+
+  private static void checkId(final Bytes id) {
+    checkArgument(id.size() == ID_SIZE, "Expected a %s bytes id, got %s bytes", ID_SIZE, id.size());
+  }
+
+  private static long[] toWords(final Bytes bytes) {
+    final long[] words = new long[WORDS];
+    for (int i = 0; i < WORDS; i++) {
+      words[i] = bytes.getLong(i * Long.BYTES);
+    }
+    return words;
+  }
+
+  // bits are numbered from the most significant one, the first to decide a distance
+  private static int bit(final long[] words, final int bit) {
+    return (int) (words[bit >>> 6] >>> (63 - (bit & 63))) & 1;
+  }
+
+  private static int firstDifferentBit(final long[] a, final long[] b) {
+    for (int i = 0; i < WORDS; i++) {
+      final long difference = a[i] ^ b[i];
+      if (difference != 0) {
+        return i * Long.SIZE + Long.numberOfLeadingZeros(difference);
+      }
+    }
+    throw new IllegalStateException("Node id already indexed");
+  }
+
+  private sealed interface Node permits Leaf, Branch {}
+
+  private static final class Branch implements Node {
+    private final int bit;
+    private final Node[] children = new Node[2];
+
+    private Branch(final int bit) {
+      this.bit = bit;
+    }
+  }
+
+  private static final class Leaf implements Node {
+    private final Bytes nodeId;
+    private final long[] id;
+    private final long[] radiusWords = new long[WORDS];
+    private volatile UInt256 radius;
+
+    private Leaf(final Bytes nodeId, final UInt256 radius) {
+      this.nodeId = nodeId;
+      this.id = toWords(nodeId);
+      setRadius(radius);
+    }
+
+    private void setRadius(final UInt256 radius) {
+      final Bytes radiusBytes = radius.toBytes();
+      for (int i = 0; i < WORDS; i++) {
+        radiusWords[i] = radiusBytes.getLong(i * Long.BYTES);
+      }
+      this.radius = radius;
+    }
+
+    private boolean covers(final long[] target) {
+      for (int i = 0; i < WORDS; i++) {
+        final int comparison = Long.compareUnsigned(radiusWords[i], id[i] ^ target[i]);
+        if (comparison != 0) {
+          return comparison > 0;
+        }
+      }
+      return true;
+    }
+  }
+
+  private record Query<T>(
+      long[] target,
+      int limit,
+      boolean inRadius,
+      Function<Bytes, Optional<T>> resolver,
+      List<T> closest) {
+
+    // false once enough nodes are found
+    private boolean visit(final Node node) {
+      if (node instanceof Branch branch) {
+        final int side = bit(target, branch.bit);
+        return visit(branch.children[side]) && visit(branch.children[1 - side]);
+      }
+      final Leaf leaf = (Leaf) node;
+      if (!inRadius || leaf.covers(target)) {
+        resolver.apply(leaf.nodeId).ifPresent(closest::add);
+      }
+      return closest.size() < limit;
+    }
+  }
+}
@@ -37,4 +37,17 @@ public interface RoutingTable {
 
   /** Recently nodes are at the start of the list with older at the end. */
   List<List<NodeRecord>> getNodeRecordBuckets();
+
+  /** The nodes of the table with their radius and last liveness confirmation, to checkpoint. */
+  List<RoutingTableEntry> getEntries();
+
+  /**
+   * Add the nodes of a checkpoint to the table, the most recently confirmed live first.
+   *
+   * @param entries the nodes to restore
+   */
+  void restoreEntries(List<RoutingTableEntry> entries);
+
+  /** Check the liveness of the nodes due for it, to be called once per revalidation tick. */
+  void revalidateDueNodes();
 }
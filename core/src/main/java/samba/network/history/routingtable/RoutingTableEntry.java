@@ -0,0 +1,16 @@
+package samba.network.history.routingtable;
+
+import java.util.Optional;
+
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+
+/**
+ * A node of the routing table as saved by a checkpoint.
+ *
+ * @param nodeRecord the record of the node
+ * @param lastLivenessConfirmationTime the last time the node was confirmed live, in millis
+ * @param radius the radius of the node, empty if it never told it
+ */
+public record RoutingTableEntry(
+    NodeRecord nodeRecord, long lastLivenessConfirmationTime, Optional<UInt256> radius) {}
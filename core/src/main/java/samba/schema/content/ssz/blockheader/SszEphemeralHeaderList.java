@@ -0,0 +1,66 @@
+package samba.schema.content.ssz.blockheader;
+
+import samba.network.history.HistoryConstants;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.ethereum.mainnet.MainnetBlockHeaderFunctions;
+import org.hyperledger.besu.ethereum.rlp.RLP;
+import tech.pegasys.teku.infrastructure.ssz.SszList;
+import tech.pegasys.teku.infrastructure.ssz.collections.SszByteList;
+import tech.pegasys.teku.infrastructure.ssz.schema.SszListSchema;
+import tech.pegasys.teku.infrastructure.ssz.schema.collections.SszByteListSchema;
+
+/** The RLP encoded headers of an ephemeral header content: a block header, then its ancestors. */
+public class SszEphemeralHeaderList {
+
+  private static final SszByteListSchema<SszByteList> headerSchema =
+      SszByteListSchema.create(HistoryConstants.MAX_HEADER_LENGTH);
+  private static final SszListSchema<SszByteList, SszList<SszByteList>> headerListSchema =
+      createByteListListSchema();
+  private final SszList<SszByteList> headerList;
+
+  public SszEphemeralHeaderList(SszList<SszByteList> headerList) {
+    this.headerList = headerList;
+  }
+
+  public static SszListSchema<SszByteList, SszList<SszByteList>> getSchema() {
+    return headerListSchema;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static SszListSchema<SszByteList, SszList<SszByteList>> createByteListListSchema() {
+    SszByteListSchema byteListSchema = headerSchema;
+    return SszListSchema.create(byteListSchema, HistoryConstants.MAX_EPHEMERAL_HEADER_PAYLOAD);
+  }
+
+  public static SszEphemeralHeaderList fromHeadersRLP(List<Bytes> headersRLP) {
+    return new SszEphemeralHeaderList(
+        headerListSchema.createFromElements(
+            headersRLP.stream().map(headerSchema::fromBytes).collect(Collectors.toList())));
+  }
+
+  public List<Bytes> getHeadersRLP() {
+    return headerList.stream().map(SszByteList::getBytes).collect(Collectors.toList());
+  }
+
+  public List<BlockHeader> getDecodedList() {
+    return headerList.stream()
+        .map(
+            (sszByteList) ->
+                BlockHeader.readFrom(
+                    RLP.input(sszByteList.getBytes()), new MainnetBlockHeaderFunctions()))
+        .collect(Collectors.toList());
+  }
+
+  public static SszEphemeralHeaderList decodeBytes(Bytes bytes) {
+    return new SszEphemeralHeaderList(headerListSchema.sszDeserialize(bytes));
+  }
+
+  public Bytes sszSerialize() {
+    return headerList.sszSerialize();
+  }
+}
@@ -11,6 +11,8 @@ import samba.api.jsonrpc.*;
 import samba.api.jsonrpc.pending.PortalHistoryPing;
 import samba.config.RestServerConfig;
 import samba.config.SambaConfiguration;
+import samba.config.StorageConfig;
+import samba.config.StorageEngine;
 import samba.domain.messages.IncomingRequestTalkHandler;
 import samba.domain.messages.MessageType;
 import samba.domain.messages.handler.FindContentHandler;
@@ -25,14 +27,26 @@ import samba.jsonrpc.health.HealthService;
 import samba.jsonrpc.health.LivenessCheck;
 import samba.jsonrpc.reponse.JsonRpcMethod;
 import samba.network.history.HistoryNetwork;
+import samba.rocksdb.RocksDBSnapshots;
 import samba.services.connecton.ConnectionService;
+import samba.services.connecton.RoutingTableCheckpointService;
+import samba.services.connecton.RoutingTableRevalidationService;
 import samba.services.discovery.Discv5Service;
 import samba.services.jsonrpc.JsonRpcService;
 import samba.services.rest.PortalAPI;
 import samba.services.rest.PortalRestAPI;
+import samba.services.storage.StoragePruningService;
+import samba.services.storage.StorageScrubbingService;
 import samba.services.utp.UTPManager;
+import samba.storage.CachedHistoryDB;
+import samba.storage.HistoryDB;
 import samba.storage.HistoryRocksDB;
+import samba.storage.WriteBehindHistoryDB;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -65,8 +79,16 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
   protected volatile Optional<JsonRpcService> jsonRpcService = Optional.empty();
 
   private final Vertx vertx;
+  // a read-only secondary of the database of another node serves its storage over JSON-RPC only
+  private final boolean rpcOnly;
   private Discv5Service discoveryService;
   private ConnectionService connectionService;
+  private RoutingTableCheckpointService routingTableCheckpointService;
+  private RoutingTableRevalidationService routingTableRevalidationService;
+  private Optional<StoragePruningService> storagePruningService = Optional.empty();
+  private Optional<StorageScrubbingService> storageScrubbingService = Optional.empty();
+  private Optional<WriteBehindHistoryDB> writeBehindHistoryDB = Optional.empty();
+  private HistoryDB historyDB;
   private HistoryNetwork historyNetwork;
   private UTPManager utpManager;
   private HistoryAPI historyAPI;
@@ -87,6 +109,7 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
             "samba_discovery_service", DEFAULT_ASYNC_P2P_MAX_THREADS, DEFAULT_ASYNC_P2P_MAX_QUEUE);
     this.sambaConfiguration = sambaConfiguration;
     this.vertx = vertx;
+    this.rpcOnly = sambaConfiguration.getStorageConfig().isSecondary();
 
     // TODO move nodeRecord
     final NodeRecord nodeRecord =
@@ -98,6 +121,10 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
     initHistoryNetwork();
     initIncomingRequestTalkHandlers();
     initConnectionService();
+    initRoutingTableCheckpointService();
+    initRoutingTableRevalidationService();
+    initStoragePruningService();
+    initStorageScrubbingService();
     initAPIs();
     initRestAPI();
     initJsonRPCService();
@@ -135,63 +162,15 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
 
       methods.put(RpcMethod.CLIENT_VERSION.getMethodName(), new ClientVersion("1"));
 
-      methods.put(RpcMethod.DISCV5_NODE_INFO.getMethodName(), new Discv5NodeInfo(this.discv5API));
-      methods.put(
-          RpcMethod.DISCV5_UPDATE_NODE_INFO.getMethodName(),
-          new Discv5UpdateNodeInfo(this.discv5API));
-      methods.put(RpcMethod.DISCV5_GET_ENR.getMethodName(), new Discv5GetEnr(this.discv5API));
-      methods.put(RpcMethod.DISCV5_FIND_NODE.getMethodName(), new Discv5FindNode(this.discv5API));
-      methods.put(RpcMethod.DISCV5_TALK_REQ.getMethodName(), new Discv5TalkReq(this.discv5API));
-      methods.put(
-          RpcMethod.DISCV5_ROUTING_TABLE_INFO.getMethodName(),
-          new Discv5RoutingTableInfo(this.discv5API));
-      methods.put(RpcMethod.DISCV5_ADD_ENR.getMethodName(), new Discv5AddEnr(this.discv5API));
-      methods.put(RpcMethod.DISCV5_DELETE_ENR.getMethodName(), new Discv5DeleteEnr(this.discv5API));
-
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_ADD_ENR.getMethodName(),
-          new PortalHistoryAddEnr(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_GET_ENR.getMethodName(),
-          new PortalHistoryGetEnr(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_PING.getMethodName(),
-          new PortalHistoryPing(this.historyNetwork, this.discoveryService));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_DELETE_ENR.getMethodName(),
-          new PortalHistoryDeleteEnr(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_FIND_NODES.getMethodName(),
-          new PortalHistoryFindNodes(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_STORE.getMethodName(), new PortalHistoryStore(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_FIND_CONTENT.getMethodName(),
-          new PortalHistoryFindContent(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_GET_CONTENT.getMethodName(),
-          new PortalHistoryGetContent(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_TRACE_GET_CONTENT.getMethodName(),
-          new PortalHistoryTraceGetContent(this.historyAPI, this.timeProvider));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_OFFER.getMethodName(), new PortalHistoryOffer(this.historyAPI));
       methods.put(
           RpcMethod.PORTAL_HISTORY_LOCAL_CONTENT.getMethodName(),
           new PortalHistoryLocalContent(this.historyAPI));
       methods.put(
-          RpcMethod.PORTAL_HISTORY_LOOKUP_ENR.getMethodName(),
-          new PortalHistoryLookupEnr(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_PUT_CONTENT.getMethodName(),
-          new PortalHistoryPutContent(this.historyAPI));
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_RECURSIVE_FIND_NODES.getMethodName(),
-          new PortalHistoryRecursiveFindNodes(this.historyAPI));
-      methods.put(RpcMethod.PORTAL_BEACON_STORE.getMethodName(), new PortalBeaconStore());
-      methods.put(
-          RpcMethod.PORTAL_HISTORY_ROUTING_TABLE_INFO.getMethodName(),
-          new PortalHistoryRoutingTableInfo(this.historyAPI, this.discv5API));
+          RpcMethod.PORTAL_HISTORY_STORAGE_STATS.getMethodName(),
+          new PortalHistoryStorageStats(this.historyAPI));
+      if (!this.rpcOnly) {
+        putNetworkMethods(methods);
+      }
 
       jsonRpcService =
           Optional.of(
@@ -204,16 +183,131 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
     }
   }
 
+  private void putNetworkMethods(final Map<String, JsonRpcMethod> methods) {
+    methods.put(RpcMethod.DISCV5_NODE_INFO.getMethodName(), new Discv5NodeInfo(this.discv5API));
+    methods.put(
+        RpcMethod.DISCV5_UPDATE_NODE_INFO.getMethodName(),
+        new Discv5UpdateNodeInfo(this.discv5API));
+    methods.put(RpcMethod.DISCV5_GET_ENR.getMethodName(), new Discv5GetEnr(this.discv5API));
+    methods.put(RpcMethod.DISCV5_FIND_NODE.getMethodName(), new Discv5FindNode(this.discv5API));
+    methods.put(RpcMethod.DISCV5_TALK_REQ.getMethodName(), new Discv5TalkReq(this.discv5API));
+    methods.put(
+        RpcMethod.DISCV5_ROUTING_TABLE_INFO.getMethodName(),
+        new Discv5RoutingTableInfo(this.discv5API));
+    methods.put(RpcMethod.DISCV5_ADD_ENR.getMethodName(), new Discv5AddEnr(this.discv5API));
+    methods.put(RpcMethod.DISCV5_DELETE_ENR.getMethodName(), new Discv5DeleteEnr(this.discv5API));
+
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_ADD_ENR.getMethodName(), new PortalHistoryAddEnr(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_GET_ENR.getMethodName(), new PortalHistoryGetEnr(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_PING.getMethodName(),
+        new PortalHistoryPing(this.historyNetwork, this.discoveryService));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_DELETE_ENR.getMethodName(),
+        new PortalHistoryDeleteEnr(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_FIND_NODES.getMethodName(),
+        new PortalHistoryFindNodes(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_STORE.getMethodName(), new PortalHistoryStore(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_FIND_CONTENT.getMethodName(),
+        new PortalHistoryFindContent(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_GET_CONTENT.getMethodName(),
+        new PortalHistoryGetContent(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_TRACE_GET_CONTENT.getMethodName(),
+        new PortalHistoryTraceGetContent(this.historyAPI, this.timeProvider));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_OFFER.getMethodName(), new PortalHistoryOffer(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_LOOKUP_ENR.getMethodName(),
+        new PortalHistoryLookupEnr(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_PUT_CONTENT.getMethodName(),
+        new PortalHistoryPutContent(this.historyAPI));
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_RECURSIVE_FIND_NODES.getMethodName(),
+        new PortalHistoryRecursiveFindNodes(this.historyAPI));
+    methods.put(RpcMethod.PORTAL_BEACON_STORE.getMethodName(), new PortalBeaconStore());
+    methods.put(
+        RpcMethod.PORTAL_HISTORY_ROUTING_TABLE_INFO.getMethodName(),
+        new PortalHistoryRoutingTableInfo(this.historyAPI, this.discv5API));
+  }
+
   private void initHistoryNetwork() {
+    final StorageConfig storageConfig = sambaConfiguration.getStorageConfig();
+    restoreBootstrapSnapshot(storageConfig);
+    HistoryDB historyRocksDB =
+        new HistoryRocksDB(
+            sambaConfiguration.getDataPath(),
+            storageConfig,
+            metricsSystem,
+            this.discoveryService.getHomeNodeRecord().getNodeId());
+    // a secondary saves nothing
+    if (storageConfig.getWriteQueueSize() > 0 && !this.rpcOnly) {
+      final WriteBehindHistoryDB writeBehind =
+          new WriteBehindHistoryDB(
+              historyRocksDB, metricsSystem, storageConfig.getWriteQueueSize());
+      this.writeBehindHistoryDB = Optional.of(writeBehind);
+      historyRocksDB = writeBehind;
+    }
+    this.historyDB =
+        storageConfig.getContentCacheSizeInBytes() > 0
+            ? new CachedHistoryDB(
+                historyRocksDB, metricsSystem, storageConfig.getContentCacheSizeInBytes())
+            : historyRocksDB;
     this.historyNetwork =
-        new HistoryNetwork(
-            this.discoveryService,
-            new HistoryRocksDB(
-                sambaConfiguration.getDataPath(),
-                sambaConfiguration.getStorageConfig(),
-                metricsSystem),
-            this.utpManager,
-            metricsSystem);
+        new HistoryNetwork(this.discoveryService, this.historyDB, this.utpManager, metricsSystem);
+  }
+
+  private void restoreBootstrapSnapshot(final StorageConfig storageConfig) {
+    final Optional<Path> snapshotPath = storageConfig.getBootstrapSnapshotPath();
+    if (snapshotPath.isEmpty()
+        || storageConfig.getStorageEngine() == StorageEngine.MEMORY
+        || Files.exists(storageConfig.getDatabasePath())) {
+      return;
+    }
+    LOG.info("No database found, restoring it from snapshot {}", snapshotPath.get());
+    try {
+      RocksDBSnapshots.restoreSnapshot(
+          snapshotPath.get(), sambaConfiguration.getDataPath(), storageConfig.getDatabasePath());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void initStoragePruningService() {
+    final StorageConfig storageConfig = sambaConfiguration.getStorageConfig();
+    if (storageConfig.isStorageCapacityLimited()) {
+      this.storagePruningService =
+          Optional.of(
+              new StoragePruningService(
+                  this.metricsSystem,
+                  this.asyncRunner,
+                  this.timeProvider,
+                  this.historyDB,
+                  storageConfig.getStorageCapacityInBytes(),
+                  this.discoveryService.getHomeNodeRecord().getNodeId(),
+                  this.historyNetwork::shrinkNodeRadius));
+    }
+  }
+
+  private void initStorageScrubbingService() {
+    final int scrubWorkerCount = sambaConfiguration.getStorageConfig().getScrubWorkerCount();
+    if (scrubWorkerCount > 0 && !this.rpcOnly) {
+      this.storageScrubbingService =
+          Optional.of(
+              new StorageScrubbingService(
+                  this.metricsSystem,
+                  this.asyncRunner,
+                  this.timeProvider,
+                  this.historyDB,
+                  scrubWorkerCount));
+    }
   }
 
   private void initConnectionService() {
@@ -222,6 +316,17 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
             this.metricsSystem, this.asyncRunner, this.discoveryService, this.historyNetwork);
   }
 
+  private void initRoutingTableCheckpointService() {
+    this.routingTableCheckpointService =
+        new RoutingTableCheckpointService(
+            this.metricsSystem, this.asyncRunner, this.historyDB, this.historyNetwork);
+  }
+
+  private void initRoutingTableRevalidationService() {
+    this.routingTableRevalidationService =
+        new RoutingTableRevalidationService(this.asyncRunner, this.historyNetwork);
+  }
+
   protected void initDiscoveryService(NodeRecord nodeRecord) {
     this.discoveryService =
         new Discv5Service(
@@ -236,9 +341,32 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
   @Override
   protected SafeFuture<?> doStart() {
     LOG.debug("Starting {}", this.getClass().getSimpleName());
+    if (this.rpcOnly) {
+      LOG.info(
+          "Running RPC-only on a read-only secondary of the database, not joining the network");
+      return jsonRpcService
+          .map(JsonRpcService::start)
+          .orElse(SafeFuture.completedFuture(null))
+          .thenCompose(
+              __ ->
+                  portalRestAPI.map(PortalRestAPI::start).orElse(SafeFuture.completedFuture(null)));
+    }
     this.incomingRequestTalkHandler.start();
     return SafeFuture.allOfFailFast(this.discoveryService.start())
+        // the known peers are back in the routing table before looking for more
+        .thenCompose(__ -> this.routingTableCheckpointService.start())
+        .thenCompose(__ -> this.routingTableRevalidationService.start())
         .thenCompose(__ -> this.connectionService.start())
+        .thenCompose(
+            __ ->
+                storagePruningService
+                    .map(StoragePruningService::start)
+                    .orElse(SafeFuture.completedFuture(null)))
+        .thenCompose(
+            __ ->
+                storageScrubbingService
+                    .map(StorageScrubbingService::start)
+                    .orElse(SafeFuture.completedFuture(null)))
         .thenCompose(
             __ ->
                 jsonRpcService.map(JsonRpcService::start).orElse(SafeFuture.completedFuture(null)))
@@ -262,10 +390,23 @@ public class HistoryNetworkMainService extends Service implements NetworkSDK<His
   @Override
   protected SafeFuture<?> doStop() {
     LOG.debug("Stopping {}", this.getClass().getSimpleName());
+    if (this.rpcOnly) {
+      return portalRestAPI.map(PortalRestAPI::stop).orElse(SafeFuture.completedFuture(null));
+    }
     return SafeFuture.allOf(
-        discoveryService.stop(),
-        connectionService.stop(),
-        portalRestAPI.map(PortalRestAPI::stop).orElse(SafeFuture.completedFuture(null)));
+            discoveryService.stop(),
+            connectionService.stop(),
+            routingTableCheckpointService.stop(),
+            routingTableRevalidationService.stop(),
+            storagePruningService
+                .map(StoragePruningService::stop)
+                .orElse(SafeFuture.completedFuture(null)),
+            storageScrubbingService
+                .map(StorageScrubbingService::stop)
+                .orElse(SafeFuture.completedFuture(null)),
+            portalRestAPI.map(PortalRestAPI::stop).orElse(SafeFuture.completedFuture(null)))
+        // the content received until then is saved
+        .thenRun(() -> writeBehindHistoryDB.ifPresent(WriteBehindHistoryDB::close));
   }
 
   @Override
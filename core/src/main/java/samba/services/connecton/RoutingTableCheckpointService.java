@@ -0,0 +1,195 @@
+package samba.services.connecton;
+
+import samba.metrics.SambaMetricCategory;
+import samba.network.history.HistoryNetwork;
+import samba.network.history.routingtable.RoutingTableEntry;
+import samba.storage.HistoryDB;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.IdentitySchemaV4Interpreter;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.ethereum.beacon.discovery.schema.NodeRecordFactory;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.async.Cancellable;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Saves the routing table, with the radius of each node and the last time it was confirmed live, so
+ * that a restarted node starts from the peers it knew instead of an empty table. A checkpoint is
+ * saved every few minutes and when the node stops.
+ *
+ * <p>The saved nodes are restored when the service starts, before the connection service looks for
+ * peers, then pinged again a few dozens at a time: the nodes not answering are dropped from the
+ * table, the others get their record and radius refreshed.
+ */
+public class RoutingTableCheckpointService extends Service {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RoutingTableCheckpointService.class);
+
+  protected static final Duration CHECKPOINT_INTERVAL = Duration.ofMinutes(5);
+  // pings in flight at once while the restored nodes are pinged again
+  static final int REVALIDATION_CONCURRENCY = 32;
+  private static final int RADIUS_SIZE = 32;
+  private static final byte NO_RADIUS = 0;
+  private static final byte WITH_RADIUS = 1;
+
+  private final HistoryNetwork historyNetwork;
+  private final HistoryDB historyDB;
+  private final AsyncRunner asyncRunner;
+  private final NodeRecordFactory nodeRecordFactory =
+      new NodeRecordFactory(new IdentitySchemaV4Interpreter());
+  private final Counter restoredNodesCounter;
+  private final Counter revalidatedNodesCounter;
+
+  private volatile Cancellable checkpointTask;
+
+  public RoutingTableCheckpointService(
+      final MetricsSystem metricsSystem,
+      final AsyncRunner asyncRunner,
+      final HistoryDB historyDB,
+      final HistoryNetwork historyNetwork) {
+    this.asyncRunner = asyncRunner;
+    this.historyDB = historyDB;
+    this.historyNetwork = historyNetwork;
+    this.restoredNodesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "routing_table_restored_nodes_total",
+            "Total number of nodes restored to the routing table from its last checkpoint");
+    this.revalidatedNodesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.NETWORK,
+            "routing_table_revalidated_nodes_total",
+            "Total number of restored nodes answering a ping after the restart");
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    restore().finish(this::logCheckpointError);
+    checkpointTask =
+        asyncRunner.runWithFixedDelay(
+            this::checkpoint, CHECKPOINT_INTERVAL, this::logCheckpointError);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    final Cancellable task = this.checkpointTask;
+    if (task != null) {
+      task.cancel();
+    }
+    checkpoint();
+    return SafeFuture.COMPLETE;
+  }
+
+  /**
+   * Restore the nodes of the last checkpoint and ping them again.
+   *
+   * @return completed once every restored node answered or failed to
+   */
+  SafeFuture<Void> restore() {
+    final List<RoutingTableEntry> entries =
+        historyDB.getRoutingTableCheckpoint().values().stream()
+            .map(this::decode)
+            .flatMap(Optional::stream)
+            .toList();
+    if (entries.isEmpty()) {
+      return SafeFuture.COMPLETE;
+    }
+    historyNetwork.restoreRoutingTable(entries);
+    restoredNodesCounter.inc(entries.size());
+    LOG.info("Restored {} nodes to the routing table, pinging them again", entries.size());
+
+    final Queue<NodeRecord> pending =
+        new ConcurrentLinkedQueue<>(entries.stream().map(RoutingTableEntry::nodeRecord).toList());
+    final AtomicInteger answered = new AtomicInteger();
+    return SafeFuture.allOf(
+            IntStream.range(0, Math.min(REVALIDATION_CONCURRENCY, entries.size()))
+                .mapToObj(__ -> pingNext(pending, answered))
+                .toArray(SafeFuture[]::new))
+        .thenRun(
+            () -> LOG.info("{} of the {} restored nodes answered", answered.get(), entries.size()));
+  }
+
+  // each call pings the queued nodes one after the other
+  private SafeFuture<Void> pingNext(final Queue<NodeRecord> pending, final AtomicInteger answered) {
+    final NodeRecord nodeRecord = pending.poll();
+    if (nodeRecord == null) {
+      return SafeFuture.COMPLETE;
+    }
+    return historyNetwork
+        .ping(nodeRecord)
+        .handle((pong, error) -> error == null && pong.isPresent())
+        .thenCompose(
+            answeredPing -> {
+              if (answeredPing) {
+                answered.incrementAndGet();
+                revalidatedNodesCounter.inc();
+              }
+              return pingNext(pending, answered);
+            });
+  }
+
+  void checkpoint() {
+    final List<RoutingTableEntry> entries = historyNetwork.getRoutingTableEntries();
+    // a node cut off from the network keeps the nodes it knew before
+    if (entries.isEmpty()) {
+      return;
+    }
+    final Map<Bytes, Bytes> checkpoint = new LinkedHashMap<>();
+    entries.forEach(entry -> checkpoint.put(entry.nodeRecord().getNodeId(), encode(entry)));
+    historyDB.saveRoutingTableCheckpoint(checkpoint);
+    LOG.debug("Saved a checkpoint of the {} nodes of the routing table", entries.size());
+  }
+
+  // last liveness confirmation, radius if known, then the ENR of the node
+  private static Bytes encode(final RoutingTableEntry entry) {
+    return Bytes.concatenate(
+        Bytes.ofUnsignedLong(entry.lastLivenessConfirmationTime()),
+        entry
+            .radius()
+            .map(radius -> Bytes.concatenate(Bytes.of(WITH_RADIUS), radius.toBytes()))
+            .orElse(Bytes.of(NO_RADIUS)),
+        Bytes.wrap(entry.nodeRecord().asEnr().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private Optional<RoutingTableEntry> decode(final Bytes value) {
+    try {
+      final long lastLivenessConfirmationTime = value.getLong(0);
+      final boolean withRadius = value.get(Long.BYTES) == WITH_RADIUS;
+      final int enrOffset = Long.BYTES + 1 + (withRadius ? RADIUS_SIZE : 0);
+      final Optional<UInt256> radius =
+          withRadius
+              ? Optional.of(UInt256.fromBytes(value.slice(Long.BYTES + 1, RADIUS_SIZE)))
+              : Optional.empty();
+      final String enr = new String(value.slice(enrOffset).toArray(), StandardCharsets.UTF_8);
+      return Optional.of(
+          new RoutingTableEntry(
+              nodeRecordFactory.fromEnr(enr), lastLivenessConfirmationTime, radius));
+    } catch (RuntimeException e) {
+      LOG.debug("Dropping unreadable routing table entry {}", value, e);
+      return Optional.empty();
+    }
+  }
+
+  private void logCheckpointError(final Throwable throwable) {
+    LOG.error("Error while saving or restoring the routing table", throwable);
+  }
+}
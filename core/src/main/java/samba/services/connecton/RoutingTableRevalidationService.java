@@ -0,0 +1,54 @@
+package samba.services.connecton;
+
+import samba.domain.dht.NodeTable;
+import samba.network.history.HistoryNetwork;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.async.Cancellable;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Turns the revalidation wheel of the routing table once per tick, so that every node of the table
+ * is pinged again every few minutes and the nodes not answering are dropped from it.
+ */
+public class RoutingTableRevalidationService extends Service {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RoutingTableRevalidationService.class);
+
+  private final HistoryNetwork historyNetwork;
+  private final AsyncRunner asyncRunner;
+
+  private volatile Cancellable revalidationTask;
+
+  public RoutingTableRevalidationService(
+      final AsyncRunner asyncRunner, final HistoryNetwork historyNetwork) {
+    this.asyncRunner = asyncRunner;
+    this.historyNetwork = historyNetwork;
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    revalidationTask =
+        asyncRunner.runWithFixedDelay(
+            historyNetwork::revalidateRoutingTable,
+            NodeTable.REVALIDATION_TICK,
+            this::logRevalidationError);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    final Cancellable task = this.revalidationTask;
+    if (task != null) {
+      task.cancel();
+    }
+    return SafeFuture.COMPLETE;
+  }
+
+  private void logRevalidationError(final Throwable throwable) {
+    LOG.error("Error while revalidating the routing table", throwable);
+  }
+}
@@ -28,6 +28,8 @@ public class RecursiveLookupTaskFindContent {
   private static final Logger LOG = LoggerFactory.getLogger(RecursiveLookupTaskFindContent.class);
 
   private static final int MAX_CONCURRENT_QUERIES = 3;
+  // the closest nodes not queried yet, among which the best scored are queried first
+  private static final int QUERY_CANDIDATES_PER_SLOT = 2;
   private final HistoryNetwork historyNetwork;
   private final Bytes contentKey;
   private final Set<Bytes> queriedNodeIds = new HashSet<>();
@@ -83,6 +85,8 @@ public class RecursiveLookupTaskFindContent {
     final List<NodeRecord> nodesToQuery =
         foundNodes.stream()
             .filter(record -> !queriedNodeIds.contains(record.getNodeId()))
+            .limit((long) availableQuerySlots * QUERY_CANDIDATES_PER_SLOT)
+            .sorted(historyNetwork.getPeerScores().byScore())
             .limit(availableQuerySlots)
             .collect(Collectors.toList());
 
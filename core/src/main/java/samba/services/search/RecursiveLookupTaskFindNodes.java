@@ -30,6 +30,8 @@ public class RecursiveLookupTaskFindNodes {
   private static final Logger LOG = LoggerFactory.getLogger(RecursiveLookupTaskFindNodes.class);
 
   private static final int MAX_CONCURRENT_QUERIES = 3;
+  // the closest nodes not queried yet, among which the best scored are queried first
+  private static final int QUERY_CANDIDATES_PER_SLOT = 2;
   private static final int MAX_NODE_LIST_COUNT = 16;
   private final HistoryNetwork historyNetwork;
   private int availableQuerySlots = MAX_CONCURRENT_QUERIES;
@@ -83,6 +85,8 @@ public class RecursiveLookupTaskFindNodes {
     final List<NodeRecord> nodesToQuery =
         foundNodes.stream()
             .filter(record -> !queriedNodeIds.contains(record.getNodeId()))
+            .limit((long) availableQuerySlots * QUERY_CANDIDATES_PER_SLOT)
+            .sorted(historyNetwork.getPeerScores().byScore())
             .limit(availableQuerySlots)
             .collect(Collectors.toList());
 
@@ -34,6 +34,8 @@ public class RecursiveLookupTaskTraceFindContent {
   private static final Logger LOG =
       LoggerFactory.getLogger(RecursiveLookupTaskTraceFindContent.class);
   private static final int MAX_CONCURRENT_QUERIES = 3;
+  // the closest nodes not queried yet, among which the best scored are queried first
+  private static final int QUERY_CANDIDATES_PER_SLOT = 2;
   private final HistoryNetwork historyNetwork;
   private final Bytes contentKey;
   private final Set<Bytes> queriedNodeIds = new HashSet<>();
@@ -88,6 +90,8 @@ public class RecursiveLookupTaskTraceFindContent {
     final List<NodeRecord> nodesToQuery =
         foundNodes.stream()
             .filter(record -> !queriedNodeIds.contains(record.getNodeId()))
+            .limit((long) availableQuerySlots * QUERY_CANDIDATES_PER_SLOT)
+            .sorted(historyNetwork.getPeerScores().byScore())
             .limit(availableQuerySlots)
             .collect(Collectors.toList());
 
@@ -0,0 +1,175 @@
+package samba.services.storage;
+
+import samba.metrics.SambaMetricCategory;
+import samba.storage.HistoryDB;
+import samba.util.DistanceUtil;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.async.Cancellable;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.infrastructure.time.TimeProvider;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Keeps the history storage under its configured capacity. Every run deletes a bounded amount of
+ * the content farthest from the local node id and shrinks the node radius to the distance of the
+ * farthest content left, so that content which would be pruned again is no longer accepted.
+ */
+public class StoragePruningService extends Service {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StoragePruningService.class);
+
+  protected static final Duration PRUNING_INTERVAL = Duration.ofSeconds(30);
+  static final int PRUNING_BATCH_SIZE = 500;
+  static final int MAX_PRUNED_CONTENT_PER_RUN = 10_000;
+  // prune below the capacity so that the next writes don't trigger another run right away
+  static final double TARGET_CAPACITY_RATIO = 0.9;
+  // deleted content only leaves the disk once compacted, until then it is accounted as reclaimed
+  private static final Duration RECLAIM_GRACE_PERIOD = Duration.ofMinutes(10);
+
+  private final HistoryDB historyDB;
+  private final long storageCapacityInBytes;
+  private final Bytes localNodeId;
+  private final Consumer<UInt256> radiusUpdater;
+  private final AsyncRunner asyncRunner;
+  private final TimeProvider timeProvider;
+  private final Counter prunedContentCounter;
+  private final Counter prunedBytesCounter;
+
+  private volatile Cancellable pruningTask;
+  private volatile long storageSizeInBytes;
+  private long pendingReclaimBytes;
+  private long lastPruningTimeInMillis;
+
+  public StoragePruningService(
+      final MetricsSystem metricsSystem,
+      final AsyncRunner asyncRunner,
+      final TimeProvider timeProvider,
+      final HistoryDB historyDB,
+      final long storageCapacityInBytes,
+      final Bytes localNodeId,
+      final Consumer<UInt256> radiusUpdater) {
+    this.asyncRunner = asyncRunner;
+    this.timeProvider = timeProvider;
+    this.historyDB = historyDB;
+    this.storageCapacityInBytes = storageCapacityInBytes;
+    this.localNodeId = localNodeId;
+    this.radiusUpdater = radiusUpdater;
+    this.prunedContentCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "pruned_content_total",
+            "Total number of content items pruned to stay under the storage capacity");
+    this.prunedBytesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "pruned_content_bytes_total",
+            "Total number of content bytes pruned to stay under the storage capacity");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "storage_capacity_bytes",
+        "Configured storage capacity in bytes",
+        () -> this.storageCapacityInBytes);
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "storage_used_bytes",
+        "Disk space used by the stored content in bytes",
+        () -> this.storageSizeInBytes);
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    storageSizeInBytes = historyDB.getStorageSizeInBytes();
+    if (storageSizeInBytes >= targetCapacity()) {
+      // the radius is not persisted, recover it from the content kept by the previous runs once
+      // the distance index, rebuilt in the background after a node id change, can tell
+      SafeFuture.of(historyDB.whenDistanceIndexReady())
+          .thenRun(this::shrinkRadius)
+          .finish(this::logPruningError);
+    }
+    pruningTask =
+        asyncRunner.runWithFixedDelay(this::prune, PRUNING_INTERVAL, this::logPruningError);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    final Cancellable task = this.pruningTask;
+    if (task != null) {
+      task.cancel();
+    }
+    return SafeFuture.COMPLETE;
+  }
+
+  void prune() {
+    final long measuredSize = historyDB.getStorageSizeInBytes();
+    updatePendingReclaim(measuredSize);
+    final long usedBytes = Math.max(0, measuredSize - pendingReclaimBytes);
+    if (usedBytes <= storageCapacityInBytes) {
+      return;
+    }
+    final long bytesToFree = usedBytes - targetCapacity();
+    long freedBytes = 0;
+    int prunedContent = 0;
+    while (freedBytes < bytesToFree && prunedContent < MAX_PRUNED_CONTENT_PER_RUN) {
+      final List<Bytes> farthestContentKeys = historyDB.getFarthestContentKeys(PRUNING_BATCH_SIZE);
+      if (farthestContentKeys.isEmpty()) {
+        break;
+      }
+      for (Bytes contentKey : farthestContentKeys) {
+        if (freedBytes >= bytesToFree) {
+          break;
+        }
+        freedBytes += historyDB.deleteContent(contentKey);
+        prunedContent++;
+      }
+    }
+    pendingReclaimBytes += freedBytes;
+    lastPruningTimeInMillis = timeProvider.getTimeInMillis().longValue();
+    prunedContentCounter.inc(prunedContent);
+    prunedBytesCounter.inc(freedBytes);
+    shrinkRadius();
+    LOG.info(
+        "Storage at {} of {} bytes, pruned {} content items ({} bytes)",
+        usedBytes,
+        storageCapacityInBytes,
+        prunedContent,
+        freedBytes);
+  }
+
+  private void updatePendingReclaim(final long measuredSize) {
+    if (measuredSize < storageSizeInBytes) {
+      pendingReclaimBytes = Math.max(0, pendingReclaimBytes - (storageSizeInBytes - measuredSize));
+    }
+    if (timeProvider.getTimeInMillis().longValue() - lastPruningTimeInMillis
+        > RECLAIM_GRACE_PERIOD.toMillis()) {
+      pendingReclaimBytes = 0;
+    }
+    storageSizeInBytes = measuredSize;
+  }
+
+  private void shrinkRadius() {
+    historyDB.getFarthestContentKeys(1).stream()
+        .findFirst()
+        .map(contentKey -> DistanceUtil.contentDistance(localNodeId, contentKey))
+        .ifPresent(radiusUpdater);
+  }
+
+  private long targetCapacity() {
+    return (long) (storageCapacityInBytes * TARGET_CAPACITY_RATIO);
+  }
+
+  private void logPruningError(final Throwable throwable) {
+    LOG.error("Error while pruning storage", throwable);
+  }
+}
@@ -0,0 +1,275 @@
+package samba.services.storage;
+
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+import samba.rocksdb.ReadLatencySample;
+import samba.storage.HistoryDB;
+import samba.storage.ScrubResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.async.Cancellable;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+import tech.pegasys.teku.infrastructure.time.TimeProvider;
+import tech.pegasys.teku.service.serviceutils.Service;
+
+/**
+ * Validates the stored history content again in the background, as it was validated before it was
+ * stored, and deletes what is no longer valid: content corrupted on disk, half written by a crash,
+ * or stored before it was validated.
+ *
+ * <p>Each content type is split in key ranges, shards scrubbed in parallel by a pool of workers, a
+ * batch per shard and per run. The position of each shard is saved after every batch, so that a
+ * pass resumes where it stopped after a restart. Scrubbing competes with the reads serving the
+ * network: the number of workers is halved as soon as the latency of those reads rises above its
+ * usual level, down to none, and grows back by one worker per run once it is back to normal.
+ */
+public class StorageScrubbingService extends Service {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StorageScrubbingService.class);
+
+  protected static final Duration SCRUBBING_INTERVAL = Duration.ofSeconds(1);
+  // a full pass reads the whole database, run one a week
+  static final Duration PASS_INTERVAL = Duration.ofDays(7);
+  static final List<ContentType> SCRUBBED_CONTENT_TYPES =
+      List.of(ContentType.BLOCK_HEADER, ContentType.BLOCK_BODY, ContentType.RECEIPT);
+  // key ranges of each content type, split on the high nibble of the block hash
+  static final int SHARDS_PER_CONTENT_TYPE = 16;
+  static final int SCRUB_BATCH_SIZE = 256;
+  // a run slowing point reads by half again over their usual latency backs off
+  static final double LATENCY_RISE_RATIO = 1.5;
+  private static final double BASELINE_SMOOTHING = 0.1;
+  // fewer reads than that between two runs say nothing about their latency
+  private static final long MIN_SAMPLED_READS = 100;
+  private static final int BLOCK_HASH_SIZE = 32;
+  private static final String CHECKPOINT_PREFIX = "scrubCheckpoint:";
+  private static final String PASS_COMPLETED_KEY = "scrubPassCompleted";
+
+  private final HistoryDB historyDB;
+  private final AsyncRunner asyncRunner;
+  private final TimeProvider timeProvider;
+  private final int maxWorkerCount;
+  private final ExecutorService workers;
+  private final List<Shard> shards = new ArrayList<>();
+  private final LabelledMetric<Counter> scrubbedContentCounter;
+  private final LabelledMetric<Counter> invalidContentCounter;
+  private final Counter passCounter;
+
+  private volatile Cancellable scrubbingTask;
+  private volatile int activeWorkerCount = 1;
+  private ReadLatencySample lastReadLatency;
+  private double baselineReadLatencyMicros;
+
+  public StorageScrubbingService(
+      final MetricsSystem metricsSystem,
+      final AsyncRunner asyncRunner,
+      final TimeProvider timeProvider,
+      final HistoryDB historyDB,
+      final int maxWorkerCount) {
+    this.asyncRunner = asyncRunner;
+    this.timeProvider = timeProvider;
+    this.historyDB = historyDB;
+    this.maxWorkerCount = maxWorkerCount;
+    this.workers =
+        Executors.newFixedThreadPool(
+            maxWorkerCount, Thread.ofPlatform().name("storage-scrubber-", 0).daemon().factory());
+    for (ContentType contentType : SCRUBBED_CONTENT_TYPES) {
+      for (int shard = 0; shard < SHARDS_PER_CONTENT_TYPE; shard++) {
+        shards.add(new Shard(contentType, shard));
+      }
+    }
+    this.scrubbedContentCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "scrubbed_content_total",
+            "Total number of stored content items validated again by the scrubber",
+            "type");
+    this.invalidContentCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "scrubbed_invalid_content_total",
+            "Total number of stored content items found invalid and deleted by the scrubber",
+            "type");
+    this.passCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "scrub_passes_total",
+            "Total number of passes of the scrubber over the whole database");
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.STORAGE,
+        "scrub_active_workers",
+        "Number of workers the scrubber runs, lowered when reads slow down",
+        () -> this.activeWorkerCount);
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.STORAGE,
+        "scrub_pending_shards",
+        "Number of key ranges left to scrub in the current pass",
+        () -> (int) shards.stream().filter(shard -> shard.next.isPresent()).count());
+  }
+
+  @Override
+  protected SafeFuture<?> doStart() {
+    shards.forEach(Shard::loadCheckpoint);
+    lastReadLatency = historyDB.sampleReadLatency();
+    scrubbingTask =
+        asyncRunner.runWithFixedDelay(this::scrub, SCRUBBING_INTERVAL, this::logScrubbingError);
+    return SafeFuture.COMPLETE;
+  }
+
+  @Override
+  protected SafeFuture<?> doStop() {
+    final Cancellable task = this.scrubbingTask;
+    if (task != null) {
+      task.cancel();
+    }
+    workers.shutdownNow();
+    return SafeFuture.COMPLETE;
+  }
+
+  void scrub() throws InterruptedException {
+    adjustWorkerCount();
+    final List<Shard> pending = shards.stream().filter(shard -> shard.next.isPresent()).toList();
+    if (pending.isEmpty()) {
+      startPassIfDue();
+      return;
+    }
+    if (activeWorkerCount == 0) {
+      return;
+    }
+    final List<Callable<Void>> batches = new ArrayList<>();
+    for (Shard shard : pending.subList(0, Math.min(activeWorkerCount, pending.size()))) {
+      batches.add(
+          () -> {
+            shard.scrubBatch();
+            return null;
+          });
+    }
+    for (Future<Void> batch : workers.invokeAll(batches)) {
+      try {
+        batch.get();
+      } catch (ExecutionException e) {
+        logScrubbingError(e.getCause());
+      }
+    }
+    if (shards.stream().allMatch(shard -> shard.next.isEmpty())) {
+      historyDB.saveMetadata(PASS_COMPLETED_KEY, Bytes.ofUnsignedLong(now()));
+      passCounter.inc();
+      LOG.info("Storage scrubbing pass completed");
+    }
+  }
+
+  // additive increase, multiplicative decrease on the latency of the point reads
+  private void adjustWorkerCount() {
+    final ReadLatencySample readLatency = historyDB.sampleReadLatency();
+    final long reads = readLatency.readsSince(lastReadLatency);
+    final double latencyMicros = readLatency.meanMicrosSince(lastReadLatency);
+    lastReadLatency = readLatency;
+    if (reads < MIN_SAMPLED_READS) {
+      activeWorkerCount = Math.min(maxWorkerCount, activeWorkerCount + 1);
+      return;
+    }
+    if (baselineReadLatencyMicros == 0) {
+      baselineReadLatencyMicros = latencyMicros;
+    }
+    if (latencyMicros > baselineReadLatencyMicros * LATENCY_RISE_RATIO) {
+      activeWorkerCount /= 2;
+      if (activeWorkerCount == 0) {
+        LOG.debug(
+            "Storage scrubbing paused, reads at {} us against {} us usually",
+            latencyMicros,
+            baselineReadLatencyMicros);
+      }
+    } else {
+      activeWorkerCount = Math.min(maxWorkerCount, activeWorkerCount + 1);
+    }
+    baselineReadLatencyMicros += BASELINE_SMOOTHING * (latencyMicros - baselineReadLatencyMicros);
+  }
+
+  private void startPassIfDue() {
+    final long lastPass = historyDB.getMetadata(PASS_COMPLETED_KEY).map(Bytes::toLong).orElse(0L);
+    if (now() - lastPass < PASS_INTERVAL.toMillis()) {
+      return;
+    }
+    LOG.info("Starting a storage scrubbing pass");
+    shards.forEach(Shard::restart);
+  }
+
+  int getActiveWorkerCount() {
+    return activeWorkerCount;
+  }
+
+  private long now() {
+    return timeProvider.getTimeInMillis().longValue();
+  }
+
+  private void logScrubbingError(final Throwable throwable) {
+    LOG.error("Error while scrubbing storage", throwable);
+  }
+
+  /** A key range of a content type, with the content key to resume from. */
+  private final class Shard {
+
+    private final ContentType contentType;
+    private final String checkpointName;
+    private final Bytes from;
+    private final Bytes to;
+    // empty once scrubbed in the current pass
+    private volatile Optional<Bytes> next = Optional.empty();
+
+    private Shard(final ContentType contentType, final int index) {
+      this.contentType = contentType;
+      this.checkpointName = CHECKPOINT_PREFIX + contentType + ":" + index;
+      final int nibbleShift = 8 - Integer.numberOfTrailingZeros(SHARDS_PER_CONTENT_TYPE);
+      final byte[] fromHash = new byte[BLOCK_HASH_SIZE];
+      fromHash[0] = (byte) (index << nibbleShift);
+      final byte[] toHash = new byte[BLOCK_HASH_SIZE];
+      Arrays.fill(toHash, (byte) 0xff);
+      toHash[0] = (byte) ((index << nibbleShift) | ((1 << nibbleShift) - 1));
+      this.from = Bytes.concatenate(Bytes.of(contentType.getByteValue()), Bytes.wrap(fromHash));
+      this.to = Bytes.concatenate(Bytes.of(contentType.getByteValue()), Bytes.wrap(toHash));
+    }
+
+    // a shard never scrubbed starts from its first key, one done keeps an empty checkpoint
+    private void loadCheckpoint() {
+      next =
+          historyDB
+              .getMetadata(checkpointName)
+              .map(
+                  checkpoint ->
+                      checkpoint.isEmpty() ? Optional.<Bytes>empty() : Optional.of(checkpoint))
+              .orElse(Optional.of(from));
+    }
+
+    private void restart() {
+      next = Optional.of(from);
+      historyDB.saveMetadata(checkpointName, from);
+    }
+
+    private void scrubBatch() {
+      final ScrubResult result =
+          historyDB.scrubContent(contentType, next.orElseThrow(), to, SCRUB_BATCH_SIZE);
+      final String label = contentType.name().toLowerCase(Locale.ROOT);
+      scrubbedContentCounter.labels(label).inc(result.scrubbedCount());
+      invalidContentCounter.labels(label).inc(result.invalidContentKeys().size());
+      next = result.nextContentKey();
+      historyDB.saveMetadata(checkpointName, next.orElse(Bytes.EMPTY));
+    }
+  }
+}
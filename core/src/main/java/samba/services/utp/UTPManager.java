@@ -85,14 +85,30 @@ public class UTPManager implements TransportLayer<UTPAddress> {
   }
 
   public int foundContentWrite(NodeRecord nodeRecord, Bytes content) {
+    return foundContentWrite(nodeRecord, content, () -> {});
+  }
+
+  /**
+   * Serve content over uTP to a node that found it here.
+   *
+   * @param nodeRecord the node reading the content
+   * @param content the content, possibly backed by a buffer released by {@code onWritten}
+   * @param onWritten called once the transfer is over, whether it succeeded or not
+   * @return the connection id to send to the node
+   */
+  public int foundContentWrite(NodeRecord nodeRecord, Bytes content, Runnable onWritten) {
     int connectionId = UTPClient.generateRandomConnectionId();
     this.runAsyncUTP(
         () -> {
-          UTPClient utpClient = this.registerClient(nodeRecord, connectionId);
-          utpClient
-              .startListening(connectionId, new UTPAddress(nodeRecord))
-              .thenCompose(__ -> utpClient.write(content, this.utpExecutor))
-              .get();
+          try {
+            UTPClient utpClient = this.registerClient(nodeRecord, connectionId);
+            utpClient
+                .startListening(connectionId, new UTPAddress(nodeRecord))
+                .thenCompose(__ -> utpClient.write(content, this.utpExecutor))
+                .get();
+          } finally {
+            onWritten.run();
+          }
         },
         "foundContentWrite",
         nodeRecord,
@@ -0,0 +1,112 @@
+package samba.storage;
+
+import samba.domain.content.ContentType;
+import samba.rocksdb.BlockNumberKeys;
+import samba.rocksdb.KeyValueSegment;
+import samba.rocksdb.KeyValueStorage;
+import samba.rocksdb.Segment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Blocks of a range of block numbers, in block number order. The block hashes are read from an
+ * iterator over the block number segment, and the parts of the blocks are resolved a batch at a
+ * time with a single MultiGet, so that no more than a batch of blocks is read ahead of the
+ * consumer.
+ *
+ * <p>Blocks whose header is not stored, as when it was pruned, are skipped.
+ */
+final class BlockRangeIterator implements Iterator<StoredBlock> {
+
+  private final KeyValueStorage storage;
+  private final Iterator<Pair<byte[], byte[]>> blockHashes;
+  private final int batchSize;
+  private final boolean withBodies;
+  private final boolean withReceipts;
+  private final Queue<StoredBlock> batch;
+
+  /**
+   * @param storage the database
+   * @param blockHashes entries of the block number segment, in block number order
+   * @param batchSize blocks resolved at once
+   * @param withBodies whether to read the bodies
+   * @param withReceipts whether to read the receipts
+   */
+  BlockRangeIterator(
+      final KeyValueStorage storage,
+      final Iterator<Pair<byte[], byte[]>> blockHashes,
+      final int batchSize,
+      final boolean withBodies,
+      final boolean withReceipts) {
+    this.storage = storage;
+    this.blockHashes = blockHashes;
+    this.batchSize = batchSize;
+    this.withBodies = withBodies;
+    this.withReceipts = withReceipts;
+    this.batch = new ArrayDeque<>(batchSize);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (batch.isEmpty() && blockHashes.hasNext()) {
+      readBatch();
+    }
+    return !batch.isEmpty();
+  }
+
+  @Override
+  public StoredBlock next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return batch.poll();
+  }
+
+  private void readBatch() {
+    final List<Long> blockNumbers = new ArrayList<>(batchSize);
+    final List<byte[]> headerKeys = new ArrayList<>(batchSize);
+    final List<Segment> segments = new ArrayList<>();
+    final List<byte[]> keys = new ArrayList<>();
+    while (blockNumbers.size() < batchSize && blockHashes.hasNext()) {
+      final Pair<byte[], byte[]> entry = blockHashes.next();
+      final byte[] headerKey = entry.getValue();
+      blockNumbers.add(BlockNumberKeys.blockNumber(entry.getKey()));
+      headerKeys.add(headerKey);
+      segments.add(KeyValueSegment.BLOCK_HEADER);
+      keys.add(headerKey);
+      if (withBodies) {
+        segments.add(KeyValueSegment.BLOCK_BODY);
+        keys.add(HistoryRocksDB.withSelector(headerKey, ContentType.BLOCK_BODY));
+      }
+      if (withReceipts) {
+        segments.add(KeyValueSegment.RECEIPT);
+        keys.add(HistoryRocksDB.withSelector(headerKey, ContentType.RECEIPT));
+      }
+    }
+    final Iterator<Optional<byte[]>> values = storage.multiGet(segments, keys).iterator();
+    for (int i = 0; i < blockNumbers.size(); i++) {
+      final Optional<byte[]> header = values.next();
+      final Optional<Bytes> body = withBodies ? values.next().map(Bytes::wrap) : Optional.empty();
+      final Optional<Bytes> receipts =
+          withReceipts ? values.next().map(Bytes::wrap) : Optional.empty();
+      if (header.isPresent()) {
+        batch.add(
+            new StoredBlock(
+                blockNumbers.get(i),
+                Bytes.wrap(headerKeys.get(i)),
+                Bytes.wrap(header.get()),
+                body,
+                receipts));
+      }
+    }
+  }
+}
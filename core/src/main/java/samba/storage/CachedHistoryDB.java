@@ -0,0 +1,310 @@
+package samba.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import samba.domain.content.ContentBlockBody;
+import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentReceipts;
+import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
+import samba.metrics.SambaMetricCategory;
+import samba.rocksdb.ReadLatencySample;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.LabelledMetric;
+
+/**
+ * Keeps the most requested content in memory in front of a {@link HistoryDB}. Each content type has
+ * its own cache with a byte budget, so that large bodies and receipts do not push out the headers
+ * needed to validate them. Caches admit and evict by frequency and recency (W-TinyLFU), so a scan
+ * of content requested once does not flush the hot content.
+ *
+ * <p>Values are kept as encoded SSZ bytes in direct buffers, off the heap, and freed once evicted
+ * and unreferenced. The cache size is checked against the direct memory limit at startup. Content
+ * is immutable, so an entry only goes stale when the content is deleted, which goes through this
+ * class.
+ */
+public class CachedHistoryDB implements HistoryDB {
+
+  // shares of the cache size given to each content type
+  private static final Map<ContentType, Double> CACHE_SHARES =
+      Map.of(
+          ContentType.BLOCK_HEADER, 0.25,
+          ContentType.BLOCK_BODY, 0.40,
+          ContentType.RECEIPT, 0.35);
+  // estimated per-entry overhead of the cache and the buffer
+  private static final int ENTRY_OVERHEAD = 128;
+
+  private final HistoryDB delegate;
+  private final Map<ContentType, Cache<Bytes, ByteBuffer>> caches =
+      new EnumMap<>(ContentType.class);
+  private final LabelledMetric<Counter> hitCounter;
+  private final LabelledMetric<Counter> missCounter;
+
+  public CachedHistoryDB(
+      final HistoryDB delegate, final MetricsSystem metricsSystem, final long cacheSizeInBytes) {
+    checkArgument(cacheSizeInBytes > 0, "Cache size must be greater than 0");
+    this.delegate = delegate;
+    this.hitCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "content_cache_hits_total",
+            "Total number of content lookups served from the content cache",
+            "type");
+    this.missCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "content_cache_misses_total",
+            "Total number of content lookups not found in the content cache",
+            "type");
+    final LabelledMetric<Counter> evictionCounter =
+        metricsSystem.createLabelledCounter(
+            SambaMetricCategory.STORAGE,
+            "content_cache_evictions_total",
+            "Total number of content items evicted from the content cache",
+            "type");
+    CACHE_SHARES.forEach(
+        (contentType, share) -> {
+          final Counter evictions = evictionCounter.labels(label(contentType));
+          final Cache<Bytes, ByteBuffer> cache =
+              Caffeine.newBuilder()
+                  .maximumWeight((long) (cacheSizeInBytes * share))
+                  .<Bytes, ByteBuffer>weigher(
+                      (key, value) -> key.size() + value.capacity() + ENTRY_OVERHEAD)
+                  .evictionListener((key, value, cause) -> evictions.inc())
+                  .executor(Runnable::run)
+                  .build();
+          caches.put(contentType, cache);
+        });
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "content_cache_size_bytes",
+        "Estimated number of bytes held by the content cache",
+        this::getCacheSizeInBytes);
+  }
+
+  @Override
+  public Optional<Bytes> get(final ContentKey contentKey) {
+    return getCachedBuffer(
+            contentKey, key -> delegate.get(key).map(CachedHistoryDB::toDirectBuffer))
+        .map(buffer -> Bytes.wrapByteBuffer(buffer.duplicate()));
+  }
+
+  // a miss reads the content into a pooled buffer and copies it once, into the cache
+  @Override
+  public Optional<ContentBuffer> getContentBuffer(final ContentKey contentKey) {
+    return getCachedBuffer(
+            contentKey, key -> delegate.getContentBuffer(key).map(CachedHistoryDB::toDirectBuffer))
+        .map(buffer -> new ContentBuffer(buffer.duplicate(), () -> {}));
+  }
+
+  private Optional<ByteBuffer> getCachedBuffer(
+      final ContentKey contentKey, final Function<ContentKey, Optional<ByteBuffer>> loader) {
+    return switch (contentKey.getContentType()) {
+      case ContentType.BLOCK_HEADER, ContentType.BLOCK_BODY, ContentType.RECEIPT ->
+          getCached(
+              contentKey.getContentType(),
+              contentKey.getBlockHashSsz(),
+              () -> loader.apply(contentKey));
+        // the header is cached under its block hash key, only the number mapping is read
+      case ContentType.BLOCK_HEADER_BY_NUMBER ->
+          delegate
+              .getBlockHashByBlockNumber(contentKey.getBlockNumberSsz())
+              .flatMap(
+                  blockHashKey ->
+                      getCached(
+                          ContentType.BLOCK_HEADER,
+                          blockHashKey,
+                          () -> loader.apply(ContentKey.decode(blockHashKey))));
+      case ContentType.EPHEMERAL_BLOCK_HEADER -> loader.apply(contentKey);
+    };
+  }
+
+  @Override
+  public boolean saveContent(final Bytes sszContentKey, final Bytes sszValue) {
+    return delegate.saveContent(sszContentKey, sszValue);
+  }
+
+  @Override
+  public List<Boolean> saveContents(final List<Bytes> sszContentKeys, final List<Bytes> sszValues) {
+    return delegate.saveContents(sszContentKeys, sszValues);
+  }
+
+  @Override
+  public boolean isWriteBacklogged() {
+    return delegate.isWriteBacklogged();
+  }
+
+  @Override
+  public Optional<ContentBlockHeader> getBlockHeaderByBlockHash(final Bytes blockHash) {
+    return get(ContentKey.decode(blockHash)).flatMap(ContentUtil::createBlockHeaderfromSszBytes);
+  }
+
+  // only the number to hash mapping is read, the header itself is not
+  @Override
+  public Optional<Bytes> getBlockHashByBlockNumber(final Bytes blockNumber) {
+    return delegate.getBlockHashByBlockNumber(blockNumber);
+  }
+
+  @Override
+  public Stream<StoredBlock> streamBlocks(
+      final long fromBlockNumber,
+      final long toBlockNumber,
+      final boolean withBodies,
+      final boolean withReceipts) {
+    return delegate.streamBlocks(fromBlockNumber, toBlockNumber, withBodies, withReceipts);
+  }
+
+  @Override
+  public Optional<ContentBlockBody> getBlockBodyByBlockHash(final Bytes blockHash) {
+    return get(ContentKey.decode(blockHash)).flatMap(ContentUtil::createBlockBodyFromSszBytes);
+  }
+
+  @Override
+  public Optional<ContentReceipts> getReceiptsByBlockHash(final Bytes blockHash) {
+    return get(ContentKey.decode(blockHash)).flatMap(ContentUtil::createReceiptsFromSszBytes);
+  }
+
+  @Override
+  public List<Boolean> containsAll(final List<ContentKey> contentKeys) {
+    return delegate.containsAll(contentKeys);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return delegate.isAvailable();
+  }
+
+  @Override
+  public List<Bytes> getFarthestContentKeys(final int limit) {
+    return delegate.getFarthestContentKeys(limit);
+  }
+
+  @Override
+  public List<Bytes> getContentKeysInDistanceRange(
+      final UInt256 fromDistance, final UInt256 toDistance, final int limit) {
+    return delegate.getContentKeysInDistanceRange(fromDistance, toDistance, limit);
+  }
+
+  @Override
+  public CompletableFuture<Void> whenDistanceIndexReady() {
+    return delegate.whenDistanceIndexReady();
+  }
+
+  @Override
+  public long deleteContent(final Bytes sszContentKey) {
+    final long removedBytes = delegate.deleteContent(sszContentKey);
+    final Cache<Bytes, ByteBuffer> cache = caches.get(ContentType.fromContentKey(sszContentKey));
+    if (cache != null) {
+      cache.invalidate(sszContentKey);
+    }
+    return removedBytes;
+  }
+
+  @Override
+  public long getStorageSizeInBytes() {
+    return delegate.getStorageSizeInBytes();
+  }
+
+  @Override
+  public List<ContentTypeStats> getContentTypeStats() {
+    return delegate.getContentTypeStats();
+  }
+
+  @Override
+  public ScrubResult scrubContent(
+      final ContentType contentType,
+      final Bytes fromContentKey,
+      final Bytes toContentKey,
+      final int limit) {
+    final ScrubResult result =
+        delegate.scrubContent(contentType, fromContentKey, toContentKey, limit);
+    final Cache<Bytes, ByteBuffer> cache = caches.get(contentType);
+    if (cache != null) {
+      cache.invalidateAll(result.invalidContentKeys());
+    }
+    return result;
+  }
+
+  @Override
+  public ReadLatencySample sampleReadLatency() {
+    return delegate.sampleReadLatency();
+  }
+
+  @Override
+  public Optional<Bytes> getMetadata(final String name) {
+    return delegate.getMetadata(name);
+  }
+
+  @Override
+  public void saveMetadata(final String name, final Bytes value) {
+    delegate.saveMetadata(name, value);
+  }
+
+  @Override
+  public Map<Bytes, Bytes> getRoutingTableCheckpoint() {
+    return delegate.getRoutingTableCheckpoint();
+  }
+
+  @Override
+  public void saveRoutingTableCheckpoint(final Map<Bytes, Bytes> entries) {
+    delegate.saveRoutingTableCheckpoint(entries);
+  }
+
+  long getCacheSizeInBytes() {
+    return caches.values().stream()
+        .mapToLong(cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+        .sum();
+  }
+
+  // concurrent misses of the same key share a single read, missing content is not cached
+  private Optional<ByteBuffer> getCached(
+      final ContentType contentType, final Bytes key, final Supplier<Optional<ByteBuffer>> loader) {
+    final boolean[] loaded = new boolean[1];
+    final ByteBuffer cached =
+        caches
+            .get(contentType)
+            .get(
+                key,
+                k -> {
+                  loaded[0] = true;
+                  return loader.get().orElse(null);
+                });
+    (loaded[0] ? missCounter : hitCounter).labels(label(contentType)).inc();
+    return Optional.ofNullable(cached);
+  }
+
+  private static ByteBuffer toDirectBuffer(final Bytes value) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(value.size());
+    value.appendTo(buffer);
+    return buffer.flip().asReadOnlyBuffer();
+  }
+
+  private static ByteBuffer toDirectBuffer(final ContentBuffer content) {
+    try (content) {
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(content.size());
+      content.appendTo(buffer);
+      return buffer.flip().asReadOnlyBuffer();
+    }
+  }
+
+  private static String label(final ContentType contentType) {
+    return contentType.name().toLowerCase();
+  }
+}
@@ -0,0 +1,84 @@
+package samba.storage;
+
+import samba.util.Util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Content held in a buffer, usually a direct buffer the database read it into, so that it can be
+ * written to the network without being copied to the heap first. Room can be left in front of the
+ * content for its LEB128 size prefix, which is then written in place.
+ *
+ * <p>Buffers taken from a pool go back to it on {@link #close()}: the content, and any {@link
+ * Bytes} obtained from it, must not be used afterwards.
+ */
+public class ContentBuffer implements AutoCloseable {
+
+  /** Room to leave in front of the content for its size prefix, the longest LEB128 int. */
+  public static final int SIZE_PREFIX_CAPACITY = 5;
+
+  private final ByteBuffer buffer;
+  private final Runnable release;
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+
+  /**
+   * @param buffer the buffer, holding the content between its position and limit
+   * @param release called once on close, to give the buffer back
+   */
+  ContentBuffer(final ByteBuffer buffer, final Runnable release) {
+    this.buffer = buffer;
+    this.release = release;
+  }
+
+  public static ContentBuffer wrap(final Bytes content) {
+    return new ContentBuffer(ByteBuffer.wrap(content.toArrayUnsafe()), () -> {});
+  }
+
+  public int size() {
+    return buffer.remaining();
+  }
+
+  /**
+   * The content, backed by the buffer.
+   *
+   * @return the content
+   */
+  public Bytes content() {
+    return Bytes.wrapByteBuffer(buffer, buffer.position(), buffer.remaining());
+  }
+
+  /**
+   * The content behind its LEB128 size prefix, as sent over uTP. The prefix is written in front of
+   * the content when there is room for it, the content is not copied either way.
+   *
+   * @return the prefixed content
+   */
+  public Bytes contentWithSizePrefix() {
+    final Bytes prefix = Util.writeUnsignedLeb128(size());
+    final int start = buffer.position() - prefix.size();
+    if (start < 0 || buffer.isReadOnly()) {
+      return Bytes.concatenate(prefix, content());
+    }
+    buffer.put(start, prefix.toArrayUnsafe());
+    return Bytes.wrapByteBuffer(buffer, start, prefix.size() + size());
+  }
+
+  /**
+   * Copy the content to the target buffer, without going through the heap.
+   *
+   * @param target the buffer, with room for the content after its position
+   */
+  void appendTo(final ByteBuffer target) {
+    target.put(buffer.duplicate());
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      release.run();
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package samba.storage;
+
+import samba.metrics.SambaMetricCategory;
+import samba.rocksdb.KeyValueStorage;
+import samba.rocksdb.Segment;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a {@link CuckooFilter} of the stored content keys, so that lookups of content which is not
+ * stored are answered without reading the database. The filter is built in the background from the
+ * keys of the content segments; until it is ready, and while it is rebuilt larger after filling up,
+ * every key is reported as possibly stored.
+ *
+ * <p>Keys are added once their write is committed and removed once their delete is, so the filter
+ * never misses a stored key, it only keeps deleted keys when a delete races with a build.
+ */
+final class ContentKeyFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ContentKeyFilter.class);
+
+  static final long MIN_CAPACITY = 1 << 20;
+
+  private final KeyValueStorage storage;
+  private final List<Segment> segments;
+  private final Counter negativeCounter;
+  private final Counter falsePositiveCounter;
+  private final AtomicLong negatives = new AtomicLong();
+  private final AtomicLong falsePositives = new AtomicLong();
+  private final AtomicBoolean building = new AtomicBoolean();
+
+  private final AtomicReference<CuckooFilter> filter = new AtomicReference<>();
+  // the filter being built, keys committed meanwhile are added to it as well
+  private volatile CuckooFilter nextFilter;
+
+  ContentKeyFilter(
+      final MetricsSystem metricsSystem,
+      final KeyValueStorage storage,
+      final List<Segment> segments) {
+    this.storage = storage;
+    this.segments = segments;
+    this.negativeCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "content_filter_negative_total",
+            "Total number of content lookups answered by the content key filter without a read");
+    this.falsePositiveCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "content_filter_false_positive_total",
+            "Total number of content lookups passed by the content key filter for missing content");
+    metricsSystem.createGauge(
+        SambaMetricCategory.STORAGE,
+        "content_filter_false_positive_rate",
+        "Observed share of lookups for missing content not answered by the content key filter",
+        this::getObservedFalsePositiveRate);
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "content_filter_keys",
+        "Number of content keys in the content key filter",
+        () -> {
+          final CuckooFilter current = this.filter.get();
+          return current == null ? 0 : current.size();
+        });
+  }
+
+  /**
+   * Build the filter from the stored keys on a virtual thread, unless a build is in progress.
+   *
+   * @param expectedKeys the expected number of stored keys
+   */
+  void buildInBackground(final long expectedKeys) {
+    if (building.compareAndSet(false, true)) {
+      Thread.ofVirtual().name("content-key-filter").start(() -> build(expectedKeys));
+    }
+  }
+
+  /**
+   * Whether the content key may be stored. A negative answer is counted as a lookup saved.
+   *
+   * @param key the content key
+   * @return false if the content key is definitely not stored
+   */
+  boolean mightContain(final byte[] key) {
+    final CuckooFilter current = this.filter.get();
+    if (current == null || current.mightContain(key)) {
+      return true;
+    }
+    negatives.incrementAndGet();
+    negativeCounter.inc();
+    return false;
+  }
+
+  /**
+   * Whether the content key may be stored, without counting the answer as a lookup: for writes
+   * checking what they overwrite.
+   *
+   * @param key the content key
+   * @return false if the content key is definitely not stored
+   */
+  boolean mightContainUncounted(final byte[] key) {
+    final CuckooFilter current = this.filter.get();
+    return current == null || current.mightContain(key);
+  }
+
+  /** Record a content key passed by the filter but not found in the database. */
+  void onFalsePositive() {
+    if (this.filter.get() != null) {
+      falsePositives.incrementAndGet();
+      falsePositiveCounter.inc();
+    }
+  }
+
+  /**
+   * Add a content key whose write is committed.
+   *
+   * @param key the content key
+   */
+  void add(final byte[] key) {
+    // read before the filter: a build publishes its filter before it stops accepting keys
+    final CuckooFilter next = this.nextFilter;
+    final CuckooFilter current = this.filter.get();
+    if (next != null && next != current && !next.add(key)) {
+      onFull(next);
+    }
+    if (current != null && !current.add(key)) {
+      onFull(current);
+    }
+  }
+
+  /**
+   * Remove a content key whose delete is committed.
+   *
+   * @param key the content key
+   */
+  void remove(final byte[] key) {
+    final CuckooFilter current = this.filter.get();
+    if (current != null) {
+      current.remove(key);
+    }
+  }
+
+  boolean isReady() {
+    return this.filter.get() != null;
+  }
+
+  double getObservedFalsePositiveRate() {
+    final long falsePositiveCount = falsePositives.get();
+    final long lookups = falsePositiveCount + negatives.get();
+    return lookups == 0 ? 0 : (double) falsePositiveCount / lookups;
+  }
+
+  // a filter that is not published yet is rebuilt by its build
+  private void onFull(final CuckooFilter full) {
+    if (this.filter.compareAndSet(full, null)) {
+      LOG.info("Content key filter is full with {} keys, rebuilding it", full.size());
+      buildInBackground(full.capacity() * 2);
+    }
+  }
+
+  private void build(final long expectedKeys) {
+    long capacity = Math.max(MIN_CAPACITY, expectedKeys * 2);
+    boolean built = false;
+    try {
+      while (!built) {
+        final CuckooFilter next = new CuckooFilter(capacity);
+        // published before the keys are read, so that no key committed meanwhile is missed
+        this.nextFilter = next;
+        if (addStoredKeys(next)) {
+          this.filter.set(next);
+          // checked once published, a key rejected later on unpublishes it
+          built = !next.isFull() || !this.filter.compareAndSet(next, null);
+        }
+        if (built) {
+          LOG.info("Content key filter built with {} keys", next.size());
+        } else {
+          capacity *= 2;
+        }
+      }
+    } catch (Exception e) {
+      LOG.error("Content key filter could not be built", e);
+    } finally {
+      this.nextFilter = null;
+      building.set(false);
+    }
+    // filled up while this build was ending
+    if (built && this.filter.get() == null) {
+      buildInBackground(capacity * 2);
+    }
+  }
+
+  private boolean addStoredKeys(final CuckooFilter next) {
+    for (Segment segment : segments) {
+      try (Stream<byte[]> keys = storage.streamKeys(segment)) {
+        for (byte[] key : (Iterable<byte[]>) keys::iterator) {
+          if (!next.add(HistoryRocksDB.contentKey(segment, key))) {
+            return false;
+          }
+        }
+      }
+    }
+    // keys committed during the build could also have filled it
+    return !next.isFull();
+  }
+}
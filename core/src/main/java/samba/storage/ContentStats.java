@@ -0,0 +1,200 @@
+package samba.storage;
+
+import samba.metrics.SambaMetricCategory;
+import samba.rocksdb.KeyValueSegment;
+import samba.rocksdb.KeyValueStorage;
+import samba.rocksdb.KeyValueStorageTransaction;
+import samba.rocksdb.Segment;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the contents of each content segment and the size of their keys and values, so that they
+ * are known without scanning the database. The counters are stored in the metadata segment and
+ * updated as merges in the same write as the content they count: they survive restarts and need
+ * neither a read nor a lock to be updated.
+ *
+ * <p>Counters of a database written before they existed are seeded from the RocksDB estimates of
+ * its segments, and are exact for the content written since.
+ */
+final class ContentStats {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ContentStats.class);
+  private static final String COUNT_KEY_PREFIX = "contentCount:";
+  private static final String BYTES_KEY_PREFIX = "contentBytes:";
+
+  private final KeyValueStorage storage;
+  private final List<Segment> segments;
+
+  ContentStats(
+      final MetricsSystem metricsSystem,
+      final KeyValueStorage storage,
+      final List<Segment> segments) {
+    this.storage = storage;
+    this.segments = segments;
+    for (Segment segment : segments) {
+      final String type = segment.getName().toLowerCase(Locale.ROOT);
+      metricsSystem.createLongGauge(
+          SambaMetricCategory.STORAGE,
+          "content_" + type + "_count",
+          "Number of " + type + " contents stored",
+          () -> getCount(segment));
+      metricsSystem.createLongGauge(
+          SambaMetricCategory.STORAGE,
+          "content_" + type + "_bytes",
+          "Size in bytes of the keys and values of the " + type + " contents stored",
+          () -> getBytes(segment));
+      metricsSystem.createLongGauge(
+          SambaMetricCategory.STORAGE,
+          "content_" + type + "_disk_bytes",
+          "Size in bytes of the live files of the " + type + " segment",
+          () -> storage.getLiveFilesSize(segment));
+    }
+  }
+
+  /**
+   * Seed the counters missing from the database from the estimates of their segment. Missing
+   * counters of empty segments are left missing, merges start from zero.
+   */
+  void seedMissingCounters() {
+    KeyValueStorageTransaction tx = null;
+    for (Segment segment : segments) {
+      if (storage.containsKey(KeyValueSegment.METADATA, countKey(segment))) {
+        continue;
+      }
+      final long count = storage.getEstimatedKeyCount(segment);
+      if (count <= 0) {
+        continue;
+      }
+      final long bytes = storage.getLiveFilesSize(segment);
+      if (tx == null) {
+        tx = storage.startTransaction();
+      }
+      tx.put(KeyValueSegment.METADATA, countKey(segment), encode(count));
+      tx.put(KeyValueSegment.METADATA, bytesKey(segment), encode(bytes));
+      LOG.info(
+          "Content stats of {} seeded from estimates: {} contents, {} bytes",
+          segment.getName(),
+          count,
+          bytes);
+    }
+    if (tx != null) {
+      tx.commit();
+    }
+  }
+
+  /**
+   * Remove the counters, so that they are seeded again the next time the database is opened, once
+   * content was added to it without going through this class.
+   *
+   * @param storage the database, not in use by a running node
+   * @param segments the content segments
+   */
+  static void invalidate(final KeyValueStorage storage, final List<Segment> segments) {
+    final KeyValueStorageTransaction tx = storage.startTransaction();
+    for (Segment segment : segments) {
+      tx.remove(KeyValueSegment.METADATA, countKey(segment));
+      tx.remove(KeyValueSegment.METADATA, bytesKey(segment));
+    }
+    tx.commit();
+  }
+
+  List<ContentTypeStats> getStats() {
+    return segments.stream()
+        .map(
+            segment ->
+                new ContentTypeStats(
+                    segment.getName(),
+                    getCount(segment),
+                    getBytes(segment),
+                    storage.getLiveFilesSize(segment)))
+        .toList();
+  }
+
+  long getCount(final Segment segment) {
+    return read(countKey(segment));
+  }
+
+  long getBytes(final Segment segment) {
+    return read(bytesKey(segment));
+  }
+
+  private long read(final byte[] key) {
+    return storage.get(KeyValueSegment.METADATA, key).map(ContentStats::decode).orElse(0L);
+  }
+
+  private static byte[] countKey(final Segment segment) {
+    return (COUNT_KEY_PREFIX + segment.getName()).getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytesKey(final Segment segment) {
+    return (BYTES_KEY_PREFIX + segment.getName()).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // the counter merge operator adds unsigned 64-bit little-endian integers, negative deltas wrap
+  private static byte[] encode(final long value) {
+    return Bytes.ofUnsignedLong(value, ByteOrder.LITTLE_ENDIAN).toArrayUnsafe();
+  }
+
+  private static long decode(final byte[] value) {
+    return Bytes.wrap(value).toLong(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** Changes to the counters made by the writes of one transaction. */
+  static final class Delta {
+
+    private final Map<Segment, long[]> changes = new HashMap<>();
+
+    /**
+     * Count a content written.
+     *
+     * @param segment the segment of the content
+     * @param previousSize the size of the content it replaces, or -1 if it is new
+     * @param size the size of its key and value
+     */
+    void onPut(final Segment segment, final long previousSize, final long size) {
+      final long[] change = changes.computeIfAbsent(segment, __ -> new long[2]);
+      if (previousSize < 0) {
+        change[0]++;
+        change[1] += size;
+      } else {
+        change[1] += size - previousSize;
+      }
+    }
+
+    /**
+     * Count a content deleted.
+     *
+     * @param segment the segment of the content
+     * @param size the size of its key and value
+     */
+    void onDelete(final Segment segment, final long size) {
+      final long[] change = changes.computeIfAbsent(segment, __ -> new long[2]);
+      change[0]--;
+      change[1] -= size;
+    }
+
+    /**
+     * Add the changes to the transaction writing the content.
+     *
+     * @param tx the transaction
+     */
+    void writeTo(final KeyValueStorageTransaction tx) {
+      changes.forEach(
+          (segment, change) -> {
+            tx.merge(KeyValueSegment.METADATA, countKey(segment), encode(change[0]));
+            tx.merge(KeyValueSegment.METADATA, bytesKey(segment), encode(change[1]));
+          });
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package samba.storage;
+
+/**
+ * What the content of one type holds in the database.
+ *
+ * @param type the name of the content segment
+ * @param count the number of contents
+ * @param bytes the size of their keys and values
+ * @param diskBytes the size of the live files of the segment, compressed and including data
+ *     overwritten or deleted but not compacted yet
+ */
+public record ContentTypeStats(String type, long count, long bytes, long diskBytes) {}
@@ -0,0 +1,267 @@
+package samba.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Cuckoo filter over byte array keys, stored off-heap. Each bucket holds four 16 bit fingerprints
+ * packed in a long, and a key can live in one of two buckets. Unlike a bloom filter keys can be
+ * removed, so the filter keeps up with deleted content.
+ *
+ * <p>The filter is a multiset of fingerprints: a key added twice must be removed twice, and a key
+ * must only be removed if it was added. It never reports an added key as absent.
+ */
+final class CuckooFilter {
+
+  static final int SLOTS_PER_BUCKET = 4;
+  private static final int FINGERPRINT_BITS = 16;
+  private static final long FINGERPRINT_MASK = (1L << FINGERPRINT_BITS) - 1;
+  private static final int MAX_KICKS = 500;
+  // buckets are not filled beyond this, past it inserts start failing
+  private static final double MAX_LOAD_FACTOR = 0.95;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final LongBuffer buckets;
+  private final int bucketMask;
+  private final StampedLock lock = new StampedLock();
+  private long size;
+  // a fingerprint evicted by a failed insert, the filter is full while it is set
+  private int victimBucket = -1;
+  private int victimFingerprint;
+
+  /**
+   * Create a filter able to hold at least the given number of keys.
+   *
+   * @param capacity the number of keys
+   */
+  CuckooFilter(final long capacity) {
+    checkArgument(capacity > 0, "Capacity must be greater than 0");
+    final long minBuckets = (long) Math.ceil(capacity / (SLOTS_PER_BUCKET * MAX_LOAD_FACTOR));
+    final long bucketCount = Math.max(1, Long.highestOneBit(minBuckets - 1) << 1);
+    checkArgument(bucketCount <= 1 << 28, "Capacity %s is too large", capacity);
+    this.buckets =
+        ByteBuffer.allocateDirect((int) bucketCount * Long.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asLongBuffer();
+    this.bucketMask = (int) bucketCount - 1;
+  }
+
+  /**
+   * Add a key.
+   *
+   * @param key the key
+   * @return false if the filter is full, the key is then not added
+   */
+  boolean add(final byte[] key) {
+    final long hash = hash(key);
+    final int fingerprint = fingerprint(hash);
+    final long stamp = lock.writeLock();
+    try {
+      if (victimBucket >= 0) {
+        return false;
+      }
+      int bucket = bucketIndex(hash);
+      if (insert(bucket, fingerprint)
+          || insert(alternateBucket(bucket, fingerprint), fingerprint)) {
+        size++;
+        return true;
+      }
+      // relocate random fingerprints to their alternate bucket until one finds a free slot
+      final ThreadLocalRandom random = ThreadLocalRandom.current();
+      if (random.nextBoolean()) {
+        bucket = alternateBucket(bucket, fingerprint);
+      }
+      int evicting = fingerprint;
+      for (int kick = 0; kick < MAX_KICKS; kick++) {
+        final int slot = random.nextInt(SLOTS_PER_BUCKET);
+        final int evicted = slot(buckets.get(bucket), slot);
+        setSlot(bucket, slot, evicting);
+        evicting = evicted;
+        bucket = alternateBucket(bucket, evicting);
+        if (insert(bucket, evicting)) {
+          size++;
+          return true;
+        }
+      }
+      // the key is in, but the last evicted fingerprint has no room left
+      victimBucket = bucket;
+      victimFingerprint = evicting;
+      size++;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Whether the key may have been added. A key that was added is always reported, a key that was
+   * not is reported with a probability of {@link #expectedFalsePositiveRate()}.
+   *
+   * @param key the key
+   * @return false if the key was definitely not added
+   */
+  boolean mightContain(final byte[] key) {
+    final long hash = hash(key);
+    final int fingerprint = fingerprint(hash);
+    final int bucket = bucketIndex(hash);
+    final int alternateBucket = alternateBucket(bucket, fingerprint);
+    long stamp = lock.tryOptimisticRead();
+    boolean found = contains(bucket, alternateBucket, fingerprint);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        found = contains(bucket, alternateBucket, fingerprint);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Remove a key that was added.
+   *
+   * @param key the key
+   * @return false if no fingerprint of the key was found
+   */
+  boolean remove(final byte[] key) {
+    final long hash = hash(key);
+    final int fingerprint = fingerprint(hash);
+    final int bucket = bucketIndex(hash);
+    final int alternateBucket = alternateBucket(bucket, fingerprint);
+    final long stamp = lock.writeLock();
+    try {
+      if (delete(bucket, fingerprint) || delete(alternateBucket, fingerprint)) {
+        size--;
+        if (victimBucket >= 0
+            && (insert(victimBucket, victimFingerprint)
+                || insert(alternateBucket(victimBucket, victimFingerprint), victimFingerprint))) {
+          victimBucket = -1;
+        }
+        return true;
+      }
+      if (victimFingerprint == fingerprint
+          && (victimBucket == bucket || victimBucket == alternateBucket)) {
+        victimBucket = -1;
+        size--;
+        return true;
+      }
+      return false;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  long size() {
+    final long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Whether an insert failed to find room, further keys are then rejected.
+   *
+   * @return true if the filter is full
+   */
+  boolean isFull() {
+    final long stamp = lock.readLock();
+    try {
+      return victimBucket >= 0;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  long capacity() {
+    return (long) buckets.capacity() * SLOTS_PER_BUCKET;
+  }
+
+  /**
+   * The probability for a key that was not added to be reported, at the current load.
+   *
+   * @return the expected false positive rate
+   */
+  double expectedFalsePositiveRate() {
+    final double loadFactor = (double) size() / capacity();
+    return loadFactor * 2 * SLOTS_PER_BUCKET / (1 << FINGERPRINT_BITS);
+  }
+
+  private boolean contains(final int bucket, final int alternateBucket, final int fingerprint) {
+    return hasFingerprint(buckets.get(bucket), fingerprint)
+        || hasFingerprint(buckets.get(alternateBucket), fingerprint)
+        || (victimBucket >= 0
+            && victimFingerprint == fingerprint
+            && (victimBucket == bucket || victimBucket == alternateBucket));
+  }
+
+  private boolean insert(final int bucket, final int fingerprint) {
+    final long slots = buckets.get(bucket);
+    for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+      if (slot(slots, slot) == 0) {
+        setSlot(bucket, slot, fingerprint);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean delete(final int bucket, final int fingerprint) {
+    final long slots = buckets.get(bucket);
+    for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+      if (slot(slots, slot) == fingerprint) {
+        setSlot(bucket, slot, 0);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void setSlot(final int bucket, final int slot, final int fingerprint) {
+    final int shift = slot * FINGERPRINT_BITS;
+    final long slots = buckets.get(bucket);
+    buckets.put(bucket, (slots & ~(FINGERPRINT_MASK << shift)) | ((long) fingerprint << shift));
+  }
+
+  private static int slot(final long slots, final int slot) {
+    return (int) ((slots >>> (slot * FINGERPRINT_BITS)) & FINGERPRINT_MASK);
+  }
+
+  private static boolean hasFingerprint(final long slots, final int fingerprint) {
+    for (int slot = 0; slot < SLOTS_PER_BUCKET; slot++) {
+      if (slot(slots, slot) == fingerprint) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long hash(final byte[] key) {
+    return HASH_FUNCTION.hashBytes(key).asLong();
+  }
+
+  // 0 marks an empty slot
+  private static int fingerprint(final long hash) {
+    final int fingerprint = (int) (hash & FINGERPRINT_MASK);
+    return fingerprint == 0 ? 1 : fingerprint;
+  }
+
+  private int bucketIndex(final long hash) {
+    return (int) (hash >>> 32) & bucketMask;
+  }
+
+  // the alternate of the alternate bucket is the original one
+  private int alternateBucket(final int bucket, final int fingerprint) {
+    return (bucket ^ (fingerprint * 0x5bd1e995)) & bucketMask;
+  }
+}
@@ -0,0 +1,75 @@
+package samba.storage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffers reused across content reads, so that serving large content neither allocates on
+ * the heap nor allocates direct memory each time. Buffers are grouped by power of two capacity.
+ * Released buffers are kept up to a total capacity and left to the garbage collector beyond it, as
+ * are buffers larger than the largest capacity class.
+ */
+class DirectBufferPool {
+
+  private static final int MIN_CAPACITY_SHIFT = 12;
+  private static final int MAX_CAPACITY_SHIFT = 24;
+
+  private final List<Queue<ByteBuffer>> freeBuffers = new ArrayList<>();
+  private final long maxRetainedBytes;
+  private final AtomicLong retainedBytes = new AtomicLong();
+
+  DirectBufferPool(final long maxRetainedBytes) {
+    this.maxRetainedBytes = maxRetainedBytes;
+    for (int shift = MIN_CAPACITY_SHIFT; shift <= MAX_CAPACITY_SHIFT; shift++) {
+      freeBuffers.add(new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  /**
+   * Take a cleared buffer of at least the given capacity.
+   *
+   * @param capacity the minimum capacity
+   * @return the buffer, to give back with {@link #release(ByteBuffer)}
+   */
+  ByteBuffer acquire(final int capacity) {
+    final int shift =
+        Math.max(MIN_CAPACITY_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1));
+    if (shift > MAX_CAPACITY_SHIFT) {
+      return ByteBuffer.allocateDirect(capacity);
+    }
+    final ByteBuffer buffer = freeBuffers.get(shift - MIN_CAPACITY_SHIFT).poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(1 << shift);
+    }
+    retainedBytes.addAndGet(-buffer.capacity());
+    return buffer.clear();
+  }
+
+  /**
+   * Give a buffer back. It must not be used afterwards.
+   *
+   * @param buffer a buffer taken with {@link #acquire(int)}
+   */
+  void release(final ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    final int shift = Integer.numberOfTrailingZeros(capacity);
+    if (Integer.bitCount(capacity) != 1
+        || shift < MIN_CAPACITY_SHIFT
+        || shift > MAX_CAPACITY_SHIFT) {
+      return;
+    }
+    if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+      retainedBytes.addAndGet(-capacity);
+      return;
+    }
+    freeBuffers.get(shift - MIN_CAPACITY_SHIFT).offer(buffer);
+  }
+
+  long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+}
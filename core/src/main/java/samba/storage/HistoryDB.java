@@ -4,24 +4,180 @@ import samba.domain.content.ContentBlockBody;
 import samba.domain.content.ContentBlockHeader;
 import samba.domain.content.ContentKey;
 import samba.domain.content.ContentReceipts;
+import samba.domain.content.ContentType;
+import samba.rocksdb.ReadLatencySample;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
 
 public interface HistoryDB {
 
   boolean saveContent(Bytes sszContentKey, Bytes sszValue);
 
+  /**
+   * Save several content items in a single write.
+   *
+   * @param sszContentKeys the content keys
+   * @param sszValues the content values, in the same order as the keys
+   * @return whether each content item was saved, in the same order as the keys
+   */
+  List<Boolean> saveContents(List<Bytes> sszContentKeys, List<Bytes> sszValues);
+
+  /**
+   * Whether content to save is piling up faster than it is saved, in which case the network should
+   * be offered less of it.
+   *
+   * @return true if new content should be declined
+   */
+  default boolean isWriteBacklogged() {
+    return false;
+  }
+
   Optional<ContentBlockHeader> getBlockHeaderByBlockHash(Bytes blockHash);
 
   Optional<Bytes> getBlockHashByBlockNumber(Bytes blockNumber);
 
+  /**
+   * Stored blocks of a range of block numbers, in block number order. Blocks are read lazily, a
+   * bounded batch at a time, and the stream holds a database iterator: it must be closed.
+   *
+   * @param fromBlockNumber first block number, inclusive
+   * @param toBlockNumber last block number, inclusive
+   * @param withBodies whether to read the bodies
+   * @param withReceipts whether to read the receipts
+   * @return the blocks whose header is stored
+   */
+  Stream<StoredBlock> streamBlocks(
+      long fromBlockNumber, long toBlockNumber, boolean withBodies, boolean withReceipts);
+
   Optional<ContentBlockBody> getBlockBodyByBlockHash(Bytes blockHash);
 
   Optional<ContentReceipts> getReceiptsByBlockHash(Bytes blockHash);
 
   Optional<Bytes> get(ContentKey contentKey);
 
+  /**
+   * Read content into a buffer, for content written to the network as soon as it is read. The
+   * buffer must be closed once the content is sent.
+   *
+   * @param contentKey the content key
+   * @return the content, empty if it is not stored
+   */
+  default Optional<ContentBuffer> getContentBuffer(ContentKey contentKey) {
+    return get(contentKey).map(ContentBuffer::wrap);
+  }
+
+  /**
+   * Check which content items are stored, without reading their values.
+   *
+   * @param contentKeys the content keys
+   * @return whether each content item is stored, in the same order as the keys
+   */
+  List<Boolean> containsAll(List<ContentKey> contentKeys);
+
   boolean isAvailable();
+
+  /**
+   * Content keys of the stored content whose content-id is the farthest from the local node id,
+   * farthest first.
+   *
+   * @param limit maximum number of keys to return
+   * @return the content keys, empty while the distance index is not available
+   */
+  List<Bytes> getFarthestContentKeys(int limit);
+
+  /**
+   * Content keys of the stored content whose content-id distance to the local node id is within the
+   * given range, closest first.
+   *
+   * @param fromDistance lower bound of the distance, inclusive
+   * @param toDistance upper bound of the distance, inclusive
+   * @param limit maximum number of keys to return
+   * @return the content keys, empty while the distance index is not available
+   */
+  List<Bytes> getContentKeysInDistanceRange(UInt256 fromDistance, UInt256 toDistance, int limit);
+
+  /**
+   * Completes once the distance index answers the distance queries, as it is rebuilt in the
+   * background after the local node id changed.
+   *
+   * @return a future completed once the distance index is available
+   */
+  default CompletableFuture<Void> whenDistanceIndexReady() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Delete a content item.
+   *
+   * @param sszContentKey the content key
+   * @return the number of bytes (key and value) removed, 0 if the content was not stored
+   */
+  long deleteContent(Bytes sszContentKey);
+
+  long getStorageSizeInBytes();
+
+  /**
+   * What each type of content holds in the database, from counters kept up to date on each write.
+   *
+   * @return the stats of each content segment
+   */
+  List<ContentTypeStats> getContentTypeStats();
+
+  /**
+   * Validate again a batch of stored content of a type, as it was validated before it was stored,
+   * and delete the items no longer valid. Bodies and receipts are validated against their stored
+   * header, and skipped while it is not stored or not valid itself.
+   *
+   * @param contentType the type of content, headers by hash, bodies or receipts
+   * @param fromContentKey first content key of the batch, inclusive
+   * @param toContentKey last content key of the range, inclusive
+   * @param limit maximum number of content items to read
+   * @return the outcome, with the content key to resume from
+   */
+  ScrubResult scrubContent(
+      ContentType contentType, Bytes fromContentKey, Bytes toContentKey, int limit);
+
+  /**
+   * Sample the single content reads served so far by the database, to watch their latency.
+   *
+   * @return the reads served since the database was opened and the time they took
+   */
+  ReadLatencySample sampleReadLatency();
+
+  /**
+   * Read a value kept about the database, as the progress of a background task over it.
+   *
+   * @param name the name of the value
+   * @return the value, empty if it was never saved
+   */
+  Optional<Bytes> getMetadata(String name);
+
+  /**
+   * Save a value kept about the database.
+   *
+   * @param name the name of the value
+   * @param value the value
+   */
+  void saveMetadata(String name, Bytes value);
+
+  /**
+   * Read the routing table saved by the last checkpoint.
+   *
+   * @return the saved entries by node id, empty if no checkpoint was saved
+   */
+  Map<Bytes, Bytes> getRoutingTableCheckpoint();
+
+  /**
+   * Replace the saved routing table with a new checkpoint, in a single write.
+   *
+   * @param entries the entries to save by node id
+   */
+  void saveRoutingTableCheckpoint(Map<Bytes, Bytes> entries);
 }
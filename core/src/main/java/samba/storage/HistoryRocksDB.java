@@ -3,23 +3,48 @@ package samba.storage;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import samba.config.StorageConfig;
+import samba.config.StorageEngine;
 import samba.domain.content.ContentBlockBody;
 import samba.domain.content.ContentBlockHeader;
 import samba.domain.content.ContentKey;
 import samba.domain.content.ContentReceipts;
 import samba.domain.content.ContentType;
 import samba.domain.content.ContentUtil;
+import samba.rocksdb.BlockNumberKeys;
+import samba.rocksdb.InMemoryKeyValueStorage;
 import samba.rocksdb.KeyValueSegment;
+import samba.rocksdb.KeyValueStorage;
 import samba.rocksdb.KeyValueStorageTransaction;
-import samba.rocksdb.RocksDBInstance;
+import samba.rocksdb.ReadLatencySample;
 import samba.rocksdb.RocksDBKeyValueStorageFactory;
 import samba.rocksdb.Segment;
+import samba.util.DistanceUtil;
 import samba.validation.util.ValidationUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.google.common.util.concurrent.Striped;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,63 +52,149 @@ import org.slf4j.LoggerFactory;
 public class HistoryRocksDB implements HistoryDB {
 
   private static final Logger LOG = LoggerFactory.getLogger(HistoryRocksDB.class);
-  private final RocksDBInstance rocksDBInstance;
+  private static final byte[] DISTANCE_INDEX_NODE_ID_KEY =
+      "contentDistanceIndexNodeId".getBytes(StandardCharsets.UTF_8);
+  public static final List<Segment> CONTENT_SEGMENTS =
+      List.of(
+          KeyValueSegment.BLOCK_HEADER,
+          KeyValueSegment.BLOCK_BODY,
+          KeyValueSegment.RECEIPT,
+          KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER);
+  private static final int DISTANCE_INDEX_REBUILD_BATCH_SIZE = 10_000;
+  // headers and most bodies fit, larger content is read again into a buffer of its size
+  private static final int INITIAL_READ_BUFFER_CAPACITY = 65_536;
+  private static final long MAX_RETAINED_READ_BUFFER_BYTES = 64L * 1024 * 1024;
+  // blocks resolved by one MultiGet, and read ahead of the consumer of a block range
+  private static final int BLOCK_RANGE_READ_AHEAD = 128;
+  private static final int CONTENT_LOCK_STRIPES = 256;
 
-  public HistoryRocksDB(RocksDBInstance rocksDBInstance) {
+  private final KeyValueStorage rocksDBInstance;
+  private final Bytes localNodeId;
+  private final ContentKeyFilter contentKeyFilter;
+  private final ContentStats contentStats;
+  // serializes the writes of a content key with reading whether it is stored
+  private final Striped<Lock> contentLocks = Striped.lock(CONTENT_LOCK_STRIPES);
+  private final DirectBufferPool readBufferPool =
+      new DirectBufferPool(MAX_RETAINED_READ_BUFFER_BYTES);
+  private volatile boolean distanceIndexReady;
+  private final CompletableFuture<Void> distanceIndexReadyFuture = new CompletableFuture<>();
+  // no live distance index entry is farther than the upper bound, guarded by the lock
+  private final Object farthestDistanceLock = new Object();
+  private UInt256 farthestDistanceUpperBound = UInt256.MAX_VALUE;
+  private long distanceIndexWrites;
+
+  public HistoryRocksDB(KeyValueStorage rocksDBInstance) {
+    this(rocksDBInstance, Bytes32.ZERO);
+  }
+
+  public HistoryRocksDB(KeyValueStorage rocksDBInstance, Bytes localNodeId) {
+    this(rocksDBInstance, localNodeId, new NoOpMetricsSystem());
+  }
+
+  HistoryRocksDB(KeyValueStorage rocksDBInstance, Bytes localNodeId, MetricsSystem metricsSystem) {
     this.rocksDBInstance = rocksDBInstance;
+    this.localNodeId = localNodeId;
+    this.contentKeyFilter = new ContentKeyFilter(metricsSystem, rocksDBInstance, CONTENT_SEGMENTS);
+    this.contentStats = new ContentStats(metricsSystem, rocksDBInstance, CONTENT_SEGMENTS);
+    if (!rocksDBInstance.isReadOnly()) {
+      this.contentStats.seedMissingCounters();
+    }
+    this.distanceIndexReady =
+        rocksDBInstance
+            .get(KeyValueSegment.METADATA, DISTANCE_INDEX_NODE_ID_KEY)
+            .map(nodeId -> Arrays.equals(nodeId, localNodeId.toArrayUnsafe()))
+            .orElse(false);
+    if (this.distanceIndexReady) {
+      this.distanceIndexReadyFuture.complete(null);
+    }
   }
 
   public HistoryRocksDB(
-      final Path dataPath, final StorageConfig storageConfig, MetricsSystem metricsSystem) {
-    this.rocksDBInstance =
-        RocksDBKeyValueStorageFactory.create(
-            dataPath,
-            storageConfig.getDatabasePath(),
-            storageConfig.getDatabaseFormat(),
-            metricsSystem);
+      final Path dataPath,
+      final StorageConfig storageConfig,
+      MetricsSystem metricsSystem,
+      final Bytes localNodeId) {
+    this(openStorage(dataPath, storageConfig, metricsSystem), localNodeId, metricsSystem);
+    if (rocksDBInstance.isReadOnly()) {
+      // the primary writes the index, and a key filter would miss the keys it writes
+      return;
+    }
+    if (!this.distanceIndexReady) {
+      // the index is keyed by the local node id, drop it before anything is written with the new id
+      KeyValueStorageTransaction tx = rocksDBInstance.startTransaction();
+      tx.remove(KeyValueSegment.METADATA, DISTANCE_INDEX_NODE_ID_KEY);
+      tx.commit();
+      rocksDBInstance.clear(KeyValueSegment.CONTENT_DISTANCE_INDEX);
+      Thread.ofVirtual().name("content-distance-index").start(this::rebuildDistanceIndex);
+    }
+    this.contentKeyFilter.buildInBackground(
+        CONTENT_SEGMENTS.stream().mapToLong(rocksDBInstance::getEstimatedKeyCount).sum());
+  }
+
+  private static KeyValueStorage openStorage(
+      final Path dataPath, final StorageConfig storageConfig, final MetricsSystem metricsSystem) {
+    if (storageConfig.getStorageEngine() == StorageEngine.MEMORY) {
+      return new InMemoryKeyValueStorage(Arrays.asList(KeyValueSegment.values()));
+    }
+    if (storageConfig.getSecondaryPath().isPresent()) {
+      return RocksDBKeyValueStorageFactory.createSecondary(
+          dataPath,
+          storageConfig.getDatabasePath(),
+          storageConfig.getSecondaryPath().get(),
+          storageConfig.getSecondaryCatchUpInterval(),
+          storageConfig.getRocksDBSizing(),
+          metricsSystem);
+    }
+    return RocksDBKeyValueStorageFactory.create(
+        dataPath,
+        storageConfig.getDatabasePath(),
+        storageConfig.getDatabaseFormat(),
+        storageConfig.getRocksDBSizing(),
+        metricsSystem);
+  }
+
+  /**
+   * Make the next node opening the database rebuild the content distance index, once content was
+   * added to it without going through this class, as when ingesting a segment export.
+   *
+   * @param rocksDBInstance the database, not in use by a running node
+   */
+  public static void invalidateDistanceIndex(KeyValueStorage rocksDBInstance) {
+    KeyValueStorageTransaction tx = rocksDBInstance.startTransaction();
+    tx.remove(KeyValueSegment.METADATA, DISTANCE_INDEX_NODE_ID_KEY);
+    tx.commit();
+  }
+
+  /**
+   * Make the next node opening the database seed the content stats again, once content was added to
+   * it without going through this class.
+   *
+   * @param rocksDBInstance the database, not in use by a running node
+   */
+  public static void invalidateContentStats(KeyValueStorage rocksDBInstance) {
+    ContentStats.invalidate(rocksDBInstance, CONTENT_SEGMENTS);
   }
 
   @Override
   public boolean saveContent(Bytes sszKey, Bytes sszValue) {
     try {
       ContentKey contentKey = ContentUtil.createContentKeyFromSszBytes(sszKey).get();
-      switch (contentKey.getContentType()) {
-        case ContentType.BLOCK_HEADER -> {
-          Bytes blockHashKeySSZ = contentKey.getBlockHashSsz();
-          Optional<ContentBlockHeader> blockHeader =
-              ContentUtil.createBlockHeaderfromSszBytes(sszValue);
-          if (blockHeader.isPresent() && ValidationUtil.isBlockHeaderValid(blockHeader.get())) {
-            Bytes blockNumberKeySSZ = ContentUtil.createBlockNumberInSSZ(blockHeader.get());
-            save(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumberKeySSZ, blockHashKeySSZ);
-            save(KeyValueSegment.BLOCK_HEADER, blockHashKeySSZ, sszValue); // TODO async
-          } else {
-            LOG.error("BlockHeader for blockHashKey: {} is invalid", blockHashKeySSZ);
-          }
-        }
-        case ContentType.BLOCK_BODY -> {
-          Bytes blockHashSSZ = contentKey.getBlockHashSsz();
-          save(KeyValueSegment.BLOCK_BODY, blockHashSSZ, sszValue);
-        }
-        case ContentType.RECEIPT -> {
-          Bytes blockHashSSZ = contentKey.getBlockHashSsz();
-          save(KeyValueSegment.RECEIPT, blockHashSSZ, sszValue);
-        }
-        case ContentType.BLOCK_HEADER_BY_NUMBER -> {
-          Bytes blockNumberKeySSZ = contentKey.getBlockNumberSsz();
-          Optional<ContentBlockHeader> blockHeader =
-              ContentUtil.createBlockHeaderfromSszBytes(sszValue);
-          if (blockHeader.isPresent() && ValidationUtil.isBlockHeaderValid(blockHeader.get())) {
-            Bytes blockHashKeySSZ = ContentUtil.createBlockHashKey(blockHeader.get());
-            save(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumberKeySSZ, blockHashKeySSZ);
-            save(KeyValueSegment.BLOCK_HEADER, blockHashKeySSZ, sszValue);
-          } else {
-            LOG.error("BlockHeader for blockNumberKey: {} is invalid", blockNumberKeySSZ);
-          }
-        }
-        default ->
-            throw new IllegalArgumentException(
-                String.format("CONTENT: Invalid payload type %s", contentKey.getContentType()));
+      // the content and its distance index entries are committed together
+      KeyValueStorageTransaction tx = rocksDBInstance.startWriteBatch();
+      final List<ContentPut> puts = new ArrayList<>();
+      final Optional<UInt256> farthestDistance;
+      try {
+        farthestDistance = putContent(tx, contentKey, sszValue, puts);
+      } catch (RuntimeException e) {
+        tx.rollback();
+        throw e;
+      }
+      if (farthestDistance.isEmpty()) {
+        tx.rollback();
+        return false;
       }
+      commit(tx, puts);
+      onDistanceIndexWrite(farthestDistance.get());
       return true;
     } catch (Exception e) {
       LOG.error(
@@ -95,6 +206,111 @@ public class HistoryRocksDB implements HistoryDB {
     }
   }
 
+  @Override
+  public List<Boolean> saveContents(List<Bytes> sszKeys, List<Bytes> sszValues) {
+    checkArgument(
+        sszKeys.size() == sszValues.size(),
+        "Expected as many values as keys, got %s keys and %s values",
+        sszKeys.size(),
+        sszValues.size());
+    final List<Boolean> saved = new ArrayList<>(sszKeys.size());
+    final KeyValueStorageTransaction tx = rocksDBInstance.startWriteBatch();
+    final List<ContentPut> puts = new ArrayList<>();
+    UInt256 farthestDistance = UInt256.ZERO;
+    for (int i = 0; i < sszKeys.size(); i++) {
+      // a content failing halfway leaves none of its writes in the batch
+      final List<ContentPut> itemPuts = new ArrayList<>();
+      tx.setSavePoint();
+      try {
+        ContentKey contentKey = ContentUtil.createContentKeyFromSszBytes(sszKeys.get(i)).get();
+        final Optional<UInt256> distance = putContent(tx, contentKey, sszValues.get(i), itemPuts);
+        if (distance.isPresent()) {
+          farthestDistance = max(farthestDistance, distance.get());
+          puts.addAll(itemPuts);
+        }
+        saved.add(distance.isPresent());
+      } catch (Exception e) {
+        tx.rollbackToSavePoint();
+        LOG.error("Content could not be saved. ContentKey: {}. Reason:", sszKeys.get(i), e);
+        saved.add(false);
+      }
+    }
+    try {
+      commit(tx, puts);
+      onDistanceIndexWrite(farthestDistance);
+      return saved;
+    } catch (Exception e) {
+      LOG.error("Batch of {} contents could not be saved. Reason:", sszKeys.size(), e);
+      return Collections.nCopies(sszKeys.size(), false);
+    }
+  }
+
+  /**
+   * Add the writes of a content to a batch.
+   *
+   * @return the farthest distance indexed, empty if the content is rejected and nothing was added
+   */
+  private Optional<UInt256> putContent(
+      KeyValueStorageTransaction tx, ContentKey contentKey, Bytes sszValue, List<ContentPut> puts) {
+    return switch (contentKey.getContentType()) {
+      case ContentType.BLOCK_HEADER -> {
+        Bytes blockHashKeySSZ = contentKey.getBlockHashSsz();
+        Optional<ContentBlockHeader> blockHeader =
+            ContentUtil.createBlockHeaderfromSszBytes(sszValue);
+        if (blockHeader.isPresent() && ValidationUtil.isBlockHeaderValid(blockHeader.get())) {
+          Bytes blockNumberKeySSZ = ContentUtil.createBlockNumberInSSZ(blockHeader.get());
+          yield Optional.of(putHeader(tx, blockNumberKeySSZ, blockHashKeySSZ, sszValue, puts));
+        }
+        LOG.error("BlockHeader for blockHashKey: {} is invalid", blockHashKeySSZ);
+        yield Optional.empty();
+      }
+      case ContentType.BLOCK_BODY ->
+          Optional.of(
+              putContent(
+                  tx, KeyValueSegment.BLOCK_BODY, contentKey.getBlockHashSsz(), sszValue, puts));
+      case ContentType.RECEIPT ->
+          Optional.of(
+              putContent(
+                  tx, KeyValueSegment.RECEIPT, contentKey.getBlockHashSsz(), sszValue, puts));
+      case ContentType.BLOCK_HEADER_BY_NUMBER -> {
+        Bytes blockNumberKeySSZ = contentKey.getBlockNumberSsz();
+        Optional<ContentBlockHeader> blockHeader =
+            ContentUtil.createBlockHeaderfromSszBytes(sszValue);
+        if (blockHeader.isPresent() && ValidationUtil.isBlockHeaderValid(blockHeader.get())) {
+          Bytes blockHashKeySSZ = ContentUtil.createBlockHashKey(blockHeader.get());
+          yield Optional.of(putHeader(tx, blockNumberKeySSZ, blockHashKeySSZ, sszValue, puts));
+        }
+        LOG.error("BlockHeader for blockNumberKey: {} is invalid", blockNumberKeySSZ);
+        yield Optional.empty();
+      }
+      case ContentType.EPHEMERAL_BLOCK_HEADER -> {
+        // expires with its column family: neither indexed by distance, counted nor filtered
+        tx.put(
+            KeyValueSegment.EPHEMERAL_BLOCK_HEADER,
+            contentKey.getBlockHashSsz().toArray(),
+            sszValue.toArray());
+        yield Optional.of(UInt256.ZERO);
+      }
+    };
+  }
+
+  // a header is stored by its hash, and its hash by its number
+  private UInt256 putHeader(
+      KeyValueStorageTransaction tx,
+      Bytes blockNumberKeySSZ,
+      Bytes blockHashKeySSZ,
+      Bytes sszValue,
+      List<ContentPut> puts) {
+    return max(
+        putContent(
+            tx,
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            blockNumberKeySSZ,
+            blockHashKeySSZ,
+            puts),
+        putContent(tx, KeyValueSegment.BLOCK_HEADER, blockHashKeySSZ, sszValue, puts));
+  }
+
   @Override
   public Optional<ContentBlockHeader> getBlockHeaderByBlockHash(Bytes blockHash) {
     Optional<byte[]> databaseBlockHeader =
@@ -123,46 +339,536 @@ public class HistoryRocksDB implements HistoryDB {
   public Optional<Bytes> getBlockHashByBlockNumber(Bytes blockNumberKey) {
     Optional<byte[]> databaseKey =
         this.rocksDBInstance.get(
-            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, blockNumberKey.toArray());
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            BlockNumberKeys.fromContentKey(blockNumberKey.toArrayUnsafe()));
     if (databaseKey.isEmpty()) return Optional.empty();
     return Optional.of(Bytes.wrap(databaseKey.get()));
   }
 
+  @Override
+  public Stream<StoredBlock> streamBlocks(
+      long fromBlockNumber, long toBlockNumber, boolean withBodies, boolean withReceipts) {
+    checkArgument(
+        Long.compareUnsigned(fromBlockNumber, toBlockNumber) <= 0,
+        "Block range %s..%s is empty",
+        Long.toUnsignedString(fromBlockNumber),
+        Long.toUnsignedString(toBlockNumber));
+    final Stream<Pair<byte[], byte[]>> blockHashes =
+        this.rocksDBInstance.streamFromKey(
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            BlockNumberKeys.toKey(fromBlockNumber),
+            BlockNumberKeys.toKey(toBlockNumber));
+    final BlockRangeIterator blocks =
+        new BlockRangeIterator(
+            this.rocksDBInstance,
+            blockHashes.iterator(),
+            BLOCK_RANGE_READ_AHEAD,
+            withBodies,
+            withReceipts);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                blocks, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.DISTINCT),
+            false)
+        .onClose(blockHashes::close);
+  }
+
   @Override
   public Optional<Bytes> get(ContentKey contentKey) {
     return switch (contentKey.getContentType()) {
       case ContentType.BLOCK_HEADER, ContentType.BLOCK_BODY, ContentType.RECEIPT -> {
-        Bytes blockHashSSZ = contentKey.getBlockHashSsz();
-        yield this.rocksDBInstance
-            .get(getSegmentFromContentType(contentKey.getContentType()), blockHashSSZ.toArray())
-            .map(Bytes::wrap)
-            .or(Optional::empty);
+        byte[] blockHashSSZ = contentKey.getBlockHashSsz().toArray();
+        yield getContent(getSegmentFromContentType(contentKey.getContentType()), blockHashSSZ)
+            .map(Bytes::wrap);
       }
       case ContentType.BLOCK_HEADER_BY_NUMBER -> {
-        Bytes blockNumberSSZ = contentKey.getBlockNumberSsz();
-        yield this.rocksDBInstance
-            .get(
-                getSegmentFromContentType(ContentType.BLOCK_HEADER_BY_NUMBER),
-                blockNumberSSZ.toArray())
+        byte[] blockNumberSSZ = contentKey.getBlockNumberSsz().toArray();
+        yield getContent(
+                getSegmentFromContentType(ContentType.BLOCK_HEADER_BY_NUMBER), blockNumberSSZ)
             .flatMap(
                 blockHash ->
                     this.rocksDBInstance.get(
                         getSegmentFromContentType(ContentType.BLOCK_HEADER), blockHash))
-            .map(Bytes::wrap)
-            .or(Optional::empty);
+            .map(Bytes::wrap);
       }
-      case ContentType.EPHEMERAL_BLOCK_HEADER -> {
-        // TODO unsupported
-        yield Optional.empty();
+      case ContentType.EPHEMERAL_BLOCK_HEADER ->
+          this.rocksDBInstance
+              .get(KeyValueSegment.EPHEMERAL_BLOCK_HEADER, contentKey.getBlockHashSsz().toArray())
+              .map(Bytes::wrap);
+    };
+  }
+
+  @Override
+  public Optional<ContentBuffer> getContentBuffer(ContentKey contentKey) {
+    return switch (contentKey.getContentType()) {
+      case ContentType.BLOCK_HEADER, ContentType.BLOCK_BODY, ContentType.RECEIPT -> {
+        byte[] blockHashSSZ = contentKey.getBlockHashSsz().toArray();
+        Segment segment = getSegmentFromContentType(contentKey.getContentType());
+        if (!contentKeyFilter.mightContain(blockHashSSZ)) {
+          yield Optional.empty();
+        }
+        Optional<ContentBuffer> content = readContentBuffer(segment, blockHashSSZ);
+        if (content.isEmpty()) {
+          contentKeyFilter.onFalsePositive();
+        }
+        yield content;
+      }
+      case ContentType.BLOCK_HEADER_BY_NUMBER -> {
+        byte[] blockNumberSSZ = contentKey.getBlockNumberSsz().toArray();
+        yield getContent(
+                getSegmentFromContentType(ContentType.BLOCK_HEADER_BY_NUMBER), blockNumberSSZ)
+            .flatMap(
+                blockHash ->
+                    readContentBuffer(
+                        getSegmentFromContentType(ContentType.BLOCK_HEADER), blockHash));
       }
+      case ContentType.EPHEMERAL_BLOCK_HEADER ->
+          readContentBuffer(
+              KeyValueSegment.EPHEMERAL_BLOCK_HEADER, contentKey.getBlockHashSsz().toArray());
     };
   }
 
+  // the content lands in a pooled direct buffer, behind room for its uTP size prefix
+  private Optional<ContentBuffer> readContentBuffer(Segment segment, byte[] key) {
+    int capacity = INITIAL_READ_BUFFER_CAPACITY;
+    while (true) {
+      final ByteBuffer buffer = readBufferPool.acquire(capacity);
+      buffer.position(ContentBuffer.SIZE_PREFIX_CAPACITY);
+      final int size = this.rocksDBInstance.get(segment, key, buffer);
+      if (size != KeyValueStorage.NOT_FOUND && size <= buffer.remaining()) {
+        return Optional.of(new ContentBuffer(buffer, () -> readBufferPool.release(buffer)));
+      }
+      readBufferPool.release(buffer);
+      if (size == KeyValueStorage.NOT_FOUND) {
+        return Optional.empty();
+      }
+      capacity = ContentBuffer.SIZE_PREFIX_CAPACITY + size;
+    }
+  }
+
+  // content the key filter rules out is not read
+  private Optional<byte[]> getContent(Segment segment, byte[] key) {
+    if (!contentKeyFilter.mightContain(key)) {
+      return Optional.empty();
+    }
+    final Optional<byte[]> content = this.rocksDBInstance.get(segment, storageKey(segment, key));
+    if (content.isEmpty()) {
+      contentKeyFilter.onFalsePositive();
+    }
+    return content;
+  }
+
+  @Override
+  public List<Boolean> containsAll(List<ContentKey> contentKeys) {
+    final List<Boolean> stored = new ArrayList<>(Collections.nCopies(contentKeys.size(), false));
+    final List<Integer> indexes = new ArrayList<>();
+    final List<Segment> segments = new ArrayList<>();
+    final List<byte[]> keys = new ArrayList<>();
+    final List<Integer> byNumberIndexes = new ArrayList<>();
+    final List<byte[]> blockNumberKeys = new ArrayList<>();
+    final List<Integer> ephemeralIndexes = new ArrayList<>();
+    final List<byte[]> ephemeralKeys = new ArrayList<>();
+    for (int i = 0; i < contentKeys.size(); i++) {
+      final ContentKey contentKey = contentKeys.get(i);
+      switch (contentKey.getContentType()) {
+        case ContentType.BLOCK_HEADER, ContentType.BLOCK_BODY, ContentType.RECEIPT -> {
+          final byte[] blockHashKey = contentKey.getBlockHashSsz().toArray();
+          if (contentKeyFilter.mightContain(blockHashKey)) {
+            indexes.add(i);
+            segments.add(getSegmentFromContentType(contentKey.getContentType()));
+            keys.add(blockHashKey);
+          }
+        }
+        case ContentType.BLOCK_HEADER_BY_NUMBER -> {
+          final byte[] blockNumberKey = contentKey.getBlockNumberSsz().toArray();
+          if (contentKeyFilter.mightContain(blockNumberKey)) {
+            byNumberIndexes.add(i);
+            blockNumberKeys.add(BlockNumberKeys.fromContentKey(blockNumberKey));
+          }
+        }
+        case ContentType.EPHEMERAL_BLOCK_HEADER -> {
+          ephemeralIndexes.add(i);
+          ephemeralKeys.add(contentKey.getBlockHashSsz().toArray());
+        }
+      }
+    }
+    // lookups past this one are headers resolved from their number and ephemeral headers
+    final int filteredLookups = keys.size();
+    if (!blockNumberKeys.isEmpty()) {
+      // a header offered by number is stored if the header its number points to is
+      final List<Optional<byte[]>> blockHashes =
+          this.rocksDBInstance.multiGet(
+              Collections.nCopies(
+                  blockNumberKeys.size(),
+                  getSegmentFromContentType(ContentType.BLOCK_HEADER_BY_NUMBER)),
+              blockNumberKeys);
+      for (int i = 0; i < blockHashes.size(); i++) {
+        final Optional<byte[]> blockHash = blockHashes.get(i);
+        if (blockHash.isPresent()) {
+          indexes.add(byNumberIndexes.get(i));
+          segments.add(getSegmentFromContentType(ContentType.BLOCK_HEADER));
+          keys.add(blockHash.get());
+        } else {
+          contentKeyFilter.onFalsePositive();
+        }
+      }
+    }
+    // ephemeral headers stay out of the key filter, which would outlive them
+    indexes.addAll(ephemeralIndexes);
+    segments.addAll(
+        Collections.nCopies(ephemeralKeys.size(), KeyValueSegment.EPHEMERAL_BLOCK_HEADER));
+    keys.addAll(ephemeralKeys);
+    if (keys.isEmpty()) {
+      return stored;
+    }
+    final List<Boolean> found = this.rocksDBInstance.multiContains(segments, keys);
+    for (int i = 0; i < found.size(); i++) {
+      stored.set(indexes.get(i), found.get(i));
+      if (!found.get(i) && i < filteredLookups) {
+        contentKeyFilter.onFalsePositive();
+      }
+    }
+    return stored;
+  }
+
   @Override
   public boolean isAvailable() {
     return !this.rocksDBInstance.isClosed();
   }
 
+  @Override
+  public List<Bytes> getFarthestContentKeys(int limit) {
+    if (!distanceIndexReady) {
+      return List.of();
+    }
+    final UInt256 upperBound;
+    final long writes;
+    synchronized (farthestDistanceLock) {
+      upperBound = this.farthestDistanceUpperBound;
+      writes = this.distanceIndexWrites;
+    }
+    try (Stream<Pair<byte[], byte[]>> entries =
+        this.rocksDBInstance.streamDescendingFromKey(
+            KeyValueSegment.CONTENT_DISTANCE_INDEX, upperBound.toArray())) {
+      final List<Pair<byte[], byte[]>> farthest = entries.limit(limit).toList();
+      // seeking from the farthest live entry skips the tombstones left above it by pruning,
+      // unless content was written meanwhile and could be farther than what was read
+      synchronized (farthestDistanceLock) {
+        if (writes == this.distanceIndexWrites) {
+          this.farthestDistanceUpperBound =
+              farthest.isEmpty()
+                  ? UInt256.ZERO
+                  : UInt256.fromBytes(Bytes.wrap(farthest.get(0).getKey()));
+        }
+      }
+      return farthest.stream().map(entry -> Bytes.wrap(entry.getValue())).toList();
+    }
+  }
+
+  @Override
+  public List<Bytes> getContentKeysInDistanceRange(
+      UInt256 fromDistance, UInt256 toDistance, int limit) {
+    if (!distanceIndexReady) {
+      return List.of();
+    }
+    try (Stream<Pair<byte[], byte[]>> entries =
+        this.rocksDBInstance.streamFromKey(
+            KeyValueSegment.CONTENT_DISTANCE_INDEX, fromDistance.toArray(), toDistance.toArray())) {
+      return entries.limit(limit).map(entry -> Bytes.wrap(entry.getValue())).toList();
+    }
+  }
+
+  @Override
+  public CompletableFuture<Void> whenDistanceIndexReady() {
+    return this.distanceIndexReadyFuture;
+  }
+
+  @Override
+  public long deleteContent(Bytes sszContentKey) {
+    final Segment segment = getSegmentFromContentType(ContentType.fromContentKey(sszContentKey));
+    final byte[] key = sszContentKey.toArray();
+    final byte[] storageKey = storageKey(segment, key);
+    final long size;
+    // a save of the same content counts it before or after the delete, not meanwhile
+    final Lock lock = contentLocks.get(sszContentKey);
+    lock.lock();
+    try {
+      size =
+          this.rocksDBInstance
+              .get(segment, storageKey)
+              .map(value -> (long) key.length + value.length)
+              .orElse(0L);
+      KeyValueStorageTransaction tx = rocksDBInstance.startTransaction();
+      tx.remove(segment, storageKey);
+      tx.remove(KeyValueSegment.CONTENT_DISTANCE_INDEX, distanceIndexKey(sszContentKey));
+      if (size > 0) {
+        final ContentStats.Delta statsDelta = new ContentStats.Delta();
+        statsDelta.onDelete(segment, size);
+        statsDelta.writeTo(tx);
+      }
+      tx.commit();
+      if (size > 0) {
+        contentKeyFilter.remove(key);
+      }
+    } finally {
+      lock.unlock();
+    }
+    LOG.debug("Deleted content {} from segment {}", sszContentKey, segment.getName());
+    return size;
+  }
+
+  @Override
+  public long getStorageSizeInBytes() {
+    return this.rocksDBInstance.getLiveFilesSize();
+  }
+
+  @Override
+  public List<ContentTypeStats> getContentTypeStats() {
+    return this.contentStats.getStats();
+  }
+
+  @Override
+  public ScrubResult scrubContent(
+      ContentType contentType, Bytes fromContentKey, Bytes toContentKey, int limit) {
+    checkArgument(
+        contentType == ContentType.BLOCK_HEADER
+            || contentType == ContentType.BLOCK_BODY
+            || contentType == ContentType.RECEIPT,
+        "Content of type %s is not validated",
+        contentType);
+    final Segment segment = getSegmentFromContentType(contentType);
+    final List<Pair<byte[], byte[]>> entries;
+    try (Stream<Pair<byte[], byte[]>> stored =
+        this.rocksDBInstance.streamFromKey(
+            segment, fromContentKey.toArrayUnsafe(), toContentKey.toArrayUnsafe())) {
+      entries = stored.limit(limit).toList();
+    }
+    // headers of the whole batch in a single lookup, not counted as point reads
+    final List<Optional<byte[]>> headers =
+        contentType == ContentType.BLOCK_HEADER
+            ? List.of()
+            : this.rocksDBInstance.multiGet(
+                Collections.nCopies(entries.size(), KeyValueSegment.BLOCK_HEADER),
+                entries.stream()
+                    .map(entry -> withSelector(entry.getKey(), ContentType.BLOCK_HEADER))
+                    .toList());
+    final List<Bytes> invalidContentKeys = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      final Bytes value = Bytes.wrap(entries.get(i).getValue());
+      final boolean valid =
+          switch (contentType) {
+            case ContentType.BLOCK_HEADER ->
+                ContentUtil.createBlockHeaderfromSszBytes(value)
+                    .map(ValidationUtil::isBlockHeaderValid)
+                    .orElse(false);
+            case ContentType.BLOCK_BODY ->
+                validHeader(headers.get(i))
+                    .map(header -> ValidationUtil.isBlockBodyValid(header, value))
+                    .orElse(true);
+            default ->
+                validHeader(headers.get(i))
+                    .map(header -> ValidationUtil.isReceiptsValid(header, value))
+                    .orElse(true);
+          };
+      if (!valid) {
+        final Bytes contentKey = Bytes.wrap(entries.get(i).getKey());
+        LOG.warn("Stored {} {} is no longer valid, deleting it", contentType, contentKey);
+        deleteContent(contentKey);
+        invalidContentKeys.add(contentKey);
+      }
+    }
+    // keys are fixed size, so the key followed by a zero byte is the next possible key
+    final Optional<Bytes> nextContentKey =
+        entries.size() < limit
+            ? Optional.empty()
+            : Optional.of(Bytes.concatenate(Bytes.wrap(entries.getLast().getKey()), Bytes.of(0)));
+    return new ScrubResult(entries.size(), invalidContentKeys, nextContentKey);
+  }
+
+  private static Optional<ContentBlockHeader> validHeader(Optional<byte[]> header) {
+    return header
+        .flatMap(sszHeader -> ContentUtil.createBlockHeaderfromSszBytes(Bytes.wrap(sszHeader)))
+        .filter(ValidationUtil::isBlockHeaderValid);
+  }
+
+  @Override
+  public ReadLatencySample sampleReadLatency() {
+    return this.rocksDBInstance.sampleReadLatency();
+  }
+
+  @Override
+  public Optional<Bytes> getMetadata(String name) {
+    return this.rocksDBInstance
+        .get(KeyValueSegment.METADATA, name.getBytes(StandardCharsets.UTF_8))
+        .map(Bytes::wrap);
+  }
+
+  @Override
+  public void saveMetadata(String name, Bytes value) {
+    save(KeyValueSegment.METADATA, Bytes.wrap(name.getBytes(StandardCharsets.UTF_8)), value);
+  }
+
+  @Override
+  public Map<Bytes, Bytes> getRoutingTableCheckpoint() {
+    final Map<Bytes, Bytes> entries = new LinkedHashMap<>();
+    try (Stream<Pair<byte[], byte[]>> stored =
+        this.rocksDBInstance.stream(KeyValueSegment.ROUTING_TABLE)) {
+      stored.forEach(
+          entry -> entries.put(Bytes.wrap(entry.getKey()), Bytes.wrap(entry.getValue())));
+    }
+    return entries;
+  }
+
+  @Override
+  public void saveRoutingTableCheckpoint(Map<Bytes, Bytes> entries) {
+    KeyValueStorageTransaction tx = rocksDBInstance.startWriteBatch();
+    // nodes of the previous checkpoint no longer in the table
+    try (Stream<byte[]> savedNodeIds = rocksDBInstance.streamKeys(KeyValueSegment.ROUTING_TABLE)) {
+      savedNodeIds
+          .filter(nodeId -> !entries.containsKey(Bytes.wrap(nodeId)))
+          .forEach(nodeId -> tx.remove(KeyValueSegment.ROUTING_TABLE, nodeId));
+    }
+    entries.forEach(
+        (nodeId, entry) ->
+            tx.put(KeyValueSegment.ROUTING_TABLE, nodeId.toArray(), entry.toArray()));
+    tx.commit();
+  }
+
+  // size of the key and value of the content an overwrite replaces, -1 if there is none
+  private long storedContentSize(Segment segment, byte[] key) {
+    if (!contentKeyFilter.mightContainUncounted(key)) {
+      return -1;
+    }
+    final ByteBuffer buffer = readBufferPool.acquire(0);
+    try {
+      final int size = this.rocksDBInstance.get(segment, storageKey(segment, key), buffer);
+      return size == KeyValueStorage.NOT_FOUND ? -1 : (long) key.length + size;
+    } finally {
+      readBufferPool.release(buffer);
+    }
+  }
+
+  private void rebuildDistanceIndex() {
+    LOG.info("Rebuilding content distance index for node id {}", localNodeId);
+    try {
+      long indexed = 0;
+      for (Segment segment : CONTENT_SEGMENTS) {
+        try (Stream<byte[]> keys = this.rocksDBInstance.streamKeys(segment)) {
+          KeyValueStorageTransaction tx = rocksDBInstance.startTransaction();
+          int pending = 0;
+          for (byte[] storageKey : (Iterable<byte[]>) keys::iterator) {
+            final byte[] key = contentKey(segment, storageKey);
+            tx.put(KeyValueSegment.CONTENT_DISTANCE_INDEX, distanceIndexKey(Bytes.wrap(key)), key);
+            indexed++;
+            if (++pending == DISTANCE_INDEX_REBUILD_BATCH_SIZE) {
+              tx.commit();
+              tx = rocksDBInstance.startTransaction();
+              pending = 0;
+            }
+          }
+          tx.commit();
+        }
+      }
+      save(KeyValueSegment.METADATA, Bytes.wrap(DISTANCE_INDEX_NODE_ID_KEY), localNodeId);
+      this.distanceIndexReady = true;
+      this.distanceIndexReadyFuture.complete(null);
+      LOG.info("Content distance index rebuilt, {} entries", indexed);
+    } catch (Exception e) {
+      LOG.error("Content distance index could not be rebuilt", e);
+    }
+  }
+
+  private UInt256 putContent(
+      KeyValueStorageTransaction tx,
+      Segment segment,
+      Bytes key,
+      Bytes content,
+      List<ContentPut> puts) {
+    checkArgument(
+        !key.isEmpty(), "Key should have more than 1 byte when persisting {}", segment.getName());
+    final UInt256 distance = DistanceUtil.contentDistance(localNodeId, key);
+    final byte[] keyBytes = key.toArray();
+    tx.put(segment, storageKey(segment, keyBytes), content.toArray());
+    tx.put(KeyValueSegment.CONTENT_DISTANCE_INDEX, distance.toArray(), keyBytes);
+    puts.add(new ContentPut(segment, key, (long) key.size() + content.size()));
+    LOG.debug(
+        "Saving on segment {}, Key: {} and Value: {} ",
+        segment.getName(),
+        key.toHexString(),
+        content.toHexString());
+    return distance;
+  }
+
+  /**
+   * Commit a batch with the change of the content stats it makes. Whether each content is new or
+   * replaces a stored one is read under the lock of its key, held until the batch is committed and
+   * its new keys added to the key filter, so that concurrent saves of the same new content count it
+   * once.
+   */
+  private void commit(KeyValueStorageTransaction tx, List<ContentPut> puts) {
+    final Iterable<Lock> locks = contentLocks.bulkGet(puts.stream().map(ContentPut::key).toList());
+    locks.forEach(Lock::lock);
+    try {
+      final ContentStats.Delta statsDelta = new ContentStats.Delta();
+      final List<byte[]> newKeys = new ArrayList<>();
+      // content written twice in the batch replaces its first write
+      final Map<Bytes, Long> batchSizes = new HashMap<>();
+      for (ContentPut put : puts) {
+        final byte[] key = put.key().toArray();
+        final Long batchSize = batchSizes.put(put.key(), put.size());
+        final long replacedSize =
+            batchSize != null ? batchSize : storedContentSize(put.segment(), key);
+        statsDelta.onPut(put.segment(), replacedSize, put.size());
+        // the filter counts each fingerprint added and a delete removes it once
+        if (replacedSize < 0) {
+          newKeys.add(key);
+        }
+      }
+      statsDelta.writeTo(tx);
+      tx.commit();
+      newKeys.forEach(contentKeyFilter::add);
+    } finally {
+      locks.forEach(Lock::unlock);
+    }
+  }
+
+  // the content keys of different segments differ by their selector, and lock apart
+  private record ContentPut(Segment segment, Bytes key, long size) {}
+
+  private void onDistanceIndexWrite(UInt256 distance) {
+    synchronized (farthestDistanceLock) {
+      this.farthestDistanceUpperBound = max(this.farthestDistanceUpperBound, distance);
+      this.distanceIndexWrites++;
+    }
+  }
+
+  private static UInt256 max(UInt256 a, UInt256 b) {
+    return a.greaterOrEqualThan(b) ? a : b;
+  }
+
+  private byte[] distanceIndexKey(Bytes contentKey) {
+    return DistanceUtil.contentDistance(localNodeId, contentKey).toArray();
+  }
+
+  // content is keyed by its content key, but for block numbers keyed in block number order
+  private static byte[] storageKey(Segment segment, byte[] contentKey) {
+    return segment == KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER
+        ? BlockNumberKeys.fromContentKey(contentKey)
+        : contentKey;
+  }
+
+  static byte[] contentKey(Segment segment, byte[] storageKey) {
+    return segment == KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER
+        ? BlockNumberKeys.toContentKey(storageKey)
+        : storageKey;
+  }
+
+  // the content keys of a block differ only by their selector
+  static byte[] withSelector(byte[] contentKey, ContentType contentType) {
+    final byte[] key = contentKey.clone();
+    key[0] = contentType.getByteValue();
+    return key;
+  }
+
   private void save(Segment segment, Bytes key, Bytes content) {
     checkArgument(
         !key.isEmpty(), "Key should have more than 1 byte when persisting {}", segment.getName());
@@ -0,0 +1,16 @@
+package samba.storage;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * Outcome of validating again a batch of stored content.
+ *
+ * @param scrubbedCount the number of content items read
+ * @param invalidContentKeys the content keys of the items no longer valid, which were deleted
+ * @param nextContentKey the content key to resume from, empty once the range is scrubbed
+ */
+public record ScrubResult(
+    int scrubbedCount, List<Bytes> invalidContentKeys, Optional<Bytes> nextContentKey) {}
@@ -0,0 +1,22 @@
+package samba.storage;
+
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+
+/**
+ * A block read from a range of block numbers, its parts as they are stored: SSZ content values to
+ * decode with {@link samba.domain.content.ContentUtil} when needed.
+ *
+ * @param blockNumber the block number
+ * @param blockHeaderKey the content key of the header, holding the block hash
+ * @param header the header with its proof
+ * @param body the body, empty if it is not stored or was not asked for
+ * @param receipts the receipts, empty if they are not stored or were not asked for
+ */
+public record StoredBlock(
+    long blockNumber,
+    Bytes blockHeaderKey,
+    Bytes header,
+    Optional<Bytes> body,
+    Optional<Bytes> receipts) {}
@@ -0,0 +1,438 @@
+package samba.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import samba.domain.content.ContentBlockBody;
+import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentReceipts;
+import samba.domain.content.ContentType;
+import samba.domain.content.ContentUtil;
+import samba.metrics.SambaMetricCategory;
+import samba.rocksdb.ReadLatencySample;
+import samba.validation.util.ValidationUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queues the content to save in front of a {@link HistoryDB}, for a single writer thread to save in
+ * batches. Saving no longer runs on the thread receiving the content, a uTP transfer or a JSON-RPC
+ * request, so a database slowed down by a compaction does not slow down the network with it.
+ *
+ * <p>The queue is bounded: content that does not fit is not saved, and offers are declined once it
+ * is three quarters full, leaving room for the transfers already accepted. Content waiting in the
+ * queue is read as if it were saved, a header by its hash and by its number whichever key it was
+ * queued under, so block headers are validated before they are queued, as bodies and receipts are
+ * validated against them. A batch the database fails to save is retried a few times before its
+ * content is dropped. Content still queued when the process dies is lost, as if it had not been
+ * received.
+ */
+public class WriteBehindHistoryDB implements HistoryDB {
+
+  private static final Logger LOG = LoggerFactory.getLogger(WriteBehindHistoryDB.class);
+
+  static final int MAX_BATCH_SIZE = 256;
+  private static final long POLL_INTERVAL_MILLIS = 100;
+  private static final long CLOSE_TIMEOUT_MILLIS = 60_000;
+  static final int MAX_WRITE_ATTEMPTS = 3;
+
+  private final HistoryDB delegate;
+  private final int capacity;
+  private final BlockingQueue<PendingWrite> queue;
+  // a slot is taken before the content is visible, so a full queue never hides a queued value
+  private final Semaphore queueSlots;
+  // content queued by content key, the latest value queued for each key
+  private final Map<Bytes, Bytes> pending = new ConcurrentHashMap<>();
+  // a content deleted while its batch is written is deleted once the batch is saved
+  private final Object writeLock = new Object();
+  // content is queued under the read lock, so none is queued once closing drained the queue
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private final Counter rejectedCounter;
+  private final Counter lostCounter;
+  private final OperationTimer batchWriteTimer;
+  private final Thread writer;
+
+  private volatile boolean closed;
+
+  public WriteBehindHistoryDB(
+      final HistoryDB delegate, final MetricsSystem metricsSystem, final int capacity) {
+    checkArgument(capacity > 0, "Write queue size must be greater than 0");
+    this.delegate = delegate;
+    this.capacity = capacity;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.queueSlots = new Semaphore(capacity);
+    this.rejectedCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "write_queue_rejected_total",
+            "Total number of content items not saved because the write queue was full");
+    this.lostCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "write_queue_lost_total",
+            "Total number of queued content items dropped after the database failed to save them");
+    this.batchWriteTimer =
+        metricsSystem.createTimer(
+            SambaMetricCategory.STORAGE,
+            "write_batch_latency_seconds",
+            "Time to save a batch of queued content items to the database");
+    metricsSystem.createIntegerGauge(
+        SambaMetricCategory.STORAGE,
+        "write_queue_depth",
+        "Number of content items waiting in the write queue",
+        queue::size);
+    this.writer = Thread.ofPlatform().name("storage-writer").daemon().start(this::writeQueued);
+  }
+
+  @Override
+  public boolean saveContent(final Bytes sszContentKey, final Bytes sszValue) {
+    closeLock.readLock().lock();
+    try {
+      if (!closed) {
+        return queue(sszContentKey, sszValue);
+      }
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    return delegate.saveContent(sszContentKey, sszValue);
+  }
+
+  private boolean queue(final Bytes sszContentKey, final Bytes sszValue) {
+    Optional<Bytes> aliasKey = Optional.empty();
+    if (isBlockHeader(sszContentKey)) {
+      final Optional<ContentBlockHeader> header = validBlockHeader(sszValue);
+      if (header.isEmpty()) {
+        LOG.debug("BlockHeader for contentKey: {} is invalid, not queued", sszContentKey);
+        return false;
+      }
+      aliasKey = Optional.of(headerAliasKey(sszContentKey, header.get()));
+    }
+    if (!queueSlots.tryAcquire()) {
+      rejectedCounter.inc();
+      LOG.debug("Write queue full, content {} not saved", sszContentKey);
+      return false;
+    }
+    // visible to reads before the writer can take it
+    pending.put(sszContentKey, sszValue);
+    aliasKey.ifPresent(key -> pending.put(key, sszValue));
+    queue.add(new PendingWrite(sszContentKey, sszValue, aliasKey));
+    return true;
+  }
+
+  @Override
+  public List<Boolean> saveContents(final List<Bytes> sszContentKeys, final List<Bytes> sszValues) {
+    checkArgument(
+        sszContentKeys.size() == sszValues.size(),
+        "Expected as many values as keys, got %s keys and %s values",
+        sszContentKeys.size(),
+        sszValues.size());
+    final List<Boolean> saved = new ArrayList<>(sszContentKeys.size());
+    for (int i = 0; i < sszContentKeys.size(); i++) {
+      saved.add(saveContent(sszContentKeys.get(i), sszValues.get(i)));
+    }
+    return saved;
+  }
+
+  @Override
+  public boolean isWriteBacklogged() {
+    return queue.size() >= capacity - capacity / 4 || delegate.isWriteBacklogged();
+  }
+
+  @Override
+  public Optional<Bytes> get(final ContentKey contentKey) {
+    final Bytes queued = pending.get(contentKey.getSszBytes());
+    return queued != null ? Optional.of(queued) : delegate.get(contentKey);
+  }
+
+  @Override
+  public Optional<ContentBuffer> getContentBuffer(final ContentKey contentKey) {
+    final Bytes queued = pending.get(contentKey.getSszBytes());
+    return queued != null
+        ? Optional.of(ContentBuffer.wrap(queued))
+        : delegate.getContentBuffer(contentKey);
+  }
+
+  @Override
+  public List<Boolean> containsAll(final List<ContentKey> contentKeys) {
+    final List<Boolean> stored = new ArrayList<>(contentKeys.size());
+    final List<Integer> unqueuedIndexes = new ArrayList<>();
+    final List<ContentKey> unqueuedKeys = new ArrayList<>();
+    for (int i = 0; i < contentKeys.size(); i++) {
+      final boolean queued = pending.containsKey(contentKeys.get(i).getSszBytes());
+      stored.add(queued);
+      if (!queued) {
+        unqueuedIndexes.add(i);
+        unqueuedKeys.add(contentKeys.get(i));
+      }
+    }
+    if (!unqueuedKeys.isEmpty()) {
+      final List<Boolean> saved = delegate.containsAll(unqueuedKeys);
+      for (int i = 0; i < saved.size(); i++) {
+        stored.set(unqueuedIndexes.get(i), saved.get(i));
+      }
+    }
+    return stored;
+  }
+
+  @Override
+  public long deleteContent(final Bytes sszContentKey) {
+    final Bytes queued = pending.remove(sszContentKey);
+    if (queued != null && isBlockHeader(sszContentKey)) {
+      validBlockHeader(queued)
+          .ifPresent(header -> pending.remove(headerAliasKey(sszContentKey, header), queued));
+    }
+    synchronized (writeLock) {
+      return delegate.deleteContent(sszContentKey);
+    }
+  }
+
+  @Override
+  public Optional<ContentBlockHeader> getBlockHeaderByBlockHash(final Bytes blockHash) {
+    final Bytes queued = pending.get(blockHash);
+    return queued != null
+        ? ContentUtil.createBlockHeaderfromSszBytes(queued)
+        : delegate.getBlockHeaderByBlockHash(blockHash);
+  }
+
+  @Override
+  public Optional<Bytes> getBlockHashByBlockNumber(final Bytes blockNumber) {
+    final Bytes queued = pending.get(blockNumber);
+    return queued != null
+        ? ContentUtil.createBlockHeaderfromSszBytes(queued).map(ContentUtil::createBlockHashKey)
+        : delegate.getBlockHashByBlockNumber(blockNumber);
+  }
+
+  @Override
+  public Stream<StoredBlock> streamBlocks(
+      final long fromBlockNumber,
+      final long toBlockNumber,
+      final boolean withBodies,
+      final boolean withReceipts) {
+    return delegate.streamBlocks(fromBlockNumber, toBlockNumber, withBodies, withReceipts);
+  }
+
+  @Override
+  public Optional<ContentBlockBody> getBlockBodyByBlockHash(final Bytes blockHash) {
+    final Bytes queued = pending.get(blockHash);
+    return queued != null
+        ? ContentUtil.createBlockBodyFromSszBytes(queued)
+        : delegate.getBlockBodyByBlockHash(blockHash);
+  }
+
+  @Override
+  public Optional<ContentReceipts> getReceiptsByBlockHash(final Bytes blockHash) {
+    final Bytes queued = pending.get(blockHash);
+    return queued != null
+        ? ContentUtil.createReceiptsFromSszBytes(queued)
+        : delegate.getReceiptsByBlockHash(blockHash);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return delegate.isAvailable();
+  }
+
+  @Override
+  public List<Bytes> getFarthestContentKeys(final int limit) {
+    return delegate.getFarthestContentKeys(limit);
+  }
+
+  @Override
+  public List<Bytes> getContentKeysInDistanceRange(
+      final UInt256 fromDistance, final UInt256 toDistance, final int limit) {
+    return delegate.getContentKeysInDistanceRange(fromDistance, toDistance, limit);
+  }
+
+  @Override
+  public CompletableFuture<Void> whenDistanceIndexReady() {
+    return delegate.whenDistanceIndexReady();
+  }
+
+  @Override
+  public long getStorageSizeInBytes() {
+    return delegate.getStorageSizeInBytes();
+  }
+
+  @Override
+  public List<ContentTypeStats> getContentTypeStats() {
+    return delegate.getContentTypeStats();
+  }
+
+  @Override
+  public ScrubResult scrubContent(
+      final ContentType contentType,
+      final Bytes fromContentKey,
+      final Bytes toContentKey,
+      final int limit) {
+    return delegate.scrubContent(contentType, fromContentKey, toContentKey, limit);
+  }
+
+  @Override
+  public ReadLatencySample sampleReadLatency() {
+    return delegate.sampleReadLatency();
+  }
+
+  @Override
+  public Optional<Bytes> getMetadata(final String name) {
+    return delegate.getMetadata(name);
+  }
+
+  @Override
+  public void saveMetadata(final String name, final Bytes value) {
+    delegate.saveMetadata(name, value);
+  }
+
+  @Override
+  public Map<Bytes, Bytes> getRoutingTableCheckpoint() {
+    return delegate.getRoutingTableCheckpoint();
+  }
+
+  @Override
+  public void saveRoutingTableCheckpoint(final Map<Bytes, Bytes> entries) {
+    delegate.saveRoutingTableCheckpoint(entries);
+  }
+
+  int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Save the content still queued and stop the writer. Content saved afterwards is saved at once,
+   * on the calling thread.
+   */
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      writer.join(CLOSE_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (writer.isAlive()) {
+      LOG.warn("Write queue not drained on close, {} content items not saved", queue.size());
+    }
+  }
+
+  private void writeQueued() {
+    final List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    try {
+      while (!closed || !queue.isEmpty()) {
+        final PendingWrite first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+        queueSlots.release(batch.size());
+        writeWithRetries(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeWithRetries(final List<PendingWrite> batch) throws InterruptedException {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        write(batch);
+        break;
+      } catch (RuntimeException e) {
+        if (attempt == MAX_WRITE_ATTEMPTS) {
+          lostCounter.inc(batch.size());
+          LOG.error("Batch of {} queued content items could not be saved", batch.size(), e);
+          break;
+        }
+        LOG.warn("Batch of {} queued content items could not be saved, retrying", batch.size(), e);
+      }
+      // the content stays readable while the database recovers
+      Thread.sleep(POLL_INTERVAL_MILLIS * attempt);
+    }
+    batch.forEach(this::unqueue);
+  }
+
+  private void write(final List<PendingWrite> batch) {
+    synchronized (writeLock) {
+      final List<Bytes> keys = new ArrayList<>(batch.size());
+      final List<Bytes> values = new ArrayList<>(batch.size());
+      final Set<Bytes> batched = new HashSet<>();
+      for (PendingWrite write : batch) {
+        // deleted since it was queued, queued again with a value saved by a later batch, or the
+        // same value queued twice in this batch
+        if (pending.get(write.contentKey()) == write.value() && batched.add(write.contentKey())) {
+          keys.add(write.contentKey());
+          values.add(write.value());
+        }
+      }
+      try (OperationTimer.TimingContext ignored = batchWriteTimer.startTimer()) {
+        if (!keys.isEmpty()) {
+          delegate.saveContents(keys, values);
+        }
+      }
+    }
+  }
+
+  // the same content queued again since, in another buffer, stays queued
+  private void unqueue(final PendingWrite write) {
+    pending.computeIfPresent(
+        write.contentKey(), (key, value) -> value == write.value() ? null : value);
+    write
+        .aliasKey()
+        .ifPresent(
+            aliasKey ->
+                pending.computeIfPresent(
+                    aliasKey, (key, value) -> value == write.value() ? null : value));
+  }
+
+  private static boolean isBlockHeader(final Bytes sszContentKey) {
+    final ContentType contentType = ContentType.fromContentKey(sszContentKey);
+    return contentType == ContentType.BLOCK_HEADER
+        || contentType == ContentType.BLOCK_HEADER_BY_NUMBER;
+  }
+
+  // the database validates headers too, but only once the writer gets to them
+  private static Optional<ContentBlockHeader> validBlockHeader(final Bytes sszValue) {
+    try {
+      final ContentBlockHeader header = new ContentBlockHeader(sszValue);
+      return ValidationUtil.isBlockHeaderValid(header) ? Optional.of(header) : Optional.empty();
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  // the key a header is read by besides the one it was queued under, its number or its hash
+  private static Bytes headerAliasKey(final Bytes sszContentKey, final ContentBlockHeader header) {
+    return ContentType.fromContentKey(sszContentKey) == ContentType.BLOCK_HEADER
+        ? ContentUtil.createBlockNumberInSSZ(header)
+        : ContentUtil.createBlockHashKey(header);
+  }
+
+  // a header is also read by its alias key while it is queued
+  private record PendingWrite(Bytes contentKey, Bytes value, Optional<Bytes> aliasKey) {}
+}
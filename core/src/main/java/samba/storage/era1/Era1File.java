@@ -0,0 +1,193 @@
+package samba.storage.era1;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.xerial.snappy.SnappyFramedInputStream;
+
+/**
+ * An era1 archive: an e2store file holding the headers, bodies, receipts and total difficulties of
+ * up to one epoch of pre-merge blocks. The file is memory-mapped, entries are sliced from the
+ * mapping and only decompressed when read.
+ *
+ * <p>Each e2store entry is a 2 byte type, a 4 byte little-endian length and 2 reserved bytes,
+ * followed by the data. Headers, bodies and receipts are RLP compressed with the snappy framing
+ * format.
+ */
+public class Era1File {
+
+  static final int ENTRY_HEADER_SIZE = 8;
+  static final int VERSION = 0x3265;
+  static final int COMPRESSED_HEADER = 0x03;
+  static final int COMPRESSED_BODY = 0x04;
+  static final int COMPRESSED_RECEIPTS = 0x05;
+  static final int TOTAL_DIFFICULTY = 0x06;
+  static final int ACCUMULATOR = 0x07;
+  static final int BLOCK_INDEX = 0x3266;
+
+  private final Path path;
+  private final long startingBlockNumber;
+  private final List<ByteBuffer> headers;
+  private final List<ByteBuffer> bodies;
+  private final List<ByteBuffer> receipts;
+  private final List<ByteBuffer> totalDifficulties;
+
+  private Era1File(
+      final Path path,
+      final long startingBlockNumber,
+      final List<ByteBuffer> headers,
+      final List<ByteBuffer> bodies,
+      final List<ByteBuffer> receipts,
+      final List<ByteBuffer> totalDifficulties) {
+    this.path = path;
+    this.startingBlockNumber = startingBlockNumber;
+    this.headers = headers;
+    this.bodies = bodies;
+    this.receipts = receipts;
+    this.totalDifficulties = totalDifficulties;
+  }
+
+  /**
+   * Map an era1 file and index its entries.
+   *
+   * @param path the era1 file
+   * @return the era1 file
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the file is not a valid era1 file
+   */
+  public static Era1File open(final Path path) throws IOException {
+    final ByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      checkArgument(channel.size() <= Integer.MAX_VALUE, "Era1 file %s is too large", path);
+      // the mapping stays valid once the channel is closed
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+    final List<ByteBuffer> headers = new ArrayList<>();
+    final List<ByteBuffer> bodies = new ArrayList<>();
+    final List<ByteBuffer> receipts = new ArrayList<>();
+    final List<ByteBuffer> totalDifficulties = new ArrayList<>();
+    ByteBuffer blockIndex = null;
+    boolean first = true;
+    while (mapped.hasRemaining()) {
+      checkArgument(
+          mapped.remaining() >= ENTRY_HEADER_SIZE, "Truncated entry in era1 file %s", path);
+      final int type = Short.toUnsignedInt(mapped.getShort());
+      final long length = Integer.toUnsignedLong(mapped.getInt());
+      mapped.getShort();
+      checkArgument(length <= mapped.remaining(), "Truncated entry in era1 file %s", path);
+      checkArgument(!first || type == VERSION, "Era1 file %s does not start with a version", path);
+      first = false;
+      final ByteBuffer data =
+          mapped.slice(mapped.position(), (int) length).order(ByteOrder.LITTLE_ENDIAN);
+      mapped.position(mapped.position() + (int) length);
+      switch (type) {
+        case COMPRESSED_HEADER -> headers.add(data);
+        case COMPRESSED_BODY -> bodies.add(data);
+        case COMPRESSED_RECEIPTS -> receipts.add(data);
+        case TOTAL_DIFFICULTY -> totalDifficulties.add(data);
+        case BLOCK_INDEX -> blockIndex = data;
+        default -> {
+          // version, accumulator root and unknown entries are not needed
+        }
+      }
+    }
+    checkArgument(blockIndex != null, "Era1 file %s has no block index", path);
+    final long blockCount = blockIndex.getLong(blockIndex.limit() - Long.BYTES);
+    checkArgument(
+        blockCount == headers.size()
+            && blockCount == bodies.size()
+            && blockCount == receipts.size()
+            && blockCount == totalDifficulties.size(),
+        "Era1 file %s indexes %s blocks but holds %s headers, %s bodies, %s receipts and %s total difficulties",
+        path,
+        blockCount,
+        headers.size(),
+        bodies.size(),
+        receipts.size(),
+        totalDifficulties.size());
+    return new Era1File(path, blockIndex.getLong(0), headers, bodies, receipts, totalDifficulties);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public long getStartingBlockNumber() {
+    return startingBlockNumber;
+  }
+
+  public int getBlockCount() {
+    return headers.size();
+  }
+
+  public Bytes getHeaderRlp(final int index) {
+    return decompress(headers.get(index));
+  }
+
+  public Bytes getBodyRlp(final int index) {
+    return decompress(bodies.get(index));
+  }
+
+  public Bytes getReceiptsRlp(final int index) {
+    return decompress(receipts.get(index));
+  }
+
+  public UInt256 getTotalDifficulty(final int index) {
+    final ByteBuffer data = totalDifficulties.get(index).duplicate();
+    final byte[] littleEndian = new byte[data.remaining()];
+    data.get(littleEndian);
+    return UInt256.fromBytes(Bytes.wrap(littleEndian).reverse());
+  }
+
+  private static Bytes decompress(final ByteBuffer compressed) {
+    try (InputStream in =
+        new SnappyFramedInputStream(new ByteBufferInputStream(compressed.duplicate()))) {
+      return Bytes.wrap(in.readAllBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(final ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+    }
+
+    @Override
+    public int read(final byte[] bytes, final int offset, final int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      final int read = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, read);
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
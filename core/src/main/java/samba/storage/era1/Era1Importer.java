@@ -0,0 +1,340 @@
+package samba.storage.era1;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import samba.domain.content.ContentBlockBody;
+import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentReceipts;
+import samba.domain.content.ContentType;
+import samba.metrics.SambaMetricCategory;
+import samba.network.history.HistoryConstants;
+import samba.schema.content.ssz.blockbody.BlockBodyPreShanghaiContainer;
+import samba.schema.content.ssz.blockheader.SszBlockProofHistoricalHashesAccumulatorVector;
+import samba.storage.HistoryDB;
+import samba.validation.util.ValidationUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.ethereum.core.Transaction;
+import org.hyperledger.besu.ethereum.core.TransactionReceipt;
+import org.hyperledger.besu.ethereum.mainnet.MainnetBlockHeaderFunctions;
+import org.hyperledger.besu.ethereum.rlp.BytesValueRLPInput;
+import org.hyperledger.besu.ethereum.rlp.RLPInput;
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.hyperledger.besu.plugin.services.metrics.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Imports the headers, bodies and receipts of era1 archives into a {@link HistoryDB}.
+ *
+ * <p>Blocks are decoded, given their accumulator proof and validated in parallel, one batch ahead
+ * of the batch being written. Each batch is a single write. Once every batch of a file is written
+ * the file name is appended to a progress file, so that an interrupted import resumes with the
+ * first file not completed. Writes are idempotent, a file imported in part is imported again.
+ */
+public class Era1Importer implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Era1Importer.class);
+  private static final String ERA1_EXTENSION = ".era1";
+  static final int BLOCKS_PER_BATCH = 256;
+
+  private final HistoryDB historyDB;
+  private final Path progressFile;
+  private final ForkJoinPool pool;
+  private final Counter blockCounter;
+  private final Counter invalidBlockCounter;
+  private final Counter contentBytesCounter;
+  private final Counter fileCounter;
+  private final AtomicLong lastBlockNumber = new AtomicLong();
+
+  public Era1Importer(
+      final HistoryDB historyDB,
+      final MetricsSystem metricsSystem,
+      final Path progressFile,
+      final int parallelism) {
+    this.historyDB = historyDB;
+    this.progressFile = progressFile;
+    this.pool = new ForkJoinPool(parallelism);
+    this.blockCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_import_blocks_total",
+            "Total number of blocks imported from era1 files");
+    this.invalidBlockCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_import_invalid_blocks_total",
+            "Total number of blocks of era1 files skipped for failing validation");
+    this.contentBytesCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_import_content_bytes_total",
+            "Total number of content bytes imported from era1 files");
+    this.fileCounter =
+        metricsSystem.createCounter(
+            SambaMetricCategory.STORAGE,
+            "era1_import_files_total",
+            "Total number of era1 files imported");
+    metricsSystem.createLongGauge(
+        SambaMetricCategory.STORAGE,
+        "era1_import_last_block_number",
+        "Number of the last block written by the era1 import",
+        lastBlockNumber::get);
+  }
+
+  /**
+   * The era1 files of the given paths, in name order. Directories are searched one level deep.
+   *
+   * @param paths era1 files and directories
+   * @return the era1 files
+   * @throws IOException if a directory cannot be listed
+   */
+  public static List<Path> findEra1Files(final List<Path> paths) throws IOException {
+    final List<Path> files = new ArrayList<>();
+    for (Path path : paths) {
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> children = Files.list(path)) {
+          children
+              .filter(child -> child.getFileName().toString().endsWith(ERA1_EXTENSION))
+              .forEach(files::add);
+        }
+      } else {
+        files.add(path);
+      }
+    }
+    files.sort(Path::compareTo);
+    return files;
+  }
+
+  /**
+   * Import era1 files, skipping the files completed by a previous run.
+   *
+   * @param files the era1 files
+   * @return whether every file was imported
+   * @throws IOException if the progress file cannot be read
+   */
+  public boolean importFiles(final List<Path> files) throws IOException {
+    final Set<String> completedFiles = readProgress();
+    boolean allImported = true;
+    for (Path file : files) {
+      final String fileName = file.getFileName().toString();
+      if (completedFiles.contains(fileName)) {
+        LOG.info("Skipping era1 file {}, imported by a previous run", fileName);
+        continue;
+      }
+      try {
+        if (importFile(file)) {
+          recordProgress(fileName);
+          fileCounter.inc();
+        } else {
+          allImported = false;
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.error("Era1 file {} could not be imported", file, e);
+        allImported = false;
+      }
+    }
+    return allImported;
+  }
+
+  // false when a block was invalid or not written, so the file is not recorded as imported
+  boolean importFile(final Path path) throws IOException {
+    final long startTime = System.nanoTime();
+    final Era1File era1File = Era1File.open(path);
+    final int blockCount = era1File.getBlockCount();
+    checkArgument(
+        era1File.getStartingBlockNumber() % HistoryConstants.EPOCH_SIZE == 0,
+        "Era1 file %s does not start an epoch",
+        path);
+
+    // the proof of a header covers every header of its epoch
+    final List<BlockHeader> headers =
+        pool.submit(
+                () ->
+                    IntStream.range(0, blockCount)
+                        .parallel()
+                        .mapToObj(i -> readHeader(era1File.getHeaderRlp(i)))
+                        .toList())
+            .join();
+    final HeaderRecordTree headerRecordTree =
+        new HeaderRecordTree(
+            headers.stream().map(header -> header.getHash().copy()).toList(),
+            IntStream.range(0, blockCount).mapToObj(era1File::getTotalDifficulty).toList());
+
+    boolean written = true;
+    int invalidBlocks = 0;
+    ForkJoinTask<List<Optional<BlockContent>>> pending =
+        submitBatch(era1File, headers, headerRecordTree, 0);
+    for (int from = 0; from < blockCount; from += BLOCKS_PER_BATCH) {
+      final List<Optional<BlockContent>> batch = pending.join();
+      if (from + BLOCKS_PER_BATCH < blockCount) {
+        pending = submitBatch(era1File, headers, headerRecordTree, from + BLOCKS_PER_BATCH);
+      }
+      invalidBlocks += (int) batch.stream().filter(Optional::isEmpty).count();
+      written &= write(batch.stream().flatMap(Optional::stream).toList());
+    }
+
+    final double seconds = (System.nanoTime() - startTime) / 1e9;
+    LOG.info(
+        "Imported era1 file {}: blocks {} to {} in {} s ({} blocks/s), {} invalid",
+        path.getFileName(),
+        era1File.getStartingBlockNumber(),
+        era1File.getStartingBlockNumber() + blockCount - 1,
+        String.format("%.1f", seconds),
+        String.format("%.0f", blockCount / seconds),
+        invalidBlocks);
+    if (invalidBlocks > 0) {
+      LOG.warn(
+          "Era1 file {} has {} invalid blocks, it is imported again by the next run",
+          path.getFileName(),
+          invalidBlocks);
+    }
+    return written && invalidBlocks == 0;
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  private ForkJoinTask<List<Optional<BlockContent>>> submitBatch(
+      final Era1File era1File,
+      final List<BlockHeader> headers,
+      final HeaderRecordTree headerRecordTree,
+      final int from) {
+    final int to = Math.min(from + BLOCKS_PER_BATCH, headers.size());
+    return pool.submit(
+        () ->
+            IntStream.range(from, to)
+                .parallel()
+                .mapToObj(i -> toContent(era1File, headers.get(i), headerRecordTree, i))
+                .toList());
+  }
+
+  private Optional<BlockContent> toContent(
+      final Era1File era1File,
+      final BlockHeader header,
+      final HeaderRecordTree headerRecordTree,
+      final int index) {
+    try {
+      final ContentBlockHeader contentBlockHeader =
+          new ContentBlockHeader(
+              header,
+              new SszBlockProofHistoricalHashesAccumulatorVector(headerRecordTree.proof(index))
+                  .sszSerialize());
+      final Bytes body = readBody(era1File.getBodyRlp(index), header.getNumber());
+      final Bytes receipts = readReceipts(era1File.getReceiptsRlp(index));
+      if (!ValidationUtil.isBlockHeaderValid(contentBlockHeader)
+          || !ValidationUtil.isBlockBodyValid(contentBlockHeader, body)
+          || !ValidationUtil.isReceiptsValid(contentBlockHeader, receipts)) {
+        LOG.warn("Block {} of era1 file {} is invalid", header.getNumber(), era1File.getPath());
+        invalidBlockCounter.inc();
+        return Optional.empty();
+      }
+      final Bytes32 blockHash = header.getHash().copy();
+      return Optional.of(
+          new BlockContent(
+              header.getNumber(),
+              List.of(
+                  new ContentKey(ContentType.BLOCK_HEADER, blockHash).getSszBytes(),
+                  new ContentKey(ContentType.BLOCK_BODY, blockHash).getSszBytes(),
+                  new ContentKey(ContentType.RECEIPT, blockHash).getSszBytes()),
+              List.of(contentBlockHeader.getSszBytes(), body, receipts)));
+    } catch (RuntimeException e) {
+      LOG.warn(
+          "Block {} of era1 file {} could not be decoded",
+          header.getNumber(),
+          era1File.getPath(),
+          e);
+      invalidBlockCounter.inc();
+      return Optional.empty();
+    }
+  }
+
+  private boolean write(final List<BlockContent> blocks) {
+    if (blocks.isEmpty()) {
+      return true;
+    }
+    final List<Bytes> keys = new ArrayList<>(blocks.size() * 3);
+    final List<Bytes> values = new ArrayList<>(blocks.size() * 3);
+    blocks.forEach(
+        block -> {
+          keys.addAll(block.keys());
+          values.addAll(block.values());
+        });
+    final List<Boolean> saved = historyDB.saveContents(keys, values);
+    if (saved.contains(false)) {
+      LOG.error(
+          "Blocks {} to {} could not all be saved",
+          blocks.getFirst().number(),
+          blocks.getLast().number());
+      return false;
+    }
+    blockCounter.inc(blocks.size());
+    contentBytesCounter.inc(values.stream().mapToLong(Bytes::size).sum());
+    lastBlockNumber.set(blocks.getLast().number());
+    return true;
+  }
+
+  private Set<String> readProgress() throws IOException {
+    if (!Files.exists(progressFile)) {
+      return Set.of();
+    }
+    return new HashSet<>(Files.readAllLines(progressFile, StandardCharsets.UTF_8));
+  }
+
+  private void recordProgress(final String fileName) throws IOException {
+    Files.writeString(
+        progressFile,
+        fileName + System.lineSeparator(),
+        StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND,
+        StandardOpenOption.SYNC);
+  }
+
+  private static BlockHeader readHeader(final Bytes headerRlp) {
+    return BlockHeader.readFrom(
+        new BytesValueRLPInput(headerRlp, false), new MainnetBlockHeaderFunctions());
+  }
+
+  // era1 bodies are the RLP list of the transactions and the uncles, all pre-Shanghai
+  private static Bytes readBody(final Bytes bodyRlp, final long blockNumber) {
+    final RLPInput input = new BytesValueRLPInput(bodyRlp, false);
+    input.enterList();
+    final List<Transaction> transactions = input.readList(Transaction::readFrom);
+    final List<BlockHeader> uncles =
+        input.readList(in -> BlockHeader.readFrom(in, new MainnetBlockHeaderFunctions()));
+    input.leaveList();
+    return new ContentBlockBody(
+            new BlockBodyPreShanghaiContainer(transactions, uncles), blockNumber)
+        .getSszBytes();
+  }
+
+  private static Bytes readReceipts(final Bytes receiptsRlp) {
+    final List<TransactionReceipt> receipts =
+        new BytesValueRLPInput(receiptsRlp, false).readList(TransactionReceipt::readFrom);
+    return new ContentReceipts(receipts).getSszBytes();
+  }
+
+  private record BlockContent(long number, List<Bytes> keys, List<Bytes> values) {}
+}
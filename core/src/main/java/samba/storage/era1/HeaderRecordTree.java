@@ -0,0 +1,89 @@
+package samba.storage.era1;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import samba.network.history.HistoryConstants;
+import samba.validation.HistoricalHashesAccumulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.crypto.Hash;
+
+/**
+ * Merkle tree of the header records of one epoch, as hashed into the historical hashes accumulator,
+ * used to build the accumulator proof of each pre-merge header of the epoch.
+ *
+ * <p>The epoch record is an SSZ list of up to {@link HistoryConstants#EPOCH_SIZE} header records
+ * (block hash, total difficulty). A proof of the block hash is the total difficulty of its record,
+ * the siblings of the record up the list tree and the length of the list.
+ */
+class HeaderRecordTree {
+
+  private static final int LIST_DEPTH = Integer.numberOfTrailingZeros(HistoryConstants.EPOCH_SIZE);
+
+  private final Bytes32[] totalDifficulties;
+  // layers[0] holds the header record roots, layers[LIST_DEPTH] the root of the list data
+  private final Bytes32[][] layers = new Bytes32[LIST_DEPTH + 1][];
+  private final Bytes32 length;
+
+  HeaderRecordTree(final List<Bytes32> blockHashes, final List<UInt256> totalDifficulties) {
+    checkArgument(
+        blockHashes.size() == totalDifficulties.size(),
+        "Expected as many total difficulties as block hashes");
+    checkArgument(
+        !blockHashes.isEmpty() && blockHashes.size() <= HistoryConstants.EPOCH_SIZE,
+        "An epoch holds between 1 and %s headers, got %s",
+        HistoryConstants.EPOCH_SIZE,
+        blockHashes.size());
+    this.totalDifficulties = new Bytes32[blockHashes.size()];
+    layers[0] = new Bytes32[HistoryConstants.EPOCH_SIZE];
+    Arrays.fill(layers[0], Bytes32.ZERO);
+    for (int i = 0; i < blockHashes.size(); i++) {
+      this.totalDifficulties[i] = littleEndian(totalDifficulties.get(i));
+      layers[0][i] = Hash.sha256(Bytes.concatenate(blockHashes.get(i), this.totalDifficulties[i]));
+    }
+    for (int depth = 1; depth <= LIST_DEPTH; depth++) {
+      final Bytes32[] children = layers[depth - 1];
+      layers[depth] = new Bytes32[children.length / 2];
+      for (int i = 0; i < layers[depth].length; i++) {
+        layers[depth][i] = Hash.sha256(Bytes.concatenate(children[2 * i], children[2 * i + 1]));
+      }
+    }
+    this.length = littleEndian(UInt256.valueOf(blockHashes.size()));
+  }
+
+  /**
+   * The accumulator proof of a block hash.
+   *
+   * @param index the index of the header in the epoch
+   * @return the {@link HistoricalHashesAccumulator#TREE_DEPTH} proof nodes, leaf first
+   */
+  List<Bytes32> proof(final int index) {
+    checkArgument(index >= 0 && index < totalDifficulties.length, "No header at index %s", index);
+    final List<Bytes32> proof = new ArrayList<>(HistoricalHashesAccumulator.TREE_DEPTH);
+    proof.add(totalDifficulties[index]);
+    for (int depth = 0; depth < LIST_DEPTH; depth++) {
+      proof.add(layers[depth][(index >>> depth) ^ 1]);
+    }
+    proof.add(length);
+    return proof;
+  }
+
+  /**
+   * The root of the epoch record, as stored in the historical hashes accumulator.
+   *
+   * @return the epoch record root
+   */
+  Bytes32 root() {
+    return Hash.sha256(Bytes.concatenate(layers[LIST_DEPTH][0], length));
+  }
+
+  private static Bytes32 littleEndian(final UInt256 value) {
+    return Bytes32.wrap(value.toBytes().reverse());
+  }
+}
@@ -0,0 +1,30 @@
+package samba.util;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.crypto.Hash;
+
+public class DistanceUtil {
+
+  /**
+   * The content-id of a content key, sha256(contentKey).
+   *
+   * @param contentKey the SSZ encoded content key
+   * @return the content-id
+   */
+  public static Bytes32 contentId(Bytes contentKey) {
+    return Hash.sha256(contentKey);
+  }
+
+  /**
+   * XOR distance between a node id and the content-id of a content key.
+   *
+   * @param nodeId the node id
+   * @param contentKey the SSZ encoded content key
+   * @return nodeId XOR sha256(contentKey)
+   */
+  public static UInt256 contentDistance(Bytes nodeId, Bytes contentKey) {
+    return UInt256.fromBytes(nodeId.xor(contentId(contentKey)));
+  }
+}
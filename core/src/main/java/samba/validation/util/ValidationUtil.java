@@ -2,8 +2,10 @@ package samba.validation.util;
 
 import samba.domain.content.ContentBlockBody;
 import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
 import samba.domain.content.ContentReceipts;
 import samba.network.history.HistoryConstants;
+import samba.schema.content.ssz.blockheader.SszEphemeralHeaderList;
 import samba.validation.HistoricalHashesAccumulator;
 import samba.validation.HistoricalRootsAccumulator;
 
@@ -122,6 +124,38 @@ public class ValidationUtil {
     }
   }
 
+  /**
+   * Ephemeral headers are recent headers, not yet covered by any accumulator. They are checked
+   * against their content key: the first header hashes to the block hash of the key, each one after
+   * it to the parent hash of the header before it, up to the ancestor count of the key.
+   */
+  public static boolean isEphemeralHeadersValid(ContentKey contentKey, Bytes ephemeralHeaders) {
+    try {
+      List<BlockHeader> headers =
+          SszEphemeralHeaderList.decodeBytes(ephemeralHeaders).getDecodedList();
+      if (headers.isEmpty() || headers.size() > contentKey.getAncestorCount() + 1) {
+        LOG.debug(
+            "Invalid ephemeral headers for block {}: {} headers, {} ancestors requested",
+            contentKey.getBlockHash(),
+            headers.size(),
+            contentKey.getAncestorCount());
+        return false;
+      }
+      Bytes expectedHash = contentKey.getBlockHash();
+      for (BlockHeader header : headers) {
+        if (!header.getHash().equals(expectedHash)) {
+          LOG.debug("Invalid ephemeral header {}, expected {}", header.getHash(), expectedHash);
+          return false;
+        }
+        expectedHash = header.getParentHash();
+      }
+      return true;
+    } catch (Exception e) {
+      LOG.debug("Error validating ephemeral headers: {}", e.getMessage());
+      return false;
+    }
+  }
+
   public static Bytes32 computeRoot(final List<Bytes> nodes) {
     Function<Bytes, Bytes> identity = Function.identity();
 
@@ -125,4 +125,19 @@ class KBucketTest {
     bucket.remove(node1);
     assertThat(bucket.getAllNodes()).containsExactly(node2);
   }
+
+  @Test
+  void restore_shouldKeepNodesOrderedByLastLivenessConfirmation() {
+    final NodeRecord node1 = TestHelper.createNodeRecord();
+    final NodeRecord node2 = TestHelper.createNodeRecord();
+    final NodeRecord node3 = TestHelper.createNodeRecord();
+
+    bucket.restore(node1, 300);
+    bucket.restore(node2, 100);
+    bucket.restore(node3, 200);
+    bucket.restore(node1, 400);
+
+    assertThat(bucket.getAllNodes()).containsExactly(node1, node3, node2);
+    assertThat(bucket.getLiveNodes()).containsExactly(node1, node3, node2);
+  }
 }
@@ -0,0 +1,91 @@
+package samba.domain.dht;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.StubClock;
+import samba.TestHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class LivenessManagerTest {
+
+  private final StubClock clock = new StubClock();
+  private final List<CompletableFuture<Void>> pings = new ArrayList<>();
+  private final LivenessManager livenessManager =
+      new LivenessManager(
+          clock,
+          node -> {
+            final CompletableFuture<Void> ping = new CompletableFuture<>();
+            pings.add(ping);
+            return ping;
+          });
+
+  @Test
+  void checkLiveness_shouldQueueNodesBeyondTheConcurrencyLimit() {
+    for (int i = 0; i < 5; i++) {
+      livenessManager.checkLiveness(TestHelper.createNodeRecord());
+    }
+    assertThat(pings).hasSize(LivenessManager.MIN_CONCURRENT_PINGS);
+
+    clock.advanceTimeMillis(2000);
+    assertThat(livenessManager.getRevalidationLagMillis()).isEqualTo(2000);
+
+    pings.getFirst().complete(null);
+    assertThat(pings).hasSize(LivenessManager.MIN_CONCURRENT_PINGS + 1);
+  }
+
+  @Test
+  void concurrencyLimit_shouldFollowRateAndPingDuration() {
+    // 10 checks per second taking 1 second each, with headroom
+    livenessManager.setExpectedCheckRate(10);
+    assertThat(livenessManager.getConcurrencyLimit()).isEqualTo(15);
+
+    for (int i = 0; i < 15; i++) {
+      livenessManager.checkLiveness(TestHelper.createNodeRecord());
+    }
+    // pings answered in 100ms bring the mean duration down
+    clock.advanceTimeMillis(100);
+    new ArrayList<>(pings).forEach(ping -> ping.complete(null));
+    assertThat(livenessManager.getConcurrencyLimit()).isLessThan(15);
+
+    livenessManager.setExpectedCheckRate(1000);
+    assertThat(livenessManager.getConcurrencyLimit())
+        .isEqualTo(LivenessManager.MAX_CONCURRENT_PINGS);
+  }
+
+  @Test
+  void checkLiveness_shouldPingOutsideTheLockWithoutNesting() {
+    final AtomicReference<LivenessManager> manager = new AtomicReference<>();
+    final List<CompletableFuture<Void>> stalledPings = new ArrayList<>();
+    final List<Integer> failedPingStackDepths = new ArrayList<>();
+    final AtomicBoolean pingedUnderLock = new AtomicBoolean();
+    // the first pings stall, the next ones fail at once, as they do for an unreachable node
+    manager.set(
+        new LivenessManager(
+            clock,
+            node -> {
+              pingedUnderLock.compareAndSet(false, Thread.holdsLock(manager.get()));
+              if (stalledPings.size() < LivenessManager.MIN_CONCURRENT_PINGS) {
+                final CompletableFuture<Void> ping = new CompletableFuture<>();
+                stalledPings.add(ping);
+                return ping;
+              }
+              failedPingStackDepths.add(new Throwable().getStackTrace().length);
+              return CompletableFuture.failedFuture(new IllegalStateException("unreachable"));
+            }));
+    for (int i = 0; i < 20; i++) {
+      manager.get().checkLiveness(TestHelper.createNodeRecord());
+    }
+
+    stalledPings.getFirst().completeExceptionally(new IllegalStateException("timeout"));
+    assertThat(failedPingStackDepths).hasSize(20 - LivenessManager.MIN_CONCURRENT_PINGS);
+    assertThat(failedPingStackDepths).containsOnly(failedPingStackDepths.getFirst());
+    assertThat(pingedUnderLock).isFalse();
+  }
+}
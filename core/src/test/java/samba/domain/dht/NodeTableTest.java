@@ -0,0 +1,113 @@
+package samba.domain.dht;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import samba.StubClock;
+import samba.TestHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.junit.jupiter.api.Test;
+
+class NodeTableTest {
+
+  private final NodeRecord homeNode = TestHelper.createNodeRecord();
+  private final NodeTable nodeTable = new NodeTable(homeNode, mock(LivenessChecker.class));
+
+  @Test
+  void getNodeRecordBuckets_shouldIndexBucketsByDistance() {
+    final NodeRecord node = TestHelper.createNodeAtDistance(homeNode.getNodeId(), 3);
+
+    nodeTable.addNode(node);
+
+    final List<List<NodeRecord>> buckets = nodeTable.getNodeRecordBuckets();
+    assertThat(buckets).hasSize(NodeTable.MAXIMUM_BUCKET + 1);
+    assertThat(buckets.get(0)).isEmpty();
+    assertThat(buckets.get(3)).containsExactly(node);
+  }
+
+  @Test
+  void addNode_shouldNotBlockConcurrentReaders() throws Exception {
+    final List<NodeRecord> nodes = new ArrayList<>();
+    for (int distance = 1; distance <= 64; distance++) {
+      nodes.add(TestHelper.createNodeAtDistance(homeNode.getNodeId(), distance));
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final Future<?> writer = executor.submit(() -> nodes.forEach(nodeTable::addNode));
+      final List<Future<?>> readers = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        readers.add(
+            executor.submit(
+                () -> {
+                  while (!writer.isDone()) {
+                    nodeTable.streamClosestNodes(homeNode.getNodeId()).limit(16).toList();
+                    nodeTable.getStats();
+                    nodeTable.getNodeRecordBuckets();
+                  }
+                }));
+      }
+      writer.get();
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(nodeTable.getStats().getTotalNodeCount()).isEqualTo(nodes.size());
+    nodes.forEach(node -> assertThat(nodeTable.getNode(node.getNodeId())).contains(node));
+  }
+
+  @Test
+  void revalidateDueNodes_shouldPingEachNodeOncePerIntervalWithoutBursts() {
+    final StubClock clock = new StubClock();
+    final Map<Bytes, Integer> pings = new HashMap<>();
+    final NodeTable table =
+        new NodeTable(
+            homeNode,
+            node -> {
+              pings.merge(node.getNodeId(), 1, Integer::sum);
+              return CompletableFuture.completedFuture(null);
+            },
+            clock);
+    final List<NodeRecord> nodes = new ArrayList<>();
+    for (int distance = 1; distance <= 50; distance++) {
+      nodes.add(TestHelper.createNodeAtDistance(homeNode.getNodeId(), distance));
+    }
+    nodes.forEach(table::addNode);
+    final long ticksPerInterval =
+        NodeTable.REVALIDATION_INTERVAL.dividedBy(NodeTable.REVALIDATION_TICK);
+    clock.advanceTimeMillis(NodeTable.REVALIDATION_INTERVAL.toMillis());
+
+    int mostPingsInATick = 0;
+    for (long tick = 0; tick < ticksPerInterval; tick++) {
+      final int pingsBefore = pings.values().stream().mapToInt(Integer::intValue).sum();
+      table.revalidateDueNodes();
+      final int pingsAfter = pings.values().stream().mapToInt(Integer::intValue).sum();
+      mostPingsInATick = Math.max(mostPingsInATick, pingsAfter - pingsBefore);
+    }
+    assertThat(pings)
+        .hasSize(nodes.size())
+        .allSatisfy((nodeId, count) -> assertThat(count).isOne());
+    assertThat(mostPingsInATick).isLessThanOrEqualTo(5);
+
+    // a node dropped from the table is no longer pinged
+    table.removeNode(nodes.getFirst());
+    pings.clear();
+    for (long tick = 0; tick < ticksPerInterval; tick++) {
+      table.revalidateDueNodes();
+    }
+    assertThat(pings).hasSize(nodes.size() - 1).doesNotContainKey(nodes.getFirst().getNodeId());
+  }
+}
@@ -0,0 +1,37 @@
+package samba.domain.dht;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+  private final TimingWheel<String> wheel = new TimingWheel<>(4);
+
+  @Test
+  void advance_shouldReturnItemsAtTheirTick() {
+    wheel.schedule("a", 1);
+    wheel.schedule("b", 3);
+    wheel.schedule("c", 3);
+
+    assertThat(wheel.advance()).containsExactly("a");
+    assertThat(wheel.advance()).isEmpty();
+    assertThat(wheel.advance()).containsExactly("b", "c");
+    assertThat(wheel.size()).isZero();
+  }
+
+  @Test
+  void advance_shouldKeepItemsDueInLaterTurns() {
+    wheel.schedule("later", 6);
+    wheel.schedule("sooner", 2);
+
+    assertThat(wheel.advance()).isEmpty();
+    assertThat(wheel.advance()).containsExactly("sooner");
+    for (int tick = 3; tick < 6; tick++) {
+      assertThat(wheel.advance()).isEmpty();
+    }
+    assertThat(wheel.advance()).isEqualTo(List.of("later"));
+  }
+}
@@ -0,0 +1,70 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import samba.TestHelper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+
+class PeerLatencyTrackerTest {
+
+  private static final Duration MAX_TIMEOUT = Duration.ofSeconds(3);
+
+  private final PeerLatencyTracker tracker = new PeerLatencyTracker(new NoOpMetricsSystem());
+  private final NodeRecord node = TestHelper.createNodeRecord();
+
+  @Test
+  void unknownPeerGetsTheLongestTimeout() {
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT)).isEqualTo(MAX_TIMEOUT);
+    assertThat(tracker.getSmoothedRoundTripTime(node.getNodeId())).isEmpty();
+  }
+
+  @Test
+  void timeoutFollowsRoundTripTimes() {
+    tracker.recordRoundTrip(node.getNodeId(), Duration.ofMillis(200));
+    // 200ms + 4 * 100ms
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT)).isEqualTo(Duration.ofMillis(600));
+
+    for (int i = 0; i < 50; i++) {
+      tracker.recordRoundTrip(node.getNodeId(), Duration.ofMillis(40));
+    }
+    assertThat(tracker.getSmoothedRoundTripTime(node.getNodeId()).orElseThrow())
+        .isBetween(Duration.ofMillis(40), Duration.ofMillis(41));
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT))
+        .isEqualTo(PeerLatencyTracker.MIN_TIMEOUT);
+  }
+
+  @Test
+  void timeoutDoublesUntilThePeerAnswersAgain() {
+    tracker.recordRoundTrip(node.getNodeId(), Duration.ofMillis(200));
+    tracker.recordTimeout(node.getNodeId());
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT))
+        .isEqualTo(Duration.ofMillis(1200));
+    tracker.recordTimeout(node.getNodeId());
+    tracker.recordTimeout(node.getNodeId());
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT)).isEqualTo(MAX_TIMEOUT);
+
+    tracker.recordRoundTrip(node.getNodeId(), Duration.ofMillis(200));
+    assertThat(tracker.getTimeout(node.getNodeId(), MAX_TIMEOUT))
+        .isLessThan(Duration.ofMillis(1200));
+  }
+
+  @Test
+  void ordersPeersByRoundTripTimeWithUnknownPeersLast() {
+    final NodeRecord slow = TestHelper.createNodeRecord();
+    final NodeRecord fast = TestHelper.createNodeRecord();
+    final NodeRecord unknown = TestHelper.createNodeRecord();
+    tracker.recordRoundTrip(slow.getNodeId(), Duration.ofMillis(900));
+    tracker.recordRoundTrip(fast.getNodeId(), Duration.ofMillis(30));
+
+    final List<NodeRecord> ordered =
+        Stream.of(unknown, slow, fast).sorted(tracker.byRoundTripTime()).toList();
+    assertThat(ordered).containsExactly(fast, slow, unknown);
+  }
+}
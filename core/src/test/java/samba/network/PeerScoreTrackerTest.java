@@ -0,0 +1,92 @@
+package samba.network;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import samba.TestHelper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+
+class PeerScoreTrackerTest {
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final PeerLatencyTracker latencyTracker = new PeerLatencyTracker(new NoOpMetricsSystem());
+  private final PeerScoreTracker scores = new PeerScoreTracker(latencyTracker, nanos::get);
+
+  @Test
+  void failingPeerRanksBelowUnknownPeer() {
+    final NodeRecord answering = TestHelper.createNodeRecord();
+    final NodeRecord failing = TestHelper.createNodeRecord();
+    final NodeRecord unknown = TestHelper.createNodeRecord();
+    for (int i = 0; i < 5; i++) {
+      scores.recordResponse(answering.getNodeId());
+      scores.recordRequestFailure(failing.getNodeId());
+    }
+
+    assertThat(Stream.of(failing, unknown, answering).sorted(scores.byScore()).toList())
+        .containsExactly(answering, unknown, failing);
+  }
+
+  @Test
+  void sortScoresEachPeerOnce() {
+    final AtomicInteger clockReads = new AtomicInteger();
+    // every read of the clock is ten seconds later, decaying the scores between comparisons
+    final PeerScoreTracker decayingScores =
+        new PeerScoreTracker(
+            latencyTracker,
+            () -> {
+              clockReads.incrementAndGet();
+              return nanos.addAndGet(Duration.ofSeconds(10).toNanos());
+            });
+    final List<NodeRecord> nodes = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      final NodeRecord node = TestHelper.createNodeRecord();
+      for (int failures = 0; failures <= i % 7; failures++) {
+        decayingScores.recordRequestFailure(node.getNodeId());
+      }
+      nodes.add(node);
+    }
+    clockReads.set(0);
+
+    final List<NodeRecord> sorted = nodes.stream().sorted(decayingScores.byScore()).toList();
+    assertThat(clockReads).hasValue(nodes.size());
+    assertThat(sorted).containsExactlyInAnyOrderElementsOf(nodes);
+  }
+
+  @Test
+  void scoreCombinesTransfersOffersLatencyAndInvalidContent() {
+    final NodeRecord node = TestHelper.createNodeRecord();
+    // half of every ratio, and of the latency factor
+    assertThat(scores.getScore(node.getNodeId())).isCloseTo(0.5 * 0.5 * 0.75 * 0.5, within(1e-9));
+
+    scores.recordTransfer(node.getNodeId(), false);
+    scores.recordOffer(node.getNodeId(), 4, 0);
+    scores.recordInvalidContent(node.getNodeId());
+    latencyTracker.recordRoundTrip(node.getNodeId(), Duration.ofMillis(50));
+    assertThat(scores.getScore(node.getNodeId()))
+        .isCloseTo(0.5 * (1.0 / 3) * (0.5 + 0.5 / 6) * 0.8 * 0.5, within(1e-9));
+  }
+
+  @Test
+  void failuresFadeAway() {
+    final NodeRecord node = TestHelper.createNodeRecord();
+    for (int i = 0; i < 10; i++) {
+      scores.recordRequestFailure(node.getNodeId());
+    }
+    final double failingScore = scores.getScore(node.getNodeId());
+
+    nanos.set(PeerScoreTracker.HALF_LIFE.multipliedBy(20).toNanos());
+    assertThat(scores.getScore(node.getNodeId())).isGreaterThan(3 * failingScore);
+    assertThat(scores.getScore(node.getNodeId()))
+        .isCloseTo(scores.getScore(TestHelper.createNodeRecord().getNodeId()), within(1e-6));
+  }
+}
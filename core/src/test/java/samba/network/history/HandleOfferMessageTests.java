@@ -1,8 +1,11 @@
 package samba.network.history;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,7 +20,10 @@ import samba.services.discovery.Discv5Client;
 import samba.services.utp.UTPManager;
 import samba.storage.HistoryDB;
 import samba.util.DefaultContent;
+import samba.network.PeerScoreTracker;
 import samba.util.ProtocolVersionUtil;
+import samba.util.Util;
+import samba.validation.util.ValidationUtil;
 
 import java.util.List;
 import java.util.Optional;
@@ -28,6 +34,8 @@ import org.ethereum.beacon.discovery.schema.NodeRecord;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
 
 @SuppressWarnings("unchecked")
 public class HandleOfferMessageTests {
@@ -61,16 +69,18 @@ public class HandleOfferMessageTests {
   @Test
   public void responseAcceptMessageWithAll0BitListIfContentIsStoredLocallyProtocolV0() {
     Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
-    when(historyDB.get(any(ContentKey.class))).thenReturn(Optional.of(Bytes.EMPTY)); // Has content
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(true, true, true)); // Has content
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
     assertEquals(accept.getContentKeys(), Bytes.of(0, 0, 0));
     verify(utpManager, never()).acceptRead(any(NodeRecord.class), any(Consumer.class));
+    verify(historyDB, times(1)).containsAll(anyList());
+    verify(historyDB, never()).get(any(ContentKey.class));
   }
 
   @Test
   public void responseAcceptMessageWithAll2ByteListIfContentIsStoredLocallyProtocolV1() {
     Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
-    when(historyDB.get(any(ContentKey.class))).thenReturn(Optional.of(Bytes.EMPTY)); // Has content
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(true, true, true)); // Has content
     when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
     ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
@@ -81,7 +91,8 @@ public class HandleOfferMessageTests {
   @Test
   public void responseAcceptMessageWithAll1BitListIfContentIsNotStoredLocallyProtocolV0() {
     Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
-    when(historyDB.get(any(ContentKey.class))).thenReturn(Optional.empty()); // No content on DB
+    when(historyDB.containsAll(anyList()))
+        .thenReturn(List.of(false, false, false)); // No content on DB
     when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
     assertEquals(accept.getContentKeys(), Bytes.of(1, 1, 1));
@@ -92,7 +103,8 @@ public class HandleOfferMessageTests {
   @Test
   public void responseAcceptMessageWithAll0ByteListIfContentIsNotStoredLocallyProtocolV1() {
     Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
-    when(historyDB.get(any(ContentKey.class))).thenReturn(Optional.empty()); // No content on DB
+    when(historyDB.containsAll(anyList()))
+        .thenReturn(List.of(false, false, false)); // No content on DB
     when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
     ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
@@ -104,8 +116,7 @@ public class HandleOfferMessageTests {
   @Test
   public void responseAcceptMessageProtocolV0() {
     Offer offer = new Offer(List.of(DefaultContent.key3));
-    when(historyDB.get(ContentKey.decode(DefaultContent.key3)))
-        .thenReturn(Optional.of(DefaultContent.value3));
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(false));
     when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
 
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
@@ -117,8 +128,7 @@ public class HandleOfferMessageTests {
   @Test
   public void responseAcceptMessageProtocolV1() {
     Offer offer = new Offer(List.of(DefaultContent.key3));
-    when(historyDB.get(ContentKey.decode(DefaultContent.key3)))
-        .thenReturn(Optional.of(DefaultContent.value3));
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(false));
     when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
     ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
@@ -127,10 +137,81 @@ public class HandleOfferMessageTests {
     verify(utpManager, times(1)).acceptRead(any(NodeRecord.class), any(Consumer.class));
   }
 
+  @Test
+  public void responseAcceptMessageWithRateLimitCodesIfStorageIsBackloggedProtocolV1() {
+    Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(true, false, false));
+    when(historyDB.isWriteBacklogged()).thenReturn(true);
+    ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
+    Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
+    assertEquals(Bytes.of(2, 4, 4), accept.getContentKeys());
+    verify(utpManager, never()).acceptRead(any(NodeRecord.class), any(Consumer.class));
+  }
+
+  @Test
+  public void responseAcceptMessageAcceptingEphemeralHeadersProtocolV1() {
+    Bytes ephemeralKey =
+        Bytes.fromHexString(
+            "0x04720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c00");
+    Offer offer = new Offer(List.of(ephemeralKey, DefaultContent.key3));
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(false, false));
+    when(utpManager.acceptRead(any(NodeRecord.class), any(Consumer.class))).thenReturn(555);
+    ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
+    Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
+    assertEquals(Bytes.of(0, 0), accept.getContentKeys());
+    verify(utpManager, times(1)).acceptRead(any(NodeRecord.class), any(Consumer.class));
+  }
+
+  @Test
+  public void invalidBlockHeaderCountsAgainstTheOfferingNode() {
+    final double score = offerBlockHeader(false);
+    assertEquals(referenceScore() / 2, score, 1e-9);
+    verify(historyDB, never()).saveContents(anyList(), anyList());
+  }
+
+  @Test
+  public void validBlockHeaderIsStoredWithoutPenalty() {
+    final double score = offerBlockHeader(true);
+    assertEquals(referenceScore(), score, 1e-9);
+    verify(historyDB, times(1))
+        .saveContents(List.of(DefaultContent.key1), List.of(DefaultContent.value1));
+  }
+
+  // the score of the offering node once the header it sent was validated
+  @SuppressWarnings("unchecked")
+  private double offerBlockHeader(final boolean valid) {
+    Offer offer = new Offer(List.of(DefaultContent.key1));
+    when(historyDB.containsAll(anyList())).thenReturn(List.of(false));
+    ArgumentCaptor<Consumer<Bytes>> transfer = ArgumentCaptor.forClass(Consumer.class);
+    when(utpManager.acceptRead(any(NodeRecord.class), transfer.capture())).thenReturn(555);
+    ProtocolVersionUtil.setSupportedProtocolVersions(nodeRecord, List.of(1));
+    Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
+    assertEquals(Bytes.of(0), accept.getContentKeys());
+
+    try (MockedStatic<ValidationUtil> validationUtil = mockStatic(ValidationUtil.class)) {
+      validationUtil.when(() -> ValidationUtil.isBlockHeaderValid(any())).thenReturn(valid);
+      transfer.getValue().accept(Util.addUnsignedLeb128SizeToData(DefaultContent.value1));
+    }
+    return peerScores().getScore(nodeRecord.getNodeId());
+  }
+
+  // a node that completed one transfer and sent nothing invalid
+  private double referenceScore() {
+    NodeRecord reference = createNodeRecord();
+    peerScores().recordTransfer(reference.getNodeId(), true);
+    final double score = peerScores().getScore(reference.getNodeId());
+    assertTrue(score > 0);
+    return score;
+  }
+
+  private PeerScoreTracker peerScores() {
+    return ((HistoryNetwork) historyNetwork).getPeerScores();
+  }
+
   @Test
   public void responseAcceptMessageEmptyIfThereIsAnException() {
     Offer offer = new Offer(List.of(DefaultContent.key1, DefaultContent.key2, DefaultContent.key3));
-    when(historyDB.get(any(ContentKey.class))).thenThrow(NullPointerException.class);
+    when(historyDB.containsAll(anyList())).thenThrow(NullPointerException.class);
     Accept accept = (Accept) historyNetwork.handleOffer(nodeRecord, offer);
     assertEquals(accept.getContentKeys(), Bytes.EMPTY);
   }
@@ -0,0 +1,114 @@
+package samba.network.history.routingtable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.junit.jupiter.api.Test;
+
+class RadiusTrieTest {
+
+  private final Random random = new Random(42);
+  private final RadiusTrie trie = new RadiusTrie();
+  private final Map<Bytes, UInt256> radii = new HashMap<>();
+
+  @Test
+  void findClosest_shouldReturnNodesByDistance() {
+    addNodes(500);
+    for (int i = 0; i < 20; i++) {
+      final Bytes target = Bytes32.random(random);
+      assertThat(trie.findClosest(target, 16, false, Optional::of))
+          .containsExactlyElementsOf(closest(target, 16, false));
+    }
+  }
+
+  @Test
+  void findClosest_shouldSkipNodesNotCoveringTarget() {
+    addNodes(500);
+    for (int i = 0; i < 20; i++) {
+      final Bytes target = Bytes32.random(random);
+      assertThat(trie.findClosest(target, 16, true, Optional::of))
+          .containsExactlyElementsOf(closest(target, 16, true));
+    }
+  }
+
+  @Test
+  void findClosest_shouldSkipNodesNotResolved() {
+    addNodes(100);
+    final Bytes target = Bytes32.random(random);
+    final List<Bytes> all = closest(target, 100, false);
+
+    assertThat(
+            trie.findClosest(
+                target, 2, false, id -> id.equals(all.get(0)) ? Optional.empty() : Optional.of(id)))
+        .containsExactly(all.get(1), all.get(2));
+  }
+
+  @Test
+  void remove_shouldKeepOtherNodesOrdered() {
+    addNodes(300);
+    final List<Bytes> ids = new ArrayList<>(radii.keySet());
+    for (int i = 0; i < ids.size(); i += 2) {
+      trie.remove(ids.get(i));
+      radii.remove(ids.get(i));
+    }
+    trie.remove(Bytes32.random(random));
+
+    final Bytes target = Bytes32.random(random);
+    assertThat(trie.size()).isEqualTo(radii.size());
+    assertThat(trie.findClosest(target, radii.size() + 1, false, Optional::of))
+        .containsExactlyElementsOf(closest(target, radii.size(), false));
+  }
+
+  @Test
+  void put_shouldUpdateRadiusOfKnownNode() {
+    final Bytes nodeId = Bytes32.random(random);
+    final Bytes target = Bytes32.random(random);
+    trie.put(nodeId, UInt256.ZERO);
+    assertThat(trie.findClosest(target, 1, true, Optional::of)).isEmpty();
+
+    trie.put(nodeId, UInt256.MAX_VALUE);
+
+    assertThat(trie.get(nodeId)).isEqualTo(UInt256.MAX_VALUE);
+    assertThat(trie.size()).isEqualTo(1);
+    assertThat(trie.findClosest(target, 1, true, Optional::of)).containsExactly(nodeId);
+  }
+
+  @Test
+  void findClosest_shouldRejectIdsOfAnotherSize() {
+    assertThatThrownBy(() -> trie.findClosest(Bytes.of(1, 2), 1, false, Optional::of))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private void addNodes(final int count) {
+    for (int i = 0; i < count; i++) {
+      final Bytes nodeId = Bytes32.random(random);
+      final UInt256 radius = UInt256.fromBytes(Bytes32.random(random));
+      trie.put(nodeId, radius);
+      radii.put(nodeId, radius);
+    }
+  }
+
+  private List<Bytes> closest(final Bytes target, final int count, final boolean inRadius) {
+    return radii.entrySet().stream()
+        .filter(entry -> !inRadius || entry.getValue().greaterOrEqualThan(distance(entry, target)))
+        .sorted(Comparator.comparing(entry -> distance(entry, target)))
+        .map(Map.Entry::getKey)
+        .limit(count)
+        .toList();
+  }
+
+  private static UInt256 distance(final Map.Entry<Bytes, UInt256> entry, final Bytes target) {
+    return UInt256.fromBytes(entry.getKey().xor(target));
+  }
+}
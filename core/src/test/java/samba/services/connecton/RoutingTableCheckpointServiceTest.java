@@ -0,0 +1,88 @@
+package samba.services.connecton;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.TestHelper;
+import samba.network.history.HistoryNetwork;
+import samba.network.history.routingtable.RoutingTableEntry;
+import samba.storage.HistoryDB;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.ethereum.beacon.discovery.schema.NodeRecord;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.async.SafeFuture;
+
+public class RoutingTableCheckpointServiceTest {
+
+  private final NodeRecord node1 = TestHelper.createNodeRecord();
+  private final NodeRecord node2 = TestHelper.createNodeRecord();
+  private HistoryDB historyDB;
+  private HistoryNetwork historyNetwork;
+  private RoutingTableCheckpointService checkpointService;
+
+  @BeforeEach
+  public void setUp() {
+    historyDB = mock(HistoryDB.class);
+    historyNetwork = mock(HistoryNetwork.class);
+    checkpointService =
+        new RoutingTableCheckpointService(
+            new NoOpMetricsSystem(), mock(AsyncRunner.class), historyDB, historyNetwork);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldRestoreSavedEntriesAndPingThem() {
+    final List<RoutingTableEntry> entries =
+        List.of(
+            new RoutingTableEntry(node1, 1_000, Optional.of(UInt256.valueOf(42))),
+            new RoutingTableEntry(node2, 2_000, Optional.empty()));
+    when(historyNetwork.getRoutingTableEntries()).thenReturn(entries);
+    checkpointService.checkpoint();
+    final ArgumentCaptor<Map<Bytes, Bytes>> checkpoint = ArgumentCaptor.forClass(Map.class);
+    verify(historyDB).saveRoutingTableCheckpoint(checkpoint.capture());
+    when(historyDB.getRoutingTableCheckpoint()).thenReturn(checkpoint.getValue());
+    when(historyNetwork.ping(any(NodeRecord.class)))
+        .thenReturn(SafeFuture.completedFuture(Optional.empty()));
+
+    checkpointService.restore().join();
+
+    verify(historyNetwork).restoreRoutingTable(entries);
+    verify(historyNetwork).ping(node1);
+    verify(historyNetwork).ping(node2);
+  }
+
+  @Test
+  public void shouldKeepLastCheckpointWhenRoutingTableIsEmpty() {
+    when(historyNetwork.getRoutingTableEntries()).thenReturn(List.of());
+
+    checkpointService.checkpoint();
+
+    verify(historyDB, never()).saveRoutingTableCheckpoint(anyMap());
+  }
+
+  @Test
+  public void shouldDropUnreadableEntries() {
+    when(historyDB.getRoutingTableCheckpoint())
+        .thenReturn(Map.of(node1.getNodeId(), Bytes.fromHexString("0x0102")));
+
+    assertThat(checkpointService.restore()).isCompleted();
+
+    verify(historyNetwork, never()).restoreRoutingTable(any());
+    verify(historyNetwork, never()).ping(any(NodeRecord.class));
+  }
+}
@@ -0,0 +1,64 @@
+package samba.services.jsonrpc.methods.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import samba.api.HistoryAPIClient;
+import samba.api.jsonrpc.PortalHistoryStorageStats;
+import samba.api.jsonrpc.results.StorageStatsResult;
+import samba.jsonrpc.reponse.JsonRpcRequest;
+import samba.jsonrpc.reponse.JsonRpcRequestContext;
+import samba.jsonrpc.reponse.JsonRpcResponse;
+import samba.jsonrpc.reponse.JsonRpcSuccessResponse;
+import samba.network.history.api.HistoryNetworkInternalAPI;
+import samba.storage.ContentTypeStats;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PortalHistoryStorageStatsTest {
+  private final String JSON_RPC_VERSION = "2.0";
+  private final String PORTAL_HISTORY_STORAGE_STATS = "portal_historyStorageStats";
+  private HistoryNetworkInternalAPI historyNetworkInternalAPI;
+  private PortalHistoryStorageStats method;
+
+  @BeforeEach
+  public void before() {
+    this.historyNetworkInternalAPI = mock(HistoryNetworkInternalAPI.class);
+    method = new PortalHistoryStorageStats(new HistoryAPIClient(this.historyNetworkInternalAPI));
+  }
+
+  @Test
+  public void shouldReturnCorrectMethodName() {
+    assertThat(method.getName()).isEqualTo(PORTAL_HISTORY_STORAGE_STATS);
+  }
+
+  @Test
+  public void shouldReturnStatsPerContentTypeAndTotals() {
+    final List<ContentTypeStats> stats =
+        List.of(
+            new ContentTypeStats("BLOCK_HEADER", 10, 6_000, 4_000),
+            new ContentTypeStats("BLOCK_BODY", 4, 40_000, 30_000));
+    when(historyNetworkInternalAPI.getContentTypeStats()).thenReturn(stats);
+    final JsonRpcRequestContext request =
+        new JsonRpcRequestContext(
+            new JsonRpcRequest(JSON_RPC_VERSION, PORTAL_HISTORY_STORAGE_STATS, new Object[] {}));
+
+    final JsonRpcResponse expected =
+        new JsonRpcSuccessResponse(request.getRequest().getId(), new StorageStatsResult(stats));
+    final JsonRpcResponse actual = method.response(request);
+    assertNotNull(actual);
+    assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
+
+    final StorageStatsResult result =
+        (StorageStatsResult) ((JsonRpcSuccessResponse) actual).getResult();
+    assertThat(result.getCount()).isEqualTo(14);
+    assertThat(result.getBytes()).isEqualTo(46_000);
+    assertThat(result.getDiskBytes()).isEqualTo(34_000);
+    assertThat(result.getContentTypes()).containsOnlyKeys("BLOCK_HEADER", "BLOCK_BODY");
+  }
+}
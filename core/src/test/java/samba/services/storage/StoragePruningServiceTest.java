@@ -0,0 +1,126 @@
+package samba.services.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.storage.HistoryDB;
+import samba.util.DistanceUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.time.TimeProvider;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+
+public class StoragePruningServiceTest {
+
+  private static final long CAPACITY = 1_000;
+  private static final Bytes LOCAL_NODE_ID = Bytes32.ZERO;
+
+  private HistoryDB historyDB;
+  private TimeProvider timeProvider;
+  private List<UInt256> radiusUpdates;
+  private StoragePruningService pruningService;
+
+  @BeforeEach
+  public void setUp() {
+    historyDB = mock(HistoryDB.class);
+    timeProvider = mock(TimeProvider.class);
+    when(timeProvider.getTimeInMillis()).thenReturn(UInt64.ZERO);
+    radiusUpdates = new ArrayList<>();
+    pruningService =
+        new StoragePruningService(
+            new NoOpMetricsSystem(),
+            mock(AsyncRunner.class),
+            timeProvider,
+            historyDB,
+            CAPACITY,
+            LOCAL_NODE_ID,
+            radiusUpdates::add);
+  }
+
+  @Test
+  public void shouldNotPruneWhenUnderCapacity() {
+    when(historyDB.getStorageSizeInBytes()).thenReturn(CAPACITY);
+
+    pruningService.prune();
+
+    verify(historyDB, never()).getFarthestContentKeys(anyInt());
+    verify(historyDB, never()).deleteContent(any());
+    assertThat(radiusUpdates).isEmpty();
+  }
+
+  @Test
+  public void shouldPruneFarthestContentUntilTargetCapacity() {
+    final Bytes farthest = Bytes.of(0x00, 0x01);
+    final Bytes secondFarthest = Bytes.of(0x00, 0x02);
+    final Bytes kept = Bytes.of(0x00, 0x03);
+    when(historyDB.getStorageSizeInBytes()).thenReturn(1_100L);
+    when(historyDB.getFarthestContentKeys(anyInt()))
+        .thenReturn(List.of(farthest, secondFarthest, kept))
+        .thenReturn(List.of(kept));
+    when(historyDB.deleteContent(any())).thenReturn(100L);
+
+    pruningService.prune();
+
+    // 1100 used bytes against a 900 bytes target
+    verify(historyDB).deleteContent(farthest);
+    verify(historyDB).deleteContent(secondFarthest);
+    verify(historyDB, never()).deleteContent(kept);
+    assertThat(radiusUpdates).containsExactly(DistanceUtil.contentDistance(LOCAL_NODE_ID, kept));
+  }
+
+  @Test
+  public void shouldStopWhenNothingIsLeftToPrune() {
+    when(historyDB.getStorageSizeInBytes()).thenReturn(2_000L);
+    when(historyDB.getFarthestContentKeys(anyInt())).thenReturn(List.of());
+
+    pruningService.prune();
+
+    verify(historyDB, never()).deleteContent(any());
+    assertThat(radiusUpdates).isEmpty();
+  }
+
+  @Test
+  public void shouldNotPruneAgainWhileDeletedContentIsNotCompacted() {
+    final Bytes contentKey = Bytes.of(0x00, 0x01);
+    when(historyDB.getStorageSizeInBytes()).thenReturn(1_100L);
+    when(historyDB.getFarthestContentKeys(anyInt())).thenReturn(List.of(contentKey));
+    when(historyDB.deleteContent(any())).thenReturn(200L);
+
+    pruningService.prune();
+    pruningService.prune();
+
+    verify(historyDB, times(1)).deleteContent(contentKey);
+  }
+
+  @Test
+  public void shouldRecoverRadiusOnStartOnceDistanceIndexIsReady() {
+    final Bytes farthest = Bytes.of(0x00, 0x01);
+    final CompletableFuture<Void> distanceIndexReady = new CompletableFuture<>();
+    when(historyDB.getStorageSizeInBytes()).thenReturn(CAPACITY);
+    when(historyDB.whenDistanceIndexReady()).thenReturn(distanceIndexReady);
+    when(historyDB.getFarthestContentKeys(1)).thenReturn(List.of(farthest));
+
+    pruningService.start().join();
+
+    verify(historyDB, never()).getFarthestContentKeys(anyInt());
+    distanceIndexReady.complete(null);
+    assertThat(radiusUpdates)
+        .containsExactly(DistanceUtil.contentDistance(LOCAL_NODE_ID, farthest));
+  }
+}
@@ -0,0 +1,128 @@
+package samba.services.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.domain.content.ContentType;
+import samba.rocksdb.ReadLatencySample;
+import samba.storage.HistoryDB;
+import samba.storage.ScrubResult;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.pegasys.teku.infrastructure.async.AsyncRunner;
+import tech.pegasys.teku.infrastructure.time.TimeProvider;
+import tech.pegasys.teku.infrastructure.unsigned.UInt64;
+
+public class StorageScrubbingServiceTest {
+
+  private static final int MAX_WORKERS = 4;
+  private static final String FIRST_HEADER_SHARD = "scrubCheckpoint:BLOCK_HEADER:0";
+
+  private HistoryDB historyDB;
+  private TimeProvider timeProvider;
+  private StorageScrubbingService scrubbingService;
+
+  @BeforeEach
+  public void setUp() {
+    historyDB = mock(HistoryDB.class);
+    timeProvider = mock(TimeProvider.class);
+    when(timeProvider.getTimeInMillis()).thenReturn(UInt64.ZERO);
+    when(historyDB.sampleReadLatency()).thenReturn(new ReadLatencySample(0, 0));
+    when(historyDB.scrubContent(any(), any(), any(), anyInt()))
+        .thenReturn(new ScrubResult(0, List.of(), Optional.empty()));
+    // every shard scrubbed in the current pass
+    when(historyDB.getMetadata(anyString())).thenReturn(Optional.of(Bytes.EMPTY));
+    scrubbingService =
+        new StorageScrubbingService(
+            new NoOpMetricsSystem(), mock(AsyncRunner.class), timeProvider, historyDB, MAX_WORKERS);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    scrubbingService.stop().join();
+  }
+
+  @Test
+  public void shouldResumeShardFromItsCheckpoint() throws Exception {
+    final Bytes checkpoint = Bytes.fromHexString("0x000102");
+    final Bytes next = Bytes.fromHexString("0x00010300");
+    final Bytes invalid = Bytes.fromHexString("0x000103");
+    when(historyDB.getMetadata(FIRST_HEADER_SHARD)).thenReturn(Optional.of(checkpoint));
+    when(historyDB.scrubContent(eq(ContentType.BLOCK_HEADER), eq(checkpoint), any(), anyInt()))
+        .thenReturn(new ScrubResult(2, List.of(invalid), Optional.of(next)));
+    scrubbingService.start().join();
+
+    scrubbingService.scrub();
+
+    verify(historyDB).scrubContent(eq(ContentType.BLOCK_HEADER), eq(checkpoint), any(), anyInt());
+    verify(historyDB).saveMetadata(FIRST_HEADER_SHARD, next);
+  }
+
+  @Test
+  public void shouldNotStartPassBeforeInterval() throws Exception {
+    when(historyDB.getMetadata("scrubPassCompleted"))
+        .thenReturn(Optional.of(Bytes.ofUnsignedLong(0)));
+    scrubbingService.start().join();
+
+    scrubbingService.scrub();
+
+    verify(historyDB, never()).scrubContent(any(), any(), any(), anyInt());
+    verify(historyDB, never()).saveMetadata(any(), any());
+  }
+
+  @Test
+  public void shouldStartPassFromFirstKeyOfEachShardOnceDue() throws Exception {
+    when(historyDB.getMetadata("scrubPassCompleted"))
+        .thenReturn(Optional.of(Bytes.ofUnsignedLong(0)));
+    when(timeProvider.getTimeInMillis())
+        .thenReturn(UInt64.valueOf(StorageScrubbingService.PASS_INTERVAL.toMillis()));
+    scrubbingService.start().join();
+
+    scrubbingService.scrub();
+
+    verify(historyDB)
+        .saveMetadata(FIRST_HEADER_SHARD, Bytes.fromHexString("0x00" + "00".repeat(32)));
+    verify(
+            historyDB,
+            times(
+                StorageScrubbingService.SCRUBBED_CONTENT_TYPES.size()
+                    * StorageScrubbingService.SHARDS_PER_CONTENT_TYPE))
+        .saveMetadata(anyString(), any());
+  }
+
+  @Test
+  public void shouldBackOffWhenReadLatencyRises() throws Exception {
+    when(historyDB.sampleReadLatency())
+        .thenReturn(new ReadLatencySample(0, 0))
+        // 10 us per read
+        .thenReturn(new ReadLatencySample(1_000, 10_000))
+        .thenReturn(new ReadLatencySample(2_000, 20_000))
+        .thenReturn(new ReadLatencySample(3_000, 30_000))
+        // 40 us per read
+        .thenReturn(new ReadLatencySample(4_000, 70_000));
+    scrubbingService.start().join();
+
+    scrubbingService.scrub();
+    scrubbingService.scrub();
+    scrubbingService.scrub();
+    assertThat(scrubbingService.getActiveWorkerCount()).isEqualTo(MAX_WORKERS);
+
+    scrubbingService.scrub();
+    assertThat(scrubbingService.getActiveWorkerCount()).isEqualTo(MAX_WORKERS / 2);
+  }
+}
@@ -0,0 +1,139 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentUtil;
+import samba.util.DefaultContent;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachedHistoryDBTest {
+
+  private static final Bytes HEADER_KEY =
+      Bytes.fromHexString("0x00720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+  private static final Bytes BODY_KEY =
+      Bytes.fromHexString("0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+  private static final Bytes NUMBER_KEY = Bytes.fromHexString("0x03ed47e10000000000");
+  private static final Bytes HEADER = Bytes.fromHexString("0x0800000001020304");
+  private static final Bytes BODY = Bytes.fromHexString("0x0800000005060708");
+
+  private HistoryDB delegate;
+  private CachedHistoryDB cachedHistoryDB;
+
+  @BeforeEach
+  public void setUp() {
+    delegate = mock(HistoryDB.class);
+    cachedHistoryDB = new CachedHistoryDB(delegate, new NoOpMetricsSystem(), 1_000_000);
+  }
+
+  @Test
+  public void shouldServeRepeatedLookupsFromCache() {
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.of(HEADER));
+
+    assertThat(cachedHistoryDB.get(ContentKey.decode(HEADER_KEY))).contains(HEADER);
+    assertThat(cachedHistoryDB.get(ContentKey.decode(HEADER_KEY))).contains(HEADER);
+
+    verify(delegate, times(1)).get(any(ContentKey.class));
+    assertThat(cachedHistoryDB.getCacheSizeInBytes()).isGreaterThan(HEADER.size());
+  }
+
+  @Test
+  public void shouldServeContentBuffersFromCacheAndReleaseReadBuffer() {
+    final AtomicInteger releases = new AtomicInteger();
+    final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BODY.size());
+    BODY.appendTo(readBuffer.duplicate());
+    when(delegate.getContentBuffer(any(ContentKey.class)))
+        .thenReturn(Optional.of(new ContentBuffer(readBuffer, releases::incrementAndGet)));
+
+    for (int i = 0; i < 2; i++) {
+      try (ContentBuffer content =
+          cachedHistoryDB.getContentBuffer(ContentKey.decode(BODY_KEY)).orElseThrow()) {
+        assertThat(content.content()).isEqualTo(BODY);
+        assertThat(content.contentWithSizePrefix())
+            .isEqualTo(Bytes.concatenate(Bytes.of(BODY.size()), BODY));
+      }
+    }
+
+    verify(delegate, times(1)).getContentBuffer(any(ContentKey.class));
+    assertThat(releases).hasValue(1);
+  }
+
+  @Test
+  public void shouldNotCacheMissingContent() {
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.empty());
+
+    assertThat(cachedHistoryDB.get(ContentKey.decode(BODY_KEY))).isEmpty();
+    assertThat(cachedHistoryDB.get(ContentKey.decode(BODY_KEY))).isEmpty();
+
+    verify(delegate, times(2)).get(any(ContentKey.class));
+  }
+
+  @Test
+  public void shouldServeHeaderByNumberFromHeaderCache() {
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.of(HEADER));
+    when(delegate.getBlockHashByBlockNumber(NUMBER_KEY)).thenReturn(Optional.of(HEADER_KEY));
+
+    assertThat(cachedHistoryDB.get(ContentKey.decode(HEADER_KEY))).contains(HEADER);
+    assertThat(cachedHistoryDB.get(ContentKey.decode(NUMBER_KEY))).contains(HEADER);
+
+    verify(delegate, times(1)).get(any(ContentKey.class));
+  }
+
+  @Test
+  public void shouldDecodeTypedContentFromCache() {
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.of(DefaultContent.value1));
+    final BlockHeader blockHeader =
+        ContentUtil.createBlockHeaderfromSszBytes(DefaultContent.value1)
+            .orElseThrow()
+            .getBlockHeader();
+
+    for (int i = 0; i < 2; i++) {
+      assertThat(cachedHistoryDB.getBlockHeaderByBlockHash(DefaultContent.key1))
+          .hasValueSatisfying(header -> assertThat(header.getBlockHeader()).isEqualTo(blockHeader));
+    }
+
+    verify(delegate, times(1)).get(any(ContentKey.class));
+    verify(delegate, never()).getBlockHeaderByBlockHash(any());
+  }
+
+  @Test
+  public void shouldDropDeletedContent() {
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.of(BODY));
+    cachedHistoryDB.get(ContentKey.decode(BODY_KEY));
+
+    cachedHistoryDB.deleteContent(BODY_KEY);
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.empty());
+
+    assertThat(cachedHistoryDB.get(ContentKey.decode(BODY_KEY))).isEmpty();
+    verify(delegate).deleteContent(BODY_KEY);
+  }
+
+  @Test
+  public void shouldKeepCacheWithinBudget() {
+    final CachedHistoryDB smallCache =
+        new CachedHistoryDB(delegate, new NoOpMetricsSystem(), 10_000);
+    when(delegate.get(any(ContentKey.class))).thenReturn(Optional.of(Bytes.wrap(new byte[1_000])));
+
+    for (int i = 0; i < 100; i++) {
+      final Bytes key = Bytes.concatenate(Bytes.of(0x01), Bytes.random(32));
+      smallCache.get(ContentKey.decode(key));
+    }
+
+    assertThat(smallCache.getCacheSizeInBytes()).isLessThanOrEqualTo(10_000);
+  }
+}
@@ -0,0 +1,65 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.junit.jupiter.api.Test;
+
+public class ContentBufferTest {
+
+  private static final Bytes CONTENT = Bytes.random(300);
+  // 300 as an unsigned LEB128
+  private static final Bytes PREFIXED_CONTENT = Bytes.concatenate(Bytes.of(0xac, 0x02), CONTENT);
+
+  @Test
+  public void shouldWriteSizePrefixInFrontOfContent() {
+    final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(ContentBuffer.SIZE_PREFIX_CAPACITY + CONTENT.size());
+    buffer.position(ContentBuffer.SIZE_PREFIX_CAPACITY);
+    buffer.put(CONTENT.toArrayUnsafe()).position(ContentBuffer.SIZE_PREFIX_CAPACITY);
+
+    try (ContentBuffer contentBuffer = new ContentBuffer(buffer, () -> {})) {
+      assertThat(contentBuffer.size()).isEqualTo(CONTENT.size());
+      assertThat(contentBuffer.content()).isEqualTo(CONTENT);
+      assertThat(contentBuffer.contentWithSizePrefix()).isEqualTo(PREFIXED_CONTENT);
+      assertThat(contentBuffer.content()).isEqualTo(CONTENT);
+    }
+  }
+
+  @Test
+  public void shouldPrefixContentWithoutRoomForIt() {
+    try (ContentBuffer contentBuffer = ContentBuffer.wrap(CONTENT)) {
+      assertThat(contentBuffer.contentWithSizePrefix()).isEqualTo(PREFIXED_CONTENT);
+    }
+  }
+
+  @Test
+  public void shouldReleaseBufferOnce() {
+    final AtomicInteger releases = new AtomicInteger();
+    final ContentBuffer contentBuffer =
+        new ContentBuffer(ByteBuffer.allocateDirect(10), releases::incrementAndGet);
+
+    contentBuffer.close();
+    contentBuffer.close();
+
+    assertThat(releases).hasValue(1);
+  }
+
+  @Test
+  public void shouldReuseReleasedBuffersWithinRetainedBytes() {
+    final DirectBufferPool pool = new DirectBufferPool(8_192);
+    final ByteBuffer first = pool.acquire(5_000);
+    final ByteBuffer second = pool.acquire(5_000);
+    assertThat(first.capacity()).isEqualTo(8_192);
+
+    pool.release(first);
+    pool.release(second);
+
+    assertThat(pool.getRetainedBytes()).isEqualTo(8_192);
+    assertThat(pool.acquire(6_000)).isSameAs(first);
+    assertThat(pool.getRetainedBytes()).isZero();
+  }
+}
@@ -0,0 +1,84 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import samba.rocksdb.KeyValueSegment;
+import samba.rocksdb.KeyValueStorage;
+import samba.rocksdb.Segment;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ContentKeyFilterTest {
+
+  private static final List<Segment> SEGMENTS =
+      List.of(KeyValueSegment.BLOCK_HEADER, KeyValueSegment.BLOCK_BODY);
+  private static final byte[] HEADER_KEY = new byte[] {0x00, 0x01};
+  private static final byte[] BODY_KEY = new byte[] {0x01, 0x01};
+  private static final byte[] MISSING_KEY = new byte[] {0x02, 0x01};
+
+  private KeyValueStorage storage;
+  private ContentKeyFilter contentKeyFilter;
+
+  @BeforeEach
+  public void setUp() {
+    storage = mock(KeyValueStorage.class);
+    when(storage.streamKeys(KeyValueSegment.BLOCK_HEADER)).thenReturn(Stream.of(HEADER_KEY));
+    when(storage.streamKeys(KeyValueSegment.BLOCK_BODY)).thenReturn(Stream.of(BODY_KEY));
+    contentKeyFilter = new ContentKeyFilter(new NoOpMetricsSystem(), storage, SEGMENTS);
+  }
+
+  @Test
+  public void shouldReportEveryKeyUntilBuilt() {
+    assertThat(contentKeyFilter.isReady()).isFalse();
+    assertThat(contentKeyFilter.mightContain(MISSING_KEY)).isTrue();
+
+    contentKeyFilter.onFalsePositive();
+    assertThat(contentKeyFilter.getObservedFalsePositiveRate()).isZero();
+  }
+
+  @Test
+  public void shouldBeBuiltFromStoredKeys() throws InterruptedException {
+    build();
+
+    assertThat(contentKeyFilter.mightContain(HEADER_KEY)).isTrue();
+    assertThat(contentKeyFilter.mightContain(BODY_KEY)).isTrue();
+    assertThat(contentKeyFilter.mightContain(MISSING_KEY)).isFalse();
+  }
+
+  @Test
+  public void shouldFollowSavedAndDeletedKeys() throws InterruptedException {
+    build();
+
+    contentKeyFilter.add(MISSING_KEY);
+    assertThat(contentKeyFilter.mightContain(MISSING_KEY)).isTrue();
+    contentKeyFilter.remove(HEADER_KEY);
+    assertThat(contentKeyFilter.mightContain(HEADER_KEY)).isFalse();
+  }
+
+  @Test
+  public void shouldTrackObservedFalsePositiveRate() throws InterruptedException {
+    build();
+
+    contentKeyFilter.mightContain(MISSING_KEY);
+    contentKeyFilter.mightContain(MISSING_KEY);
+    contentKeyFilter.mightContain(MISSING_KEY);
+    contentKeyFilter.onFalsePositive();
+
+    assertThat(contentKeyFilter.getObservedFalsePositiveRate()).isEqualTo(0.25);
+  }
+
+  private void build() throws InterruptedException {
+    contentKeyFilter.buildInBackground(2);
+    for (int i = 0; i < 500 && !contentKeyFilter.isReady(); i++) {
+      Thread.sleep(10);
+    }
+    assertThat(contentKeyFilter.isReady()).isTrue();
+  }
+}
@@ -0,0 +1,83 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CuckooFilterTest {
+
+  @Test
+  public void shouldContainAddedKeys() {
+    final CuckooFilter filter = new CuckooFilter(10_000);
+    final List<byte[]> keys = keys(0, 9_000);
+    keys.forEach(key -> assertThat(filter.add(key)).isTrue());
+
+    assertThat(keys).allMatch(filter::mightContain);
+    assertThat(filter.size()).isEqualTo(9_000);
+  }
+
+  @Test
+  public void shouldRarelyContainKeysNotAdded() {
+    final CuckooFilter filter = new CuckooFilter(10_000);
+    keys(0, 9_000).forEach(filter::add);
+
+    final long falsePositives = keys(9_000, 109_000).stream().filter(filter::mightContain).count();
+
+    // about 0.011% expected at this load
+    assertThat(filter.expectedFalsePositiveRate()).isLessThan(0.0002);
+    assertThat(falsePositives).isLessThan(100);
+  }
+
+  @Test
+  public void shouldRemoveKeys() {
+    final CuckooFilter filter = new CuckooFilter(1_000);
+    final byte[] key = key(1);
+    final byte[] kept = key(2);
+    filter.add(key);
+    filter.add(key);
+    filter.add(kept);
+
+    assertThat(filter.remove(key)).isTrue();
+    assertThat(filter.mightContain(key)).isTrue();
+    assertThat(filter.remove(key)).isTrue();
+    assertThat(filter.mightContain(key)).isFalse();
+    assertThat(filter.remove(key)).isFalse();
+    assertThat(filter.mightContain(kept)).isTrue();
+    assertThat(filter.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRejectKeysOnceFullWithoutLosingAddedOnes() {
+    final CuckooFilter filter = new CuckooFilter(1_000);
+    final List<byte[]> added = new ArrayList<>();
+    int next = 0;
+    while (!filter.isFull()) {
+      final byte[] key = key(next++);
+      assertThat(filter.add(key)).isTrue();
+      added.add(key);
+    }
+
+    assertThat(filter.add(key(next))).isFalse();
+    assertThat(added.size()).isGreaterThanOrEqualTo(1_000);
+    assertThat(added).allMatch(filter::mightContain);
+
+    assertThat(filter.remove(added.get(0))).isTrue();
+    assertThat(added.subList(1, added.size())).allMatch(filter::mightContain);
+  }
+
+  private static List<byte[]> keys(final int from, final int to) {
+    final List<byte[]> keys = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      keys.add(key(i));
+    }
+    return keys;
+  }
+
+  private static byte[] key(final int i) {
+    return ByteBuffer.allocate(33).put((byte) 0x01).putInt(i).array();
+  }
+}
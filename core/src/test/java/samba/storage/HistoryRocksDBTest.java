@@ -1,24 +1,48 @@
 package samba.storage;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
 import samba.domain.content.ContentUtil;
+import samba.rocksdb.BlockNumberKeys;
+import samba.rocksdb.InMemoryKeyValueStorage;
 import samba.rocksdb.KeyValueSegment;
 import samba.rocksdb.KeyValueStorageTransaction;
 import samba.rocksdb.RocksDBInstance;
+import samba.rocksdb.exceptions.StorageException;
+import samba.util.DistanceUtil;
+import samba.util.Util;
 import samba.validation.util.ValidationUtil;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.bytes.Bytes32;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
@@ -34,7 +58,7 @@ public class HistoryRocksDBTest {
     this.rocksDBInstance = mock(RocksDBInstance.class);
     this.historyRocksDB = new HistoryRocksDB(this.rocksDBInstance);
     this.keyValueStorageTransaction = mock(KeyValueStorageTransaction.class);
-    when(this.rocksDBInstance.startTransaction()).thenReturn(this.keyValueStorageTransaction);
+    when(this.rocksDBInstance.startWriteBatch()).thenReturn(this.keyValueStorageTransaction);
   }
 
   @Test
@@ -57,7 +81,8 @@ public class HistoryRocksDBTest {
       Bytes value =
           Bytes.fromHexString(
               "0x080000002d020000f90222a02c58e3212c085178dbb1277e2f3c24b3f451267a75a234945c1581af639f4a7aa058a694212e0416353a4d3865ccf475496b55af3a3d3b002057000741af9731919400192fb10df37c9fb26829eb2cc623cd1bf599e8a067a9fb631f4579f9015ef3c6f1f3830dfa2dc08afe156f750e90022134b9ebf6a018a2978fc62cd1a23e90de920af68c0c3af3330327927cda4c005faccefb5ce7a0168a3827607627e781941dc777737fc4b6beb69a8b139240b881992b35b854eab9010000200000400000001000400080080000000000010004010001000008000000002000110000000000000090020001110402008000080208040010000000a8000000000000000000210822000900205020000000000160020020000400800040000000000042080000000400004008084020001000001004004000001000000000000001000000110000040000010200844040048101000008002000404810082002800000108020000200408008000100000000000000002020000b00010080600902000200000050000400000000000000400000002002101000000a00002000003420000800400000020100002000000000000000c00040000001000000100187327bd7ad3116ce83e147ed8401c9c36483140db184627d9afa9a457468657265756d50504c4e532f326d696e6572735f55534133a0f1a32e24eb62f01ec3f2b3b5893f7be9062fbf5482bc0d490a54352240350e26882087fbb243327696851aae1651b60cc53ffa2df1bae1550a0000000000000000000000000000000000000000000063d45d0a2242d35484f289108b3c80cccf943005db0db6c67ffea4c4a47fd529f64d74fa6068a3fd89a2c0d9938c3a751c4706d0b0e8f99dec6b517cf12809cb413795c8c678b3171303ddce2fa1a91af6a0961b9db72750d4d5ea7d5103d8d25f23f522d9af4c13fe8ac7a7d9d64bb08d980281eea5298b93cb1085fedc19d4c60afdd52d116cfad030cf4223e50afa8031154a2263c76eb08b96b5b8fdf5e5c30825d5c918eefb89daaf0e8573f20643614d9843a1817b6186074e4e53b22cf49046d977c901ec00aef1555fa89468adc2a51a081f186c995153d1cba0f2887d585212d68be4b958d309fbe611abe98a9bfc3f4b7a7b72bb881b888d89a04ecfe08b1c1a48554a48328646e4f864fe722f12d850f0be29e3829d1f94b34083032a9b6f43abd559785c996229f8e022d4cd6dcde4aafcce6445fe8743e1fcbe8672a99f9d9e3a5ca10c01f3751d69fbd22197f0680bc1529151130b22759bf185f4dbce357f46eb9cc8e21ea78f49b298eea2756d761fe23de8bea0d2e15aed136d689f6d252c54ebadc3e46b84a397b681edf7ec63522b9a298301084d019d0020000000000000000000000000000000000000000000000000000000000000");
-      Bytes numberKey = Bytes.fromHexString("0x03ed47e10000000000");
+      // block 14763501, keyed by big-endian number
+      Bytes numberKey = Bytes.fromHexString("0x0000000000e147ed");
 
       boolean result = this.historyRocksDB.saveContent(key, value);
 
@@ -97,7 +122,296 @@ public class HistoryRocksDBTest {
       assertTrue(result);
       verify(this.keyValueStorageTransaction, times(1))
           .put(eq(KeyValueSegment.BLOCK_BODY), eq(key.toArray()), eq(value.toArray()));
+      verify(this.keyValueStorageTransaction, times(1))
+          .put(
+              eq(KeyValueSegment.CONTENT_DISTANCE_INDEX),
+              eq(DistanceUtil.contentDistance(Bytes32.ZERO, key).toArray()),
+              eq(key.toArray()));
+      verify(this.keyValueStorageTransaction, times(1)).commit();
+    }
+  }
+
+  @Test
+  public void testSaveContentsInSingleWriteBatch() {
+    try (MockedStatic<ContentUtil> mockedContentUtil = mockStatic(ContentUtil.class)) {
+      mockedContentUtil
+          .when(() -> ContentUtil.createContentKeyFromSszBytes(any(Bytes.class)))
+          .thenCallRealMethod();
+
+      Bytes bodyKey =
+          Bytes.fromHexString(
+              "0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes receiptKey =
+          Bytes.fromHexString(
+              "0x02720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes value = Bytes.fromHexString("0x1234");
+      List<Boolean> result =
+          this.historyRocksDB.saveContents(List.of(bodyKey, receiptKey), List.of(value, value));
+
+      assertEquals(List.of(true, true), result);
+      verify(this.keyValueStorageTransaction, times(1))
+          .put(eq(KeyValueSegment.BLOCK_BODY), eq(bodyKey.toArray()), eq(value.toArray()));
+      verify(this.keyValueStorageTransaction, times(1))
+          .put(eq(KeyValueSegment.RECEIPT), eq(receiptKey.toArray()), eq(value.toArray()));
+      verify(this.keyValueStorageTransaction, times(1)).commit();
+    }
+  }
+
+  @Test
+  public void testSaveContentsCountsContentInTheSameWriteBatch() {
+    try (MockedStatic<ContentUtil> mockedContentUtil = mockStatic(ContentUtil.class)) {
+      mockedContentUtil
+          .when(() -> ContentUtil.createContentKeyFromSszBytes(any(Bytes.class)))
+          .thenCallRealMethod();
+
+      Bytes bodyKey =
+          Bytes.fromHexString(
+              "0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes otherBodyKey =
+          Bytes.fromHexString(
+              "0x01820704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes value = Bytes.fromHexString("0x1234");
+      this.historyRocksDB.saveContents(List.of(bodyKey, otherBodyKey), List.of(value, value));
+
+      verify(this.keyValueStorageTransaction, times(1))
+          .merge(
+              eq(KeyValueSegment.METADATA),
+              eq("contentCount:BLOCK_BODY".getBytes(StandardCharsets.UTF_8)),
+              eq(Bytes.ofUnsignedLong(2, ByteOrder.LITTLE_ENDIAN).toArray()));
+      verify(this.keyValueStorageTransaction, times(1))
+          .merge(
+              eq(KeyValueSegment.METADATA),
+              eq("contentBytes:BLOCK_BODY".getBytes(StandardCharsets.UTF_8)),
+              eq(Bytes.ofUnsignedLong(70, ByteOrder.LITTLE_ENDIAN).toArray()));
+      verify(this.keyValueStorageTransaction, times(1)).commit();
+    }
+  }
+
+  @Test
+  public void testSaveContentsRejectsInvalidBlockHeader() {
+    try (MockedStatic<ContentUtil> mockedContentUtil = mockStatic(ContentUtil.class);
+        MockedStatic<ValidationUtil> mockedValidationUtil = mockStatic(ValidationUtil.class)) {
+      mockedValidationUtil.when(() -> ValidationUtil.isBlockHeaderValid(any())).thenReturn(false);
+      mockedContentUtil
+          .when(() -> ContentUtil.createContentKeyFromSszBytes(any(Bytes.class)))
+          .thenCallRealMethod();
+      mockedContentUtil
+          .when(() -> ContentUtil.createBlockHeaderfromSszBytes(any(Bytes.class)))
+          .thenReturn(Optional.of(mock(ContentBlockHeader.class)));
+
+      Bytes headerKey =
+          Bytes.fromHexString(
+              "0x00720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes bodyKey =
+          Bytes.fromHexString(
+              "0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes value = Bytes.fromHexString("0x1234");
+      List<Boolean> result =
+          this.historyRocksDB.saveContents(List.of(headerKey, bodyKey), List.of(value, value));
+
+      assertEquals(List.of(false, true), result);
+      verify(this.keyValueStorageTransaction, never())
+          .put(eq(KeyValueSegment.BLOCK_HEADER), any(), any());
+      verify(this.keyValueStorageTransaction, times(1))
+          .put(eq(KeyValueSegment.BLOCK_BODY), eq(bodyKey.toArray()), eq(value.toArray()));
+    }
+  }
+
+  @Test
+  public void testSaveContentRejectsInvalidBlockHeader() {
+    try (MockedStatic<ContentUtil> mockedContentUtil = mockStatic(ContentUtil.class);
+        MockedStatic<ValidationUtil> mockedValidationUtil = mockStatic(ValidationUtil.class)) {
+      mockedValidationUtil.when(() -> ValidationUtil.isBlockHeaderValid(any())).thenReturn(false);
+      mockedContentUtil
+          .when(() -> ContentUtil.createContentKeyFromSszBytes(any(Bytes.class)))
+          .thenCallRealMethod();
+      mockedContentUtil
+          .when(() -> ContentUtil.createBlockHeaderfromSszBytes(any(Bytes.class)))
+          .thenReturn(Optional.of(mock(ContentBlockHeader.class)));
+
+      Bytes headerKey =
+          Bytes.fromHexString(
+              "0x00720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      boolean result = this.historyRocksDB.saveContent(headerKey, Bytes.fromHexString("0x1234"));
+
+      assertFalse(result);
+      verify(this.keyValueStorageTransaction, never()).commit();
+      verify(this.keyValueStorageTransaction, times(1)).rollback();
+    }
+  }
+
+  @Test
+  public void testSaveContentsDropsWritesOfFailedContent() {
+    try (MockedStatic<ContentUtil> mockedContentUtil = mockStatic(ContentUtil.class)) {
+      mockedContentUtil
+          .when(() -> ContentUtil.createContentKeyFromSszBytes(any(Bytes.class)))
+          .thenCallRealMethod();
+
+      Bytes bodyKey =
+          Bytes.fromHexString(
+              "0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes receiptKey =
+          Bytes.fromHexString(
+              "0x02720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+      Bytes value = Bytes.fromHexString("0x1234");
+      // the receipt is put, then its distance index entry fails
+      doThrow(new StorageException("write failed"))
+          .when(this.keyValueStorageTransaction)
+          .put(eq(KeyValueSegment.CONTENT_DISTANCE_INDEX), any(), eq(receiptKey.toArray()));
+      List<Boolean> result =
+          this.historyRocksDB.saveContents(List.of(bodyKey, receiptKey), List.of(value, value));
+
+      assertEquals(List.of(true, false), result);
+      verify(this.keyValueStorageTransaction, times(2)).setSavePoint();
+      verify(this.keyValueStorageTransaction, times(1)).rollbackToSavePoint();
+      verify(this.keyValueStorageTransaction, never())
+          .merge(
+              eq(KeyValueSegment.METADATA),
+              eq("contentCount:RECEIPT".getBytes(StandardCharsets.UTF_8)),
+              any());
+      verify(this.keyValueStorageTransaction, times(1)).commit();
+    }
+  }
+
+  @Test
+  public void testConcurrentSavesOfNewContentCountItOnce() throws Exception {
+    final HistoryRocksDB historyDB =
+        new HistoryRocksDB(new InMemoryKeyValueStorage(Arrays.asList(KeyValueSegment.values())));
+    final Bytes bodyKey =
+        Bytes.fromHexString("0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    final Bytes value = Bytes.fromHexString("0x1234");
+    final int savers = 8;
+    final CyclicBarrier barrier = new CyclicBarrier(savers);
+    final ExecutorService executor = Executors.newFixedThreadPool(savers);
+    try {
+      final List<Future<Boolean>> saves =
+          IntStream.range(0, savers)
+              .mapToObj(
+                  __ ->
+                      executor.submit(
+                          () -> {
+                            barrier.await();
+                            return historyDB.saveContent(bodyKey, value);
+                          }))
+              .toList();
+      for (Future<Boolean> save : saves) {
+        assertTrue(save.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final ContentTypeStats bodyStats =
+        historyDB.getContentTypeStats().stream()
+            .filter(stats -> stats.type().equals(KeyValueSegment.BLOCK_BODY.getName()))
+            .findFirst()
+            .orElseThrow();
+    assertEquals(1, bodyStats.count());
+    assertEquals(bodyKey.size() + value.size(), bodyStats.bytes());
+  }
+
+  @Test
+  public void testContainsAllInSingleLookup() {
+    Bytes headerKey =
+        Bytes.fromHexString("0x00720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    Bytes bodyKey =
+        Bytes.fromHexString("0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    Bytes numberKey = Bytes.fromHexString("0x03ed47e10000000000");
+    when(this.rocksDBInstance.multiGet(
+            eq(List.of(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER)), any()))
+        .thenReturn(List.of(Optional.of(headerKey.toArray())));
+    when(this.rocksDBInstance.multiContains(
+            eq(
+                List.of(
+                    KeyValueSegment.BLOCK_HEADER,
+                    KeyValueSegment.BLOCK_BODY,
+                    KeyValueSegment.BLOCK_HEADER)),
+            any()))
+        .thenReturn(List.of(true, false, true));
+
+    List<Boolean> stored =
+        this.historyRocksDB.containsAll(
+            List.of(
+                ContentKey.decode(headerKey),
+                ContentKey.decode(bodyKey),
+                ContentKey.decode(numberKey)));
+
+    assertEquals(List.of(true, false, true), stored);
+    verify(this.rocksDBInstance, never()).get(eq(KeyValueSegment.BLOCK_HEADER), any());
+  }
+
+  @Test
+  public void testStreamBlocksResolvesEachBatchInSingleLookup() {
+    Bytes firstHeaderKey =
+        Bytes.fromHexString("0x00720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    Bytes secondHeaderKey =
+        Bytes.fromHexString("0x00820704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    Bytes secondBodyKey =
+        Bytes.fromHexString("0x01820704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    when(this.rocksDBInstance.streamFromKey(
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            BlockNumberKeys.toKey(10),
+            BlockNumberKeys.toKey(20)))
+        .thenReturn(
+            Stream.of(
+                Pair.of(BlockNumberKeys.toKey(10), firstHeaderKey.toArray()),
+                Pair.of(BlockNumberKeys.toKey(11), secondHeaderKey.toArray())));
+    // the first header was pruned
+    when(this.rocksDBInstance.multiGet(any(), any()))
+        .thenReturn(
+            List.of(
+                Optional.empty(),
+                Optional.empty(),
+                Optional.of(new byte[] {1}),
+                Optional.of(new byte[] {2})));
+
+    try (Stream<StoredBlock> blocks = this.historyRocksDB.streamBlocks(10, 20, true, false)) {
+      assertEquals(
+          List.of(
+              new StoredBlock(
+                  11, secondHeaderKey, Bytes.of(1), Optional.of(Bytes.of(2)), Optional.empty())),
+          blocks.toList());
+    }
+    verify(this.rocksDBInstance, times(1))
+        .multiGet(
+            eq(
+                List.of(
+                    KeyValueSegment.BLOCK_HEADER,
+                    KeyValueSegment.BLOCK_BODY,
+                    KeyValueSegment.BLOCK_HEADER,
+                    KeyValueSegment.BLOCK_BODY)),
+            argThat(
+                keys ->
+                    keys.size() == 4
+                        && Arrays.equals(keys.get(2), secondHeaderKey.toArray())
+                        && Arrays.equals(keys.get(3), secondBodyKey.toArray())));
+  }
+
+  @Test
+  public void testGetContentBufferReadsLargeContentAgainIntoLargerBuffer() {
+    Bytes bodyKey =
+        Bytes.fromHexString("0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+    byte[] body = new byte[100_000];
+    Arrays.fill(body, (byte) 1);
+    when(this.rocksDBInstance.get(eq(KeyValueSegment.BLOCK_BODY), any(), any(ByteBuffer.class)))
+        .thenAnswer(
+            invocation -> {
+              ByteBuffer buffer = invocation.getArgument(2);
+              int written = Math.min(body.length, buffer.remaining());
+              buffer.duplicate().put(body, 0, written);
+              buffer.limit(buffer.position() + written);
+              return body.length;
+            });
+
+    try (ContentBuffer content =
+        this.historyRocksDB.getContentBuffer(ContentKey.decode(bodyKey)).orElseThrow()) {
+      assertEquals(Bytes.wrap(body), content.content());
+      assertEquals(
+          Bytes.concatenate(Util.writeUnsignedLeb128(body.length), Bytes.wrap(body)),
+          content.contentWithSizePrefix());
     }
+    verify(this.rocksDBInstance, times(2))
+        .get(eq(KeyValueSegment.BLOCK_BODY), any(), any(ByteBuffer.class));
   }
 
   @Test
@@ -154,7 +468,7 @@ public class HistoryRocksDBTest {
       verify(this.keyValueStorageTransaction, times(1))
           .put(
               eq(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER),
-              eq(key.toArray()),
+              eq(Bytes.fromHexString("0x0000000000e147ed").toArray()),
               eq(hashKey.toArray()));
       verify(this.keyValueStorageTransaction, times(1))
           .put(eq(KeyValueSegment.BLOCK_HEADER), eq(hashKey.toArray()), eq(value.toArray()));
@@ -0,0 +1,214 @@
+package samba.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import samba.domain.content.ContentBlockHeader;
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentUtil;
+import samba.util.DefaultContent;
+import samba.validation.util.ValidationUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+
+public class WriteBehindHistoryDBTest {
+
+  private static final int QUEUE_SIZE = 4;
+  private static final Bytes HEADER_KEY = DefaultContent.key1;
+  private static final Bytes BODY_KEY =
+      Bytes.fromHexString("0x01720704f3aa11c53cf344ea069db95cecb81ad7453c8f276b2a1062979611f09c");
+  private static final Bytes HEADER = DefaultContent.value1;
+  private static final Bytes BODY = Bytes.fromHexString("0x0800000005060708");
+  private static final Bytes OTHER_BODY = Bytes.fromHexString("0x0800000009101112");
+
+  private final CountDownLatch writing = new CountDownLatch(1);
+  private final CountDownLatch databaseStalled = new CountDownLatch(1);
+  private final List<Bytes> savedKeys = new ArrayList<>();
+  private final List<Bytes> savedValues = new ArrayList<>();
+  private MockedStatic<ValidationUtil> validationUtil;
+  private HistoryDB delegate;
+  private WriteBehindHistoryDB writeBehindHistoryDB;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    validationUtil = mockStatic(ValidationUtil.class);
+    validationUtil.when(() -> ValidationUtil.isBlockHeaderValid(any())).thenReturn(true);
+    delegate = mock(HistoryDB.class);
+    // the writer blocks in its first batch until the test lets it go
+    when(delegate.saveContents(anyList(), anyList())).thenAnswer(this::save);
+    writeBehindHistoryDB = new WriteBehindHistoryDB(delegate, new NoOpMetricsSystem(), QUEUE_SIZE);
+  }
+
+  private List<Boolean> save(final InvocationOnMock invocation) throws InterruptedException {
+    writing.countDown();
+    databaseStalled.await();
+    final List<Bytes> keys = invocation.getArgument(0);
+    synchronized (savedKeys) {
+      savedKeys.addAll(keys);
+      savedValues.addAll(invocation.getArgument(1));
+    }
+    return keys.stream().map(key -> true).toList();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    databaseStalled.countDown();
+    writeBehindHistoryDB.close();
+    validationUtil.close();
+  }
+
+  @Test
+  public void shouldServeQueuedContentBeforeItIsSaved() {
+    assertThat(writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER)).isTrue();
+
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(HEADER_KEY))).contains(HEADER);
+    try (ContentBuffer content =
+        writeBehindHistoryDB.getContentBuffer(ContentKey.decode(HEADER_KEY)).orElseThrow()) {
+      assertThat(content.content()).isEqualTo(HEADER);
+    }
+    when(delegate.containsAll(anyList())).thenReturn(List.of(false));
+    assertThat(
+            writeBehindHistoryDB.containsAll(
+                List.of(ContentKey.decode(HEADER_KEY), ContentKey.decode(BODY_KEY))))
+        .containsExactly(true, false);
+    verify(delegate, never()).get(any(ContentKey.class));
+  }
+
+  @Test
+  public void shouldRejectContentOnceQueueIsFull() throws Exception {
+    // one item taken by the stalled writer, then as many as the queue holds
+    assertThat(writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER)).isTrue();
+    writing.await();
+    assertThat(writeBehindHistoryDB.isWriteBacklogged()).isFalse();
+    for (int i = 0; i < QUEUE_SIZE; i++) {
+      assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, BODY)).isTrue();
+    }
+
+    assertThat(writeBehindHistoryDB.isWriteBacklogged()).isTrue();
+    assertThat(writeBehindHistoryDB.saveContents(List.of(BODY_KEY), List.of(BODY)))
+        .containsExactly(false);
+  }
+
+  @Test
+  public void shouldKeepQueuedContentWhenRejected() throws Exception {
+    assertThat(writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER)).isTrue();
+    writing.await();
+    for (int i = 0; i < QUEUE_SIZE; i++) {
+      assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, BODY)).isTrue();
+    }
+
+    assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, BODY)).isFalse();
+    assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, OTHER_BODY)).isFalse();
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(BODY_KEY))).contains(BODY);
+
+    databaseStalled.countDown();
+    writeBehindHistoryDB.close();
+    assertThat(savedKeys).containsExactly(HEADER_KEY, BODY_KEY);
+    assertThat(savedValues).containsExactly(HEADER, BODY);
+  }
+
+  @Test
+  public void shouldNotQueueInvalidHeaders() {
+    validationUtil.when(() -> ValidationUtil.isBlockHeaderValid(any())).thenReturn(false);
+
+    assertThat(writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER)).isFalse();
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(HEADER_KEY))).isEmpty();
+    assertThat(writeBehindHistoryDB.getQueueDepth()).isZero();
+    verify(delegate, never()).saveContents(anyList(), anyList());
+  }
+
+  @Test
+  public void shouldReadQueuedHeaderByHashAndByNumber() throws Exception {
+    final ContentBlockHeader header = new ContentBlockHeader(HEADER);
+    final Bytes numberKey = ContentUtil.createBlockNumberInSSZ(header);
+    writeBehindHistoryDB.saveContent(BODY_KEY, BODY);
+    writing.await();
+    assertThat(writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER)).isTrue();
+
+    assertThat(writeBehindHistoryDB.getBlockHeaderByBlockHash(HEADER_KEY))
+        .hasValueSatisfying(queued -> assertThat(queued.getSszBytes()).isEqualTo(HEADER));
+    assertThat(writeBehindHistoryDB.getBlockHashByBlockNumber(numberKey))
+        .contains(ContentUtil.createBlockHashKey(header));
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(numberKey))).contains(HEADER);
+    verify(delegate, never()).getBlockHashByBlockNumber(any());
+
+    new Thread(databaseStalled::countDown).start();
+    writeBehindHistoryDB.deleteContent(HEADER_KEY);
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(numberKey))).isEmpty();
+  }
+
+  @Test
+  public void shouldRetryBatchTheDatabaseFailedToSave() {
+    databaseStalled.countDown();
+    doThrow(new IllegalStateException("write stall"))
+        .doAnswer(this::save)
+        .when(delegate)
+        .saveContents(anyList(), anyList());
+
+    assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, BODY)).isTrue();
+    writeBehindHistoryDB.close();
+
+    assertThat(savedKeys).containsExactly(BODY_KEY);
+    verify(delegate, times(2)).saveContents(anyList(), anyList());
+  }
+
+  @Test
+  public void shouldDropBatchTheDatabaseKeepsFailingToSave() {
+    doThrow(new IllegalStateException("write stall"))
+        .when(delegate)
+        .saveContents(anyList(), anyList());
+
+    assertThat(writeBehindHistoryDB.saveContent(BODY_KEY, BODY)).isTrue();
+    writeBehindHistoryDB.close();
+
+    verify(delegate, times(WriteBehindHistoryDB.MAX_WRITE_ATTEMPTS))
+        .saveContents(anyList(), anyList());
+    assertThat(writeBehindHistoryDB.get(ContentKey.decode(BODY_KEY))).isEmpty();
+  }
+
+  @Test
+  public void shouldSaveQueuedContentOnClose() {
+    writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER);
+    writeBehindHistoryDB.saveContent(BODY_KEY, BODY);
+
+    databaseStalled.countDown();
+    writeBehindHistoryDB.close();
+
+    assertThat(savedKeys).containsExactly(HEADER_KEY, BODY_KEY);
+    assertThat(writeBehindHistoryDB.getQueueDepth()).isZero();
+  }
+
+  @Test
+  public void shouldNotSaveContentDeletedWhileQueued() throws Exception {
+    writeBehindHistoryDB.saveContent(HEADER_KEY, HEADER);
+    writing.await();
+    writeBehindHistoryDB.saveContent(BODY_KEY, BODY);
+
+    new Thread(databaseStalled::countDown).start();
+    writeBehindHistoryDB.deleteContent(BODY_KEY);
+    writeBehindHistoryDB.close();
+
+    assertThat(savedKeys).containsExactly(HEADER_KEY);
+    verify(delegate).deleteContent(BODY_KEY);
+  }
+}
@@ -0,0 +1,90 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+public class Era1FileTest {
+
+  private static final long STARTING_BLOCK_NUMBER = 8192;
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void shouldReadBlockEntries() throws IOException {
+    final Path path = tempDir.resolve("mainnet-00001-5ec1ffb8.era1");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeEntry(out, Era1File.VERSION, new byte[0]);
+    for (int i = 0; i < 2; i++) {
+      writeEntry(out, Era1File.COMPRESSED_HEADER, compress(Bytes.of(0xc0, i)));
+      writeEntry(out, Era1File.COMPRESSED_BODY, compress(Bytes.of(0xc1, i)));
+      writeEntry(out, Era1File.COMPRESSED_RECEIPTS, compress(Bytes.of(0xc2, i)));
+      writeEntry(
+          out, Era1File.TOTAL_DIFFICULTY, UInt256.valueOf(1_000 + i).toBytes().reverse().toArray());
+    }
+    writeEntry(out, Era1File.ACCUMULATOR, new byte[32]);
+    writeEntry(out, Era1File.BLOCK_INDEX, blockIndex(2));
+    Files.write(path, out.toByteArray());
+
+    final Era1File era1File = Era1File.open(path);
+
+    assertThat(era1File.getStartingBlockNumber()).isEqualTo(STARTING_BLOCK_NUMBER);
+    assertThat(era1File.getBlockCount()).isEqualTo(2);
+    assertThat(era1File.getHeaderRlp(1)).isEqualTo(Bytes.of(0xc0, 1));
+    assertThat(era1File.getBodyRlp(0)).isEqualTo(Bytes.of(0xc1, 0));
+    assertThat(era1File.getReceiptsRlp(1)).isEqualTo(Bytes.of(0xc2, 1));
+    assertThat(era1File.getTotalDifficulty(1)).isEqualTo(UInt256.valueOf(1_001));
+  }
+
+  @Test
+  public void shouldRejectTruncatedFile() throws IOException {
+    final Path path = tempDir.resolve("truncated.era1");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeEntry(out, Era1File.VERSION, new byte[0]);
+    writeEntry(out, Era1File.COMPRESSED_HEADER, compress(Bytes.of(0xc0)));
+    final byte[] bytes = out.toByteArray();
+    Files.write(path, Bytes.wrap(bytes).slice(0, bytes.length - 1).toArray());
+
+    assertThatThrownBy(() -> Era1File.open(path)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static void writeEntry(final ByteArrayOutputStream out, final int type, final byte[] data)
+      throws IOException {
+    final ByteBuffer header =
+        ByteBuffer.allocate(Era1File.ENTRY_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putShort((short) type).putInt(data.length).putShort((short) 0);
+    out.write(header.array());
+    out.write(data);
+  }
+
+  private static byte[] compress(final Bytes rlp) throws IOException {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (SnappyFramedOutputStream out = new SnappyFramedOutputStream(compressed)) {
+      out.write(rlp.toArrayUnsafe());
+    }
+    return compressed.toByteArray();
+  }
+
+  private static byte[] blockIndex(final int count) {
+    final ByteBuffer index =
+        ByteBuffer.allocate(Long.BYTES * (count + 2)).order(ByteOrder.LITTLE_ENDIAN);
+    index.putLong(STARTING_BLOCK_NUMBER);
+    for (int i = 0; i < count; i++) {
+      index.putLong(0);
+    }
+    index.putLong(count);
+    return index.array();
+  }
+}
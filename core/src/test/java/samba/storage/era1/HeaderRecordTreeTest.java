@@ -0,0 +1,61 @@
+package samba.storage.era1;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import samba.network.history.HistoryConstants;
+import samba.validation.HistoricalHashesAccumulator;
+import samba.validation.util.ValidationUtil;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.tuweni.bytes.Bytes32;
+import org.apache.tuweni.units.bigints.UInt256;
+import org.junit.jupiter.api.Test;
+
+public class HeaderRecordTreeTest {
+
+  @Test
+  public void shouldProveEveryHeaderOfAFullEpoch() {
+    final List<Bytes32> blockHashes = blockHashes(HistoryConstants.EPOCH_SIZE);
+    final HeaderRecordTree tree = new HeaderRecordTree(blockHashes, totalDifficulties(blockHashes));
+
+    for (int i : new int[] {0, 1, 4095, HistoryConstants.EPOCH_SIZE - 1}) {
+      assertThat(isValidProof(tree, blockHashes.get(i), i)).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldProveHeadersOfAPartialEpoch() {
+    final List<Bytes32> blockHashes = blockHashes(1_000);
+    final HeaderRecordTree tree = new HeaderRecordTree(blockHashes, totalDifficulties(blockHashes));
+
+    assertThat(isValidProof(tree, blockHashes.get(0), 0)).isTrue();
+    assertThat(isValidProof(tree, blockHashes.get(999), 999)).isTrue();
+    assertThat(isValidProof(tree, blockHashes.get(1), 0)).isFalse();
+    assertThatThrownBy(() -> tree.proof(1_000)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static boolean isValidProof(
+      final HeaderRecordTree tree, final Bytes32 blockHash, final int index) {
+    final List<Bytes32> proof = tree.proof(index);
+    assertThat(proof).hasSize(HistoricalHashesAccumulator.TREE_DEPTH);
+    return ValidationUtil.isValidMerkleBranch(
+        blockHash,
+        proof,
+        HistoricalHashesAccumulator.TREE_DEPTH,
+        HistoryConstants.EPOCH_SIZE * 2 * 2 + index * 2,
+        tree.root());
+  }
+
+  private static List<Bytes32> blockHashes(final int count) {
+    return IntStream.range(0, count).mapToObj(i -> Bytes32.random()).toList();
+  }
+
+  private static List<UInt256> totalDifficulties(final List<Bytes32> blockHashes) {
+    return IntStream.range(0, blockHashes.size())
+        .mapToObj(i -> UInt256.valueOf(17_179_869_184L + i * 1_000L))
+        .toList();
+  }
+}
@@ -2,6 +2,9 @@ package samba.validation.util;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import samba.domain.content.ContentKey;
+import samba.domain.content.ContentType;
+import samba.schema.content.ssz.blockheader.SszEphemeralHeaderList;
 import samba.util.DefaultContent;
 
 import java.util.Arrays;
@@ -10,6 +13,10 @@ import java.util.List;
 import org.apache.tuweni.bytes.Bytes;
 import org.apache.tuweni.bytes.Bytes32;
 import org.hyperledger.besu.crypto.Hash;
+import org.hyperledger.besu.ethereum.core.BlockHeader;
+import org.hyperledger.besu.ethereum.core.BlockHeaderBuilder;
+import org.hyperledger.besu.ethereum.mainnet.MainnetBlockHeaderFunctions;
+import org.hyperledger.besu.ethereum.rlp.RLP;
 import org.junit.jupiter.api.Test;
 
 class ValidationUtilTest {
@@ -75,6 +82,46 @@ class ValidationUtilTest {
     assertTrue(resultPostCapella);
   }
 
+  @Test
+  public void testIsEphemeralHeadersValid() {
+    BlockHeader parent = DefaultContent.postCapellaBlockHeader.getBlockHeader();
+    BlockHeader child =
+        BlockHeaderBuilder.fromHeader(parent)
+            .parentHash(parent.getHash())
+            .number(parent.getNumber() + 1)
+            .blockHeaderFunctions(new MainnetBlockHeaderFunctions())
+            .buildBlockHeader();
+    Bytes headers = ephemeralHeaders(child, parent);
+
+    assertTrue(ValidationUtil.isEphemeralHeadersValid(ephemeralKey(child.getHash(), 1), headers));
+    // fewer ancestors than requested
+    assertTrue(ValidationUtil.isEphemeralHeadersValid(ephemeralKey(child.getHash(), 5), headers));
+    // more ancestors than requested
+    assertFalse(ValidationUtil.isEphemeralHeadersValid(ephemeralKey(child.getHash(), 0), headers));
+    // headers of another block
+    assertFalse(ValidationUtil.isEphemeralHeadersValid(ephemeralKey(parent.getHash(), 1), headers));
+    // ancestors not in order
+    assertFalse(
+        ValidationUtil.isEphemeralHeadersValid(
+            ephemeralKey(child.getHash(), 2), ephemeralHeaders(child, parent, child)));
+    assertFalse(
+        ValidationUtil.isEphemeralHeadersValid(ephemeralKey(child.getHash(), 1), Bytes.of(1, 2)));
+  }
+
+  private static ContentKey ephemeralKey(Bytes32 blockHash, int ancestorCount) {
+    return ContentKey.decode(
+        Bytes.concatenate(
+            Bytes.of(ContentType.EPHEMERAL_BLOCK_HEADER.getByteValue()),
+            blockHash,
+            Bytes.of(ancestorCount)));
+  }
+
+  private static Bytes ephemeralHeaders(BlockHeader... headers) {
+    return SszEphemeralHeaderList.fromHeadersRLP(
+            Arrays.stream(headers).map(header -> RLP.encode(header::writeTo)).toList())
+        .sszSerialize();
+  }
+
   @Test
   public void testIsBlockBodyValid() {
     boolean resultPreMerge =
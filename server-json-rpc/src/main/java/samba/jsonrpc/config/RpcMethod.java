@@ -41,6 +41,8 @@ public enum RpcMethod {
   PORTAL_HISTORY_LOCAL_CONTENT("portal_historyLocalContent"),
   PORTAL_HISTORY_PUT_CONTENT("portal_historyPutContent"),
 
+  PORTAL_HISTORY_STORAGE_STATS("portal_historyStorageStats"),
+
   // TODO: migrate to beacon network
   PORTAL_BEACON_STORE("portal_beaconStore");
 
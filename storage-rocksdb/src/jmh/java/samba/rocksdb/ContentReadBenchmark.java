@@ -0,0 +1,120 @@
+package samba.rocksdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the ways of reading content to serve over uTP: into a new heap array then concatenated
+ * behind its LEB128 size prefix, or into a reused direct buffer with the prefix written in front of
+ * it. Run with {@code -prof gc} to compare the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ContentReadBenchmark {
+
+  private static final int KEY_COUNT = 64;
+  private static final int SIZE_PREFIX_CAPACITY = 5;
+
+  @Param({"65536", "1048576", "4194304"})
+  public int valueSize;
+
+  private Path databaseDir;
+  private RocksDBStorage storage;
+  private byte[][] keys;
+  private ByteBuffer readBuffer;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    databaseDir = Files.createTempDirectory("content-read-benchmark");
+    storage =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(databaseDir),
+            Arrays.asList(KeyValueSegment.values()),
+            List.of(),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+    final Random random = new Random(42);
+    keys = new byte[KEY_COUNT][];
+    final KeyValueStorageTransaction tx = storage.startTransaction();
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = new byte[33];
+      random.nextBytes(keys[i]);
+      final byte[] value = new byte[valueSize];
+      random.nextBytes(value);
+      tx.put(KeyValueSegment.RECEIPT, keys[i], value);
+    }
+    tx.commit();
+    readBuffer = ByteBuffer.allocateDirect(SIZE_PREFIX_CAPACITY + valueSize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    storage.close();
+    try (Stream<Path> files = Files.walk(databaseDir)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public void heapArray(final Blackhole blackhole) {
+    final Bytes content = Bytes.wrap(storage.get(KeyValueSegment.RECEIPT, nextKey()).orElseThrow());
+    blackhole.consume(Bytes.concatenate(sizePrefix(content.size()), content));
+  }
+
+  @Benchmark
+  public void directBuffer(final Blackhole blackhole) {
+    readBuffer.clear().position(SIZE_PREFIX_CAPACITY);
+    final int size = storage.get(KeyValueSegment.RECEIPT, nextKey(), readBuffer);
+    final Bytes prefix = sizePrefix(size);
+    final int start = SIZE_PREFIX_CAPACITY - prefix.size();
+    readBuffer.put(start, prefix.toArrayUnsafe());
+    blackhole.consume(Bytes.wrapByteBuffer(readBuffer, start, prefix.size() + size));
+  }
+
+  private byte[] nextKey() {
+    next = (next + 1) % KEY_COUNT;
+    return keys[next];
+  }
+
+  private static Bytes sizePrefix(final int size) {
+    final ByteBuffer prefix = ByteBuffer.allocate(SIZE_PREFIX_CAPACITY);
+    int value = size;
+    while ((value & ~0x7f) != 0) {
+      prefix.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    prefix.put((byte) value);
+    return Bytes.wrap(prefix.array(), 0, prefix.position());
+  }
+}
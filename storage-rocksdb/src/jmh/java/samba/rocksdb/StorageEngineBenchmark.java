@@ -0,0 +1,143 @@
+package samba.rocksdb;
+
+import samba.rocksdb.configuration.DataStorageFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the storage engines when ingesting history content. Each operation stores one block the
+ * way an accepted offer does: its header, body and receipts, and the block number entry, in a
+ * single batch. Value sizes follow mainnet blocks: headers with proof around 1 KB, bodies between
+ * 10 and 100 KB, receipts between 5 and 50 KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class StorageEngineBenchmark {
+
+  private static final int VALUE_POOL_SIZE = 64;
+  private static final int KEY_SIZE = 33;
+
+  @Param({"BASIC", "IMMUTABLE"})
+  public DataStorageFormat format;
+
+  private Path databaseDir;
+  private RocksDBStorage storage;
+  private byte[][] headers;
+  private byte[][] bodies;
+  private byte[][] receipts;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    final Random random = new Random(42);
+    headers = randomValues(random, 600, 1_200);
+    bodies = randomValues(random, 10_000, 100_000);
+    receipts = randomValues(random, 5_000, 50_000);
+
+    databaseDir = Files.createTempDirectory("storage-engine-benchmark");
+    final RocksDBConfiguration configuration = RocksDBConfiguration.createDefault(databaseDir);
+    final List<Segment> segments = Arrays.asList(KeyValueSegment.values());
+    storage =
+        switch (format) {
+          case BASIC ->
+              new RocksDBInstance(
+                  configuration,
+                  segments,
+                  List.of(),
+                  new NoOpMetricsSystem(),
+                  RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+          case IMMUTABLE ->
+              new RocksDBBlindWriteInstance(
+                  configuration,
+                  segments,
+                  List.of(),
+                  new NoOpMetricsSystem(),
+                  RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+        };
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    storage.close();
+    try (Stream<Path> files = Files.walk(databaseDir)) {
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void storeBlock() {
+    writeBlock();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void storeBlockConcurrently() {
+    writeBlock();
+  }
+
+  private void writeBlock() {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    final byte[] blockHash = new byte[KEY_SIZE - 1];
+    random.nextBytes(blockHash);
+    final byte[] headerKey = contentKey(0x00, blockHash);
+    final KeyValueStorageTransaction tx = storage.startTransaction();
+    tx.put(KeyValueSegment.BLOCK_HEADER, headerKey, pick(random, headers));
+    tx.put(KeyValueSegment.BLOCK_BODY, contentKey(0x01, blockHash), pick(random, bodies));
+    tx.put(KeyValueSegment.RECEIPT, contentKey(0x02, blockHash), pick(random, receipts));
+    tx.put(
+        KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+        contentKey(0x03, Arrays.copyOf(blockHash, Long.BYTES)),
+        headerKey);
+    tx.commit();
+  }
+
+  private static byte[] contentKey(final int selector, final byte[] id) {
+    final byte[] key = new byte[id.length + 1];
+    key[0] = (byte) selector;
+    System.arraycopy(id, 0, key, 1, id.length);
+    return key;
+  }
+
+  private static byte[] pick(final ThreadLocalRandom random, final byte[][] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static byte[][] randomValues(final Random random, final int minSize, final int maxSize) {
+    final byte[][] values = new byte[VALUE_POOL_SIZE][];
+    for (int i = 0; i < VALUE_POOL_SIZE; i++) {
+      values[i] = new byte[minSize + random.nextInt(maxSize - minSize)];
+      random.nextBytes(values[i]);
+    }
+    return values;
+  }
+}
@@ -0,0 +1,59 @@
+package samba.rocksdb;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites the keys of the {@link KeyValueSegment#BLOCK_HASH_BY_BLOCK_NUMBER} segment from the SSZ
+ * content key of each block number to the big-endian block number, see {@link BlockNumberKeys}.
+ *
+ * <p>Content keys and block number keys differ in size, so an interrupted migration is simply run
+ * again on the next start: the keys already rewritten are left as they are.
+ */
+final class BlockNumberKeyMigration {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockNumberKeyMigration.class);
+  private static final int ENTRIES_PER_TRANSACTION = 10_000;
+
+  private BlockNumberKeyMigration() {}
+
+  static void migrate(final RocksDBStorage storage) {
+    LOG.info("Keying block hashes by big-endian block number");
+    long migrated = 0;
+    long skipped = 0;
+    try (Stream<Pair<byte[], byte[]>> entries =
+        storage.stream(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER)) {
+      final Iterator<Pair<byte[], byte[]>> iterator = entries.iterator();
+      KeyValueStorageTransaction tx = storage.startTransaction();
+      int pending = 0;
+      while (iterator.hasNext()) {
+        final Pair<byte[], byte[]> entry = iterator.next();
+        if (!BlockNumberKeys.isContentKey(entry.getKey())) {
+          skipped++;
+          continue;
+        }
+        tx.put(
+            KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER,
+            BlockNumberKeys.fromContentKey(entry.getKey()),
+            entry.getValue());
+        tx.remove(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, entry.getKey());
+        migrated++;
+        if (++pending == ENTRIES_PER_TRANSACTION) {
+          tx.commit();
+          tx = storage.startTransaction();
+          pending = 0;
+          LOG.info("Migrated {} entries", migrated);
+        }
+      }
+      tx.commit();
+    }
+    LOG.info(
+        "Migration finished. Migrated {} entries, skipped {} entries already keyed by number",
+        migrated,
+        skipped);
+  }
+}
@@ -0,0 +1,85 @@
+package samba.rocksdb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Keys of the {@link KeyValueSegment#BLOCK_HASH_BY_BLOCK_NUMBER} segment. The network identifies a
+ * header by number with a 9 bytes SSZ content key, a selector followed by the little-endian block
+ * number, which RocksDB would sort by the lowest byte of the number. The segment is keyed by the
+ * big-endian block number instead, so that its keys are sorted by block number and a range of
+ * blocks is read with a single seek.
+ */
+public final class BlockNumberKeys {
+
+  /** Size of a key of the segment. */
+  public static final int KEY_SIZE = Long.BYTES;
+
+  /** Size of the SSZ content key of a header by number. */
+  public static final int CONTENT_KEY_SIZE = 1 + Long.BYTES;
+
+  /** Selector of the content key of a header by number. */
+  public static final byte CONTENT_KEY_SELECTOR = 0x03;
+
+  private BlockNumberKeys() {}
+
+  /**
+   * Key of a block number.
+   *
+   * @param blockNumber the block number, read as unsigned
+   * @return the key
+   */
+  public static byte[] toKey(final long blockNumber) {
+    return ByteBuffer.allocate(KEY_SIZE).putLong(blockNumber).array();
+  }
+
+  /**
+   * Block number of a key.
+   *
+   * @param key the key
+   * @return the block number, read as unsigned
+   */
+  public static long blockNumber(final byte[] key) {
+    checkArgument(key.length == KEY_SIZE, "Expected a %s bytes key, got %s", KEY_SIZE, key.length);
+    return ByteBuffer.wrap(key).getLong();
+  }
+
+  /**
+   * Key of the block number of a content key.
+   *
+   * @param contentKey the SSZ content key of a header by number
+   * @return the key
+   */
+  public static byte[] fromContentKey(final byte[] contentKey) {
+    checkArgument(isContentKey(contentKey), "Not a block number content key");
+    return toKey(
+        ByteBuffer.wrap(contentKey, 1, Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong());
+  }
+
+  /**
+   * Content key of the block number of a key.
+   *
+   * @param key the key
+   * @return the SSZ content key of a header by number
+   */
+  public static byte[] toContentKey(final byte[] key) {
+    return ByteBuffer.allocate(CONTENT_KEY_SIZE)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(CONTENT_KEY_SELECTOR)
+        .putLong(blockNumber(key))
+        .array();
+  }
+
+  /**
+   * Whether the bytes are the SSZ content key of a header by number, as the segment was keyed
+   * before it was keyed by block number.
+   *
+   * @param key the bytes
+   * @return whether they are a content key
+   */
+  public static boolean isContentKey(final byte[] key) {
+    return key.length == CONTENT_KEY_SIZE && key[0] == CONTENT_KEY_SELECTOR;
+  }
+}
@@ -0,0 +1,159 @@
+package samba.rocksdb;
+
+import samba.rocksdb.exceptions.StorageException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+/**
+ * Merges the write batches committed concurrently into a single RocksDB write. A committing thread
+ * that finds no other writer in progress becomes the leader and writes the queued batches at once,
+ * up to its own; the others wait for the leader to write theirs. Batches committed while a write is
+ * in progress are written together by the next leader, without waiting for more to join.
+ */
+class GroupCommitWriter {
+
+  static final int MAX_GROUP_SIZE = 256;
+  private static final Duration LEADER_POLL_INTERVAL = Duration.ofMillis(1);
+
+  private final RocksDB db;
+  private final Function<Segment, ColumnFamilyHandle> columnFamilyMapper;
+  private final WriteOptions writeOptions;
+  private final RocksDBMetrics metrics;
+  private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock leaderLock = new ReentrantLock();
+
+  GroupCommitWriter(
+      final RocksDB db,
+      final Function<Segment, ColumnFamilyHandle> columnFamilyMapper,
+      final WriteOptions writeOptions,
+      final RocksDBMetrics metrics) {
+    this.db = db;
+    this.columnFamilyMapper = columnFamilyMapper;
+    this.writeOptions = writeOptions;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Write the operations atomically, possibly in the same RocksDB write as other batches. Blocks
+   * until the operations are written.
+   *
+   * @param operations the operations of the batch
+   * @throws StorageException if the batch could not be written
+   */
+  void write(final List<WriteOperation> operations) throws StorageException {
+    final PendingWrite pendingWrite = new PendingWrite(operations, new CompletableFuture<>());
+    pendingWrites.add(pendingWrite);
+    while (!pendingWrite.result().isDone()) {
+      if (leaderLock.tryLock()) {
+        try {
+          writeQueuedBatches(pendingWrite);
+        } finally {
+          leaderLock.unlock();
+        }
+      } else {
+        awaitLeader(pendingWrite);
+      }
+    }
+
+    try {
+      pendingWrite.result().join();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof StorageException storageException) {
+        throw storageException;
+      }
+      throw new StorageException(e.getCause());
+    }
+  }
+
+  // the leader steps down once its own batch is written, waiting writers then take over
+  private void writeQueuedBatches(final PendingWrite ownWrite) {
+    while (!ownWrite.result().isDone()) {
+      final List<PendingWrite> group = new ArrayList<>();
+      PendingWrite pendingWrite;
+      while (group.size() < MAX_GROUP_SIZE && (pendingWrite = pendingWrites.poll()) != null) {
+        group.add(pendingWrite);
+      }
+      writeGroup(group);
+    }
+  }
+
+  private void awaitLeader(final PendingWrite pendingWrite) {
+    try {
+      pendingWrite.result().get(LEADER_POLL_INTERVAL.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException | ExecutionException e) {
+      // retry to lead, or read the failure once done
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException("Interrupted while waiting for a group commit", e);
+    }
+  }
+
+  private void writeGroup(final List<PendingWrite> group) {
+    final List<PendingWrite> written = new ArrayList<>(group.size());
+    try (final WriteBatch writeBatch = new WriteBatch()) {
+      for (PendingWrite pendingWrite : group) {
+        writeBatch.setSavePoint();
+        try {
+          for (WriteOperation operation : pendingWrite.operations()) {
+            final ColumnFamilyHandle columnFamily = columnFamilyMapper.apply(operation.segment());
+            switch (operation.type()) {
+              case PUT -> writeBatch.put(columnFamily, operation.key(), operation.value());
+              case DELETE -> writeBatch.delete(columnFamily, operation.key());
+              case MERGE -> writeBatch.merge(columnFamily, operation.key(), operation.value());
+            }
+          }
+          written.add(pendingWrite);
+        } catch (final RuntimeException | RocksDBException e) {
+          // only the failing batch is dropped from the group
+          writeBatch.rollbackToSavePoint();
+          pendingWrite.result().completeExceptionally(e);
+        }
+      }
+      try (final OperationTimer.TimingContext ignored = metrics.groupCommitLatency().startTimer()) {
+        db.write(writeOptions, writeBatch);
+      }
+      metrics.groupCommitCount().inc();
+      metrics.groupCommitBatchCount().inc(written.size());
+      written.forEach(pendingWrite -> pendingWrite.result().complete(null));
+    } catch (final RocksDBException | RuntimeException e) {
+      // batches already failed keep their own error
+      group.forEach(pendingWrite -> pendingWrite.result().completeExceptionally(e));
+    }
+  }
+
+  /**
+   * A put, delete or merge.
+   *
+   * @param type the kind of write
+   * @param segment the segment
+   * @param key the key
+   * @param value the value or merge operand, null for a delete
+   */
+  record WriteOperation(Type type, Segment segment, byte[] key, byte[] value) {
+    enum Type {
+      PUT,
+      DELETE,
+      MERGE
+    }
+  }
+
+  private record PendingWrite(List<WriteOperation> operations, CompletableFuture<Void> result) {}
+}
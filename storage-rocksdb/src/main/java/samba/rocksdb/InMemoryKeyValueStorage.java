@@ -0,0 +1,431 @@
+package samba.rocksdb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.stream.Collectors.toUnmodifiableSet;
+
+import samba.rocksdb.exceptions.StorageException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Storage held in memory only, for nodes that keep nothing across restarts and for tests and
+ * simulations that would otherwise pay for opening RocksDB and writing to disk.
+ *
+ * <p>Each segment is a sorted map ordered as RocksDB orders keys, unsigned byte by byte, so that
+ * streams and range scans return the same entries in the same order. Transactions and write batches
+ * are buffered and applied atomically on commit: a point read sees either all the writes of a
+ * commit or none of them. Streams are weakly consistent rather than snapshots, they may see commits
+ * made while they are consumed. Keys and values are copied in and out, as callers of a RocksDB
+ * storage own the arrays they pass and get.
+ *
+ * <p>Entries of a segment with a time to live are dropped on the first commit after they expire, so
+ * that the segment stays bounded as a FIFO-compacted column family does.
+ */
+public class InMemoryKeyValueStorage implements KeyValueStorage {
+
+  private static final long NANOS_PER_MICRO = 1_000;
+
+  private final Map<Segment, SegmentMap> segments = new HashMap<>();
+  // commits are exclusive, so that point reads never see half of one
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final AtomicBoolean closed = new AtomicBoolean(false);
+  private final LongAdder readCount = new LongAdder();
+  private final LongAdder readNanos = new LongAdder();
+  private final LongSupplier nanoClock;
+
+  /**
+   * @param segments the segments of the storage
+   */
+  public InMemoryKeyValueStorage(final List<? extends Segment> segments) {
+    this(segments, System::nanoTime);
+  }
+
+  InMemoryKeyValueStorage(final List<? extends Segment> segments, final LongSupplier nanoClock) {
+    this.nanoClock = nanoClock;
+    segments.forEach(
+        segment ->
+            this.segments.put(
+                segment,
+                new SegmentMap(TimeUnit.SECONDS.toNanos(segment.getTimeToLiveInSeconds()))));
+  }
+
+  @Override
+  public Optional<byte[]> get(final Segment segment, final byte[] key) throws StorageException {
+    throwIfClosed();
+    final long start = System.nanoTime();
+    lock.readLock().lock();
+    try {
+      return Optional.ofNullable(segmentMap(segment).entries.get(key)).map(byte[]::clone);
+    } finally {
+      lock.readLock().unlock();
+      readCount.increment();
+      readNanos.add(System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    checkArgument(segments.size() == keys.size(), "Expected one segment per key");
+    throwIfClosed();
+    lock.readLock().lock();
+    try {
+      final List<Optional<byte[]>> values = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        values.add(
+            Optional.ofNullable(segmentMap(segments.get(i)).entries.get(keys.get(i)))
+                .map(byte[]::clone));
+      }
+      return values;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Boolean> multiContains(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    checkArgument(segments.size() == keys.size(), "Expected one segment per key");
+    throwIfClosed();
+    lock.readLock().lock();
+    try {
+      final List<Boolean> found = new ArrayList<>(keys.size());
+      for (int i = 0; i < keys.size(); i++) {
+        found.add(segmentMap(segments.get(i)).entries.containsKey(keys.get(i)));
+      }
+      return found;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public KeyValueStorageTransaction startTransaction() throws StorageException {
+    throwIfClosed();
+    return new InMemoryTransaction();
+  }
+
+  @Override
+  public KeyValueStorageTransaction startWriteBatch() throws StorageException {
+    return startTransaction();
+  }
+
+  @Override
+  public boolean tryDelete(final Segment segment, final byte[] key) throws StorageException {
+    throwIfClosed();
+    lock.writeLock().lock();
+    try {
+      segmentMap(segment).remove(key);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear(final Segment segment) throws StorageException {
+    throwIfClosed();
+    lock.writeLock().lock();
+    try {
+      segmentMap(segment).clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> stream(final Segment segment) {
+    return toStream(segmentMap(segment).entries);
+  }
+
+  @Override
+  public Stream<byte[]> streamKeys(final Segment segment) {
+    throwIfClosed();
+    return segmentMap(segment).entries.keySet().stream().map(byte[]::clone);
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamDescending(final Segment segment) {
+    return toStream(segmentMap(segment).entries.descendingMap());
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamFromKey(final Segment segment, final byte[] startKey) {
+    return toStream(segmentMap(segment).entries.tailMap(startKey, true));
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamFromKey(
+      final Segment segment, final byte[] startKey, final byte[] endKey) {
+    if (Arrays.compareUnsigned(startKey, endKey) > 0) {
+      throwIfClosed();
+      return Stream.empty();
+    }
+    return toStream(segmentMap(segment).entries.subMap(startKey, true, endKey, true));
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamDescendingFromKey(
+      final Segment segment, final byte[] startKey) {
+    return toStream(segmentMap(segment).entries.headMap(startKey, true).descendingMap());
+  }
+
+  private Stream<Pair<byte[], byte[]>> toStream(final NavigableMap<byte[], byte[]> entries) {
+    throwIfClosed();
+    return entries.entrySet().stream()
+        .map(entry -> Pair.of(entry.getKey().clone(), entry.getValue().clone()));
+  }
+
+  /**
+   * Number of keys of a segment, exact.
+   *
+   * @param segment the segment
+   * @return the number of keys
+   */
+  @Override
+  public long getEstimatedKeyCount(final Segment segment) {
+    throwIfClosed();
+    return segmentMap(segment).keyCount.get();
+  }
+
+  /**
+   * Size of the keys and values of every segment, the memory they use without the overhead of the
+   * maps.
+   *
+   * @return the size in bytes
+   */
+  @Override
+  public long getLiveFilesSize() {
+    throwIfClosed();
+    return segments.values().stream().mapToLong(segment -> segment.byteCount.get()).sum();
+  }
+
+  /**
+   * Size of the keys and values of a segment.
+   *
+   * @param segment the segment
+   * @return the size in bytes
+   */
+  @Override
+  public long getLiveFilesSize(final Segment segment) {
+    throwIfClosed();
+    return segmentMap(segment).byteCount.get();
+  }
+
+  @Override
+  public ReadLatencySample sampleReadLatency() {
+    throwIfClosed();
+    return new ReadLatencySample(readCount.sum(), readNanos.sum() / NANOS_PER_MICRO);
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      lock.writeLock().lock();
+      try {
+        segments.values().forEach(SegmentMap::clear);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  @Override
+  public Set<byte[]> getAllKeysThat(
+      final Segment segment, final Predicate<byte[]> returnCondition) {
+    try (Stream<byte[]> keys = streamKeys(segment)) {
+      return keys.filter(returnCondition).collect(toUnmodifiableSet());
+    }
+  }
+
+  private SegmentMap segmentMap(final Segment segment) {
+    final SegmentMap segmentMap = segments.get(segment);
+    if (segmentMap == null) {
+      throw new StorageException("Segment not found: " + segment.getName());
+    }
+    return segmentMap;
+  }
+
+  private void throwIfClosed() {
+    if (closed.get()) {
+      throw new IllegalStateException("Storage has been closed");
+    }
+  }
+
+  // entries of a segment, with their count and size kept up to date by the commits
+  private static final class SegmentMap {
+
+    private final ConcurrentSkipListMap<byte[], byte[]> entries =
+        new ConcurrentSkipListMap<>(Arrays::compareUnsigned);
+    private final AtomicLong keyCount = new AtomicLong();
+    private final AtomicLong byteCount = new AtomicLong();
+    private final long timeToLiveNanos;
+    // entries of a segment with a time to live, oldest first
+    private final Deque<Insertion> insertions = new ArrayDeque<>();
+
+    private SegmentMap(final long timeToLiveNanos) {
+      this.timeToLiveNanos = timeToLiveNanos;
+    }
+
+    private void put(final byte[] key, final byte[] value, final long now) {
+      put(key, value);
+      if (timeToLiveNanos > 0) {
+        insertions.addLast(new Insertion(now, key, value));
+      }
+    }
+
+    // an entry written again since is not the one expiring, its value is another array
+    private void expire(final long now) {
+      while (!insertions.isEmpty() && now - insertions.peekFirst().time() >= timeToLiveNanos) {
+        final Insertion insertion = insertions.removeFirst();
+        if (entries.get(insertion.key()) == insertion.value()) {
+          remove(insertion.key());
+        }
+      }
+    }
+
+    private void put(final byte[] key, final byte[] value) {
+      final byte[] previous = entries.put(key, value);
+      if (previous == null) {
+        keyCount.incrementAndGet();
+        byteCount.addAndGet(key.length + value.length);
+      } else {
+        byteCount.addAndGet(value.length - previous.length);
+      }
+    }
+
+    private void remove(final byte[] key) {
+      final byte[] previous = entries.remove(key);
+      if (previous != null) {
+        keyCount.decrementAndGet();
+        byteCount.addAndGet(-(key.length + previous.length));
+      }
+    }
+
+    // the uint64add merge operator of the counter segments
+    private void merge(final byte[] key, final byte[] operand) {
+      final byte[] previous = entries.get(key);
+      final long sum = (previous == null ? 0 : decode(previous)) + decode(operand);
+      put(key, ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(sum).array());
+    }
+
+    private void clear() {
+      entries.clear();
+      insertions.clear();
+      keyCount.set(0);
+      byteCount.set(0);
+    }
+
+    private static long decode(final byte[] value) {
+      checkArgument(value.length == Long.BYTES, "Expected a 64-bit counter");
+      return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+  }
+
+  private record Insertion(long time, byte[] key, byte[] value) {}
+
+  private record Write(SegmentMap segment, byte[] key, byte[] value, WriteType type) {}
+
+  private enum WriteType {
+    PUT,
+    REMOVE,
+    MERGE
+  }
+
+  private final class InMemoryTransaction implements KeyValueStorageTransaction {
+
+    private final List<Write> writes = new ArrayList<>();
+    // number of writes at each save point
+    private final Deque<Integer> savePoints = new ArrayDeque<>();
+    private boolean active = true;
+
+    @Override
+    public void put(final Segment segment, final byte[] key, final byte[] value) {
+      checkState(active, "Cannot invoke put() on a completed transaction.");
+      writes.add(new Write(segmentMap(segment), key.clone(), value.clone(), WriteType.PUT));
+    }
+
+    @Override
+    public void remove(final Segment segment, final byte[] key) {
+      checkState(active, "Cannot invoke remove() on a completed transaction.");
+      writes.add(new Write(segmentMap(segment), key.clone(), null, WriteType.REMOVE));
+    }
+
+    @Override
+    public void merge(final Segment segment, final byte[] key, final byte[] value) {
+      checkState(active, "Cannot invoke merge() on a completed transaction.");
+      checkArgument(segment.containsCounters(), "Segment %s has no merge operator", segment);
+      writes.add(new Write(segmentMap(segment), key.clone(), value.clone(), WriteType.MERGE));
+    }
+
+    @Override
+    public void setSavePoint() {
+      checkState(active, "Cannot set a save point on a completed transaction.");
+      savePoints.push(writes.size());
+    }
+
+    @Override
+    public void rollbackToSavePoint() {
+      checkState(active, "Cannot rollback a completed transaction.");
+      checkState(!savePoints.isEmpty(), "No save point to rollback to.");
+      writes.subList(savePoints.pop(), writes.size()).clear();
+    }
+
+    @Override
+    public void commit() throws StorageException {
+      checkState(active, "Cannot commit a completed transaction.");
+      checkState(!isClosed(), "Cannot invoke commit() on a closed storage.");
+      active = false;
+      lock.writeLock().lock();
+      try {
+        final long now = nanoClock.getAsLong();
+        for (Write write : writes) {
+          switch (write.type()) {
+            case PUT -> write.segment().put(write.key(), write.value(), now);
+            case REMOVE -> write.segment().remove(write.key());
+            case MERGE -> write.segment().merge(write.key(), write.value());
+          }
+        }
+        segments.values().forEach(segment -> segment.expire(now));
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    @Override
+    public void rollback() {
+      checkState(active, "Cannot rollback a completed transaction.");
+      active = false;
+      writes.clear();
+    }
+  }
+}
@@ -5,30 +5,69 @@ import java.nio.charset.StandardCharsets;
 // TODO these must be on each sub-network module but validated on this module.
 public enum KeyValueSegment implements Segment {
   DEFAULT("default".getBytes(StandardCharsets.UTF_8)),
-  BLOCK_HEADER(new byte[] {14}),
-  BLOCK_BODY(new byte[] {14}),
-  RECEIPT(new byte[] {14}),
-  BLOCK_HASH_BY_BLOCK_NUMBER(new byte[] {14}),
-  EPHEMERAL_BLOCK_HEADER(new byte[] {14});
+  BLOCK_HEADER(new byte[] {1}, false, true, false, 0, false),
+  BLOCK_BODY(new byte[] {2}, true, false, true, 0, false),
+  RECEIPT(new byte[] {3}, true, false, true, 0, false),
+  // keys are the 8 bytes big-endian block number, see BlockNumberKeys
+  BLOCK_HASH_BY_BLOCK_NUMBER(new byte[] {4}, false, false, false, 8, false),
+  // headers of the last 8192 blocks, one every 12 seconds
+  EPHEMERAL_BLOCK_HEADER(new byte[] {5}, 8192 * 12),
+  // sha256(contentKey) XOR localNodeId -> contentKey
+  CONTENT_DISTANCE_INDEX(new byte[] {6}),
+  METADATA(new byte[] {7}, false, false, false, 0, true),
+  // node id -> routing table entry of the last checkpoint
+  ROUTING_TABLE(new byte[] {8}),
+  // single column family shared by every content type before BASIC_2, only opened to migrate it.
+  LEGACY_CONTENT(new byte[] {14});
 
   private final byte[] id;
   private final boolean containsStaticData;
   private final boolean eligibleToHighSpecFlag;
   private final boolean staticDataGarbageCollectionEnabled;
+  private final int fixedPrefixLength;
+  private final boolean containsCounters;
+  private final long timeToLiveInSeconds;
 
   KeyValueSegment(final byte[] id) {
-    this(id, false, false, false);
+    this(id, false, false, false, 0, false, 0);
+  }
+
+  KeyValueSegment(final byte[] id, final long timeToLiveInSeconds) {
+    this(id, false, false, false, 0, false, timeToLiveInSeconds);
   }
 
   KeyValueSegment(
       final byte[] id,
       final boolean containsStaticData,
       final boolean eligibleToHighSpecFlag,
-      final boolean staticDataGarbageCollectionEnabled) {
+      final boolean staticDataGarbageCollectionEnabled,
+      final int fixedPrefixLength,
+      final boolean containsCounters) {
+    this(
+        id,
+        containsStaticData,
+        eligibleToHighSpecFlag,
+        staticDataGarbageCollectionEnabled,
+        fixedPrefixLength,
+        containsCounters,
+        0);
+  }
+
+  KeyValueSegment(
+      final byte[] id,
+      final boolean containsStaticData,
+      final boolean eligibleToHighSpecFlag,
+      final boolean staticDataGarbageCollectionEnabled,
+      final int fixedPrefixLength,
+      final boolean containsCounters,
+      final long timeToLiveInSeconds) {
     this.id = id;
     this.containsStaticData = containsStaticData;
     this.eligibleToHighSpecFlag = eligibleToHighSpecFlag;
     this.staticDataGarbageCollectionEnabled = staticDataGarbageCollectionEnabled;
+    this.fixedPrefixLength = fixedPrefixLength;
+    this.containsCounters = containsCounters;
+    this.timeToLiveInSeconds = timeToLiveInSeconds;
   }
 
   @Override
@@ -55,4 +94,19 @@ public enum KeyValueSegment implements Segment {
   public boolean isStaticDataGarbageCollectionEnabled() {
     return staticDataGarbageCollectionEnabled;
   }
+
+  @Override
+  public int getFixedPrefixLength() {
+    return fixedPrefixLength;
+  }
+
+  @Override
+  public boolean containsCounters() {
+    return containsCounters;
+  }
+
+  @Override
+  public long getTimeToLiveInSeconds() {
+    return timeToLiveInSeconds;
+  }
 }
@@ -3,6 +3,9 @@ package samba.rocksdb;
 import samba.rocksdb.exceptions.StorageException;
 
 import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -13,14 +16,82 @@ import org.apache.commons.lang3.tuple.Pair;
 // SegmentdKeyValueStorage and KeyValueStorage
 public interface KeyValueStorage extends Closeable {
 
+  /** Returned by {@link #get(Segment, byte[], ByteBuffer)} when the key has no value. */
+  int NOT_FOUND = -1;
+
   Optional<byte[]> get(Segment segment, byte[] key) throws StorageException;
 
+  /**
+   * Read a value into a caller-supplied buffer, so that large values are not copied to a new heap
+   * array. The value is written from the position of the buffer, which is left unchanged, and the
+   * limit is set to the end of the written bytes. When the value does not fit in the remaining
+   * space only its start is written: the caller checks the returned size and reads again with a
+   * larger buffer.
+   *
+   * @param segment the segment
+   * @param key the key
+   * @param value the buffer to write the value into
+   * @return the size of the value, or {@link #NOT_FOUND} if the key has no value
+   * @throws StorageException if the value could not be read
+   */
+  default int get(final Segment segment, final byte[] key, final ByteBuffer value)
+      throws StorageException {
+    final Optional<byte[]> stored = get(segment, key);
+    if (stored.isEmpty()) {
+      return NOT_FOUND;
+    }
+    final int written = Math.min(stored.get().length, value.remaining());
+    value.duplicate().put(stored.get(), 0, written);
+    value.limit(value.position() + written);
+    return stored.get().length;
+  }
+
   default boolean containsKey(final Segment segment, final byte[] key) throws StorageException {
     return get(segment, key).isPresent();
   }
 
+  /**
+   * Get the values of several keys at once.
+   *
+   * @param segments the segment of each key
+   * @param keys the keys, in the same order as the segments
+   * @return the value of each key, in the same order as the keys
+   * @throws StorageException if the values could not be read
+   */
+  default List<Optional<byte[]>> multiGet(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    final List<Optional<byte[]>> values = new ArrayList<>(keys.size());
+    for (int i = 0; i < keys.size(); i++) {
+      values.add(get(segments.get(i), keys.get(i)));
+    }
+    return values;
+  }
+
+  /**
+   * Check whether several keys exist at once, without reading their values.
+   *
+   * @param segments the segment of each key
+   * @param keys the keys, in the same order as the segments
+   * @return whether each key exists, in the same order as the keys
+   * @throws StorageException if the keys could not be read
+   */
+  default List<Boolean> multiContains(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    return multiGet(segments, keys).stream().map(Optional::isPresent).toList();
+  }
+
   KeyValueStorageTransaction startTransaction() throws StorageException;
 
+  /**
+   * Start a write batch: its writes are applied atomically on commit, without the locking and
+   * conflict detection of a transaction. Batches committed concurrently may be merged into a single
+   * write.
+   *
+   * @return the write batch
+   * @throws StorageException if the storage is closed
+   */
+  KeyValueStorageTransaction startWriteBatch() throws StorageException;
+
   boolean tryDelete(Segment segment, byte[] key) throws StorageException;
 
   void clear(Segment segment) throws StorageException;
@@ -29,7 +100,87 @@ public interface KeyValueStorage extends Closeable {
 
   Stream<byte[]> streamKeys(final Segment segment);
 
+  /**
+   * Stream the entries of a segment in descending key order, starting from the last key.
+   *
+   * @param segment the segment
+   * @return a stream of key/value pairs that must be closed once consumed
+   */
+  Stream<Pair<byte[], byte[]>> streamDescending(final Segment segment);
+
+  /**
+   * Stream the entries of a segment in ascending key order, starting from the first key greater
+   * than or equal to the start key.
+   *
+   * @param segment the segment
+   * @param startKey the start key, inclusive
+   * @return a stream of key/value pairs that must be closed once consumed
+   */
+  Stream<Pair<byte[], byte[]>> streamFromKey(final Segment segment, final byte[] startKey);
+
+  /**
+   * Stream the entries of a segment whose key is between the start and the end key, in ascending
+   * key order.
+   *
+   * @param segment the segment
+   * @param startKey the start key, inclusive
+   * @param endKey the end key, inclusive
+   * @return a stream of key/value pairs that must be closed once consumed
+   */
+  Stream<Pair<byte[], byte[]>> streamFromKey(
+      final Segment segment, final byte[] startKey, final byte[] endKey);
+
+  /**
+   * Stream the entries of a segment in descending key order, starting from the last key less than
+   * or equal to the start key.
+   *
+   * @param segment the segment
+   * @param startKey the start key, inclusive
+   * @return a stream of key/value pairs that must be closed once consumed
+   */
+  Stream<Pair<byte[], byte[]>> streamDescendingFromKey(
+      final Segment segment, final byte[] startKey);
+
   boolean isClosed();
 
   Set<byte[]> getAllKeysThat(Segment segment, Predicate<byte[]> returnCondition);
+
+  /**
+   * Estimated number of keys of a segment. Keys overwritten or deleted may still be counted.
+   *
+   * @param segment the segment
+   * @return the estimated number of keys
+   */
+  long getEstimatedKeyCount(Segment segment);
+
+  /**
+   * Space used by the data of every segment.
+   *
+   * @return the size in bytes
+   */
+  long getLiveFilesSize();
+
+  /**
+   * Space used by the data of a segment.
+   *
+   * @param segment the segment
+   * @return the size in bytes
+   */
+  long getLiveFilesSize(Segment segment);
+
+  /**
+   * Sample the point reads served so far, to watch their latency.
+   *
+   * @return the reads served since the storage was opened and the time they took
+   */
+  ReadLatencySample sampleReadLatency();
+
+  /**
+   * Whether the storage is only read by this instance, written to by another process.
+   *
+   * @return true if writes are rejected
+   */
+  default boolean isReadOnly() {
+    return false;
+  }
 }
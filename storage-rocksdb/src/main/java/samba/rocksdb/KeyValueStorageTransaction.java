@@ -8,6 +8,24 @@ public interface KeyValueStorageTransaction {
 
   void remove(Segment segment, byte[] key);
 
+  /**
+   * Merge a value into the one stored, as defined by the merge operator of the segment.
+   *
+   * @param segment a segment that {@link Segment#containsCounters() contains counters}
+   * @param key the key
+   * @param value the operand to merge
+   */
+  void merge(Segment segment, byte[] key, byte[] value);
+
+  /**
+   * Mark the writes added so far, for {@link #rollbackToSavePoint()} to drop the writes added after
+   * it. Save points are stacked.
+   */
+  void setSavePoint();
+
+  /** Drop the writes added since the last save point, and the save point itself. */
+  void rollbackToSavePoint();
+
   void commit() throws StorageException;
 
   void rollback();
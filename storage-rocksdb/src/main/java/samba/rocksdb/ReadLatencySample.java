@@ -0,0 +1,32 @@
+package samba.rocksdb;
+
+/**
+ * Point reads served by a database since it was opened and the time they took, as sampled from the
+ * RocksDB statistics. Two samples give the mean latency of the reads served in between.
+ *
+ * @param readCount the number of point reads
+ * @param totalMicros the time they took, in microseconds
+ */
+public record ReadLatencySample(long readCount, long totalMicros) {
+
+  /**
+   * Reads served since an earlier sample.
+   *
+   * @param earlier the earlier sample
+   * @return the number of reads
+   */
+  public long readsSince(final ReadLatencySample earlier) {
+    return readCount - earlier.readCount;
+  }
+
+  /**
+   * Mean latency of the reads served since an earlier sample.
+   *
+   * @param earlier the earlier sample
+   * @return the mean latency in microseconds, 0 if no read was served
+   */
+  public double meanMicrosSince(final ReadLatencySample earlier) {
+    final long reads = readsSince(earlier);
+    return reads <= 0 ? 0 : (double) (totalMicros - earlier.totalMicros) / reads;
+  }
+}
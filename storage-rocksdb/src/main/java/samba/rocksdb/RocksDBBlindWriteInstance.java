@@ -0,0 +1,57 @@
+package samba.rocksdb;
+
+import samba.rocksdb.exceptions.StorageException;
+
+import java.util.List;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+/**
+ * RocksDB storage without the transaction layer. Content is immutable and addressed by its key, so
+ * concurrent writes of the same key always carry the same value: writes are blind write batches,
+ * with no lock manager and no conflict tracking.
+ */
+public class RocksDBBlindWriteInstance extends RocksDBStorage {
+
+  private final RocksDB db;
+
+  public RocksDBBlindWriteInstance(
+      RocksDBConfiguration configuration,
+      List<Segment> defaultSegments,
+      List<Segment> ignorableSegments,
+      MetricsSystem metricsSystem,
+      RocksDBMetricsFactory rocksDBMetricsFactory) {
+    super(configuration, defaultSegments, ignorableSegments, metricsSystem, rocksDBMetricsFactory);
+    try {
+      this.db =
+          RocksDB.open(
+              rocksDBOptions,
+              configuration.databaseDir().toString(),
+              columnDescriptors,
+              columnHandles);
+      initMetrics();
+      initColumnHandles();
+
+    } catch (final RocksDBException e) {
+      throw parseRocksDBException(e, defaultSegments, ignorableSegments);
+    }
+  }
+
+  @Override
+  RocksDB getDB() {
+    return db;
+  }
+
+  /**
+   * Start a write batch, there are no transactions on this storage.
+   *
+   * @return the write batch
+   * @throws StorageException if the storage is closed
+   */
+  @Override
+  public KeyValueStorageTransaction startTransaction() throws StorageException {
+    return startWriteBatch();
+  }
+}
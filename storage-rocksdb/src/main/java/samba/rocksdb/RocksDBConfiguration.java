@@ -16,14 +16,8 @@ package samba.rocksdb;
 
 import java.nio.file.Path;
 
-public record RocksDBConfiguration(
-    Path databaseDir,
-    int maxOpenFiles,
-    String label,
-    int backgroundThreadCount,
-    long cacheCapacity,
-    boolean isHighSpec) {
+public record RocksDBConfiguration(Path databaseDir, String label, RocksDBSizing sizing) {
   public static RocksDBConfiguration createDefault(Path databaseDir) {
-    return new RocksDBConfiguration(databaseDir, 1024, "rocksDB", 4, 134217728, false);
+    return RocksDBSizing.DEFAULT.toConfiguration(databaseDir);
   }
 }
@@ -35,10 +35,12 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
   private static final Logger LOG = LoggerFactory.getLogger(RocksDBIterator.class);
 
   private final RocksIterator rocksIterator;
+  private final boolean descending;
   private final AtomicBoolean closed = new AtomicBoolean(false);
 
-  private RocksDBIterator(final RocksIterator rocksIterator) {
+  private RocksDBIterator(final RocksIterator rocksIterator, final boolean descending) {
     this.rocksIterator = rocksIterator;
+    this.descending = descending;
   }
 
   /**
@@ -48,7 +50,43 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
    * @return the rocks db iterator
    */
   public static RocksDBIterator create(final RocksIterator rocksIterator) {
-    return new RocksDBIterator(rocksIterator);
+    return new RocksDBIterator(rocksIterator, false);
+  }
+
+  /**
+   * Create RocksDb iterator moving backwards from the current position of the rocks iterator.
+   *
+   * @param rocksIterator the rocks iterator
+   * @return the rocks db iterator
+   */
+  public static RocksDBIterator createDescending(final RocksIterator rocksIterator) {
+    return new RocksDBIterator(rocksIterator, true);
+  }
+
+  /**
+   * Create RocksDb iterator starting at the first key greater than or equal to the start key.
+   *
+   * @param rocksIterator the rocks iterator
+   * @param startKey the start key
+   * @return the rocks db iterator
+   */
+  public static RocksDBIterator createFrom(
+      final RocksIterator rocksIterator, final byte[] startKey) {
+    rocksIterator.seek(startKey);
+    return new RocksDBIterator(rocksIterator, false);
+  }
+
+  /**
+   * Create RocksDb iterator moving backwards from the last key less than or equal to the start key.
+   *
+   * @param rocksIterator the rocks iterator
+   * @param startKey the start key
+   * @return the rocks db iterator
+   */
+  public static RocksDBIterator createDescendingFrom(
+      final RocksIterator rocksIterator, final byte[] startKey) {
+    rocksIterator.seekForPrev(startKey);
+    return new RocksDBIterator(rocksIterator, true);
   }
 
   @Override
@@ -72,7 +110,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
     }
     final byte[] key = rocksIterator.key();
     final byte[] value = rocksIterator.value();
-    rocksIterator.next();
+    advance();
     return Pair.of(key, value);
   }
 
@@ -94,7 +132,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
       throw new NoSuchElementException();
     }
     final byte[] key = rocksIterator.key();
-    rocksIterator.next();
+    advance();
     return key;
   }
 
@@ -106,13 +144,7 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
   public Stream<Pair<byte[], byte[]>> toStream() {
     assertOpen();
     final Spliterator<Pair<byte[], byte[]>> spliterator =
-        Spliterators.spliteratorUnknownSize(
-            this,
-            Spliterator.IMMUTABLE
-                | Spliterator.DISTINCT
-                | Spliterator.NONNULL
-                | Spliterator.ORDERED
-                | Spliterator.SORTED);
+        Spliterators.spliteratorUnknownSize(this, characteristics());
 
     return StreamSupport.stream(spliterator, false).onClose(this::close);
   }
@@ -137,15 +169,25 @@ public class RocksDBIterator implements Iterator<Pair<byte[], byte[]>>, AutoClos
                 return RocksDBIterator.this.nextKey();
               }
             },
-            Spliterator.IMMUTABLE
-                | Spliterator.DISTINCT
-                | Spliterator.NONNULL
-                | Spliterator.ORDERED
-                | Spliterator.SORTED);
+            characteristics());
 
     return StreamSupport.stream(spliterator, false).onClose(this::close);
   }
 
+  private void advance() {
+    if (descending) {
+      rocksIterator.prev();
+    } else {
+      rocksIterator.next();
+    }
+  }
+
+  private int characteristics() {
+    final int characteristics =
+        Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED;
+    return descending ? characteristics : characteristics | Spliterator.SORTED;
+  }
+
   private void assertOpen() {
     checkState(
         !closed.get(),
@@ -9,6 +9,7 @@ import samba.rocksdb.exceptions.StorageException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
@@ -21,33 +22,109 @@ public class RocksDBKeyValueStorageFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(RocksDBKeyValueStorageFactory.class);
   private static final EnumSet<BaseVersionedStorageFormat> SUPPORTED_VERSIONED_FORMATS =
-      EnumSet.of(BaseVersionedStorageFormat.BASIC_1);
-
+      EnumSet.of(
+          BaseVersionedStorageFormat.BASIC_1,
+          BaseVersionedStorageFormat.BASIC_2,
+          BaseVersionedStorageFormat.BASIC_3,
+          BaseVersionedStorageFormat.IMMUTABLE_1,
+          BaseVersionedStorageFormat.IMMUTABLE_2);
+
+  private final RocksDBSizing sizing;
   private final MetricsSystem metricsSystem;
 
-  private RocksDBKeyValueStorageFactory(final MetricsSystem metricsSystem) {
+  private RocksDBKeyValueStorageFactory(
+      final RocksDBSizing sizing, final MetricsSystem metricsSystem) {
+    this.sizing = sizing;
     this.metricsSystem = metricsSystem;
   }
 
-  public static RocksDBInstance create(
+  public static RocksDBStorage create(
       final Path dataPath,
       final Path databasePath,
       final DataStorageFormat databaseStorageFormat,
       final MetricsSystem metricsSystem) {
-    return new RocksDBKeyValueStorageFactory(metricsSystem)
+    return create(
+        dataPath, databasePath, databaseStorageFormat, RocksDBSizing.DEFAULT, metricsSystem);
+  }
+
+  public static RocksDBStorage create(
+      final Path dataPath,
+      final Path databasePath,
+      final DataStorageFormat databaseStorageFormat,
+      final RocksDBSizing sizing,
+      final MetricsSystem metricsSystem) {
+    return new RocksDBKeyValueStorageFactory(sizing, metricsSystem)
         .create(dataPath, databasePath, databaseStorageFormat);
   }
 
-  private RocksDBInstance create(
-      final Path dataPath, final Path databasePath, final DataStorageFormat databaseStorageFormat) {
+  /**
+   * Open the database of another process as a read-only secondary, see {@link
+   * RocksDBSecondaryInstance}. The database must exist and be in the current version of its format:
+   * a secondary neither creates nor migrates it.
+   *
+   * @param dataPath the data directory of the primary, holding the metadata file
+   * @param databasePath the database directory of the primary
+   * @param secondaryPath directory of the state of the secondary
+   * @param catchUpInterval delay between two catch ups with the primary
+   * @param sizing the memory, thread and file handle budget of the secondary
+   * @param metricsSystem the metrics system
+   * @return the secondary
+   */
+  public static RocksDBSecondaryInstance createSecondary(
+      final Path dataPath,
+      final Path databasePath,
+      final Path secondaryPath,
+      final Duration catchUpInterval,
+      final RocksDBSizing sizing,
+      final MetricsSystem metricsSystem) {
     try {
-      validateMetadata(dataPath, databasePath, databaseStorageFormat);
-      return new RocksDBInstance(
-          RocksDBConfiguration.createDefault(databasePath),
+      if (!DatabaseMetadata.isPresent(dataPath) || !databasePath.toFile().exists()) {
+        throw new StorageException(
+            "No database at "
+                + databasePath
+                + " to open as a secondary, the primary must create it");
+      }
+      final VersionedStorageFormat versionedStorageFormat =
+          DatabaseMetadata.lookUpFrom(dataPath).getVersionedStorageFormat();
+      if (versionedStorageFormat
+          != BaseVersionedStorageFormat.defaultForNewDB(versionedStorageFormat.getFormat())) {
+        throw new StorageException(
+            "Database at "
+                + databasePath
+                + " is "
+                + versionedStorageFormat
+                + ", the primary must upgrade it before it is opened as a secondary");
+      }
+      Files.createDirectories(secondaryPath);
+      LOG.info("Opening database at {} as a secondary in {}", databasePath, secondaryPath);
+      return new RocksDBSecondaryInstance(
+          sizing.toConfiguration(databasePath),
+          secondaryPath,
           Arrays.asList(KeyValueSegment.values()),
-          List.of(),
+          catchUpInterval,
           metricsSystem,
           RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+    } catch (final IOException e) {
+      final String message =
+          String.format("Failed to retrieve RocksDB metadata at %s: %s", dataPath, e.getMessage());
+      throw new StorageException(message, e);
+    }
+  }
+
+  private RocksDBStorage create(
+      final Path dataPath, final Path databasePath, final DataStorageFormat databaseStorageFormat) {
+    try {
+      final DatabaseMetadata metadata =
+          validateMetadata(dataPath, databasePath, databaseStorageFormat);
+      final RocksDBStorage instance =
+          openStorage(databasePath, metadata.getVersionedStorageFormat().getFormat());
+      try {
+        migrateIfNeeded(instance, dataPath, metadata);
+      } catch (final IOException | RuntimeException e) {
+        instance.close();
+        throw e;
+      }
+      return instance;
 
     } catch (final IOException e) {
       final String message =
@@ -56,7 +133,59 @@ public class RocksDBKeyValueStorageFactory {
     }
   }
 
-  private void validateMetadata(
+  private RocksDBStorage openStorage(
+      final Path databasePath, final DataStorageFormat databaseStorageFormat) {
+    final RocksDBConfiguration configuration = sizing.toConfiguration(databasePath);
+    final List<Segment> segments = Arrays.asList(KeyValueSegment.values());
+    final List<Segment> ignorableSegments = List.of(KeyValueSegment.LEGACY_CONTENT);
+    return switch (databaseStorageFormat) {
+      case BASIC ->
+          new RocksDBInstance(
+              configuration,
+              segments,
+              ignorableSegments,
+              metricsSystem,
+              RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+      case IMMUTABLE ->
+          new RocksDBBlindWriteInstance(
+              configuration,
+              segments,
+              ignorableSegments,
+              metricsSystem,
+              RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+    };
+  }
+
+  private void migrateIfNeeded(
+      final RocksDBStorage instance, final Path dataPath, final DatabaseMetadata metadata)
+      throws IOException {
+    DatabaseMetadata current = metadata;
+    if (current.getVersionedStorageFormat() == BaseVersionedStorageFormat.BASIC_1) {
+      SegmentSplitMigration.migrate(instance);
+      current = upgrade(current, dataPath, BaseVersionedStorageFormat.BASIC_2);
+    }
+    if (current.getVersionedStorageFormat() == BaseVersionedStorageFormat.BASIC_2) {
+      BlockNumberKeyMigration.migrate(instance);
+      current = upgrade(current, dataPath, BaseVersionedStorageFormat.BASIC_3);
+    }
+    if (current.getVersionedStorageFormat() == BaseVersionedStorageFormat.IMMUTABLE_1) {
+      BlockNumberKeyMigration.migrate(instance);
+      upgrade(current, dataPath, BaseVersionedStorageFormat.IMMUTABLE_2);
+    }
+  }
+
+  private static DatabaseMetadata upgrade(
+      final DatabaseMetadata metadata,
+      final Path dataPath,
+      final BaseVersionedStorageFormat versionedStorageFormat)
+      throws IOException {
+    final DatabaseMetadata upgraded = metadata.upgradeTo(versionedStorageFormat);
+    upgraded.writeToDirectory(dataPath);
+    LOG.info("Database at {} upgraded. Metadata {}", dataPath, upgraded);
+    return upgraded;
+  }
+
+  private DatabaseMetadata validateMetadata(
       final Path dataPath, final Path databasePath, final DataStorageFormat databaseStorageFormat)
       throws IOException {
     final boolean dataDirExists = dataPath.toFile().exists();
@@ -93,6 +222,7 @@ public class RocksDBKeyValueStorageFactory {
       LOG.error(message);
       throw new StorageException(message);
     }
+    return metadata;
   }
 
   private static void handleFormatMismatch(
@@ -23,4 +23,7 @@ public record RocksDBMetrics(
     OperationTimer removeLatency,
     OperationTimer writeLatency,
     OperationTimer commitLatency,
-    Counter rollbackCount) {}
+    Counter rollbackCount,
+    OperationTimer groupCommitLatency,
+    Counter groupCommitCount,
+    Counter groupCommitBatchCount) {}
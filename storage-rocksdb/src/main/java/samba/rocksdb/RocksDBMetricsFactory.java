@@ -144,7 +144,42 @@ public class RocksDBMetricsFactory {
                 "database")
             .labels(rocksDbConfiguration.label());
 
+    final OperationTimer groupCommitLatency =
+        metricsSystem
+            .createLabelledTimer(
+                rocksDbMetricCategory,
+                "group_commit_latency_seconds",
+                "Latency of the RocksDB writes merging concurrent write batches.",
+                "database")
+            .labels(rocksDbConfiguration.label());
+
+    final Counter groupCommitCount =
+        metricsSystem
+            .createLabelledCounter(
+                rocksDbMetricCategory,
+                "group_commit_count",
+                "Number of RocksDB writes merging concurrent write batches.",
+                "database")
+            .labels(rocksDbConfiguration.label());
+
+    final Counter groupCommitBatchCount =
+        metricsSystem
+            .createLabelledCounter(
+                rocksDbMetricCategory,
+                "group_commit_batch_count",
+                "Number of write batches merged into RocksDB writes, divided by group_commit_count"
+                    + " gives the average group size.",
+                "database")
+            .labels(rocksDbConfiguration.label());
+
     return new RocksDBMetrics(
-        readLatency, removeLatency, writeLatency, commitLatency, rollbackCount);
+        readLatency,
+        removeLatency,
+        writeLatency,
+        commitLatency,
+        rollbackCount,
+        groupCommitLatency,
+        groupCommitCount,
+        groupCommitBatchCount);
   }
 }
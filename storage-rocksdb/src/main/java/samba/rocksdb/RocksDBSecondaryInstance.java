@@ -0,0 +1,159 @@
+package samba.rocksdb;
+
+import samba.rocksdb.exceptions.StorageException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.besu.plugin.services.MetricsSystem;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only view of a database another process writes to, opened as a RocksDB secondary instance.
+ * Any number of secondaries can read the database of a single primary, each one from its own
+ * process, so that read capacity is not bound to the JVM of the node filling the database.
+ *
+ * <p>A secondary sees the writes of the primary as of its last catch up with it, which replays the
+ * new MANIFEST and WAL entries of the primary. It catches up periodically on a background thread.
+ * Its own info logs and state live in a directory of its own, next to no file of the primary.
+ */
+public class RocksDBSecondaryInstance extends RocksDBStorage {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RocksDBSecondaryInstance.class);
+
+  private final RocksDB db;
+  private final ScheduledExecutorService catchUpExecutor;
+
+  /**
+   * @param configuration configuration of the database of the primary
+   * @param secondaryPath directory of the state of this secondary
+   * @param segments segments to open, those the primary has not created yet are skipped
+   * @param catchUpInterval delay between two catch ups with the primary
+   * @param metricsSystem the metrics system
+   * @param rocksDBMetricsFactory the metrics factory
+   */
+  public RocksDBSecondaryInstance(
+      RocksDBConfiguration configuration,
+      Path secondaryPath,
+      List<Segment> segments,
+      Duration catchUpInterval,
+      MetricsSystem metricsSystem,
+      RocksDBMetricsFactory rocksDBMetricsFactory) {
+    // a secondary cannot create column families, open those that exist
+    super(configuration, segments, segments, metricsSystem, rocksDBMetricsFactory);
+    // files the primary compacts away are deleted under the secondary, which must keep them open
+    rocksDBOptions
+        .setMaxOpenFiles(-1)
+        .setCreateIfMissing(false)
+        .setCreateMissingColumnFamilies(false);
+    try {
+      this.db =
+          RocksDB.openAsSecondary(
+              rocksDBOptions,
+              configuration.databaseDir().toString(),
+              secondaryPath.toString(),
+              columnDescriptors,
+              columnHandles);
+      initMetrics();
+      initColumnHandles();
+
+    } catch (final RocksDBException e) {
+      throw parseRocksDBException(e, segments, segments);
+    }
+    this.catchUpExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "rocksdb-secondary-catch-up");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.catchUpExecutor.scheduleWithFixedDelay(
+        this::tryCatchUp,
+        catchUpInterval.toMillis(),
+        catchUpInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  RocksDB getDB() {
+    return db;
+  }
+
+  /**
+   * Catch up with the primary now, rather than on the next periodic catch up.
+   *
+   * @throws StorageException if the new state of the primary could not be read
+   */
+  public void catchUpWithPrimary() throws StorageException {
+    throwIfClosed();
+    try {
+      db.tryCatchUpWithPrimary();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public KeyValueStorageTransaction startTransaction() throws StorageException {
+    throw readOnly();
+  }
+
+  @Override
+  public KeyValueStorageTransaction startWriteBatch() throws StorageException {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean tryDelete(final Segment segment, final byte[] key) {
+    throw readOnly();
+  }
+
+  @Override
+  public void clear(final Segment segment) {
+    throw readOnly();
+  }
+
+  @Override
+  public void ingestSegment(final Segment segment, final List<Path> sstFiles) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean isReadOnly() {
+    return true;
+  }
+
+  @Override
+  public void close() {
+    catchUpExecutor.shutdownNow();
+    try {
+      // a catch up in progress must not run on a closed database
+      catchUpExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    super.close();
+  }
+
+  private void tryCatchUp() {
+    if (isClosed()) {
+      return;
+    }
+    try {
+      db.tryCatchUpWithPrimary();
+    } catch (final RocksDBException e) {
+      LOG.warn("Secondary database could not catch up with the primary", e);
+    }
+  }
+
+  private static StorageException readOnly() {
+    return new StorageException("Database is opened as a read-only secondary");
+  }
+}
@@ -0,0 +1,159 @@
+package samba.rocksdb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.file.Path;
+
+/**
+ * Memory, thread and file handle budget of a database, derived from the host it runs on so that the
+ * same binary neither starves a large host nor overcommits a small one.
+ *
+ * <p>All column families share one block cache. The memtables are charged against that cache
+ * through a write buffer manager, which bounds the memory of the database to the cache capacity
+ * however many column families there are.
+ *
+ * @param blockCacheCapacity capacity of the block cache shared by all column families
+ * @param writeBufferManagerCapacity part of the block cache the memtables may use
+ * @param writeBufferSize size of a memtable of one column family
+ * @param backgroundJobCount flushes and compactions running at the same time
+ * @param maxOpenFiles SST files kept open, -1 for all of them
+ * @param isHighSpec whether the host has the memory for larger memtables on the segments eligible
+ *     to it
+ */
+public record RocksDBSizing(
+    long blockCacheCapacity,
+    long writeBufferManagerCapacity,
+    long writeBufferSize,
+    int backgroundJobCount,
+    int maxOpenFiles,
+    boolean isHighSpec) {
+
+  private static final long MB = 1L << 20;
+  private static final long GB = 1L << 30;
+
+  private static final long MIN_BLOCK_CACHE_CAPACITY = 64 * MB;
+  private static final long MAX_BLOCK_CACHE_CAPACITY = 16 * GB;
+  // share of the memory left once the heap is reserved
+  private static final int BLOCK_CACHE_SHARE_OF_OFF_HEAP_MEMORY = 4;
+  // share of the block cache
+  private static final int WRITE_BUFFER_MANAGER_SHARE_OF_BLOCK_CACHE = 4;
+  // memtables of one column family fitting in the write buffer manager
+  private static final int WRITE_BUFFERS_PER_WRITE_BUFFER_MANAGER = 8;
+  private static final long MIN_WRITE_BUFFER_SIZE = 4 * MB;
+  private static final long MAX_WRITE_BUFFER_SIZE = 128 * MB;
+  private static final int MIN_BACKGROUND_JOB_COUNT = 2;
+  private static final int MAX_BACKGROUND_JOB_COUNT = 16;
+  private static final int DEFAULT_MAX_OPEN_FILES = 1024;
+  private static final int MIN_MAX_OPEN_FILES = 256;
+  private static final int MAX_MAX_OPEN_FILES = 65_536;
+  private static final long HIGH_SPEC_MEMORY = 64 * GB;
+
+  /** Sizing of a small host, independent of the one running. */
+  public static final RocksDBSizing DEFAULT =
+      withBlockCacheCapacity(128 * MB, 4, DEFAULT_MAX_OPEN_FILES, false);
+
+  public RocksDBSizing {
+    checkArgument(blockCacheCapacity > 0, "Block cache capacity must be greater than 0");
+    checkArgument(
+        writeBufferManagerCapacity <= blockCacheCapacity,
+        "Write buffers must fit in the block cache");
+    checkArgument(
+        writeBufferSize <= writeBufferManagerCapacity,
+        "A write buffer must fit in the write buffer manager");
+    checkArgument(backgroundJobCount > 0, "Background job count must be greater than 0");
+    checkArgument(
+        maxOpenFiles == -1 || maxOpenFiles > 0, "Max open files must be greater than 0 or -1");
+  }
+
+  /**
+   * Size the database for a host.
+   *
+   * @param totalMemory memory of the host in bytes
+   * @param maxHeapSize maximum heap size of the JVM in bytes, not available to the database
+   * @param logicalProcessorCount logical processors of the host
+   * @param openFileLimit open file limit of the process, 0 or less when unknown
+   * @return the sizing
+   */
+  public static RocksDBSizing forHost(
+      final long totalMemory,
+      final long maxHeapSize,
+      final int logicalProcessorCount,
+      final long openFileLimit) {
+    final long offHeapMemory = Math.max(totalMemory - maxHeapSize, 0);
+    final long blockCacheCapacity =
+        clamp(
+            offHeapMemory / BLOCK_CACHE_SHARE_OF_OFF_HEAP_MEMORY,
+            MIN_BLOCK_CACHE_CAPACITY,
+            MAX_BLOCK_CACHE_CAPACITY);
+    final int backgroundJobCount =
+        (int) clamp(logicalProcessorCount / 2, MIN_BACKGROUND_JOB_COUNT, MAX_BACKGROUND_JOB_COUNT);
+    // leave half of the file handles to the network
+    final int maxOpenFiles =
+        openFileLimit > 0
+            ? (int) clamp(openFileLimit / 2, MIN_MAX_OPEN_FILES, MAX_MAX_OPEN_FILES)
+            : DEFAULT_MAX_OPEN_FILES;
+    return withBlockCacheCapacity(
+        blockCacheCapacity, backgroundJobCount, maxOpenFiles, totalMemory >= HIGH_SPEC_MEMORY);
+  }
+
+  /**
+   * The same sizing with another block cache capacity, the write buffers being resized to it.
+   *
+   * @param blockCacheCapacity capacity of the block cache
+   * @return the sizing
+   */
+  public RocksDBSizing withBlockCacheCapacity(final long blockCacheCapacity) {
+    return withBlockCacheCapacity(blockCacheCapacity, backgroundJobCount, maxOpenFiles, isHighSpec);
+  }
+
+  public RocksDBSizing withBackgroundJobCount(final int backgroundJobCount) {
+    return new RocksDBSizing(
+        blockCacheCapacity,
+        writeBufferManagerCapacity,
+        writeBufferSize,
+        backgroundJobCount,
+        maxOpenFiles,
+        isHighSpec);
+  }
+
+  public RocksDBSizing withMaxOpenFiles(final int maxOpenFiles) {
+    return new RocksDBSizing(
+        blockCacheCapacity,
+        writeBufferManagerCapacity,
+        writeBufferSize,
+        backgroundJobCount,
+        maxOpenFiles,
+        isHighSpec);
+  }
+
+  public RocksDBConfiguration toConfiguration(final Path databaseDir) {
+    return new RocksDBConfiguration(databaseDir, "rocksDB", this);
+  }
+
+  private static RocksDBSizing withBlockCacheCapacity(
+      final long blockCacheCapacity,
+      final int backgroundJobCount,
+      final int maxOpenFiles,
+      final boolean isHighSpec) {
+    final long writeBufferManagerCapacity =
+        blockCacheCapacity / WRITE_BUFFER_MANAGER_SHARE_OF_BLOCK_CACHE;
+    final long writeBufferSize =
+        Math.min(
+            clamp(
+                writeBufferManagerCapacity / WRITE_BUFFERS_PER_WRITE_BUFFER_MANAGER,
+                MIN_WRITE_BUFFER_SIZE,
+                MAX_WRITE_BUFFER_SIZE),
+            writeBufferManagerCapacity);
+    return new RocksDBSizing(
+        blockCacheCapacity,
+        writeBufferManagerCapacity,
+        writeBufferSize,
+        backgroundJobCount,
+        maxOpenFiles,
+        isHighSpec);
+  }
+
+  private static long clamp(final long value, final long min, final long max) {
+    return Math.max(min, Math.min(value, max));
+  }
+}
@@ -0,0 +1,189 @@
+package samba.rocksdb;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import samba.rocksdb.configuration.DatabaseMetadata;
+import samba.rocksdb.configuration.VersionedStorageFormat;
+import samba.rocksdb.exceptions.StorageException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshots of a database, to bootstrap new nodes from the data of an existing one.
+ *
+ * <p>A full snapshot is a RocksDB checkpoint of the whole database next to its metadata file, laid
+ * out like a data directory so that restoring it is a matter of linking its files in place. A
+ * segment export holds one SST file per exported segment and the metadata file, and is ingested
+ * into an existing database of the same storage format.
+ *
+ * <p>The metadata file is written last in both cases: a snapshot or a restored database without it
+ * is incomplete and is not opened.
+ */
+public final class RocksDBSnapshots {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RocksDBSnapshots.class);
+  private static final String SST_FILE_EXTENSION = ".sst";
+  private static final String BLOB_FILE_EXTENSION = ".blob";
+
+  private RocksDBSnapshots() {}
+
+  /**
+   * Take a full snapshot of a database.
+   *
+   * @param storage the open database
+   * @param dataPath the data directory holding the metadata file
+   * @param databasePath the database directory, inside the data directory
+   * @param snapshotPath the directory of the snapshot, which must not exist
+   * @throws IOException if the snapshot directory or metadata file cannot be written
+   */
+  public static void createSnapshot(
+      final RocksDBStorage storage,
+      final Path dataPath,
+      final Path databasePath,
+      final Path snapshotPath)
+      throws IOException {
+    checkArgument(
+        !Files.exists(snapshotPath), "Snapshot directory %s already exists", snapshotPath);
+    final DatabaseMetadata metadata = DatabaseMetadata.lookUpFrom(dataPath);
+    Files.createDirectories(snapshotPath);
+    storage.createCheckpoint(snapshotPath.resolve(dataPath.relativize(databasePath)));
+    metadata.writeToDirectory(snapshotPath);
+    LOG.info("Database snapshot created at {}. Metadata {}", snapshotPath, metadata);
+  }
+
+  /**
+   * Restore a full snapshot into a data directory that has no database yet. Immutable files are
+   * hard-linked when the snapshot is on the same file system, and copied otherwise.
+   *
+   * @param snapshotPath the snapshot directory, as written by {@link #createSnapshot}
+   * @param dataPath the data directory to restore into
+   * @param databasePath the database directory, inside the data directory
+   * @throws IOException if the snapshot cannot be read or the database cannot be written
+   */
+  public static void restoreSnapshot(
+      final Path snapshotPath, final Path dataPath, final Path databasePath) throws IOException {
+    checkArgument(!Files.exists(databasePath), "A database already exists at %s", databasePath);
+    final DatabaseMetadata metadata = DatabaseMetadata.lookUpFrom(snapshotPath);
+    final Path snapshotDatabasePath = snapshotPath.resolve(dataPath.relativize(databasePath));
+    if (!Files.isDirectory(snapshotDatabasePath)) {
+      throw new StorageException("No database found in snapshot " + snapshotPath);
+    }
+    Files.createDirectories(databasePath);
+    try (Stream<Path> files = Files.list(snapshotDatabasePath)) {
+      for (final Path file : (Iterable<Path>) files::iterator) {
+        linkOrCopy(file, databasePath.resolve(file.getFileName()));
+      }
+    }
+    metadata.writeToDirectory(dataPath);
+    LOG.info("Database restored from snapshot {}. Metadata {}", snapshotPath, metadata);
+  }
+
+  /**
+   * Check if a directory holds a full snapshot for the given data layout.
+   *
+   * @param snapshotPath the directory to check
+   * @param dataPath the data directory the snapshot would be restored into
+   * @param databasePath the database directory, inside the data directory
+   * @return true if the directory holds a full snapshot, false if it holds a segment export or
+   *     nothing
+   * @throws IOException if the directory cannot be read
+   */
+  public static boolean isSnapshot(
+      final Path snapshotPath, final Path dataPath, final Path databasePath) throws IOException {
+    return DatabaseMetadata.isPresent(snapshotPath)
+        && Files.isDirectory(snapshotPath.resolve(dataPath.relativize(databasePath)));
+  }
+
+  /**
+   * Export some segments of a database, one SST file per non-empty segment.
+   *
+   * @param storage the open database
+   * @param dataPath the data directory holding the metadata file
+   * @param segments the segments to export
+   * @param exportPath the directory of the export, which must not exist
+   * @throws IOException if the export directory or metadata file cannot be written
+   */
+  public static void exportSegments(
+      final RocksDBStorage storage,
+      final Path dataPath,
+      final List<? extends Segment> segments,
+      final Path exportPath)
+      throws IOException {
+    checkArgument(!Files.exists(exportPath), "Export directory %s already exists", exportPath);
+    final DatabaseMetadata metadata = DatabaseMetadata.lookUpFrom(dataPath);
+    Files.createDirectories(exportPath);
+    for (final Segment segment : segments) {
+      if (!storage.exportSegment(segment, sstFile(exportPath, segment))) {
+        LOG.info("Segment {} is empty, not exported", segment.getName());
+      }
+    }
+    metadata.writeToDirectory(exportPath);
+    LOG.info("Segments {} exported to {}", segments, exportPath);
+  }
+
+  /**
+   * Ingest the segments of an export into a database. The export must have been taken from a
+   * database of the same storage format and version.
+   *
+   * @param storage the open database
+   * @param dataPath the data directory holding the metadata file of the database
+   * @param segments the segments to ingest, segments missing from the export are skipped
+   * @param exportPath the export directory, as written by {@link #exportSegments}
+   * @return the segments ingested
+   * @throws IOException if the metadata files cannot be read
+   */
+  public static List<Segment> ingestSegments(
+      final RocksDBStorage storage,
+      final Path dataPath,
+      final List<? extends Segment> segments,
+      final Path exportPath)
+      throws IOException {
+    final VersionedStorageFormat exported =
+        DatabaseMetadata.lookUpFrom(exportPath).getVersionedStorageFormat();
+    final VersionedStorageFormat current =
+        DatabaseMetadata.lookUpFrom(dataPath).getVersionedStorageFormat();
+    if (exported.getFormat() != current.getFormat()
+        || exported.getVersion() != current.getVersion()) {
+      throw new StorageException(
+          String.format(
+              "Export %s was taken from a %s database, this database is %s",
+              exportPath, exported, current));
+    }
+    final List<Segment> ingested = new ArrayList<>();
+    for (final Segment segment : segments) {
+      final Path sstFile = sstFile(exportPath, segment);
+      if (Files.exists(sstFile)) {
+        storage.ingestSegment(segment, List.of(sstFile));
+        ingested.add(segment);
+      }
+    }
+    LOG.info("Segments {} ingested from {}", ingested, exportPath);
+    return ingested;
+  }
+
+  private static Path sstFile(final Path exportPath, final Segment segment) {
+    return exportPath.resolve(segment.getName() + SST_FILE_EXTENSION);
+  }
+
+  private static void linkOrCopy(final Path source, final Path target) throws IOException {
+    final String name = source.getFileName().toString();
+    // RocksDB never modifies SST and blob files, the other ones are rewritten in place
+    if (name.endsWith(SST_FILE_EXTENSION) || name.endsWith(BLOB_FILE_EXTENSION)) {
+      try {
+        Files.createLink(target, source);
+        return;
+      } catch (final IOException | UnsupportedOperationException e) {
+        LOG.debug("Could not link {}, copying it instead", source, e);
+      }
+    }
+    Files.copy(source, target);
+  }
+}
@@ -14,14 +14,18 @@
  */
 package samba.rocksdb;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.stream.Collectors.toUnmodifiableSet;
 
 import samba.rocksdb.exceptions.InvalidConfigurationException;
 import samba.rocksdb.exceptions.StorageException;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -39,21 +43,31 @@ import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.hyperledger.besu.plugin.services.metrics.OperationTimer;
 import org.rocksdb.BlockBasedTableConfig;
 import org.rocksdb.BloomFilter;
+import org.rocksdb.ByteBufferGetStatus;
+import org.rocksdb.Checkpoint;
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionOptionsFIFO;
+import org.rocksdb.CompactionStyle;
 import org.rocksdb.CompressionType;
 import org.rocksdb.DBOptions;
 import org.rocksdb.Env;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.IngestExternalFileOptions;
 import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
 import org.rocksdb.Statistics;
 import org.rocksdb.Status;
 import org.rocksdb.TransactionDBOptions;
+import org.rocksdb.WriteBufferManager;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,7 +78,9 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   private static final int ROCKSDB_FORMAT_VERSION = 5;
   private static final long ROCKSDB_BLOCK_SIZE = 32768;
 
-  protected static final long ROCKSDB_BLOCKCACHE_SIZE_WHEN_USING_HIGH_SPEC_OPT = 1_073_741_824L;
+  private static final double ROCKSDB_MEMTABLE_PREFIX_BLOOM_SIZE_RATIO = 0.1;
+  // built-in operator adding 64-bit little-endian integers
+  private static final String ROCKSDB_COUNTER_MERGE_OPERATOR = "uint64add";
   protected static final long ROCKSDB_MEMTABLE_SIZE_WHEN_USING_HIGH_SPEC_OPT = 536_870_912L;
   protected static final long WAL_MAX_TOTAL_SIZE_AFTER_WHICH_A_FLUSH_IS_TRIGGERED = 1_073_741_824L;
   protected static final long EXPECTED_WAL_FILE_SIZE_TO_KEEP_AROUND = 67_108_864L;
@@ -73,6 +89,13 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   private static final long TIME_TO_ROLL_LOG_FILE_IN_SECONDS =
       86_400L; // (1 day = 3600 * 24 seconds)
 
+  // segments with a time to live hold a small, hot window of content: a few memtables hold most of
+  // it, its own cache the rest, and FIFO compaction bounds it on disk
+  private static final long EXPIRING_CACHE_CAPACITY = 32 * 1_048_576L;
+  private static final long EXPIRING_WRITE_BUFFER_SIZE = 16 * 1_048_576L;
+  private static final int EXPIRING_MAX_WRITE_BUFFER_NUMBER = 4;
+  private static final long EXPIRING_MAX_TABLE_FILES_SIZE = 64 * 1_048_576L;
+
   static {
     try {
       RocksDB.loadLibrary();
@@ -92,15 +115,24 @@ public abstract class RocksDBStorage implements KeyValueStorage {
 
   private final WriteOptions tryDeleteOptions =
       new WriteOptions().setNoSlowdown(true).setIgnoreMissingColumnFamilies(true);
+  private final WriteOptions groupCommitOptions =
+      new WriteOptions().setIgnoreMissingColumnFamilies(true);
   private final ReadOptions readOptions = new ReadOptions().setVerifyChecksums(false);
+  private final ReadOptions totalOrderReadOptions =
+      new ReadOptions().setVerifyChecksums(false).setTotalOrderSeek(true);
   private final MetricsSystem metricsSystem;
   private final RocksDBMetricsFactory rocksDBMetricsFactory;
   private final RocksDBConfiguration configuration;
 
   protected DBOptions rocksDBOptions;
   protected TransactionDBOptions rocksDBTxOptions;
+  protected LRUCache blockCache;
+  protected LRUCache expiringBlockCache;
+  protected CompactionOptionsFIFO expiringCompactionOptions;
+  protected WriteBufferManager writeBufferManager;
   protected final Statistics stats = new Statistics();
   protected RocksDBMetrics metrics;
+  private GroupCommitWriter groupCommitWriter;
   protected Map<Segment, RocksDBSegmentIdentifier> columnHandlesBySegmentIdentifier;
   protected List<ColumnFamilyDescriptor> columnDescriptors;
   protected List<ColumnFamilyHandle> columnHandles;
@@ -119,6 +151,14 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     this.rocksDBMetricsFactory = rocksDBMetricsFactory;
 
     try {
+      final RocksDBSizing sizing = configuration.sizing();
+      blockCache = new LRUCache(sizing.blockCacheCapacity());
+      expiringBlockCache = new LRUCache(EXPIRING_CACHE_CAPACITY);
+      expiringCompactionOptions =
+          new CompactionOptionsFIFO()
+              .setMaxTableFilesSize(EXPIRING_MAX_TABLE_FILES_SIZE)
+              .setAllowCompaction(false);
+      writeBufferManager = new WriteBufferManager(sizing.writeBufferManagerCapacity(), blockCache);
       trimmedSegments = new ArrayList<>(defaultSegments);
       final List<byte[]> existingColumnFamilies =
           RocksDB.listColumnFamilies(new Options(), configuration.databaseDir().toString());
@@ -157,11 +197,12 @@ public abstract class RocksDBStorage implements KeyValueStorage {
   private ColumnFamilyDescriptor createColumnDescriptor(
       final Segment segment, final RocksDBConfiguration configuration) {
 
-    BlockBasedTableConfig basedTableConfig = createBlockBasedTableConfig(segment, configuration);
+    BlockBasedTableConfig basedTableConfig = createBlockBasedTableConfig(segment);
 
     final var options =
         new ColumnFamilyOptions()
             .setTtl(0)
+            .setWriteBufferSize(writeBufferSize(segment, configuration.sizing()))
             .setCompressionType(CompressionType.LZ4_COMPRESSION)
             .setTableFormatConfig(basedTableConfig);
 
@@ -173,31 +214,73 @@ public abstract class RocksDBStorage implements KeyValueStorage {
           .setBlobCompressionType(CompressionType.LZ4_COMPRESSION);
     }
 
+    if (segment.getFixedPrefixLength() > 0) {
+      options
+          .useFixedLengthPrefixExtractor(segment.getFixedPrefixLength())
+          .setMemtablePrefixBloomSizeRatio(ROCKSDB_MEMTABLE_PREFIX_BLOOM_SIZE_RATIO);
+    }
+
+    if (segment.containsCounters()) {
+      options.setMergeOperatorName(ROCKSDB_COUNTER_MERGE_OPERATOR);
+    }
+
+    if (segment.getTimeToLiveInSeconds() > 0) {
+      // files are dropped whole once expired or over the size bound, compaction rewrites nothing
+      options
+          .setCompactionStyle(CompactionStyle.FIFO)
+          .setCompactionOptionsFIFO(expiringCompactionOptions)
+          .setMaxWriteBufferNumber(EXPIRING_MAX_WRITE_BUFFER_NUMBER)
+          .setMemtableWholeKeyFiltering(true)
+          .setMemtablePrefixBloomSizeRatio(ROCKSDB_MEMTABLE_PREFIX_BLOOM_SIZE_RATIO)
+          // the age of a file is kept in the manifest, the files need not all be kept open
+          .setTtl(segment.getTimeToLiveInSeconds());
+    }
+
     return new ColumnFamilyDescriptor(segment.getId(), options);
   }
 
   /***
-   * Create a Block Base Table configuration for each segment, depending on the configuration in place
-   * and the segment itself
+   * Create a Block Base Table configuration for each segment, on top of the block cache shared by
+   * all of them
    *
    * @param segment The segment related to the column family
-   * @param config RocksDB configuration
    * @return Block Base Table configuration
    */
-  private BlockBasedTableConfig createBlockBasedTableConfig(
-      final Segment segment, final RocksDBConfiguration config) {
-    final LRUCache cache =
-        new LRUCache(
-            config.isHighSpec() && segment.isEligibleToHighSpecFlag()
-                ? ROCKSDB_BLOCKCACHE_SIZE_WHEN_USING_HIGH_SPEC_OPT
-                : config.cacheCapacity());
-    return new BlockBasedTableConfig()
-        .setFormatVersion(ROCKSDB_FORMAT_VERSION)
-        .setBlockCache(cache)
-        .setFilterPolicy(new BloomFilter(10, false))
-        .setPartitionFilters(true)
-        .setCacheIndexAndFilterBlocks(false)
-        .setBlockSize(ROCKSDB_BLOCK_SIZE);
+  private BlockBasedTableConfig createBlockBasedTableConfig(final Segment segment) {
+    final BlockBasedTableConfig tableConfig =
+        new BlockBasedTableConfig()
+            .setFormatVersion(ROCKSDB_FORMAT_VERSION)
+            .setBlockCache(segment.getTimeToLiveInSeconds() > 0 ? expiringBlockCache : blockCache)
+            .setFilterPolicy(new BloomFilter(10, false))
+            .setPartitionFilters(true)
+            .setCacheIndexAndFilterBlocks(false)
+            .setBlockSize(ROCKSDB_BLOCK_SIZE);
+    if (segment.getFixedPrefixLength() > 0) {
+      // small lookup index: keep its filters in the cache and never let them be evicted
+      tableConfig
+          .setPartitionFilters(false)
+          .setWholeKeyFiltering(true)
+          .setCacheIndexAndFilterBlocks(true)
+          .setCacheIndexAndFilterBlocksWithHighPriority(true)
+          .setPinL0FilterAndIndexBlocksInCache(true)
+          .setPinTopLevelIndexAndFilter(true);
+    }
+    return tableConfig;
+  }
+
+  private static long writeBufferSize(final Segment segment, final RocksDBSizing sizing) {
+    if (segment.getTimeToLiveInSeconds() > 0) {
+      return Math.min(EXPIRING_WRITE_BUFFER_SIZE, sizing.writeBufferManagerCapacity() / 2);
+    }
+    if (sizing.isHighSpec() && segment.isEligibleToHighSpecFlag()) {
+      // larger memtables on a large host, still leaving room for the other column families
+      return Math.max(
+          sizing.writeBufferSize(),
+          Math.min(
+              ROCKSDB_MEMTABLE_SIZE_WHEN_USING_HIGH_SPEC_OPT,
+              sizing.writeBufferManagerCapacity() / 2));
+    }
+    return sizing.writeBufferSize();
   }
 
   /***
@@ -207,15 +290,18 @@ public abstract class RocksDBStorage implements KeyValueStorage {
    * @param stats The statistics object
    */
   private void setGlobalOptions(final RocksDBConfiguration configuration, final Statistics stats) {
+    final RocksDBSizing sizing = configuration.sizing();
     rocksDBOptions = new DBOptions();
     rocksDBOptions
         .setCreateIfMissing(true)
-        .setMaxOpenFiles(configuration.maxOpenFiles())
+        .setMaxOpenFiles(sizing.maxOpenFiles())
+        .setMaxBackgroundJobs(sizing.backgroundJobCount())
+        .setWriteBufferManager(writeBufferManager)
         .setStatistics(stats)
         .setCreateMissingColumnFamilies(true)
         .setLogFileTimeToRoll(TIME_TO_ROLL_LOG_FILE_IN_SECONDS)
         .setKeepLogFileNum(NUMBER_OF_LOG_FILES_TO_KEEP_ON_DISK)
-        .setEnv(Env.getDefault().setBackgroundThreads(configuration.backgroundThreadCount()))
+        .setEnv(Env.getDefault().setBackgroundThreads(sizing.backgroundJobCount()))
         .setMaxTotalWalSize(WAL_MAX_TOTAL_SIZE_AFTER_WHICH_A_FLUSH_IS_TRIGGERED)
         .setRecycleLogFileNum(
             WAL_MAX_TOTAL_SIZE_AFTER_WHICH_A_FLUSH_IS_TRIGGERED
@@ -269,6 +355,8 @@ public abstract class RocksDBStorage implements KeyValueStorage {
 
   void initMetrics() {
     metrics = rocksDBMetricsFactory.create(metricsSystem, configuration, getDB(), stats);
+    groupCommitWriter =
+        new GroupCommitWriter(getDB(), this::safeColumnHandle, groupCommitOptions, metrics);
   }
 
   void initColumnHandles() throws RocksDBException {
@@ -323,6 +411,98 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Direct buffers are filled by RocksDB straight from the block cache or the SST file, without
+   * going through the heap.
+   */
+  @Override
+  public int get(final Segment segment, final byte[] key, final ByteBuffer value)
+      throws StorageException {
+    if (!value.isDirect()) {
+      return KeyValueStorage.super.get(segment, key, value);
+    }
+    throwIfClosed();
+    // RocksDB reads into a direct value buffer only with a direct key buffer
+    final ByteBuffer keyBuffer = ByteBuffer.allocateDirect(key.length).put(key).flip();
+    try (final OperationTimer.TimingContext ignored = metrics.readLatency().startTimer()) {
+      final int size = getDB().get(safeColumnHandle(segment), readOptions, keyBuffer, value);
+      return size == RocksDB.NOT_FOUND ? NOT_FOUND : size;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public List<Optional<byte[]>> multiGet(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    checkArgument(segments.size() == keys.size(), "Expected one segment per key");
+    throwIfClosed();
+    try (final OperationTimer.TimingContext ignored = metrics.readLatency().startTimer()) {
+      return getDB().multiGetAsList(readOptions, columnHandles(segments), keys).stream()
+          .map(Optional::ofNullable)
+          .toList();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Check whether several keys exist in a single MultiGet. Each value is read into an empty buffer,
+   * so RocksDB only reports its status and size: the values are never copied to the heap. Absent
+   * keys are mostly ruled out by the bloom filters without any read.
+   *
+   * @param segments the segment of each key
+   * @param keys the keys, in the same order as the segments
+   * @return whether each key exists, in the same order as the keys
+   * @throws StorageException if the keys could not be read
+   */
+  @Override
+  public List<Boolean> multiContains(final List<Segment> segments, final List<byte[]> keys)
+      throws StorageException {
+    checkArgument(segments.size() == keys.size(), "Expected one segment per key");
+    throwIfClosed();
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    final ByteBuffer keysBuffer =
+        ByteBuffer.allocateDirect(keys.stream().mapToInt(key -> key.length).sum());
+    final List<ByteBuffer> keyBuffers = new ArrayList<>(keys.size());
+    for (byte[] key : keys) {
+      keyBuffers.add(keysBuffer.slice(keysBuffer.position(), key.length));
+      keysBuffer.put(key);
+    }
+    final ByteBuffer emptyValue = ByteBuffer.allocateDirect(0);
+    final List<ByteBuffer> valueBuffers = Collections.nCopies(keys.size(), emptyValue);
+    try (final OperationTimer.TimingContext ignored = metrics.readLatency().startTimer()) {
+      final List<ByteBufferGetStatus> statuses =
+          getDB()
+              .multiGetByteBuffers(readOptions, columnHandles(segments), keyBuffers, valueBuffers);
+      final List<Boolean> found = new ArrayList<>(statuses.size());
+      for (ByteBufferGetStatus status : statuses) {
+        switch (status.status.getCode()) {
+          case Ok -> found.add(true);
+          case NotFound -> found.add(false);
+          default -> throw new StorageException(new RocksDBException(status.status));
+        }
+      }
+      return found;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  private List<ColumnFamilyHandle> columnHandles(final List<Segment> segments) {
+    return segments.stream().map(this::safeColumnHandle).toList();
+  }
+
+  @Override
+  public KeyValueStorageTransaction startWriteBatch() throws StorageException {
+    throwIfClosed();
+    return new RocksDBWriteBatch(groupCommitWriter, this.closed::get);
+  }
+
   @Override
   public Stream<Pair<byte[], byte[]>> stream(final Segment segment) {
     final RocksIterator rocksIterator = getDB().newIterator(safeColumnHandle(segment));
@@ -337,6 +517,172 @@ public abstract class RocksDBStorage implements KeyValueStorage {
     return RocksDBIterator.create(rocksIterator).toStreamKeys();
   }
 
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamDescending(final Segment segment) {
+    final RocksIterator rocksIterator = getDB().newIterator(safeColumnHandle(segment));
+    rocksIterator.seekToLast();
+    return RocksDBIterator.createDescending(rocksIterator).toStream();
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamFromKey(final Segment segment, final byte[] startKey) {
+    return RocksDBIterator.createFrom(newTotalOrderIterator(segment), startKey).toStream();
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamFromKey(
+      final Segment segment, final byte[] startKey, final byte[] endKey) {
+    // in the order of RocksDB, Bytes compares keys of different sizes as numbers
+    return streamFromKey(segment, startKey)
+        .takeWhile(entry -> Arrays.compareUnsigned(entry.getKey(), endKey) <= 0);
+  }
+
+  @Override
+  public Stream<Pair<byte[], byte[]>> streamDescendingFromKey(
+      final Segment segment, final byte[] startKey) {
+    return RocksDBIterator.createDescendingFrom(newTotalOrderIterator(segment), startKey)
+        .toStream();
+  }
+
+  // segments with a prefix extractor would otherwise stop seeking at the end of the start prefix
+  private RocksIterator newTotalOrderIterator(final Segment segment) {
+    return getDB().newIterator(safeColumnHandle(segment), totalOrderReadOptions);
+  }
+
+  /**
+   * Estimated number of keys of a segment, from the memtables and the SST files properties. Keys
+   * overwritten or deleted but not compacted yet are counted.
+   *
+   * @param segment the segment
+   * @return the estimated number of keys
+   */
+  @Override
+  public long getEstimatedKeyCount(final Segment segment) {
+    throwIfClosed();
+    try {
+      return getDB().getLongProperty(safeColumnHandle(segment), "rocksdb.estimate-num-keys");
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Size of the live SST and blob files of every column family, that is the disk space used by the
+   * database without its WAL and logs.
+   *
+   * @return the size in bytes
+   */
+  @Override
+  public long getLiveFilesSize() {
+    throwIfClosed();
+    long size = 0;
+    for (final RocksDBSegmentIdentifier identifier : columnHandlesBySegmentIdentifier.values()) {
+      size += getLiveFilesSize(identifier.get());
+    }
+    return size;
+  }
+
+  /**
+   * Size of the live SST and blob files of a column family. Data not flushed yet is not counted,
+   * data overwritten or deleted but not compacted yet is.
+   *
+   * @param segment the segment
+   * @return the size in bytes
+   */
+  @Override
+  public long getLiveFilesSize(final Segment segment) {
+    throwIfClosed();
+    return getLiveFilesSize(safeColumnHandle(segment));
+  }
+
+  private long getLiveFilesSize(final ColumnFamilyHandle columnHandle) {
+    try {
+      return getDB().getLongProperty(columnHandle, "rocksdb.live-sst-files-size")
+          + getDB().getLongProperty(columnHandle, "rocksdb.live-blob-file-size");
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Sample the point reads served so far, single and direct buffer gets. MultiGets and iterators
+   * are not counted, so that scans can watch the latency of the point reads they compete with.
+   *
+   * @return the reads served since the database was opened and the time they took
+   */
+  @Override
+  public ReadLatencySample sampleReadLatency() {
+    throwIfClosed();
+    final HistogramData gets = stats.getHistogramData(HistogramType.DB_GET);
+    return new ReadLatencySample(gets.getCount(), gets.getSum());
+  }
+
+  /**
+   * Create a checkpoint of the database: a copy that can be opened on its own, consistent at the
+   * time of the call. SST files are hard-linked when the checkpoint is on the same file system, so
+   * taking one is cheap whatever the database size.
+   *
+   * @param checkpointPath the directory of the checkpoint, which must not exist
+   */
+  public void createCheckpoint(final Path checkpointPath) {
+    throwIfClosed();
+    try (Checkpoint checkpoint = Checkpoint.create(getDB())) {
+      checkpoint.createCheckpoint(checkpointPath.toString());
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Write every entry of a segment to an SST file that {@link #ingestSegment(Segment, List)} can
+   * load into another database.
+   *
+   * @param segment the segment to export
+   * @param sstFile the file to write
+   * @return false if the segment is empty, in which case no file is written
+   */
+  public boolean exportSegment(final Segment segment, final Path sstFile) {
+    throwIfClosed();
+    try (EnvOptions envOptions = new EnvOptions();
+        Options options = new Options();
+        SstFileWriter writer = new SstFileWriter(envOptions, options);
+        RocksIterator iterator = newTotalOrderIterator(segment)) {
+      iterator.seekToFirst();
+      if (!iterator.isValid()) {
+        iterator.status();
+        return false;
+      }
+      writer.open(sstFile.toString());
+      for (; iterator.isValid(); iterator.next()) {
+        writer.put(iterator.key(), iterator.value());
+      }
+      iterator.status();
+      writer.finish();
+      return true;
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  /**
+   * Load SST files into a segment without going through the memtables. The files are copied, not
+   * moved, and their entries take precedence over the existing ones with the same keys.
+   *
+   * @param segment the segment to load the files into
+   * @param sstFiles the SST files, written by {@link #exportSegment(Segment, Path)}
+   */
+  public void ingestSegment(final Segment segment, final List<Path> sstFiles) {
+    throwIfClosed();
+    try (IngestExternalFileOptions options = new IngestExternalFileOptions()) {
+      options.setMoveFiles(false);
+      getDB()
+          .ingestExternalFile(
+              safeColumnHandle(segment), sstFiles.stream().map(Path::toString).toList(), options);
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public boolean tryDelete(final Segment segment, final byte[] key) {
     try {
@@ -357,16 +703,46 @@ public abstract class RocksDBStorage implements KeyValueStorage {
         .ifPresent(RocksDBSegmentIdentifier::reset);
   }
 
+  boolean hasSegment(final Segment segment) {
+    return columnHandlesBySegmentIdentifier.containsKey(segment);
+  }
+
+  /**
+   * Drop the column family of a segment for good. Unlike {@link #clear(Segment)} the column family
+   * is not recreated, so the segment can no longer be used by this instance.
+   *
+   * @param segment the segment to drop
+   */
+  void dropSegment(final Segment segment) {
+    final RocksDBSegmentIdentifier identifier = columnHandlesBySegmentIdentifier.remove(segment);
+    if (identifier == null) {
+      return;
+    }
+    try {
+      getDB().dropColumnFamily(identifier.get());
+      identifier.get().close();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
       rocksDBTxOptions.close();
       rocksDBOptions.close();
       tryDeleteOptions.close();
+      groupCommitOptions.close();
+      readOptions.close();
+      totalOrderReadOptions.close();
       columnHandlesBySegmentIdentifier.values().stream()
           .map(RocksDBSegmentIdentifier::get)
           .forEach(ColumnFamilyHandle::close);
       getDB().close();
+      writeBufferManager.close();
+      blockCache.close();
+      expiringBlockCache.close();
+      expiringCompactionOptions.close();
     }
   }
 
@@ -79,6 +79,42 @@ public class RocksDBTransaction implements KeyValueStorageTransaction {
     }
   }
 
+  @Override
+  public void merge(final Segment segmentId, final byte[] key, final byte[] value) {
+    checkState(active, "Cannot invoke merge() on a completed transaction.");
+    checkState(!isClosed.get(), "Cannot invoke merge() on a closed storage.");
+
+    try (final OperationTimer.TimingContext ignored = metrics.writeLatency().startTimer()) {
+      innerTx.merge(columnFamilyMapper.apply(segmentId), key, value);
+    } catch (final RocksDBException e) {
+      if (e.getMessage().contains(NO_SPACE_LEFT_ON_DEVICE)) {
+        logger.error(e.getMessage());
+        System.exit(0);
+      }
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public void setSavePoint() {
+    checkState(active, "Cannot set a save point on a completed transaction.");
+    try {
+      innerTx.setSavePoint();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
+  @Override
+  public void rollbackToSavePoint() {
+    checkState(active, "Cannot rollback a completed transaction.");
+    try {
+      innerTx.rollbackToSavePoint();
+    } catch (final RocksDBException e) {
+      throw new StorageException(e);
+    }
+  }
+
   @Override
   public void commit() throws StorageException {
     checkState(active, "Cannot commit a completed transaction.");
@@ -0,0 +1,80 @@
+package samba.rocksdb;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import samba.rocksdb.GroupCommitWriter.WriteOperation;
+import samba.rocksdb.exceptions.StorageException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A write batch, written atomically on commit. Unlike {@link RocksDBTransaction} it takes no lock
+ * and does not detect conflicts, and its commit may be merged with the batches committed
+ * concurrently into a single RocksDB write.
+ */
+public class RocksDBWriteBatch implements KeyValueStorageTransaction {
+
+  private final GroupCommitWriter groupCommitWriter;
+  private final Supplier<Boolean> isClosed;
+  private final List<WriteOperation> operations = new ArrayList<>();
+  // number of operations at each save point
+  private final Deque<Integer> savePoints = new ArrayDeque<>();
+  private boolean active = true;
+
+  RocksDBWriteBatch(final GroupCommitWriter groupCommitWriter, final Supplier<Boolean> isClosed) {
+    this.groupCommitWriter = groupCommitWriter;
+    this.isClosed = isClosed;
+  }
+
+  @Override
+  public void put(final Segment segment, final byte[] key, final byte[] value) {
+    checkState(active, "Cannot invoke put() on a completed write batch.");
+    operations.add(new WriteOperation(WriteOperation.Type.PUT, segment, key, value));
+  }
+
+  @Override
+  public void remove(final Segment segment, final byte[] key) {
+    checkState(active, "Cannot invoke remove() on a completed write batch.");
+    operations.add(new WriteOperation(WriteOperation.Type.DELETE, segment, key, null));
+  }
+
+  @Override
+  public void merge(final Segment segment, final byte[] key, final byte[] value) {
+    checkState(active, "Cannot invoke merge() on a completed write batch.");
+    operations.add(new WriteOperation(WriteOperation.Type.MERGE, segment, key, value));
+  }
+
+  @Override
+  public void setSavePoint() {
+    checkState(active, "Cannot set a save point on a completed write batch.");
+    savePoints.push(operations.size());
+  }
+
+  @Override
+  public void rollbackToSavePoint() {
+    checkState(active, "Cannot rollback a completed write batch.");
+    checkState(!savePoints.isEmpty(), "No save point to rollback to.");
+    operations.subList(savePoints.pop(), operations.size()).clear();
+  }
+
+  @Override
+  public void commit() throws StorageException {
+    checkState(active, "Cannot commit a completed write batch.");
+    checkState(!isClosed.get(), "Cannot invoke commit() on a closed storage.");
+    active = false;
+    if (!operations.isEmpty()) {
+      groupCommitWriter.write(operations);
+    }
+  }
+
+  @Override
+  public void rollback() {
+    checkState(active, "Cannot rollback a completed write batch.");
+    active = false;
+    operations.clear();
+  }
+}
@@ -32,4 +32,37 @@ public interface Segment {
   default boolean isStaticDataGarbageCollectionEnabled() {
     return false;
   }
+
+  /**
+   * Define if values of this segment can be counters: a value merged into a key is added to the
+   * stored one, both being 64-bit little-endian integers. Counters can then be updated in the same
+   * write as the data they count, without reading them first.
+   *
+   * @return true if the segment has the counter merge operator
+   */
+  default boolean containsCounters() {
+    return false;
+  }
+
+  /**
+   * Length of the fixed key prefix used to build prefix bloom filters for this segment. Segments
+   * using a prefix extractor also keep their index and filter blocks pinned in the block cache.
+   *
+   * @return the prefix length in bytes, or 0 if no prefix extractor should be used
+   */
+  default int getFixedPrefixLength() {
+    return 0;
+  }
+
+  /**
+   * Define the time after which entries of this segment expire. Such a segment is compacted FIFO:
+   * its files are never rewritten, they are dropped whole once all their entries are older than
+   * this, or the oldest ones first once the segment outgrows its size bound. Expired entries can
+   * still be read until the file holding them is dropped.
+   *
+   * @return the time to live in seconds, or 0 if entries never expire
+   */
+  default long getTimeToLiveInSeconds() {
+    return 0;
+  }
 }
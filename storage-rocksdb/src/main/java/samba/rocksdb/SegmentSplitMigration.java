@@ -0,0 +1,73 @@
+package samba.rocksdb;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Moves the content of the {@link KeyValueSegment#LEGACY_CONTENT} column family, where every
+ * content type used to live, into the dedicated column family of each content type. Keys are SSZ
+ * content keys, so their selector byte tells which segment they belong to.
+ *
+ * <p>The legacy column family is only dropped once everything has been copied, so an interrupted
+ * migration is simply run again on the next start.
+ */
+final class SegmentSplitMigration {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentSplitMigration.class);
+  private static final int ENTRIES_PER_TRANSACTION = 10_000;
+
+  private SegmentSplitMigration() {}
+
+  static void migrate(final RocksDBStorage storage) {
+    if (!storage.hasSegment(KeyValueSegment.LEGACY_CONTENT)) {
+      // dropped by a previous run that stopped before the metadata was upgraded
+      return;
+    }
+    LOG.info("Moving content from the shared column family into one column family per type");
+    long migrated = 0;
+    long skipped = 0;
+    try (Stream<Pair<byte[], byte[]>> entries = storage.stream(KeyValueSegment.LEGACY_CONTENT)) {
+      final Iterator<Pair<byte[], byte[]>> iterator = entries.iterator();
+      KeyValueStorageTransaction tx = storage.startTransaction();
+      int pending = 0;
+      while (iterator.hasNext()) {
+        final Pair<byte[], byte[]> entry = iterator.next();
+        final Optional<Segment> target = targetSegment(entry.getKey());
+        if (target.isEmpty()) {
+          skipped++;
+          continue;
+        }
+        tx.put(target.get(), entry.getKey(), entry.getValue());
+        migrated++;
+        if (++pending == ENTRIES_PER_TRANSACTION) {
+          tx.commit();
+          tx = storage.startTransaction();
+          pending = 0;
+          LOG.info("Migrated {} entries", migrated);
+        }
+      }
+      tx.commit();
+    }
+    storage.dropSegment(KeyValueSegment.LEGACY_CONTENT);
+    LOG.info(
+        "Migration finished. Migrated {} entries, skipped {} unknown entries", migrated, skipped);
+  }
+
+  private static Optional<Segment> targetSegment(final byte[] key) {
+    if (key.length == 0) {
+      return Optional.empty();
+    }
+    return switch (key[0]) {
+      case 0x00 -> Optional.of(KeyValueSegment.BLOCK_HEADER);
+      case 0x01 -> Optional.of(KeyValueSegment.BLOCK_BODY);
+      case 0x02 -> Optional.of(KeyValueSegment.RECEIPT);
+      case 0x03 -> Optional.of(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER);
+      default -> Optional.empty();
+    };
+  }
+}
@@ -1,7 +1,16 @@
 package samba.rocksdb.configuration;
 
 public enum BaseVersionedStorageFormat implements VersionedStorageFormat {
-  BASIC_1(DataStorageFormat.BASIC, 1);
+  /** All content types share a single column family. */
+  BASIC_1(DataStorageFormat.BASIC, 1),
+  /** One column family per content type. */
+  BASIC_2(DataStorageFormat.BASIC, 2),
+  /** Block hashes keyed by big-endian block number instead of block number content key. */
+  BASIC_3(DataStorageFormat.BASIC, 3),
+  /** Same column families as {@link #BASIC_2}, without the transaction layer. */
+  IMMUTABLE_1(DataStorageFormat.IMMUTABLE, 1),
+  /** Same column families as {@link #BASIC_3}, without the transaction layer. */
+  IMMUTABLE_2(DataStorageFormat.IMMUTABLE, 2);
 
   private final DataStorageFormat format;
   private final int version;
@@ -28,7 +37,8 @@ public enum BaseVersionedStorageFormat implements VersionedStorageFormat {
 
   public static BaseVersionedStorageFormat defaultForNewDB(final DataStorageFormat storageFormat) {
     return switch (storageFormat) {
-      case BASIC -> BASIC_1;
+      case BASIC -> BASIC_3;
+      case IMMUTABLE -> IMMUTABLE_2;
     };
   }
 }
@@ -1,5 +1,8 @@
 package samba.rocksdb.configuration;
 
 public enum DataStorageFormat {
-  BASIC;
+  /** RocksDB TransactionDB, every write goes through a pessimistic transaction. */
+  BASIC,
+  /** Plain RocksDB, writes are blind write batches without locking. */
+  IMMUTABLE;
 }
@@ -37,6 +37,10 @@ public class DatabaseMetadata {
     return new DatabaseMetadata(versionedStorageFormat);
   }
 
+  public DatabaseMetadata upgradeTo(final VersionedStorageFormat newVersionedStorageFormat) {
+    return new DatabaseMetadata(newVersionedStorageFormat);
+  }
+
   public VersionedStorageFormat getVersionedStorageFormat() {
     return versionedStorageFormat;
   }
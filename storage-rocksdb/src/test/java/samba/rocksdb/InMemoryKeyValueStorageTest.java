@@ -0,0 +1,230 @@
+package samba.rocksdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import samba.rocksdb.exceptions.StorageException;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.tuweni.bytes.Bytes;
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InMemoryKeyValueStorageTest {
+
+  private static final List<Segment> SEGMENTS =
+      List.of(TestSegment.DEFAULT, TestSegment.FOO, KeyValueSegment.METADATA);
+
+  @TempDir public Path folder;
+
+  @Test
+  void streamsReturnTheEntriesRocksDBReturns() throws Exception {
+    try (KeyValueStorage rocksDB =
+            new RocksDBInstance(
+                RocksDBConfiguration.createDefault(folder),
+                SEGMENTS,
+                List.of(),
+                new NoOpMetricsSystem(),
+                RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+        KeyValueStorage memory = new InMemoryKeyValueStorage(SEGMENTS)) {
+      // keys sorting differently as signed and unsigned bytes, and prefixes of one another
+      final List<byte[]> keys =
+          Stream.of("00", "01", "0100", "0101", "7f", "80", "80ff", "ff", "ff00")
+              .map(hex -> Bytes.fromHexString(hex).toArrayUnsafe())
+              .toList();
+      for (KeyValueStorage storage : List.of(rocksDB, memory)) {
+        final KeyValueStorageTransaction tx = storage.startTransaction();
+        keys.forEach(key -> tx.put(TestSegment.FOO, key, Bytes.of(key.length).toArrayUnsafe()));
+        tx.commit();
+      }
+
+      final byte[] from = Bytes.fromHexString("0100").toArrayUnsafe();
+      final byte[] to = Bytes.fromHexString("80").toArrayUnsafe();
+      assertSameEntries(rocksDB, memory, storage -> storage.stream(TestSegment.FOO));
+      assertSameEntries(rocksDB, memory, storage -> storage.streamDescending(TestSegment.FOO));
+      assertSameEntries(rocksDB, memory, storage -> storage.streamFromKey(TestSegment.FOO, from));
+      assertSameEntries(
+          rocksDB, memory, storage -> storage.streamFromKey(TestSegment.FOO, from, to));
+      assertSameEntries(
+          rocksDB, memory, storage -> storage.streamFromKey(TestSegment.FOO, to, from));
+      assertSameEntries(
+          rocksDB, memory, storage -> storage.streamDescendingFromKey(TestSegment.FOO, to));
+      try (Stream<byte[]> rocksDBKeys = rocksDB.streamKeys(TestSegment.FOO);
+          Stream<byte[]> memoryKeys = memory.streamKeys(TestSegment.FOO)) {
+        assertThat(memoryKeys.map(Bytes::wrap).toList())
+            .containsExactlyElementsOf(rocksDBKeys.map(Bytes::wrap).toList());
+      }
+    }
+  }
+
+  @Test
+  void rollbackToSavePointDropsTheWritesAddedAfterIt() throws Exception {
+    try (KeyValueStorage rocksDB =
+            new RocksDBInstance(
+                RocksDBConfiguration.createDefault(folder),
+                SEGMENTS,
+                List.of(),
+                new NoOpMetricsSystem(),
+                RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+        KeyValueStorage memory = new InMemoryKeyValueStorage(SEGMENTS)) {
+      for (KeyValueStorage storage : List.of(rocksDB, memory)) {
+        final KeyValueStorageTransaction tx = storage.startWriteBatch();
+        tx.put(TestSegment.FOO, bytesOf(1), bytesOf(10));
+        tx.setSavePoint();
+        tx.put(TestSegment.FOO, bytesOf(2), bytesOf(20));
+        tx.setSavePoint();
+        tx.put(TestSegment.FOO, bytesOf(3), bytesOf(30));
+        tx.rollbackToSavePoint();
+        tx.put(TestSegment.FOO, bytesOf(4), bytesOf(40));
+        tx.commit();
+
+        assertThat(storage.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(10));
+        assertThat(storage.get(TestSegment.FOO, bytesOf(2))).contains(bytesOf(20));
+        assertThat(storage.get(TestSegment.FOO, bytesOf(3))).isEmpty();
+        assertThat(storage.get(TestSegment.FOO, bytesOf(4))).contains(bytesOf(40));
+      }
+    }
+  }
+
+  @Test
+  void commitAppliesEveryWriteAndRollbackNone() throws Exception {
+    try (KeyValueStorage storage = new InMemoryKeyValueStorage(SEGMENTS)) {
+      final KeyValueStorageTransaction tx = storage.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), bytesOf(10));
+      tx.put(TestSegment.FOO, bytesOf(2), bytesOf(20));
+      assertThat(storage.get(TestSegment.FOO, bytesOf(1))).isEmpty();
+      tx.commit();
+      assertThat(storage.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(10));
+      assertThat(storage.get(TestSegment.FOO, bytesOf(2))).contains(bytesOf(20));
+      assertThatThrownBy(tx::commit).isInstanceOf(IllegalStateException.class);
+
+      final KeyValueStorageTransaction batch = storage.startWriteBatch();
+      batch.remove(TestSegment.FOO, bytesOf(1));
+      batch.rollback();
+      assertThat(storage.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(10));
+    }
+  }
+
+  @Test
+  void mergeAddsToCounters() throws Exception {
+    try (KeyValueStorage storage = new InMemoryKeyValueStorage(SEGMENTS)) {
+      final KeyValueStorageTransaction tx = storage.startWriteBatch();
+      tx.put(KeyValueSegment.METADATA, bytesOf(1), counter(5));
+      tx.merge(KeyValueSegment.METADATA, bytesOf(1), counter(3));
+      tx.merge(KeyValueSegment.METADATA, bytesOf(1), counter(-2));
+      tx.merge(KeyValueSegment.METADATA, bytesOf(2), counter(7));
+      tx.commit();
+
+      assertThat(storage.get(KeyValueSegment.METADATA, bytesOf(1))).contains(counter(6));
+      assertThat(storage.get(KeyValueSegment.METADATA, bytesOf(2))).contains(counter(7));
+      assertThatThrownBy(
+              () -> storage.startTransaction().merge(TestSegment.FOO, bytesOf(1), counter(1)))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  void keepsExactCountAndSizeOfEachSegment() throws Exception {
+    try (KeyValueStorage storage = new InMemoryKeyValueStorage(SEGMENTS)) {
+      final KeyValueStorageTransaction tx = storage.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), new byte[10]);
+      tx.put(TestSegment.FOO, bytesOf(2), new byte[20]);
+      tx.put(TestSegment.FOO, bytesOf(1), new byte[5]);
+      tx.commit();
+      assertThat(storage.getEstimatedKeyCount(TestSegment.FOO)).isEqualTo(2);
+      assertThat(storage.getLiveFilesSize(TestSegment.FOO)).isEqualTo(27);
+
+      storage.tryDelete(TestSegment.FOO, bytesOf(2));
+      assertThat(storage.getEstimatedKeyCount(TestSegment.FOO)).isEqualTo(1);
+      assertThat(storage.getLiveFilesSize()).isEqualTo(6);
+
+      storage.clear(TestSegment.FOO);
+      assertThat(storage.getEstimatedKeyCount(TestSegment.FOO)).isZero();
+      assertThat(storage.getLiveFilesSize()).isZero();
+    }
+  }
+
+  @Test
+  void dropsExpiredEntriesOnCommit() throws Exception {
+    final AtomicLong nanos = new AtomicLong();
+    try (KeyValueStorage storage =
+        new InMemoryKeyValueStorage(List.of(TestSegment.FOO, TestSegment.EXPIRING), nanos::get)) {
+      final KeyValueStorageTransaction tx = storage.startTransaction();
+      tx.put(TestSegment.EXPIRING, bytesOf(1), bytesOf(10));
+      tx.put(TestSegment.EXPIRING, bytesOf(2), bytesOf(20));
+      tx.put(TestSegment.FOO, bytesOf(1), bytesOf(30));
+      tx.commit();
+
+      nanos.set(TimeUnit.SECONDS.toNanos(30));
+      final KeyValueStorageTransaction rewrite = storage.startTransaction();
+      rewrite.put(TestSegment.EXPIRING, bytesOf(2), bytesOf(21));
+      rewrite.commit();
+
+      nanos.set(TimeUnit.SECONDS.toNanos(TestSegment.EXPIRING.getTimeToLiveInSeconds()));
+      storage.startTransaction().commit();
+      assertThat(storage.get(TestSegment.EXPIRING, bytesOf(1))).isEmpty();
+      assertThat(storage.get(TestSegment.EXPIRING, bytesOf(2))).contains(bytesOf(21));
+      assertThat(storage.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(30));
+      assertThat(storage.getEstimatedKeyCount(TestSegment.EXPIRING)).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void callersOwnTheArraysTheyPassAndGet() throws Exception {
+    try (KeyValueStorage storage = new InMemoryKeyValueStorage(SEGMENTS)) {
+      final byte[] value = bytesOf(1);
+      final KeyValueStorageTransaction tx = storage.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), value);
+      tx.commit();
+      value[0] = 2;
+      storage.get(TestSegment.FOO, bytesOf(1)).orElseThrow()[0] = 3;
+
+      assertThat(storage.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(1));
+    }
+  }
+
+  @Test
+  void rejectsUnknownSegmentsAndUseOnceClosed() throws Exception {
+    final KeyValueStorage storage = new InMemoryKeyValueStorage(SEGMENTS);
+    assertThatThrownBy(() -> storage.get(TestSegment.BAR, bytesOf(1)))
+        .isInstanceOf(StorageException.class);
+
+    storage.close();
+    assertThat(storage.isClosed()).isTrue();
+    assertThatThrownBy(() -> storage.get(TestSegment.FOO, bytesOf(1)))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  private static void assertSameEntries(
+      final KeyValueStorage expected,
+      final KeyValueStorage actual,
+      final Function<KeyValueStorage, Stream<Pair<byte[], byte[]>>> streamer) {
+    try (Stream<Pair<byte[], byte[]>> expectedEntries = streamer.apply(expected);
+        Stream<Pair<byte[], byte[]>> actualEntries = streamer.apply(actual)) {
+      assertThat(actualEntries.map(InMemoryKeyValueStorageTest::toBytes).toList())
+          .containsExactlyElementsOf(
+              expectedEntries.map(InMemoryKeyValueStorageTest::toBytes).toList());
+    }
+  }
+
+  private static Pair<Bytes, Bytes> toBytes(final Pair<byte[], byte[]> entry) {
+    return Pair.of(Bytes.wrap(entry.getKey()), Bytes.wrap(entry.getValue()));
+  }
+
+  private static byte[] bytesOf(final int... bytes) {
+    return Bytes.of(bytes).toArrayUnsafe();
+  }
+
+  private static byte[] counter(final long value) {
+    return Bytes.ofUnsignedLong(value, ByteOrder.LITTLE_ENDIAN).toArrayUnsafe();
+  }
+}
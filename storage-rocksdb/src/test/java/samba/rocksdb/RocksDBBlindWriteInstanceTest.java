@@ -0,0 +1,19 @@
+package samba.rocksdb;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+
+public class RocksDBBlindWriteInstanceTest extends RocksDBStorageTest {
+
+  @Override
+  protected KeyValueStorage createStore() throws Exception {
+    return new RocksDBBlindWriteInstance(
+        RocksDBConfiguration.createDefault(getTempSubFolder(folder)),
+        Arrays.asList(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.BAR),
+        List.of(),
+        new NoOpMetricsSystem(),
+        RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS);
+  }
+}
@@ -7,11 +7,15 @@ import samba.rocksdb.exceptions.StorageException;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
 import org.hyperledger.besu.plugin.services.MetricsSystem;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
 
 public class RocksDBKeyValueStorageFactoryTest {
 
@@ -21,7 +25,7 @@ public class RocksDBKeyValueStorageFactoryTest {
     Path dbPath = tempDir.resolve("db");
 
     MetricsSystem metricsSystem = new NoOpMetricsSystem();
-    RocksDBInstance instance =
+    RocksDBStorage instance =
         RocksDBKeyValueStorageFactory.create(
             dataPath, dbPath, DataStorageFormat.BASIC, metricsSystem);
 
@@ -54,7 +58,7 @@ public class RocksDBKeyValueStorageFactoryTest {
 
     tempDir.resolve("DATABASE_METADATA.json").toFile().createNewFile();
     Files.writeString(
-        dataPath.resolve("DATABASE_METADATA.json"), "{\"format\":\"BASIC\",\"version\":2}");
+        dataPath.resolve("DATABASE_METADATA.json"), "{\"format\":\"BASIC\",\"version\":99}");
 
     MetricsSystem metricsSystem = new NoOpMetricsSystem();
 
@@ -65,4 +69,124 @@ public class RocksDBKeyValueStorageFactoryTest {
         .isInstanceOf(StorageException.class)
         .hasMessageContaining("Unsupported RocksDB metadata");
   }
+
+  @Test
+  void shouldMoveSharedColumnFamilyContentIntoOneColumnFamilyPerType(@TempDir Path tempDir)
+      throws Exception {
+    Path dataPath = tempDir.resolve("data");
+    Files.createDirectories(dataPath);
+    Path dbPath = tempDir.resolve("db");
+    Files.writeString(
+        dataPath.resolve("DATABASE_METADATA.json"), "{\"format\":\"BASIC\",\"version\":1}");
+
+    final byte[] headerKey = {0x00, 1};
+    final byte[] bodyKey = {0x01, 1};
+    final byte[] receiptKey = {0x02, 1};
+    final byte[] numberKey = {0x03, 1, 0, 0, 0, 0, 0, 0, 0};
+    try (RocksDBInstance legacy =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(dbPath),
+            List.of(KeyValueSegment.DEFAULT, KeyValueSegment.LEGACY_CONTENT),
+            List.of(),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+      KeyValueStorageTransaction tx = legacy.startTransaction();
+      tx.put(KeyValueSegment.LEGACY_CONTENT, headerKey, new byte[] {10});
+      tx.put(KeyValueSegment.LEGACY_CONTENT, bodyKey, new byte[] {11});
+      tx.put(KeyValueSegment.LEGACY_CONTENT, receiptKey, new byte[] {12});
+      tx.put(KeyValueSegment.LEGACY_CONTENT, numberKey, headerKey);
+      tx.commit();
+    }
+
+    try (RocksDBStorage instance =
+        RocksDBKeyValueStorageFactory.create(
+            dataPath, dbPath, DataStorageFormat.BASIC, new NoOpMetricsSystem())) {
+      assertThat(instance.get(KeyValueSegment.BLOCK_HEADER, headerKey)).contains(new byte[] {10});
+      assertThat(instance.get(KeyValueSegment.BLOCK_BODY, bodyKey)).contains(new byte[] {11});
+      assertThat(instance.get(KeyValueSegment.RECEIPT, receiptKey)).contains(new byte[] {12});
+      assertThat(instance.get(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, BlockNumberKeys.toKey(1)))
+          .contains(headerKey);
+      assertThat(instance.get(KeyValueSegment.BLOCK_HEADER, bodyKey)).isEmpty();
+    }
+
+    assertThat(Files.readString(dataPath.resolve("DATABASE_METADATA.json")))
+        .contains("\"version\" : 3");
+    assertThat(RocksDB.listColumnFamilies(new Options(), dbPath.toString()))
+        .noneMatch(id -> Arrays.equals(id, KeyValueSegment.LEGACY_CONTENT.getId()));
+  }
+
+  @Test
+  void shouldKeyBlockHashesByBigEndianBlockNumber(@TempDir Path tempDir) throws Exception {
+    Path dataPath = tempDir.resolve("data");
+    Files.createDirectories(dataPath);
+    Path dbPath = tempDir.resolve("db");
+    Files.writeString(
+        dataPath.resolve("DATABASE_METADATA.json"), "{\"format\":\"BASIC\",\"version\":2}");
+
+    // blocks 1 and 256, in that order once keyed by big-endian number only
+    final byte[] firstNumberKey = {0x03, 0, 1, 0, 0, 0, 0, 0, 0};
+    final byte[] secondNumberKey = {0x03, 1, 0, 0, 0, 0, 0, 0, 0};
+    final byte[] migratedKey = BlockNumberKeys.toKey(2);
+    try (RocksDBInstance legacy =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(dbPath),
+            Arrays.asList(KeyValueSegment.values()),
+            List.of(KeyValueSegment.LEGACY_CONTENT),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+      KeyValueStorageTransaction tx = legacy.startTransaction();
+      tx.put(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, firstNumberKey, new byte[] {10});
+      tx.put(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, secondNumberKey, new byte[] {11});
+      // left by an interrupted migration
+      tx.put(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, migratedKey, new byte[] {12});
+      tx.commit();
+    }
+
+    try (RocksDBStorage instance =
+        RocksDBKeyValueStorageFactory.create(
+            dataPath, dbPath, DataStorageFormat.BASIC, new NoOpMetricsSystem())) {
+      assertThat(
+              instance.stream(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER)
+                  .map(entry -> BlockNumberKeys.blockNumber(entry.getKey())))
+          .containsExactly(1L, 2L, 256L);
+      assertThat(
+              instance.get(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, BlockNumberKeys.toKey(256)))
+          .contains(new byte[] {10});
+      assertThat(instance.get(KeyValueSegment.BLOCK_HASH_BY_BLOCK_NUMBER, firstNumberKey))
+          .isEmpty();
+    }
+
+    assertThat(Files.readString(dataPath.resolve("DATABASE_METADATA.json")))
+        .contains("\"version\" : 3");
+  }
+
+  @Test
+  void shouldOpenImmutableFormatWithoutTransactions(@TempDir Path tempDir) throws Exception {
+    Path dataPath = tempDir.resolve("data");
+    Path dbPath = tempDir.resolve("db");
+    byte[] key = new byte[] {1};
+
+    try (RocksDBStorage instance =
+        RocksDBKeyValueStorageFactory.create(
+            dataPath, dbPath, DataStorageFormat.IMMUTABLE, new NoOpMetricsSystem())) {
+      assertThat(instance).isInstanceOf(RocksDBBlindWriteInstance.class);
+      KeyValueStorageTransaction tx = instance.startTransaction();
+      tx.put(KeyValueSegment.BLOCK_HEADER, key, new byte[] {10});
+      tx.commit();
+    }
+
+    assertThat(Files.readString(dataPath.resolve("DATABASE_METADATA.json")))
+        .contains("\"format\" : \"IMMUTABLE\"");
+    try (RocksDBStorage instance =
+        RocksDBKeyValueStorageFactory.create(
+            dataPath, dbPath, DataStorageFormat.IMMUTABLE, new NoOpMetricsSystem())) {
+      assertThat(instance.get(KeyValueSegment.BLOCK_HEADER, key)).contains(new byte[] {10});
+    }
+    assertThatThrownBy(
+            () ->
+                RocksDBKeyValueStorageFactory.create(
+                    dataPath, dbPath, DataStorageFormat.BASIC, new NoOpMetricsSystem()))
+        .isInstanceOf(StorageException.class)
+        .hasMessageContaining("Database format mismatch");
+  }
 }
@@ -0,0 +1,88 @@
+package samba.rocksdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import samba.rocksdb.configuration.DataStorageFormat;
+import samba.rocksdb.exceptions.StorageException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RocksDBSecondaryInstanceTest {
+
+  private static final Duration CATCH_UP_INTERVAL = Duration.ofHours(1);
+
+  @TempDir public Path temporaryFolder;
+
+  @Test
+  void secondaryReadsWhatThePrimaryWroteAsOfItsLastCatchUp() {
+    final Path dataPath = temporaryFolder.resolve("data");
+    final Path databasePath = dataPath.resolve("database");
+    try (RocksDBStorage primary =
+            RocksDBKeyValueStorageFactory.create(
+                dataPath, databasePath, DataStorageFormat.BASIC, new NoOpMetricsSystem());
+        RocksDBSecondaryInstance secondary =
+            createSecondary(dataPath, databasePath, temporaryFolder.resolve("secondary"))) {
+      put(primary, new byte[] {1}, new byte[] {10});
+      assertThat(secondary.get(KeyValueSegment.BLOCK_HEADER, new byte[] {1})).isEmpty();
+
+      secondary.catchUpWithPrimary();
+      assertThat(secondary.get(KeyValueSegment.BLOCK_HEADER, new byte[] {1}))
+          .contains(new byte[] {10});
+      assertThat(secondary.isReadOnly()).isTrue();
+      assertThatThrownBy(secondary::startTransaction).isInstanceOf(StorageException.class);
+      assertThatThrownBy(secondary::startWriteBatch).isInstanceOf(StorageException.class);
+    }
+  }
+
+  @Test
+  void secondaryDoesNotCreateTheDatabase() {
+    final Path dataPath = temporaryFolder.resolve("data");
+    final Path databasePath = dataPath.resolve("database");
+
+    assertThatThrownBy(
+            () -> createSecondary(dataPath, databasePath, temporaryFolder.resolve("secondary")))
+        .isInstanceOf(StorageException.class)
+        .hasMessageContaining("the primary must create it");
+    assertThat(Files.exists(databasePath)).isFalse();
+  }
+
+  @Test
+  void secondaryDoesNotOpenDatabaseToMigrate() throws Exception {
+    final Path dataPath = temporaryFolder.resolve("data");
+    final Path databasePath = dataPath.resolve("database");
+    RocksDBKeyValueStorageFactory.create(
+            dataPath, databasePath, DataStorageFormat.BASIC, new NoOpMetricsSystem())
+        .close();
+    Files.writeString(
+        dataPath.resolve("DATABASE_METADATA.json"), "{\"format\":\"BASIC\",\"version\":2}");
+
+    assertThatThrownBy(
+            () -> createSecondary(dataPath, databasePath, temporaryFolder.resolve("secondary")))
+        .isInstanceOf(StorageException.class)
+        .hasMessageContaining("the primary must upgrade it");
+  }
+
+  private static RocksDBSecondaryInstance createSecondary(
+      final Path dataPath, final Path databasePath, final Path secondaryPath) {
+    return RocksDBKeyValueStorageFactory.createSecondary(
+        dataPath,
+        databasePath,
+        secondaryPath,
+        CATCH_UP_INTERVAL,
+        RocksDBSizing.DEFAULT,
+        new NoOpMetricsSystem());
+  }
+
+  private static void put(final RocksDBStorage storage, final byte[] key, final byte[] value) {
+    final KeyValueStorageTransaction tx = storage.startTransaction();
+    tx.put(KeyValueSegment.BLOCK_HEADER, key, value);
+    tx.commit();
+  }
+}
@@ -0,0 +1,90 @@
+package samba.rocksdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import samba.rocksdb.configuration.DataStorageFormat;
+
+import java.nio.file.Path;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RocksDBSizingTest {
+
+  private static final long MB = 1L << 20;
+  private static final long GB = 1L << 30;
+
+  @TempDir public Path temporaryFolder;
+
+  @Test
+  void smallHostGetsSmallCacheAndFewJobs() {
+    final RocksDBSizing sizing = RocksDBSizing.forHost(4 * GB, 1 * GB, 2, 1024);
+
+    assertThat(sizing.blockCacheCapacity()).isEqualTo(768 * MB);
+    assertThat(sizing.writeBufferManagerCapacity()).isEqualTo(192 * MB);
+    assertThat(sizing.writeBufferSize()).isEqualTo(24 * MB);
+    assertThat(sizing.backgroundJobCount()).isEqualTo(2);
+    assertThat(sizing.maxOpenFiles()).isEqualTo(512);
+    assertThat(sizing.isHighSpec()).isFalse();
+  }
+
+  @Test
+  void largeHostIsBounded() {
+    final RocksDBSizing sizing = RocksDBSizing.forHost(256 * GB, 32 * GB, 64, 1_048_576);
+
+    assertThat(sizing.blockCacheCapacity()).isEqualTo(16 * GB);
+    assertThat(sizing.writeBufferManagerCapacity()).isEqualTo(4 * GB);
+    assertThat(sizing.writeBufferSize()).isEqualTo(128 * MB);
+    assertThat(sizing.backgroundJobCount()).isEqualTo(16);
+    assertThat(sizing.maxOpenFiles()).isEqualTo(65_536);
+    assertThat(sizing.isHighSpec()).isTrue();
+  }
+
+  @Test
+  void heapLargerThanHostKeepsMinimumCache() {
+    final RocksDBSizing sizing = RocksDBSizing.forHost(2 * GB, 4 * GB, 1, -1);
+
+    assertThat(sizing.blockCacheCapacity()).isEqualTo(64 * MB);
+    assertThat(sizing.writeBufferSize()).isLessThanOrEqualTo(sizing.writeBufferManagerCapacity());
+    assertThat(sizing.maxOpenFiles()).isEqualTo(1024);
+  }
+
+  @Test
+  void overridesKeepWriteBuffersWithinCache() {
+    final RocksDBSizing sizing =
+        RocksDBSizing.forHost(256 * GB, 32 * GB, 64, 1_048_576)
+            .withBlockCacheCapacity(256 * MB)
+            .withBackgroundJobCount(3)
+            .withMaxOpenFiles(-1);
+
+    assertThat(sizing.blockCacheCapacity()).isEqualTo(256 * MB);
+    assertThat(sizing.writeBufferManagerCapacity()).isEqualTo(64 * MB);
+    assertThat(sizing.writeBufferSize()).isEqualTo(8 * MB);
+    assertThat(sizing.backgroundJobCount()).isEqualTo(3);
+    assertThat(sizing.maxOpenFiles()).isEqualTo(-1);
+    assertThatThrownBy(() -> sizing.withBackgroundJobCount(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void storageOpensWithHighSpecSizing() {
+    final RocksDBSizing sizing =
+        RocksDBSizing.forHost(128 * GB, 8 * GB, 8, 4096).withBlockCacheCapacity(256 * MB);
+    try (RocksDBStorage storage =
+        RocksDBKeyValueStorageFactory.create(
+            temporaryFolder,
+            temporaryFolder.resolve("database"),
+            DataStorageFormat.BASIC,
+            sizing,
+            new NoOpMetricsSystem())) {
+      final KeyValueStorageTransaction tx = storage.startTransaction();
+      tx.put(KeyValueSegment.BLOCK_HEADER, new byte[] {1}, new byte[] {2});
+      tx.commit();
+
+      assertThat(storage.get(KeyValueSegment.BLOCK_HEADER, new byte[] {1}))
+          .contains(new byte[] {2});
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package samba.rocksdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import samba.rocksdb.configuration.DataStorageFormat;
+import samba.rocksdb.exceptions.StorageException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.hyperledger.besu.metrics.noop.NoOpMetricsSystem;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RocksDBSnapshotsTest {
+
+  private static final byte[] KEY = {0, 1};
+  private static final byte[] HEADER = {1, 2, 3};
+  private static final byte[] BODY = {4, 5, 6};
+
+  @TempDir Path tempDir;
+
+  @Test
+  public void shouldRestoreSnapshotIntoEmptyDataDirectory() throws Exception {
+    final Path sourceDataPath = tempDir.resolve("source");
+    final Path snapshotPath = tempDir.resolve("snapshot");
+    try (RocksDBStorage storage = createStorage(sourceDataPath, DataStorageFormat.BASIC)) {
+      put(storage, KeyValueSegment.BLOCK_HEADER, HEADER);
+      put(storage, KeyValueSegment.BLOCK_BODY, BODY);
+      RocksDBSnapshots.createSnapshot(
+          storage, sourceDataPath, sourceDataPath.resolve("database"), snapshotPath);
+      // writes after the snapshot are not part of it
+      put(storage, KeyValueSegment.RECEIPT, BODY);
+    }
+
+    final Path dataPath = tempDir.resolve("restored");
+    final Path databasePath = dataPath.resolve("database");
+    assertThat(RocksDBSnapshots.isSnapshot(snapshotPath, dataPath, databasePath)).isTrue();
+    RocksDBSnapshots.restoreSnapshot(snapshotPath, dataPath, databasePath);
+
+    try (RocksDBStorage storage = createStorage(dataPath, DataStorageFormat.BASIC)) {
+      assertThat(storage.get(KeyValueSegment.BLOCK_HEADER, KEY)).contains(HEADER);
+      assertThat(storage.get(KeyValueSegment.BLOCK_BODY, KEY)).contains(BODY);
+      assertThat(storage.get(KeyValueSegment.RECEIPT, KEY)).isEmpty();
+    }
+    assertThatThrownBy(() -> RocksDBSnapshots.restoreSnapshot(snapshotPath, dataPath, databasePath))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void shouldIngestExportedSegmentsOnly() throws Exception {
+    final Path sourceDataPath = tempDir.resolve("source");
+    final Path exportPath = tempDir.resolve("export");
+    try (RocksDBStorage storage = createStorage(sourceDataPath, DataStorageFormat.BASIC)) {
+      put(storage, KeyValueSegment.BLOCK_HEADER, HEADER);
+      put(storage, KeyValueSegment.BLOCK_BODY, BODY);
+      RocksDBSnapshots.exportSegments(
+          storage,
+          sourceDataPath,
+          List.of(KeyValueSegment.BLOCK_HEADER, KeyValueSegment.RECEIPT),
+          exportPath);
+    }
+    assertThat(Files.exists(exportPath.resolve("BLOCK_HEADER.sst"))).isTrue();
+    assertThat(Files.exists(exportPath.resolve("RECEIPT.sst"))).isFalse();
+
+    final Path dataPath = tempDir.resolve("target");
+    assertThat(RocksDBSnapshots.isSnapshot(exportPath, dataPath, dataPath.resolve("database")))
+        .isFalse();
+    try (RocksDBStorage storage = createStorage(dataPath, DataStorageFormat.BASIC)) {
+      final List<Segment> ingested =
+          RocksDBSnapshots.ingestSegments(
+              storage,
+              dataPath,
+              List.of(
+                  KeyValueSegment.BLOCK_HEADER,
+                  KeyValueSegment.BLOCK_BODY,
+                  KeyValueSegment.RECEIPT),
+              exportPath);
+
+      assertThat(ingested).containsExactly(KeyValueSegment.BLOCK_HEADER);
+      assertThat(storage.get(KeyValueSegment.BLOCK_HEADER, KEY)).contains(HEADER);
+      assertThat(storage.get(KeyValueSegment.BLOCK_BODY, KEY)).isEmpty();
+    }
+  }
+
+  @Test
+  public void shouldRejectExportOfAnotherStorageFormat() throws Exception {
+    final Path sourceDataPath = tempDir.resolve("source");
+    final Path exportPath = tempDir.resolve("export");
+    try (RocksDBStorage storage = createStorage(sourceDataPath, DataStorageFormat.IMMUTABLE)) {
+      put(storage, KeyValueSegment.BLOCK_HEADER, HEADER);
+      RocksDBSnapshots.exportSegments(
+          storage, sourceDataPath, List.of(KeyValueSegment.BLOCK_HEADER), exportPath);
+    }
+
+    final Path dataPath = tempDir.resolve("target");
+    try (RocksDBStorage storage = createStorage(dataPath, DataStorageFormat.BASIC)) {
+      assertThatThrownBy(
+              () ->
+                  RocksDBSnapshots.ingestSegments(
+                      storage, dataPath, List.of(KeyValueSegment.BLOCK_HEADER), exportPath))
+          .isInstanceOf(StorageException.class);
+      assertThat(storage.get(KeyValueSegment.BLOCK_HEADER, KEY)).isEmpty();
+    }
+  }
+
+  private static RocksDBStorage createStorage(final Path dataPath, final DataStorageFormat format) {
+    return RocksDBKeyValueStorageFactory.create(
+        dataPath, dataPath.resolve("database"), format, new NoOpMetricsSystem());
+  }
+
+  private static void put(final RocksDBStorage storage, final Segment segment, final byte[] value) {
+    final KeyValueStorageTransaction tx = storage.startTransaction();
+    tx.put(segment, KEY, value);
+    tx.commit();
+  }
+}
@@ -7,6 +7,8 @@ import static org.assertj.core.api.Assertions.fail;
 
 import samba.rocksdb.exceptions.StorageException;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -88,6 +90,76 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void streamDescending() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("10", "0F", "12", "11")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.put(TestSegment.BAR, bytesFromHexString("FF"), bytesFromHexString("0ABC"));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> stream = store.streamDescending(TestSegment.FOO)) {
+        Assertions.assertThat(stream.map(Pair::getKey).toList())
+            .containsExactly(
+                bytesFromHexString("12"),
+                bytesFromHexString("11"),
+                bytesFromHexString("10"),
+                bytesFromHexString("0F"));
+      }
+    }
+  }
+
+  @Test
+  public void streamFromKey() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0F", "10", "11", "12", "14")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.put(TestSegment.BAR, bytesFromHexString("11"), bytesFromHexString("0ABC"));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> stream =
+          store.streamFromKey(TestSegment.FOO, bytesFromHexString("10"))) {
+        Assertions.assertThat(stream.map(Pair::getKey).toList())
+            .containsExactly(
+                bytesFromHexString("10"),
+                bytesFromHexString("11"),
+                bytesFromHexString("12"),
+                bytesFromHexString("14"));
+      }
+      try (final Stream<Pair<byte[], byte[]>> stream =
+          store.streamFromKey(
+              TestSegment.FOO, bytesFromHexString("10"), bytesFromHexString("13"))) {
+        Assertions.assertThat(stream.map(Pair::getKey).toList())
+            .containsExactly(
+                bytesFromHexString("10"), bytesFromHexString("11"), bytesFromHexString("12"));
+      }
+    }
+  }
+
+  @Test
+  public void streamDescendingFromKey() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      Stream.of("0F", "10", "12", "14")
+          .map(this::bytesFromHexString)
+          .forEach(key -> tx.put(TestSegment.FOO, key, bytesFromHexString("0ABC")));
+      tx.commit();
+      try (final Stream<Pair<byte[], byte[]>> stream =
+          store.streamDescendingFromKey(TestSegment.FOO, bytesFromHexString("13"))) {
+        Assertions.assertThat(stream.map(Pair::getKey).toList())
+            .containsExactly(
+                bytesFromHexString("12"), bytesFromHexString("10"), bytesFromHexString("0F"));
+      }
+      try (final Stream<Pair<byte[], byte[]>> stream =
+          store.streamDescendingFromKey(TestSegment.FOO, bytesFromHexString("10"))) {
+        Assertions.assertThat(stream.map(Pair::getKey).toList())
+            .containsExactly(bytesFromHexString("10"), bytesFromHexString("0F"));
+      }
+    }
+  }
+
   @Test
   public void getAllKeysThat() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -122,6 +194,96 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void multiGet() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final byte[] fooKey = bytesFromHexString("01");
+      final byte[] barKey = bytesFromHexString("02");
+      final KeyValueStorageTransaction transaction = store.startTransaction();
+      transaction.put(TestSegment.FOO, fooKey, bytesFromHexString("0A"));
+      transaction.put(TestSegment.BAR, barKey, bytesFromHexString("0B"));
+      transaction.commit();
+
+      final List<Optional<byte[]>> values =
+          store.multiGet(
+              List.of(TestSegment.FOO, TestSegment.BAR, TestSegment.FOO),
+              List.of(fooKey, barKey, barKey));
+
+      assertThat(values).hasSize(3);
+      assertThat(values.get(0)).contains(bytesFromHexString("0A"));
+      assertThat(values.get(1)).contains(bytesFromHexString("0B"));
+      assertThat(values.get(2)).isEmpty();
+    }
+  }
+
+  @Test
+  public void multiContains() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final byte[] fooKey = bytesFromHexString("01");
+      final byte[] barKey = bytesFromHexString("0203");
+      final KeyValueStorageTransaction transaction = store.startTransaction();
+      transaction.put(TestSegment.FOO, fooKey, new byte[100_000]);
+      transaction.put(TestSegment.BAR, barKey, bytesFromHexString("0B"));
+      transaction.commit();
+
+      assertThat(
+              store.multiContains(
+                  List.of(TestSegment.FOO, TestSegment.BAR, TestSegment.FOO, TestSegment.BAR),
+                  List.of(fooKey, barKey, barKey, fooKey)))
+          .containsExactly(true, true, false, false);
+      assertThat(store.multiContains(List.of(), List.of())).isEmpty();
+    }
+  }
+
+  @Test
+  public void sampleReadLatencyCountsPointReadsOnly() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final byte[] key = bytesFromHexString("01");
+      final KeyValueStorageTransaction transaction = store.startTransaction();
+      transaction.put(TestSegment.FOO, key, bytesFromHexString("0A"));
+      transaction.commit();
+      final ReadLatencySample before = store.sampleReadLatency();
+
+      store.get(TestSegment.FOO, key);
+      store.get(TestSegment.FOO, bytesFromHexString("02"));
+      store.multiGet(List.of(TestSegment.FOO), List.of(key));
+
+      final ReadLatencySample after = store.sampleReadLatency();
+      assertThat(after.readsSince(before)).isEqualTo(2);
+      assertThat(after.meanMicrosSince(before)).isGreaterThanOrEqualTo(0);
+      assertThat(after.meanMicrosSince(after)).isZero();
+    }
+  }
+
+  @Test
+  public void getIntoBuffer() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final byte[] key = bytesFromHexString("01");
+      final byte[] value = new byte[1_000];
+      Arrays.fill(value, (byte) 7);
+      final KeyValueStorageTransaction transaction = store.startTransaction();
+      transaction.put(TestSegment.FOO, key, value);
+      transaction.commit();
+
+      for (final ByteBuffer buffer :
+          List.of(ByteBuffer.allocateDirect(2_000), ByteBuffer.allocate(2_000))) {
+        buffer.position(5);
+        assertThat(store.get(TestSegment.FOO, key, buffer)).isEqualTo(value.length);
+        assertThat(buffer.position()).isEqualTo(5);
+        assertThat(buffer.remaining()).isEqualTo(value.length);
+        final byte[] read = new byte[value.length];
+        buffer.get(read);
+        assertThat(read).isEqualTo(value);
+      }
+
+      final ByteBuffer tooSmall = ByteBuffer.allocateDirect(10);
+      assertThat(store.get(TestSegment.FOO, key, tooSmall)).isEqualTo(value.length);
+      assertThat(tooSmall.remaining()).isEqualTo(10);
+      assertThat(store.get(TestSegment.BAR, key, ByteBuffer.allocateDirect(10)))
+          .isEqualTo(KeyValueStorage.NOT_FOUND);
+    }
+  }
+
   @Test
   public void removeExisting() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -267,6 +429,127 @@ public class RocksDBStorageTest {
     }
   }
 
+  @Test
+  public void writeBatchCommit() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(TestSegment.FOO, bytesOf(1), bytesOf(1));
+      tx.put(TestSegment.FOO, bytesOf(2), bytesOf(2));
+      tx.commit();
+
+      final KeyValueStorageTransaction batch = store.startWriteBatch();
+      batch.put(TestSegment.FOO, bytesOf(1), bytesOf(3));
+      batch.remove(TestSegment.FOO, bytesOf(2));
+      batch.put(TestSegment.BAR, bytesOf(4), bytesOf(4));
+
+      assertThat(store.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(1));
+      assertThat(store.get(TestSegment.BAR, bytesOf(4))).isEmpty();
+
+      batch.commit();
+
+      assertThat(store.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(3));
+      assertThat(store.get(TestSegment.FOO, bytesOf(2))).isEmpty();
+      assertThat(store.get(TestSegment.BAR, bytesOf(4))).contains(bytesOf(4));
+    }
+  }
+
+  @Test
+  public void writeBatchRollback() throws Exception {
+    try (final KeyValueStorage store = createStore()) {
+      final KeyValueStorageTransaction batch = store.startWriteBatch();
+      batch.put(TestSegment.FOO, bytesOf(1), bytesOf(1));
+      batch.rollback();
+
+      assertThat(store.get(TestSegment.FOO, bytesOf(1))).isEmpty();
+      Assertions.assertThatThrownBy(batch::commit).isInstanceOf(IllegalStateException.class);
+    }
+  }
+
+  @Test
+  public void mergeAddsToCounters() throws Exception {
+    try (final KeyValueStorage store =
+        new RocksDBInstance(
+            RocksDBConfiguration.createDefault(getTempSubFolder(folder)),
+            List.of(TestSegment.DEFAULT, KeyValueSegment.METADATA),
+            List.of(),
+            new NoOpMetricsSystem(),
+            RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+      final byte[] key = bytesOf(1);
+      final KeyValueStorageTransaction tx = store.startTransaction();
+      tx.put(KeyValueSegment.METADATA, key, counter(5));
+      tx.merge(KeyValueSegment.METADATA, key, counter(3));
+      tx.commit();
+
+      final KeyValueStorageTransaction batch = store.startWriteBatch();
+      batch.merge(KeyValueSegment.METADATA, key, counter(-2));
+      batch.merge(KeyValueSegment.METADATA, bytesOf(2), counter(7));
+      batch.commit();
+
+      assertThat(store.get(KeyValueSegment.METADATA, key)).contains(counter(6));
+      assertThat(store.get(KeyValueSegment.METADATA, bytesOf(2))).contains(counter(7));
+    }
+  }
+
+  @Test
+  public void expiringSegmentIsReadAndWritten() throws Exception {
+    // the time to live is set whether every file is kept open or not
+    for (int maxOpenFiles : List.of(-1, 1024)) {
+      try (final KeyValueStorage store =
+          new RocksDBInstance(
+              RocksDBSizing.DEFAULT
+                  .withMaxOpenFiles(maxOpenFiles)
+                  .toConfiguration(getTempSubFolder(folder)),
+              List.of(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.EXPIRING),
+              List.of(),
+              new NoOpMetricsSystem(),
+              RocksDBMetricsFactory.PUBLIC_ROCKS_DB_METRICS)) {
+        final KeyValueStorageTransaction tx = store.startTransaction();
+        tx.put(TestSegment.EXPIRING, bytesOf(1), bytesOf(10));
+        tx.put(TestSegment.FOO, bytesOf(1), bytesOf(20));
+        tx.commit();
+
+        assertThat(store.get(TestSegment.EXPIRING, bytesOf(1))).contains(bytesOf(10));
+        assertThat(store.get(TestSegment.EXPIRING, bytesOf(2))).isEmpty();
+        assertThat(store.get(TestSegment.FOO, bytesOf(1))).contains(bytesOf(20));
+      }
+    }
+  }
+
+  @Test
+  public void concurrentWriteBatches() throws Exception {
+    final int writerCount = 8;
+    final int batchCount = 200;
+    try (final KeyValueStorage store = createStore()) {
+      final CountDownLatch finishedLatch = new CountDownLatch(writerCount);
+      for (int writer = 0; writer < writerCount; writer++) {
+        final int writerId = writer;
+        new Thread(
+                () -> {
+                  try {
+                    for (int i = 0; i < batchCount; i++) {
+                      final byte[] key = Bytes.of(writerId, i >> 8, i).toArrayUnsafe();
+                      final KeyValueStorageTransaction batch = store.startWriteBatch();
+                      batch.put(TestSegment.FOO, key, key);
+                      batch.put(TestSegment.BAR, key, key);
+                      batch.commit();
+                    }
+                  } finally {
+                    finishedLatch.countDown();
+                  }
+                })
+            .start();
+      }
+
+      finishedLatch.await();
+
+      try (final Stream<byte[]> fooKeys = store.streamKeys(TestSegment.FOO);
+          final Stream<byte[]> barKeys = store.streamKeys(TestSegment.BAR)) {
+        assertThat(fooKeys.count()).isEqualTo(writerCount * batchCount);
+        assertThat(barKeys.count()).isEqualTo(writerCount * batchCount);
+      }
+    }
+  }
+
   @Test
   public void transactionCommitEmpty() throws Exception {
     try (final KeyValueStorage store = createStore()) {
@@ -700,7 +983,7 @@ public class RocksDBStorageTest {
    * assertThat(labelledCountersHelpArgs.getValue()).isEqualTo("Number of RocksDB transactions
    * rolled back."); } }
    */
-  private KeyValueStorage createStore() throws Exception {
+  protected KeyValueStorage createStore() throws Exception {
     return new RocksDBInstance(
         RocksDBConfiguration.createDefault(getTempSubFolder(folder)),
         Arrays.asList(TestSegment.DEFAULT, TestSegment.FOO, TestSegment.BAR),
@@ -717,6 +1000,10 @@ public class RocksDBStorageTest {
     return java.nio.file.Files.createTempDirectory(folder, null);
   }
 
+  protected byte[] counter(final long value) {
+    return Bytes.ofUnsignedLong(value, ByteOrder.LITTLE_ENDIAN).toArrayUnsafe();
+  }
+
   protected byte[] bytesOf(final int... bytes) {
     return Bytes.of(bytes).toArrayUnsafe();
   }
@@ -8,23 +8,38 @@ public enum TestSegment implements Segment {
   BAR(new byte[] {2}),
   EXPERIMENTAL(new byte[] {3}),
 
-  STATIC_DATA(new byte[] {4}, true, false);
+  STATIC_DATA(new byte[] {4}, true, false),
+  EXPIRING(new byte[] {5}, 60);
 
   private final byte[] id;
   private final String nameAsUtf8;
   private final boolean containsStaticData;
   private final boolean eligibleToHighSpecFlag;
+  private final long timeToLiveInSeconds;
 
   TestSegment(final byte[] id) {
-    this(id, false, false);
+    this(id, false, false, 0);
+  }
+
+  TestSegment(final byte[] id, final long timeToLiveInSeconds) {
+    this(id, false, false, timeToLiveInSeconds);
   }
 
   TestSegment(
       final byte[] id, final boolean containsStaticData, final boolean eligibleToHighSpecFlag) {
+    this(id, containsStaticData, eligibleToHighSpecFlag, 0);
+  }
+
+  TestSegment(
+      final byte[] id,
+      final boolean containsStaticData,
+      final boolean eligibleToHighSpecFlag,
+      final long timeToLiveInSeconds) {
     this.id = id;
     this.nameAsUtf8 = new String(id, StandardCharsets.UTF_8);
     this.containsStaticData = containsStaticData;
     this.eligibleToHighSpecFlag = eligibleToHighSpecFlag;
+    this.timeToLiveInSeconds = timeToLiveInSeconds;
   }
 
   @Override
@@ -46,4 +61,9 @@ public enum TestSegment implements Segment {
   public boolean isEligibleToHighSpecFlag() {
     return eligibleToHighSpecFlag;
   }
+
+  @Override
+  public long getTimeToLiveInSeconds() {
+    return timeToLiveInSeconds;
+  }
 }